@@ -0,0 +1,29 @@
+package net.raster.grid.ascii;
+
+
+
+/**
+ * A stateless function applied to each grid cell while writing the grid;
+ * unlike listeners, it is not told where the cell is, so it can be applied
+ * to blocks of rows by several threads at once, and in any order;
+ * rows are written in grid order all the same;
+ * it must not keep any state between calls, or it must be thread safe;
+ */
+public interface CellMapper
+{
+    /**
+     * maps a single cell that does not hold the NODATA value;
+     * NODATA cells are written as they are, without calling this method;
+     * if the 'NODATA_value' has been changed, each cell with old value
+     * will be replaced with the new one before this method is called;
+     * returning NaN, or the NODATA value, the cell is written with the
+     * header NODATA text; returning NaN when NODATA is not defined, the
+     * grid cannot be written, and a 'GridInvalidException' is thrown;
+     * returning the same value, the cell keeps its original text;
+     *
+     * @param value    the cell value;
+     * @return the value to store in the grid;
+     */
+    double map( double value );
+
+}
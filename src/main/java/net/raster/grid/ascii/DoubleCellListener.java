@@ -0,0 +1,64 @@
+package net.raster.grid.ascii;
+
+
+
+/**
+ * Methods of this interface will be called while writing the grid,
+ * with cells already parsed as numbers;
+ * unlike 'GridScanListener', no text string is built for any cell:
+ * the returned numbers are written with the shortest digits, while
+ * cells returned unchanged keep their original text;
+ */
+public interface DoubleCellListener
+{
+    /**
+     * called before the grid is written;
+     */
+    default void gridBegin()
+    {
+        /* do nothing */
+    }
+
+    /**
+     * called just after the grid has been written;
+     */
+    default void gridEnd()
+    {
+        /* do nothing */
+    }
+
+    /**
+     * called at begin of each row;
+     */
+    default void rowBegin()
+    {
+        /* do nothing */
+    }
+
+    /**
+     * called at end of each row;
+     */
+    default void rowEnd()
+    {
+        /* do nothing */
+    }
+
+    /**
+     * called for each grid cell;
+     * the actual parameter is cell value and
+     * the returned value will be stored in the grid;
+     * if the 'NODATA_value' has been changed, each cell with old value
+     * will be replaced with the new one before this method is called;
+     * returning NaN, or the NODATA value, the cell is written with the
+     * header NODATA text; returning NaN when NODATA is not defined, the
+     * grid cannot be written, and a 'GridInvalidException' is thrown;
+     *
+     * @param row       the cell row, starting from zero at north;
+     * @param col       the cell column, starting from zero at west;
+     * @param value     the cell value after replace;
+     * @param nodata    true, if the cell holds the NODATA value;
+     * @return the value to store in the grid;
+     */
+    double cell( int row, int col, double value, boolean nodata );
+
+}
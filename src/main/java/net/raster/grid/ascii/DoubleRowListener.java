@@ -0,0 +1,50 @@
+package net.raster.grid.ascii;
+
+
+import java.util.BitSet;
+
+
+/**
+ * Methods of this interface will be called while writing the grid,
+ * once per row with all cells already parsed as numbers;
+ * the listener changes the row in place, so it can handle
+ * cells in tight loops without any call per cell;
+ * changed numbers are written with the shortest digits, while
+ * cells left unchanged keep their original text;
+ */
+public interface DoubleRowListener
+{
+    /**
+     * called before the grid is written;
+     */
+    default void gridBegin()
+    {
+        /* do nothing */
+    }
+
+    /**
+     * called just after the grid has been written;
+     */
+    default void gridEnd()
+    {
+        /* do nothing */
+    }
+
+    /**
+     * called for each grid row;
+     * if the 'NODATA_value' has been changed, each cell with old value
+     * will be replaced with the new one before this method is called;
+     * both arrays are reused for the next row, so they must not be kept;
+     * after the call, cells flagged as NODATA or holding NaN, or the NODATA value,
+     * are written with the header NODATA text; cells flagged or holding NaN when NODATA
+     * is not defined cannot be written, and a 'GridInvalidException' is thrown;
+     * a flag only adds NODATA: clearing it leaves the cell value to decide, so a cell
+     * still holding the NODATA value is written as NODATA; to keep the cell, change its value;
+     *
+     * @param row       the row index, starting from zero at north;
+     * @param values    the row cells, from west to east; they can be changed;
+     * @param nodata    the cells holding the NODATA value; flags can be changed;
+     */
+    void row( int row, double[] values, BitSet nodata );
+
+}
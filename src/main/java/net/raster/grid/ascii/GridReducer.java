@@ -0,0 +1,53 @@
+package net.raster.grid.ascii;
+
+
+
+/**
+ * A reduction computed while writing the grid, left unchanged;
+ * each worker accumulates the cells of its own rows in a new accumulator,
+ * then accumulators are merged in row order, so the result does not
+ * depend on thread scheduling, and no locking is needed;
+ * when the grid is written sequentially, a single accumulator is used;
+ *
+ * @param <A> the accumulator type;
+ */
+public interface GridReducer< A >
+{
+    /**
+     * creates a new empty accumulator;
+     *
+     * @return the accumulator;
+     */
+    A create();
+
+    /**
+     * accumulates a single cell that does not hold the NODATA value;
+     * if the 'NODATA_value' has been changed, each cell with old value
+     * will be replaced with the new one before this method is called;
+     *
+     * @param accumulator    the accumulator of current worker;
+     * @param value          the cell value;
+     */
+    void accumulate( A accumulator, double value );
+
+    /**
+     * accumulates a single cell holding the NODATA value;
+     *
+     * @param accumulator    the accumulator of current worker;
+     */
+    default void accumulateNoData( A accumulator )
+    {
+        /* do nothing */
+    }
+
+    /**
+     * merges two accumulators;
+     * the first one holds rows preceding the ones of the second accumulator;
+     *
+     * @param first     the accumulator of the northern rows;
+     * @param second    the accumulator of the southern rows;
+     * @return the merged accumulator; it can be one of the arguments;
+     */
+    A merge( A first, A second );
+
+}
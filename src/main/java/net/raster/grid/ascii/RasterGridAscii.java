@@ -5,12 +5,32 @@ import net.raster.grid.ascii.header.GridHeaderInvalidException;
 import net.raster.grid.ascii.header.RasterHeader;
 import net.raster.grid.ascii.header.RasterHeaderToken;
 import net.raster.grid.ascii.header.value.RasterTokenValue;
+import net.raster.grid.ascii.reader.GridBodyReader;
+import net.raster.grid.ascii.reader.GridLineReader;
+import net.raster.grid.ascii.reader.GridLineReaderMapped;
+import net.raster.grid.ascii.reader.GridLineReaderText;
+import net.raster.grid.ascii.reader.GridMapping;
+import net.raster.grid.ascii.reader.GridRowIndex;
+import net.raster.grid.ascii.reader.GridRowTokenizer;
+import net.raster.grid.ascii.writer.GridSink;
 import net.raster.grid.ascii.writer.GridWriter;
+import net.raster.grid.ascii.writer.GridWriterDouble;
+import net.raster.grid.ascii.writer.GridWriterMapper;
+import net.raster.grid.ascii.writer.GridWriterReducer;
+import net.raster.grid.ascii.writer.GridWriterRow;
+import net.raster.grid.ascii.writer.GridWriterWorld;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.regex.Pattern;
 
 
@@ -35,13 +55,29 @@ public class RasterGridAscii
      */
     private final RasterHeader    header;
     /**
-     * the source grid reader;
+     * the source grid lines; after parsing, it holds the first grid line;
      */
-    private final BufferedReader  reader;
+    private final GridLineReader  lines;
     /**
-     * a single line of source grid;
+     * position of the first grid line in a mapped grid; -1 for other grids;
      */
-    private String                line;
+    private final long            bodyStart;
+    /**
+     * the source grid file; null if the grid has not been parsed from a file;
+     */
+    private Path                  file;
+    /**
+     * the position of each grid row; null until required;
+     */
+    private GridRowIndex          index;
+    /**
+     * number of threads used to write the grid;
+     */
+    private int                   parallelism = 1;
+    /**
+     * true, to copy the grid body verbatim when cells are left untouched;
+     */
+    private boolean               verbatim    = false;
 
     /* --- static properties --- */
     /**
@@ -74,28 +110,80 @@ public class RasterGridAscii
         return
                 new RasterGridAscii
                         (
-                                new BufferedReader( reader )
+                                new GridLineReaderText( reader )
                         );
     }
-    private RasterGridAscii( BufferedReader reader )
+    /**
+     * parses ascii grid header from a file;
+     * the file is mapped in memory, so the grid is read
+     * straight from the page cache without any charset decoding;
+     *
+     * @param path    the source grid file;
+     * @return object of this class;
+     * @throws IOException if source file failed to be read;
+     * @throws IllegalArgumentException if the source file was undefined;
+     */
+    public static RasterGridAscii parse( Path path )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        if ( path == null )
+        {
+            throw new IllegalArgumentException( "Input path is null." );
+        }
+        try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) )
+        {
+            RasterGridAscii grid = RasterGridAscii.parse( channel );
+            grid.file = path;
+            return
+                    grid;
+        }
+    }
+    /**
+     * parses ascii grid header from a file channel;
+     * the channel is mapped in memory from its current position to its end;
+     * the channel can be closed once this method returned;
+     *
+     * @param channel    the source grid channel;
+     * @return object of this class;
+     * @throws IOException if source channel failed to be read;
+     * @throws IllegalArgumentException if the source channel was undefined;
+     */
+    public static RasterGridAscii parse( FileChannel channel )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        return
+                new RasterGridAscii
+                        (
+                                new GridLineReaderMapped( GridMapping.map( channel ) )
+                        );
+    }
+    private RasterGridAscii( GridLineReader lines )
             throws
                 IOException
     {
-        this.reader =  reader;
+        this.lines  =  lines;
         this.header =  new RasterHeader();
 
         /* --- loop on grid header --- */
-        RasterHeaderToken token;
+        GridRowTokenizer    tokenizer   = new GridRowTokenizer();
+        RasterHeaderToken   token;
         do
         {
             token       = null;
-            this.line   = this.reader.readLine();
-            if ( this.line != null )
+            if ( this.lines.next() )
             {
-                String[] split = this.line.trim().split( SPACES );
-                if ( split.length > 1 )
+                byte[] line = this.lines.getLine();
+                if ( tokenizer.tokenize( line, this.lines.getLength() ) > 1 )
                 {
-                    token = RasterHeaderToken.parse( split[ 0 ], split[ 1 ] );
+                    token = RasterHeaderToken.parse
+                            (
+                                    RasterGridAscii.getText( line, tokenizer, 0 ),
+                                    RasterGridAscii.getText( line, tokenizer, 1 )
+                            );
                     if ( token != null )
                     {
                         this.header.store( token );
@@ -108,6 +196,16 @@ public class RasterGridAscii
 
         /* --- check if the header is well formed --- */
         this.header.isHeaderWellFormed();
+
+        if ( this.lines instanceof GridLineReaderMapped )
+        {
+            GridLineReaderMapped mapped = (GridLineReaderMapped) this.lines;
+            this.bodyStart = mapped.isAvailable() ? mapped.getLineStart() : mapped.getPosition();
+        }
+        else
+        {
+            this.bodyStart = -1;
+        }
     }
 
     /* --- checkers --- */
@@ -155,6 +253,129 @@ public class RasterGridAscii
     }
 
     /* --- getters'n'setters --- */
+    /**
+     * gets the grid header;
+     * changes to the returned header are applied at writing time;
+     *
+     * @return the grid header;
+     */
+    public RasterHeader getHeader()
+    {
+        return
+                this.header;
+    }
+    /**
+     * gets the reader of grid body, row by row;
+     * the grid body can be read only once, either via the returned reader
+     * or via the 'write(...)' methods;
+     *
+     * @return the body reader;
+     */
+    public GridBodyReader getBodyReader()
+    {
+        return
+                new GridBodyReader
+                        (
+                                (Integer) ( this.header.getNRows().getValueAsNumber() ),
+                                (Integer) ( this.header.getNCols().getValueAsNumber() ),
+                                this.lines,
+                                this.header.getNoDataReplacer()
+                        );
+    }
+    /**
+     * gets a reader of grid body starting from any row, without reading the rows above it;
+     * it can be called many times, each reader is independent from the others
+     * and from the reader returned by 'getBodyReader()';
+     * rows are found via the grid row index;
+     *
+     * @param row    the first row to read, starting from zero at north;
+     * @return the body reader, whose first row is the given one;
+     * @throws IOException if the row index cannot be built;
+     * @throws IndexOutOfBoundsException if the row is not in grid;
+     * @throws IllegalStateException if the grid has not been parsed from a file;
+     * @see #getRowIndex()
+     */
+    public GridBodyReader getBodyReader( int row )
+            throws
+                IOException,
+                IndexOutOfBoundsException,
+                IllegalStateException
+    {
+        GridRowIndex            index   = this.getRowIndex();
+        GridMapping             mapping = ( (GridLineReaderMapped) this.lines ).getMapping();
+        GridLineReaderMapped    lines   = new GridLineReaderMapped( mapping, index.getOffset( row ), mapping.getSize() );
+        lines.next();
+        return
+                new GridBodyReader
+                        (
+                                (Integer) ( this.header.getNRows().getValueAsNumber() ),
+                                (Integer) ( this.header.getNCols().getValueAsNumber() ),
+                                lines,
+                                this.header.getNoDataReplacer(),
+                                row
+                        );
+    }
+    /**
+     * gets the position of each grid row in the grid file;
+     * the index is kept in a file next to the grid, named as the grid
+     * with the '.idx' extension; if this file is missing, or it was built
+     * for a grid file with a different size or modification time, the
+     * index is built again by a single scan of the grid, and saved;
+     * if the index file cannot be saved, the index is used all the same;
+     *
+     * @return the row index;
+     * @throws IOException if the grid has less rows than expected;
+     * @throws IllegalStateException if the grid has not been parsed from a file;
+     */
+    public GridRowIndex getRowIndex()
+            throws
+                IOException,
+                IllegalStateException
+    {
+        if ( this.index != null )
+        {
+            return
+                    this.index;
+        }
+        if ( ( this.file == null ) || ( this.bodyStart < 0 ) )
+        {
+            throw
+                    new IllegalStateException( "Row index is available only for grids parsed from a file." );
+        }
+
+        /* --- index file, if up to date --- */
+        GridMapping mapping     = ( (GridLineReaderMapped) this.lines ).getMapping();
+        int         rows        = (Integer) ( this.header.getNRows().getValueAsNumber() );
+        long        modified    = Files.getLastModifiedTime( this.file ).toMillis();
+        Path        sidecar     = this.file.resolveSibling( this.file.getFileName() + ".idx" );
+        if ( Files.isRegularFile( sidecar ) )
+        {
+            try
+            {
+                this.index = GridRowIndex.read( sidecar, mapping.getSize(), modified, rows );
+                return
+                        this.index;
+            }
+            catch ( IOException e )
+            {
+                /* not the index of this grid: build it again */
+            }
+        }
+
+        /* --- scan the grid --- */
+        this.index = GridRowIndex.scan( mapping, this.bodyStart, rows, modified );
+        try
+        {
+            this.index.write( sidecar );
+        }
+        catch ( IOException e )
+        {
+            /* read only folder: keep the index in memory */
+        }
+        return
+                this.index;
+    }
+
     /**
      * gets the grid number of rows;
      *
@@ -314,6 +535,41 @@ public class RasterGridAscii
         this.header.setNoDataValue( value );
     }
 
+    /**
+     * sets the number of threads used to write the grid body;
+     * the body is split in blocks of whole rows, handled concurrently
+     * and written in row order;
+     * threads are used only if the grid has been parsed from a file
+     * and either no listener, a cell mapper or a reducer is defined at writing time; otherwise,
+     * the grid is written sequentially;
+     *
+     * @param threads    number of threads; 1 to write sequentially;
+     * @throws IllegalArgumentException if the number of threads is not positive;
+     */
+    public void setParallelism( int threads ) throws IllegalArgumentException
+    {
+        if ( threads < 1 )
+        {
+            throw
+                    new IllegalArgumentException( "The number of threads must be positive." );
+        }
+        this.parallelism = threads;
+    }
+    /**
+     * requires to copy the grid body verbatim when possible,
+     * that is when no listener is defined at writing time and
+     * the NODATA value has not been changed;
+     * rows and cells are still counted to check the grid size, but
+     * original cell separators and line ends are kept;
+     * useful to change only header fields of huge grids;
+     *
+     * @param verbatim    true, to copy the grid body verbatim; false, to rewrite each row;
+     */
+    public void setVerbatim( boolean verbatim )
+    {
+        this.verbatim = verbatim;
+    }
+
     /* --- handling --- */
     /**
      * force the use of square cell instead of rectangular one;
@@ -358,27 +614,433 @@ public class RasterGridAscii
                 IOException,
                 IllegalArgumentException
     {
-        /* --- grid size --- */
-        Integer  rows    = (Integer) ( this.header.getNRows().getValueAsNumber() );
-        Integer  cols    = (Integer) ( this.header.getNCols().getValueAsNumber() );
+        this.write( GridSink.of( writer ), listener );
+    }
+    /**
+     * writes the whole grid as ASCII bytes, without any charset encoding;
+     * file streams are written via their channel;
+     * the stream is flushed but not closed;
+     *
+     * @param stream    grid destination;
+     * @throws IOException if the grid cannot be read or written;
+     */
+    public void write( OutputStream stream )
+            throws
+                IOException
+    {
+        this.write( stream, null );
+    }
+    /**
+     * writes the whole grid as ASCII bytes, without any charset encoding;
+     * file streams are written via their channel;
+     * the stream is flushed but not closed;
+     *
+     * @param stream    grid destination;
+     * @param listener  call back methods;
+     * @throws IOException if the grid cannot be read or written;
+     */
+    public void write
+    (
+            OutputStream        stream,
+            GridScanListener    listener
+    )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        this.write( GridSink.of( stream ), listener );
+    }
+    /**
+     * writes the whole grid as ASCII bytes, without any charset encoding;
+     * the channel is not closed;
+     *
+     * @param channel    grid destination;
+     * @throws IOException if the grid cannot be read or written;
+     */
+    public void write( WritableByteChannel channel )
+            throws
+                IOException
+    {
+        this.write( channel, null );
+    }
+    /**
+     * writes the whole grid as ASCII bytes, without any charset encoding;
+     * the channel is not closed;
+     *
+     * @param channel    grid destination;
+     * @param listener   call back methods;
+     * @throws IOException if the grid cannot be read or written;
+     */
+    public void write
+    (
+            WritableByteChannel channel,
+            GridScanListener    listener
+    )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        this.write( GridSink.of( channel ), listener );
+    }
+
+    /**
+     * writes the whole grid to a grid sink and performs the following:
+     * - the old NODATA value will be replaced with the new one, if defined;
+     * - grid size consistency check;
+     * the sink is flushed at the end;
+     *
+     * @param sink      grid destination;
+     * @param listener  call back methods; it might be null;
+     * @throws IOException if the grid cannot be read or written;
+     */
+    public void write
+    (
+            GridSink            sink,
+            GridScanListener    listener
+    )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        this.write
+                (
+                        sink,
+                        GridWriter.build
+                                (
+                                        this.getGridRows(), this.getGridCols(), this.lines,
+                                        this.header.getNoDataReplacer(), listener, this.verbatim
+                                )
+                );
+    }
+    /**
+     * writes the whole grid handling each cell as number;
+     * the old NODATA value will be replaced with the new one, if defined,
+     * before each cell is parsed;
+     *
+     * @param writer    grid destination;
+     * @param listener  call back methods;
+     * @throws IOException if the grid cannot be read or written, or a cell is not a number;
+     */
+    public void writeCells
+    (
+            Writer              writer,
+            DoubleCellListener  listener
+    )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        this.writeCells( GridSink.of( writer ), listener );
+    }
+    /**
+     * writes the whole grid to a grid sink handling each cell as number;
+     * the old NODATA value will be replaced with the new one, if defined,
+     * before each cell is parsed;
+     * the sink is flushed at the end;
+     *
+     * @param sink      grid destination;
+     * @param listener  call back methods;
+     * @throws IOException if the grid cannot be read or written, or a cell is not a number;
+     */
+    public void writeCells
+    (
+            GridSink            sink,
+            DoubleCellListener  listener
+    )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        this.write
+                (
+                        sink,
+                        new GridWriterDouble
+                                (
+                                        this.getGridRows(), this.getGridCols(), this.lines,
+                                        this.header.getNoDataReplacer(), this.header.getNoDataValue(), listener
+                                )
+                );
+    }
+    /**
+     * writes the whole grid handling each row as an array of numbers;
+     * the old NODATA value will be replaced with the new one, if defined,
+     * before each row is parsed;
+     *
+     * @param writer    grid destination;
+     * @param listener  call back methods;
+     * @throws IOException if the grid cannot be read or written, or a cell is not a number;
+     */
+    public void writeRows
+    (
+            Writer              writer,
+            DoubleRowListener   listener
+    )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        this.writeRows( GridSink.of( writer ), listener );
+    }
+    /**
+     * writes the whole grid to a grid sink handling each row as an array of numbers;
+     * the old NODATA value will be replaced with the new one, if defined,
+     * before each row is parsed;
+     * the sink is flushed at the end;
+     *
+     * @param sink      grid destination;
+     * @param listener  call back methods;
+     * @throws IOException if the grid cannot be read or written, or a cell is not a number;
+     */
+    public void writeRows
+    (
+            GridSink            sink,
+            DoubleRowListener   listener
+    )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        this.write
+                (
+                        sink,
+                        new GridWriterRow
+                                (
+                                        this.getGridRows(), this.getGridCols(), this.lines,
+                                        this.header.getNoDataReplacer(), this.header.getNoDataValue(), listener
+                                )
+                );
+    }
+    /**
+     * writes the whole grid handling each cell as number located in world coordinates;
+     * coordinates follow the header as it will be written, so they reflect any change of origin or cell size;
+     * the old NODATA value will be replaced with the new one, if defined,
+     * before each cell is parsed;
+     *
+     * @param writer    grid destination;
+     * @param listener  call back methods;
+     * @throws IOException if the grid cannot be read or written, or a cell is not a number;
+     */
+    public void writeWorld
+    (
+            Writer              writer,
+            WorldCellListener   listener
+    )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        this.writeWorld( GridSink.of( writer ), listener );
+    }
+    /**
+     * writes the whole grid to a grid sink handling each cell as number located in world coordinates;
+     * coordinates follow the header as it will be written, so they reflect any change of origin or cell size;
+     * the old NODATA value will be replaced with the new one, if defined,
+     * before each cell is parsed;
+     * the sink is flushed at the end;
+     *
+     * @param sink      grid destination;
+     * @param listener  call back methods;
+     * @throws IOException if the grid cannot be read or written, or a cell is not a number;
+     */
+    public void writeWorld
+    (
+            GridSink            sink,
+            WorldCellListener   listener
+    )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        this.write
+                (
+                        sink,
+                        new GridWriterWorld
+                                (
+                                        this.getGridRows(), this.getGridCols(), this.lines,
+                                        this.header, listener
+                                )
+                );
+    }
+    /**
+     * writes the whole grid applying a stateless function to each cell;
+     * rows are mapped concurrently if parallelism has been set
+     * and the grid has been parsed from a file;
+     * the old NODATA value will be replaced with the new one, if defined,
+     * before each cell is parsed;
+     *
+     * @param writer    grid destination;
+     * @param mapper    the stateless cell mapper;
+     * @throws IOException if the grid cannot be read or written, or a cell is not a number;
+     */
+    public void map
+    (
+            Writer              writer,
+            CellMapper          mapper
+    )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        this.map( GridSink.of( writer ), mapper );
+    }
+    /**
+     * writes the whole grid to a grid sink applying a stateless function to each cell;
+     * rows are mapped concurrently if parallelism has been set
+     * and the grid has been parsed from a file;
+     * the old NODATA value will be replaced with the new one, if defined,
+     * before each cell is parsed;
+     * the sink is flushed at the end;
+     *
+     * @param sink      grid destination;
+     * @param mapper    the stateless cell mapper;
+     * @throws IOException if the grid cannot be read or written, or a cell is not a number;
+     */
+    public void map
+    (
+            GridSink            sink,
+            CellMapper          mapper
+    )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        this.write
+                (
+                        sink,
+                        new GridWriterMapper
+                                (
+                                        this.getGridRows(), this.getGridCols(), this.lines,
+                                        this.header.getNoDataReplacer(), this.header.getNoDataValue(), mapper
+                                )
+                );
+    }
+    /**
+     * writes the whole grid unchanged, computing a reduction of its cells;
+     * rows are reduced concurrently if parallelism has been set
+     * and the grid has been parsed from a file;
+     * the old NODATA value will be replaced with the new one, if defined,
+     * before each cell is parsed;
+     *
+     * @param writer    grid destination;
+     * @param reducer   the reduction to compute;
+     * @param <A>       the accumulator type;
+     * @return the accumulator of the whole grid;
+     * @throws IOException if the grid cannot be read or written, or a cell is not a number;
+     */
+    public < A > A reduce
+    (
+            Writer              writer,
+            GridReducer<A>      reducer
+    )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        return
+                this.reduce( GridSink.of( writer ), reducer );
+    }
+    /**
+     * writes the whole grid unchanged to a grid sink, computing a reduction of its cells;
+     * rows are reduced concurrently if parallelism has been set
+     * and the grid has been parsed from a file;
+     * the old NODATA value will be replaced with the new one, if defined,
+     * before each cell is parsed;
+     * the sink is flushed at the end;
+     *
+     * @param sink      grid destination;
+     * @param reducer   the reduction to compute;
+     * @param <A>       the accumulator type;
+     * @return the accumulator of the whole grid;
+     * @throws IOException if the grid cannot be read or written, or a cell is not a number;
+     */
+    public < A > A reduce
+    (
+            GridSink            sink,
+            GridReducer<A>      reducer
+    )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        GridWriterReducer<A> grid = new GridWriterReducer<>
+                (
+                        this.getGridRows(), this.getGridCols(), this.lines,
+                        this.header.getNoDataReplacer(), this.header.getNoDataValue(), reducer
+                );
+        this.write( sink, grid );
+        return
+                grid.getResult();
+    }
+    /**
+     * computes a reduction of the grid cells, without writing the grid;
+     * rows are reduced concurrently if parallelism has been set
+     * and the grid has been parsed from a file;
+     * the old NODATA value will be replaced with the new one, if defined,
+     * before each cell is parsed;
+     *
+     * @param reducer   the reduction to compute;
+     * @param <A>       the accumulator type;
+     * @return the accumulator of the whole grid;
+     * @throws IOException if the grid cannot be read, or a cell is not a number;
+     */
+    public < A > A reduce
+    (
+            GridReducer<A>      reducer
+    )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        GridWriterReducer<A> grid = new GridWriterReducer<>
+                (
+                        this.getGridRows(), this.getGridCols(), this.lines,
+                        this.header.getNoDataReplacer(), this.header.getNoDataValue(), reducer
+                );
+        grid.setCopy( false );
+        grid.setParallelism( this.parallelism );
+        grid.write( GridSink.none() );
+        return
+                grid.getResult();
+    }
+
+    /* --- internal methods --- */
+    private Integer getGridRows()
+    {
+        return
+                (Integer) ( this.header.getNRows().getValueAsNumber() );
+    }
+    private Integer getGridCols()
+    {
+        return
+                (Integer) ( this.header.getNCols().getValueAsNumber() );
+    }
 
+    private void write
+    (
+            GridSink            sink,
+            GridWriter          grid
+    )
+            throws
+                IOException
+    {
         /* --- write the header --- */
-        this.header.write( writer );
+        StringWriter header = new StringWriter();
+        this.header.write( header );
+        sink.write( header.toString() );
 
         /* --- write the grid --- */
-        GridWriter
-                .build
-                        (
-                                rows, cols, this.reader, this.line, this.header.getNoDataReplacer(), listener
-                        )
-                .write
-                        (
-                                writer
-                        )
-        ;
+        grid.setParallelism( this.parallelism );
+        grid.write( sink );
 
         /* --- flush buffers --- */
-        writer.flush();
+        sink.flush();
+    }
+
+    private static String getText( byte[] line, GridRowTokenizer tokenizer, int index )
+    {
+        int start = tokenizer.getStart( index );
+        return
+                new String( line, start, tokenizer.getEnd( index ) - start, StandardCharsets.US_ASCII );
     }
 
 }
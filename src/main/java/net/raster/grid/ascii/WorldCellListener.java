@@ -0,0 +1,74 @@
+package net.raster.grid.ascii;
+
+
+
+/**
+ * Methods of this interface will be called while writing the grid,
+ * with cells already parsed as numbers and located both in the grid
+ * and in world coordinates;
+ * coordinates are the ones of the cell center, according the header
+ * written with the grid, either by corner or by center, with
+ * square or rectangular cells;
+ * the returned numbers are written with the shortest digits, while
+ * cells returned unchanged keep their original text;
+ */
+public interface WorldCellListener
+{
+    /**
+     * called before the grid is written;
+     */
+    default void gridBegin()
+    {
+        /* do nothing */
+    }
+
+    /**
+     * called just after the grid has been written;
+     */
+    default void gridEnd()
+    {
+        /* do nothing */
+    }
+
+    /**
+     * called at begin of each row;
+     *
+     * @param row    the row index, starting from zero at north;
+     * @param y      the y coordinate of the row cell centers;
+     */
+    default void rowBegin( int row, double y )
+    {
+        /* do nothing */
+    }
+
+    /**
+     * called at end of each row;
+     *
+     * @param row    the row index, starting from zero at north;
+     */
+    default void rowEnd( int row )
+    {
+        /* do nothing */
+    }
+
+    /**
+     * called for each grid cell;
+     * the actual parameter is cell value and
+     * the returned value will be stored in the grid;
+     * if the 'NODATA_value' has been changed, each cell with old value
+     * will be replaced with the new one before this method is called;
+     * returning NaN, or the NODATA value, the cell is written with the
+     * header NODATA text; returning NaN when NODATA is not defined, the
+     * grid cannot be written, and a 'GridInvalidException' is thrown;
+     *
+     * @param row       the cell row, starting from zero at north;
+     * @param col       the cell column, starting from zero at west;
+     * @param x         the x coordinate of the cell center;
+     * @param y         the y coordinate of the cell center;
+     * @param value     the cell value after replace;
+     * @param nodata    true, if the cell holds the NODATA value;
+     * @return the value to store in the grid;
+     */
+    double cell( int row, int col, double x, double y, double value, boolean nodata );
+
+}
@@ -0,0 +1,43 @@
+package net.raster.grid.ascii.algebra;
+
+
+
+/**
+ * A function combining the cells found at the same position
+ * in several co-registered grids;
+ */
+public interface CellFunction
+{
+    /**
+     * combines the cells of all grids at the same position;
+     * NODATA cells are given as NaN; returning NaN, or the output
+     * NODATA value, the cell is written with the output NODATA text;
+     *
+     * @param cells    the cells of each grid, in the same order as the grids; the array is reused;
+     * @return the output cell value;
+     */
+    double apply( double[] cells );
+
+    /**
+     * combines whole rows of all grids;
+     * by default, cells are combined one by one; functions able to
+     * handle rows at once can override this method;
+     *
+     * @param rows     the current row of each grid, NODATA cells as NaN; rows must not be changed;
+     * @param out      the output row;
+     * @param count    number of cells in each row;
+     */
+    default void apply( double[][] rows, double[] out, int count )
+    {
+        double[] cells = new double[ rows.length ];
+        for ( int col = 0; col < count; col++ )
+        {
+            for ( int i = 0; i < rows.length; i++ )
+            {
+                cells[ i ] = rows[ i ][ col ];
+            }
+            out[ col ] = this.apply( cells );
+        }
+    }
+
+}
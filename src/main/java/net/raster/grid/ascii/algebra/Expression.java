@@ -0,0 +1,841 @@
+package net.raster.grid.ascii.algebra;
+
+
+import net.raster.grid.ascii.CellMapper;
+import net.raster.grid.ascii.DoubleRowListener;
+import net.raster.grid.ascii.number.DoubleParser;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+
+/**
+ * A map algebra formula compiled into a flat array of instructions
+ * for a stack machine; constants are folded at compile time;
+ * cells are evaluated either one by one, or a whole row at once, where
+ * each instruction runs as a single loop over the row cells;
+ * nothing is allocated or boxed while evaluating;
+ * NODATA cells are NaN: arithmetic, comparisons and conditions with
+ * a NaN operand give NaN, so NODATA propagates, while the function
+ * 'isnodata(x)' lets formulas handle it;
+ *
+ * Syntax, from lowest to highest precedence:
+ * 'c ? a : b', '||', '&amp;&amp;', '== !=', '&lt; &lt;= &gt; &gt;=', '+ -', '* / %',
+ * unary '- !', '^' (power, right associative), numbers, variables,
+ * the constants 'pi' and 'nodata', parenthesis and the functions
+ * abs, sqrt, exp, log, log10, floor, ceil, round, sin, cos, tan,
+ * isnodata of one argument, min, max, pow of two arguments;
+ * conditions are true if not zero, and they give 1 or 0;
+ *
+ * An expression keeps its own evaluation stack, so it is not thread safe,
+ * except for the mapper returned by 'asMapper()';
+ */
+public final class Expression implements CellFunction
+{
+    /* --- instructions --- */
+    private static final int    CONST       = 0;
+    private static final int    VAR         = 1;
+    private static final int    NEG         = 2;
+    private static final int    NOT         = 3;
+    private static final int    ADD         = 4;
+    private static final int    SUB         = 5;
+    private static final int    MUL         = 6;
+    private static final int    DIV         = 7;
+    private static final int    MOD         = 8;
+    private static final int    POW         = 9;
+    private static final int    LT          = 10;
+    private static final int    LE          = 11;
+    private static final int    GT          = 12;
+    private static final int    GE          = 13;
+    private static final int    EQ          = 14;
+    private static final int    NE          = 15;
+    private static final int    AND         = 16;
+    private static final int    OR          = 17;
+    private static final int    SELECT      = 18;
+    private static final int    ABS         = 19;
+    private static final int    SQRT        = 20;
+    private static final int    EXP         = 21;
+    private static final int    LOG         = 22;
+    private static final int    LOG10       = 23;
+    private static final int    FLOOR       = 24;
+    private static final int    CEIL        = 25;
+    private static final int    ROUND       = 26;
+    private static final int    SIN         = 27;
+    private static final int    COS         = 28;
+    private static final int    TAN         = 29;
+    private static final int    ISNODATA    = 30;
+    private static final int    MIN         = 31;
+    private static final int    MAX         = 32;
+    /**
+     * number of operands of each instruction;
+     */
+    private static final int[]  ARITY       =
+            {
+                    0, 0, 1, 1, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 3,
+                    1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 2, 2
+            };
+    /**
+     * function names and their instructions;
+     */
+    private static final String[]   FUNCTIONS   =
+            {
+                    "abs", "sqrt", "exp", "log", "log10", "floor", "ceil", "round",
+                    "sin", "cos", "tan", "isnodata", "min", "max", "pow"
+            };
+    private static final int[]      FUNCTION_OPS    =
+            {
+                    ABS, SQRT, EXP, LOG, LOG10, FLOOR, CEIL, ROUND,
+                    SIN, COS, TAN, ISNODATA, MIN, MAX, POW
+            };
+
+    /* --- properties --- */
+    /**
+     * the source formula and its variables;
+     */
+    private final String        formula;
+    private final String[]      variables;
+    /**
+     * instructions, with their argument in the upper bits;
+     */
+    private final int[]         code;
+    private final double[]      constants;
+    /**
+     * the stack, for cell evaluation;
+     */
+    private final double[]      stack;
+    /**
+     * the stack rows, for row evaluation;
+     * each level points either to a source row or to its own scratch row;
+     */
+    private final double[][]    levels;
+    private double[][]          scratch;
+
+    /* --- constructor --- */
+    private Expression( String formula, String[] variables, int[] code, double[] constants, int depth )
+    {
+        this.formula    = formula;
+        this.variables  = variables;
+        this.code       = code;
+        this.constants  = constants;
+        this.stack      = new double[ depth ];
+        this.levels     = new double[ depth ][];
+        this.scratch    = new double[ depth ][ 0 ];
+    }
+
+    /**
+     * compiles a formula;
+     *
+     * @param formula      the formula;
+     * @param variables    names of the variables, in the same order as cells are given;
+     * @return the compiled expression;
+     * @throws IllegalArgumentException if the formula is not valid;
+     */
+    public static Expression compile( String formula, String... variables ) throws IllegalArgumentException
+    {
+        if ( formula == null )
+        {
+            throw
+                    new IllegalArgumentException( "Formula not defined." );
+        }
+        return
+                new Compiler( formula, variables ).compile();
+    }
+
+    /* --- getters --- */
+    /**
+     * gets the source formula;
+     *
+     * @return the formula;
+     */
+    public String getFormula()
+    {
+        return
+                this.formula;
+    }
+    /**
+     * gets the number of instructions, after constant folding;
+     *
+     * @return number of instructions;
+     */
+    public int getSize()
+    {
+        return
+                this.code.length;
+    }
+
+    /* --- cell evaluation --- */
+    /**
+     * evaluates the formula for a single cell;
+     *
+     * @param cells    the value of each variable, NaN for NODATA;
+     * @return the result;
+     */
+    @Override
+    public double apply( double[] cells )
+    {
+        return
+                this.evaluate( cells, this.stack );
+    }
+    private double evaluate( double[] cells, double[] stack )
+    {
+        int[]       code        = this.code;
+        double[]    constants   = this.constants;
+        int         top         = -1;
+        for ( int instruction : code )
+        {
+            switch ( instruction & 0xFF )
+            {
+                case CONST:
+                    stack[ ++ top ] = constants[ instruction >>> 8 ];
+                    break;
+                case VAR:
+                    stack[ ++ top ] = cells[ instruction >>> 8 ];
+                    break;
+                case ADD:
+                    stack[ top - 1 ] += stack[ top ];
+                    top -- ;
+                    break;
+                case SUB:
+                    stack[ top - 1 ] -= stack[ top ];
+                    top -- ;
+                    break;
+                case MUL:
+                    stack[ top - 1 ] *= stack[ top ];
+                    top -- ;
+                    break;
+                case DIV:
+                    stack[ top - 1 ] /= stack[ top ];
+                    top -- ;
+                    break;
+                case SELECT:
+                    top -= 2;
+                    stack[ top ] = Expression.select( stack[ top ], stack[ top + 1 ], stack[ top + 2 ] );
+                    break;
+                default:
+                    if ( ARITY[ instruction & 0xFF ] == 1 )
+                    {
+                        stack[ top ] = Expression.unary( instruction & 0xFF, stack[ top ] );
+                    }
+                    else
+                    {
+                        top -- ;
+                        stack[ top ] = Expression.binary( instruction & 0xFF, stack[ top ], stack[ top + 1 ] );
+                    }
+            }
+        }
+        return
+                stack[ 0 ];
+    }
+
+    /* --- row evaluation --- */
+    /**
+     * evaluates the formula for a whole row, one instruction at a time;
+     *
+     * @param rows     the row of each variable, NaN for NODATA;
+     * @param out      the results;
+     * @param count    number of cells in row;
+     */
+    @Override
+    public void apply( double[][] rows, double[] out, int count )
+    {
+        double[][] levels = this.levels;
+        if ( this.scratch[ 0 ].length < count )
+        {
+            this.scratch = new double[ levels.length ][ count ];
+        }
+        int top = -1;
+        for ( int instruction : this.code )
+        {
+            int op = instruction & 0xFF;
+            switch ( op )
+            {
+                case CONST:
+                    top ++ ;
+                    levels[ top ] = this.scratch[ top ];
+                    Arrays.fill( levels[ top ], 0, count, this.constants[ instruction >>> 8 ] );
+                    break;
+                case VAR:
+                    top ++ ;
+                    levels[ top ] = rows[ instruction >>> 8 ];
+                    break;
+                case SELECT:
+                {
+                    top -= 2;
+                    double[] c      = levels[ top ];
+                    double[] a      = levels[ top + 1 ];
+                    double[] b      = levels[ top + 2 ];
+                    double[] result = this.scratch[ top ];
+                    for ( int i = 0; i < count; i++ )
+                    {
+                        result[ i ] = Expression.select( c[ i ], a[ i ], b[ i ] );
+                    }
+                    levels[ top ] = result;
+                    break;
+                }
+                default:
+                    if ( ARITY[ op ] == 1 )
+                    {
+                        double[] a      = levels[ top ];
+                        double[] result = this.scratch[ top ];
+                        for ( int i = 0; i < count; i++ )
+                        {
+                            result[ i ] = Expression.unary( op, a[ i ] );
+                        }
+                        levels[ top ] = result;
+                    }
+                    else
+                    {
+                        top -- ;
+                        Expression.binary( op, levels[ top ], levels[ top + 1 ], this.scratch[ top ], count );
+                        levels[ top ] = this.scratch[ top ];
+                    }
+            }
+        }
+        System.arraycopy( levels[ 0 ], 0, out, 0, count );
+    }
+
+    /* --- adapters --- */
+    /**
+     * gets a thread safe mapper evaluating this formula of a single variable;
+     * each thread evaluates cells on its own stack;
+     *
+     * @return the mapper;
+     * @throws IllegalStateException if the formula has not a single variable;
+     */
+    public CellMapper asMapper() throws IllegalStateException
+    {
+        this.assertSingleVariable();
+        ThreadLocal<double[]>   stacks  = ThreadLocal.withInitial( () -> new double[ this.stack.length ] );
+        ThreadLocal<double[]>   cells   = ThreadLocal.withInitial( () -> new double[ 1 ] );
+        return
+                value ->
+                {
+                    double[] cell = cells.get();
+                    cell[ 0 ] = value;
+                    return
+                            this.evaluate( cell, stacks.get() );
+                };
+    }
+    /**
+     * gets a row listener evaluating this formula of a single variable
+     * a whole row at once; NODATA cells are given as NaN, and
+     * NaN results are written as NODATA;
+     *
+     * @return the row listener;
+     * @throws IllegalStateException if the formula has not a single variable;
+     */
+    public DoubleRowListener asRowListener() throws IllegalStateException
+    {
+        this.assertSingleVariable();
+        double[][]  rows    = new double[ 1 ][];
+        return
+                ( row, values, nodata ) ->
+                {
+                    for ( int col = nodata.nextSetBit( 0 ); col >= 0; col = nodata.nextSetBit( col + 1 ) )
+                    {
+                        values[ col ] = Double.NaN;
+                    }
+                    rows[ 0 ] = values;
+                    this.apply( rows, values, values.length );
+                    Expression.flagNaN( values, nodata );
+                };
+    }
+    private void assertSingleVariable() throws IllegalStateException
+    {
+        if ( this.variables.length != 1 )
+        {
+            throw
+                    new IllegalStateException( "The formula '" + this.formula + "' must have a single variable." );
+        }
+    }
+    private static void flagNaN( double[] values, BitSet nodata )
+    {
+        nodata.clear();
+        for ( int col = 0; col < values.length; col++ )
+        {
+            if ( Double.isNaN( values[ col ] ) )
+            {
+                nodata.set( col );
+            }
+        }
+    }
+
+    /* --- operations --- */
+    private static double unary( int op, double a )
+    {
+        switch ( op )
+        {
+            case NEG:       return - a;
+            case NOT:       return Double.isNaN( a ) ? a : ( a == 0D ) ? 1D : 0D;
+            case ABS:       return Math.abs( a );
+            case SQRT:      return Math.sqrt( a );
+            case EXP:       return Math.exp( a );
+            case LOG:       return Math.log( a );
+            case LOG10:     return Math.log10( a );
+            case FLOOR:     return Math.floor( a );
+            case CEIL:      return Math.ceil( a );
+            case ROUND:     return Math.floor( a + 0.5D );
+            case SIN:       return Math.sin( a );
+            case COS:       return Math.cos( a );
+            case TAN:       return Math.tan( a );
+            case ISNODATA:  return Double.isNaN( a ) ? 1D : 0D;
+            default:        throw new IllegalStateException( "Unknown instruction " + op + "." );
+        }
+    }
+    private static double binary( int op, double a, double b )
+    {
+        /* --- NaN operands give NaN, also where Java would not: pow( NaN, 0 ) is 1 --- */
+        if ( ( op >= POW ) && ( op <= OR ) && ( Double.isNaN( a ) || Double.isNaN( b ) ) )
+        {
+            return
+                    Double.NaN;
+        }
+        switch ( op )
+        {
+            case ADD:       return a + b;
+            case SUB:       return a - b;
+            case MUL:       return a * b;
+            case DIV:       return a / b;
+            case MOD:       return a % b;
+            case POW:       return Math.pow( a, b );
+            case LT:        return ( a <  b ) ? 1D : 0D;
+            case LE:        return ( a <= b ) ? 1D : 0D;
+            case GT:        return ( a >  b ) ? 1D : 0D;
+            case GE:        return ( a >= b ) ? 1D : 0D;
+            case EQ:        return ( a == b ) ? 1D : 0D;
+            case NE:        return ( a != b ) ? 1D : 0D;
+            case AND:       return ( ( a != 0D ) && ( b != 0D ) ) ? 1D : 0D;
+            case OR:        return ( ( a != 0D ) || ( b != 0D ) ) ? 1D : 0D;
+            case MIN:       return Math.min( a, b );
+            case MAX:       return Math.max( a, b );
+            default:        throw new IllegalStateException( "Unknown instruction " + op + "." );
+        }
+    }
+    /**
+     * applies a binary operation to whole rows;
+     * the most common operations have their own loop;
+     */
+    private static void binary( int op, double[] a, double[] b, double[] result, int count )
+    {
+        switch ( op )
+        {
+            case ADD:
+                for ( int i = 0; i < count; i++ )
+                {
+                    result[ i ] = a[ i ] + b[ i ];
+                }
+                break;
+            case SUB:
+                for ( int i = 0; i < count; i++ )
+                {
+                    result[ i ] = a[ i ] - b[ i ];
+                }
+                break;
+            case MUL:
+                for ( int i = 0; i < count; i++ )
+                {
+                    result[ i ] = a[ i ] * b[ i ];
+                }
+                break;
+            case DIV:
+                for ( int i = 0; i < count; i++ )
+                {
+                    result[ i ] = a[ i ] / b[ i ];
+                }
+                break;
+            default:
+                for ( int i = 0; i < count; i++ )
+                {
+                    result[ i ] = Expression.binary( op, a[ i ], b[ i ] );
+                }
+        }
+    }
+    private static double select( double condition, double a, double b )
+    {
+        return
+                Double.isNaN( condition ) ? condition : ( condition != 0D ) ? a : b;
+    }
+
+
+    /* --- internal classes --- */
+    /**
+     * recursive descent parser, emitting instructions in postfix order;
+     * an operation on constants is replaced by its result;
+     */
+    private static final class Compiler
+    {
+        /* --- properties --- */
+        private final String    formula;
+        private final String[]  variables;
+        private int[]           code        = new int[ 16 ];
+        private int             size;
+        private double[]        constants   = new double[ 8 ];
+        private int             count;
+        /**
+         * current and highest stack depth;
+         */
+        private int             depth;
+        private int             maxDepth;
+        /**
+         * position of the next character;
+         */
+        private int             position;
+
+        /* --- constructor --- */
+        private Compiler( String formula, String[] variables )
+        {
+            this.formula    = formula;
+            this.variables  = ( variables != null ) ? variables.clone() : new String[ 0 ];
+        }
+
+        /* --- compiler --- */
+        private Expression compile()
+        {
+            this.condition();
+            this.skipSpaces();
+            if ( this.position < this.formula.length() )
+            {
+                throw
+                        this.error( "unexpected '" + this.formula.charAt( this.position ) + "'" );
+            }
+            return
+                    new Expression
+                            (
+                                    this.formula, this.variables,
+                                    Arrays.copyOf( this.code, this.size ), Arrays.copyOf( this.constants, this.count ),
+                                    Math.max( 1, this.maxDepth )
+                            );
+        }
+
+        /* --- grammar --- */
+        private void condition()
+        {
+            this.or();
+            if ( this.accept( "?" ) )
+            {
+                this.condition();
+                this.expect( ":" );
+                this.condition();
+                this.emit( SELECT, 0 );
+            }
+        }
+        private void or()
+        {
+            this.and();
+            while ( this.accept( "||" ) )
+            {
+                this.and();
+                this.emit( OR, 0 );
+            }
+        }
+        private void and()
+        {
+            this.equality();
+            while ( this.accept( "&&" ) )
+            {
+                this.equality();
+                this.emit( AND, 0 );
+            }
+        }
+        private void equality()
+        {
+            this.comparison();
+            while ( true )
+            {
+                int op = this.accept( "==" ) ? EQ : this.accept( "!=" ) ? NE : -1;
+                if ( op < 0 )
+                {
+                    return;
+                }
+                this.comparison();
+                this.emit( op, 0 );
+            }
+        }
+        private void comparison()
+        {
+            this.sum();
+            while ( true )
+            {
+                int op = this.accept( "<=" ) ? LE : this.accept( ">=" ) ? GE : this.accept( "<" ) ? LT : this.accept( ">" ) ? GT : -1;
+                if ( op < 0 )
+                {
+                    return;
+                }
+                this.sum();
+                this.emit( op, 0 );
+            }
+        }
+        private void sum()
+        {
+            this.product();
+            while ( true )
+            {
+                int op = this.accept( "+" ) ? ADD : this.accept( "-" ) ? SUB : -1;
+                if ( op < 0 )
+                {
+                    return;
+                }
+                this.product();
+                this.emit( op, 0 );
+            }
+        }
+        private void product()
+        {
+            this.unary();
+            while ( true )
+            {
+                int op = this.accept( "*" ) ? MUL : this.accept( "/" ) ? DIV : this.accept( "%" ) ? MOD : -1;
+                if ( op < 0 )
+                {
+                    return;
+                }
+                this.unary();
+                this.emit( op, 0 );
+            }
+        }
+        private void unary()
+        {
+            if ( this.accept( "-" ) )
+            {
+                this.unary();
+                this.emit( NEG, 0 );
+            }
+            else if ( this.accept( "+" ) )
+            {
+                this.unary();
+            }
+            else if ( this.peek( "!" ) && ! this.peek( "!=" ) )
+            {
+                this.position ++ ;
+                this.unary();
+                this.emit( NOT, 0 );
+            }
+            else
+            {
+                this.power();
+            }
+        }
+        private void power()
+        {
+            this.primary();
+            if ( this.accept( "^" ) )
+            {
+                this.unary();
+                this.emit( POW, 0 );
+            }
+        }
+        private void primary()
+        {
+            this.skipSpaces();
+            if ( this.position >= this.formula.length() )
+            {
+                throw
+                        this.error( "unexpected end of formula" );
+            }
+            char c = this.formula.charAt( this.position );
+            if ( c == '(' )
+            {
+                this.position ++ ;
+                this.condition();
+                this.expect( ")" );
+            }
+            else if ( ( ( c >= '0' ) && ( c <= '9' ) ) || ( c == '.' ) )
+            {
+                this.number();
+            }
+            else if ( Character.isJavaIdentifierStart( c ) )
+            {
+                this.name();
+            }
+            else
+            {
+                throw
+                        this.error( "unexpected '" + c + "'" );
+            }
+        }
+        private void number()
+        {
+            int     start   = this.position;
+            String  text    = this.formula;
+            while ( ( this.position < text.length() ) && ( Character.isDigit( text.charAt( this.position ) ) || ( text.charAt( this.position ) == '.' ) ) )
+            {
+                this.position ++ ;
+            }
+            if ( ( this.position < text.length() ) && ( ( text.charAt( this.position ) == 'e' ) || ( text.charAt( this.position ) == 'E' ) ) )
+            {
+                this.position ++ ;
+                if ( ( this.position < text.length() ) && ( ( text.charAt( this.position ) == '+' ) || ( text.charAt( this.position ) == '-' ) ) )
+                {
+                    this.position ++ ;
+                }
+                while ( ( this.position < text.length() ) && Character.isDigit( text.charAt( this.position ) ) )
+                {
+                    this.position ++ ;
+                }
+            }
+            String number = text.substring( start, this.position );
+            try
+            {
+                this.constant( DoubleParser.parse( number ) );
+            }
+            catch ( NumberFormatException e )
+            {
+                this.position = start;
+                throw
+                        this.error( "invalid number '" + number + "'" );
+            }
+        }
+        private void name()
+        {
+            int     start   = this.position;
+            String  text    = this.formula;
+            while ( ( this.position < text.length() ) && Character.isJavaIdentifierPart( text.charAt( this.position ) ) )
+            {
+                this.position ++ ;
+            }
+            String name = text.substring( start, this.position );
+
+            /* --- function --- */
+            if ( this.accept( "(" ) )
+            {
+                for ( int f = 0; f < FUNCTIONS.length; f++ )
+                {
+                    if ( FUNCTIONS[ f ].equals( name ) )
+                    {
+                        int op = FUNCTION_OPS[ f ];
+                        this.condition();
+                        for ( int i = 1; i < ARITY[ op ]; i++ )
+                        {
+                            this.expect( "," );
+                            this.condition();
+                        }
+                        this.expect( ")" );
+                        this.emit( op, 0 );
+                        return;
+                    }
+                }
+                this.position = start;
+                throw
+                        this.error( "unknown function '" + name + "'" );
+            }
+
+            /* --- variable or constant --- */
+            for ( int v = 0; v < this.variables.length; v++ )
+            {
+                if ( name.equals( this.variables[ v ] ) )
+                {
+                    this.emit( VAR, v );
+                    return;
+                }
+            }
+            if ( "pi".equals( name ) )
+            {
+                this.constant( Math.PI );
+            }
+            else if ( "nodata".equals( name ) )
+            {
+                this.constant( Double.NaN );
+            }
+            else
+            {
+                this.position = start;
+                throw
+                        this.error( "unknown variable '" + name + "'" );
+            }
+        }
+
+        /* --- emitters --- */
+        private void constant( double value )
+        {
+            if ( this.count == this.constants.length )
+            {
+                this.constants = Arrays.copyOf( this.constants, this.count << 1 );
+            }
+            this.constants[ this.count ] = value;
+            this.emit( CONST, this.count++ );
+        }
+        private void emit( int op, int argument )
+        {
+            int arity = ARITY[ op ];
+
+            /* --- fold operations on constants --- */
+            if ( ( arity > 0 ) && ( this.size >= arity ) )
+            {
+                boolean folded = true;
+                for ( int i = this.size - arity; i < this.size; i++ )
+                {
+                    folded &= ( ( this.code[ i ] & 0xFF ) == CONST );
+                }
+                if ( folded )
+                {
+                    double[] values = new double[ arity ];
+                    for ( int i = 0; i < arity; i++ )
+                    {
+                        values[ i ] = this.constants[ this.code[ this.size - arity + i ] >>> 8 ];
+                    }
+                    this.size  -= arity;
+                    this.count -= arity;
+                    this.depth -= arity;
+                    this.constant
+                            (
+                                    ( arity == 1 ) ? Expression.unary( op, values[ 0 ] )
+                                    : ( arity == 2 ) ? Expression.binary( op, values[ 0 ], values[ 1 ] )
+                                    : Expression.select( values[ 0 ], values[ 1 ], values[ 2 ] )
+                            );
+                    return;
+                }
+            }
+
+            if ( this.size == this.code.length )
+            {
+                this.code = Arrays.copyOf( this.code, this.size << 1 );
+            }
+            this.code[ this.size++ ] = op | ( argument << 8 );
+            this.depth      += 1 - arity;
+            this.maxDepth    = Math.max( this.maxDepth, this.depth );
+        }
+
+        /* --- scanner --- */
+        private void skipSpaces()
+        {
+            while ( ( this.position < this.formula.length() ) && Character.isWhitespace( this.formula.charAt( this.position ) ) )
+            {
+                this.position ++ ;
+            }
+        }
+        private boolean peek( String token )
+        {
+            this.skipSpaces();
+            return
+                    this.formula.startsWith( token, this.position );
+        }
+        private boolean accept( String token )
+        {
+            if ( this.peek( token ) )
+            {
+                this.position += token.length();
+                return
+                        true;
+            }
+            return
+                    false;
+        }
+        private void expect( String token )
+        {
+            if ( ! this.accept( token ) )
+            {
+                throw
+                        this.error( "expected '" + token + "'" );
+            }
+        }
+        private IllegalArgumentException error( String message )
+        {
+            return
+                    new IllegalArgumentException
+                            (
+                                    "Invalid formula '" + this.formula + "' at position " + ( this.position + 1 ) + ": " + message + "."
+                            );
+        }
+    }
+
+}
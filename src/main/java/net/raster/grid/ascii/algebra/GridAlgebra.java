@@ -0,0 +1,215 @@
+package net.raster.grid.ascii.algebra;
+
+
+import net.raster.grid.ascii.RasterGridAscii;
+import net.raster.grid.ascii.header.GridHeaderInvalidException;
+import net.raster.grid.ascii.header.RasterHeader;
+import net.raster.grid.ascii.header.value.RasterTokenValue;
+import net.raster.grid.ascii.reader.GridBodyReader;
+import net.raster.grid.ascii.writer.GridDerivedWriter;
+import net.raster.grid.ascii.writer.GridRowBuffer;
+import net.raster.grid.ascii.writer.GridSink;
+
+import java.io.IOException;
+
+
+/**
+ * Combines several co-registered grids cell by cell into a single grid;
+ * grids must share size, origin and cell size; their bodies are read
+ * row by row in lockstep, so memory holds a single row of each grid;
+ * the output header is a copy of the first grid header; when it has
+ * no NODATA value, the one of the first grid defining it is used, so
+ * NODATA cells of any grid can be written;
+ */
+public class GridAlgebra extends GridDerivedWriter< CellFunction >
+{
+    /* --- static properties --- */
+    /**
+     * tolerance on origin and cell size, as fraction of the cell size;
+     */
+    private static final double TOLERANCE   = 1e-6;
+
+    /* --- properties --- */
+    /**
+     * the parsed source grids; their bodies are read once;
+     */
+    private final RasterGridAscii[] grids;
+
+    /* --- constructor --- */
+    /**
+     * creates new engine on parsed grids;
+     *
+     * @param grids    the source grids, at least one;
+     * @throws GridHeaderInvalidException if grids are not co-registered;
+     * @throws IllegalArgumentException if no grid is defined;
+     */
+    public GridAlgebra( RasterGridAscii... grids )
+            throws
+                GridHeaderInvalidException,
+                IllegalArgumentException
+    {
+        super( GridAlgebra.outputHeader( grids ) );
+        this.grids = grids.clone();
+    }
+
+    /* --- writers --- */
+    /**
+     * writes the combined grid, header included, to a grid sink;
+     * NaN results are written as NODATA;
+     * the sink is flushed at the end;
+     *
+     * @param sink        grid destination;
+     * @param function    the function combining cells;
+     * @throws IOException if a grid cannot be read or written, or it is not valid,
+     *                     or a result is NaN and the output has no NODATA value;
+     * @throws IllegalArgumentException if the function is not defined;
+     */
+    @Override
+    public void write( GridSink sink, CellFunction function )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        if ( function == null )
+        {
+            throw
+                    new IllegalArgumentException( "Cell function not defined." );
+        }
+        GridRowBuffer       buffer      = this.writeHeader( sink );
+
+        /* --- source rows and their NODATA values --- */
+        int                 count       = this.grids.length;
+        GridBodyReader[]    bodies      = new GridBodyReader[ count ];
+        double[][]          rows        = new double[ count ][];
+        double[]            nodata      = new double[ count ];
+        for ( int i = 0; i < count; i++ )
+        {
+            RasterTokenValue value = this.grids[ i ].getNoDataValue();
+            bodies[ i ] = this.grids[ i ].getBodyReader();
+            rows[ i ]   = new double[ bodies[ i ].getCols() ];
+            nodata[ i ] = ( value != null ) ? value.getValueAsNumber().doubleValue() : Double.NaN;
+        }
+
+        int                 cols        = rows[ 0 ].length;
+        double[]            result      = new double[ cols ];
+        while ( GridAlgebra.next( bodies ) )
+        {
+            for ( int i = 0; i < count; i++ )
+            {
+                double[] row = rows[ i ];
+                bodies[ i ].parse( row, 0 );
+                double empty = nodata[ i ];
+                for ( int col = 0; col < cols; col++ )
+                {
+                    if ( row[ col ] == empty )
+                    {
+                        row[ col ] = Double.NaN;
+                    }
+                }
+            }
+
+            function.apply( rows, result, cols );
+
+            buffer.reset();
+            for ( int col = 0; col < cols; col++ )
+            {
+                if ( col > 0 )
+                {
+                    buffer.append( (byte) ' ' );
+                }
+                buffer.appendCell( result[ col ] );
+            }
+            buffer.append( (byte) '\n' );
+            buffer.writeTo( sink );
+        }
+
+        sink.flush();
+    }
+
+    /* --- internal methods --- */
+    /**
+     * moves all grids to their next row;
+     * grids have the same size, so they end together, unless one is not valid;
+     */
+    private static boolean next( GridBodyReader[] bodies )
+            throws
+                IOException
+    {
+        boolean ready = true;
+        for ( GridBodyReader body : bodies )
+        {
+            ready &= body.next();
+        }
+        return
+                ready;
+    }
+
+    /**
+     * checks the source grids, and computes the output header:
+     * a copy of the first grid header, with the first NODATA value defined;
+     */
+    private static RasterHeader outputHeader( RasterGridAscii[] grids )
+            throws
+                GridHeaderInvalidException,
+                IllegalArgumentException
+    {
+        if ( ( grids == null ) || ( grids.length == 0 ) )
+        {
+            throw
+                    new IllegalArgumentException( "Source grids not defined." );
+        }
+        for ( int i = 0; i < grids.length; i++ )
+        {
+            if ( grids[ i ] == null )
+            {
+                throw
+                        new IllegalArgumentException( "Source grid " + ( i + 1 ) + " not defined." );
+            }
+            GridAlgebra.checkAligned( grids[ 0 ].getHeader(), grids[ i ].getHeader(), i );
+        }
+        RasterHeader header = grids[ 0 ].getHeader().copy();
+        for ( int i = 1; ( i < grids.length ) && ( header.getNoDataValue() == null ); i++ )
+        {
+            RasterTokenValue nodata = grids[ i ].getNoDataValue();
+            if ( nodata != null )
+            {
+                header.setNoDataValue( nodata.getValueAsText() );
+            }
+        }
+        return
+                header;
+    }
+
+    /**
+     * checks whether a grid is co-registered with the first one;
+     */
+    private static void checkAligned( RasterHeader first, RasterHeader other, int index )
+            throws
+                GridHeaderInvalidException
+    {
+        String grid = "Grid " + ( index + 1 );
+        if ( ! first.getNCols().getValueAsNumber().equals( other.getNCols().getValueAsNumber() )
+                || ! first.getNRows().getValueAsNumber().equals( other.getNRows().getValueAsNumber() ) )
+        {
+            throw
+                    new GridHeaderInvalidException
+                            (
+                                    grid + " has " + other.getNCols().getValueAsText() + " x " + other.getNRows().getValueAsText()
+                                    + " cells instead of " + first.getNCols().getValueAsText() + " x " + first.getNRows().getValueAsText() + "."
+                            );
+        }
+        double dx = first.getCellWidth();
+        double dy = first.getCellHeight();
+        if ( ( Math.abs( dx - other.getCellWidth() ) > dx * TOLERANCE ) || ( Math.abs( dy - other.getCellHeight() ) > dy * TOLERANCE ) )
+        {
+            throw
+                    new GridHeaderInvalidException( grid + " has a cell size different from the first grid." );
+        }
+        if ( ( Math.abs( first.getWest() - other.getWest() ) > dx * TOLERANCE ) || ( Math.abs( first.getSouth() - other.getSouth() ) > dy * TOLERANCE ) )
+        {
+            throw
+                    new GridHeaderInvalidException( grid + " has an origin different from the first grid." );
+        }
+    }
+
+}
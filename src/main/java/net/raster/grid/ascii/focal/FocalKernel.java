@@ -0,0 +1,290 @@
+package net.raster.grid.ascii.focal;
+
+
+
+/**
+ * A square neighbourhood of cells, with an odd number of cells per side,
+ * combined into the value of its centre cell;
+ * the neighbourhood is given as a window of rows padded on both sides,
+ * so that no bound check is needed; cells outside the grid and NODATA
+ * cells are given as NaN;
+ */
+public abstract class FocalKernel
+{
+    /* --- properties --- */
+    /**
+     * number of cells on each side;
+     */
+    private final int   size;
+
+    /* --- constructor --- */
+    /**
+     * creates new kernel;
+     *
+     * @param size    number of cells on each side; it must be odd;
+     * @throws IllegalArgumentException if size is not a positive odd number;
+     */
+    protected FocalKernel( int size )
+            throws
+                IllegalArgumentException
+    {
+        if ( ( size <= 0 ) || ( ( size & 1 ) == 0 ) )
+        {
+            throw
+                    new IllegalArgumentException( "Invalid kernel size " + size + ". It must be a positive odd number." );
+        }
+        this.size = size;
+    }
+
+    /* --- static constructors --- */
+    /**
+     * creates a kernel summing all cells in neighbourhood;
+     *
+     * @param size    number of cells on each side; it must be odd;
+     * @return the kernel;
+     */
+    public static FocalKernel sum( int size )
+    {
+        return
+                new Sum( size, false );
+    }
+    /**
+     * creates a kernel averaging all cells in neighbourhood;
+     *
+     * @param size    number of cells on each side; it must be odd;
+     * @return the kernel;
+     */
+    public static FocalKernel mean( int size )
+    {
+        return
+                new Sum( size, true );
+    }
+    /**
+     * creates a kernel taking the smallest cell in neighbourhood;
+     *
+     * @param size    number of cells on each side; it must be odd;
+     * @return the kernel;
+     */
+    public static FocalKernel min( int size )
+    {
+        return
+                new Extreme( size, false );
+    }
+    /**
+     * creates a kernel taking the largest cell in neighbourhood;
+     *
+     * @param size    number of cells on each side; it must be odd;
+     * @return the kernel;
+     */
+    public static FocalKernel max( int size )
+    {
+        return
+                new Extreme( size, true );
+    }
+    /**
+     * creates a kernel summing the cells in neighbourhood multiplied by their weight;
+     * if weights do not add up to zero, as in smoothing kernels, missing cells are
+     * skipped and the result is scaled by the weights of the available cells;
+     * otherwise, as in edge or slope kernels, a missing cell with a weight
+     * gives NaN;
+     *
+     * @param weights    the weights of a square neighbourhood, row by row from north-west;
+     * @return the kernel;
+     * @throws IllegalArgumentException if weights are not an odd square number;
+     */
+    public static FocalKernel weights( double... weights )
+            throws
+                IllegalArgumentException
+    {
+        int size = ( weights != null ) ? (int) Math.round( Math.sqrt( weights.length ) ) : 0;
+        if ( ( weights == null ) || ( size * size != weights.length ) )
+        {
+            throw
+                    new IllegalArgumentException( "Kernel weights must be a square number." );
+        }
+        return
+                new Weights( size, weights.clone() );
+    }
+
+    /* --- getters --- */
+    /**
+     * gets the number of cells on each side;
+     *
+     * @return the kernel size;
+     */
+    public int getSize()
+    {
+        return
+                this.size;
+    }
+    /**
+     * gets the number of cells on each side of the centre cell;
+     *
+     * @return the kernel radius;
+     */
+    public int getRadius()
+    {
+        return
+                this.size >> 1;
+    }
+
+    /* --- kernel --- */
+    /**
+     * computes the value of a single cell;
+     * cell at row 'r' and column 'c' of neighbourhood is 'window[ r ][ col + c ]';
+     * the window must not be changed;
+     *
+     * @param window    the neighbourhood rows, as many as the kernel size, NODATA cells as NaN;
+     * @param col       position in window rows of the first neighbourhood column;
+     * @return the cell value; NaN to write the NODATA value;
+     */
+    public abstract double apply( double[][] window, int col );
+
+
+    /* --- internal classes --- */
+    /**
+     * sum or mean of available cells;
+     */
+    private static class Sum extends FocalKernel
+    {
+        private final boolean   mean;
+
+        private Sum( int size, boolean mean )
+        {
+            super( size );
+            this.mean = mean;
+        }
+
+        @Override
+        public double apply( double[][] window, int col )
+        {
+            int     size    = this.getSize();
+            double  sum     = 0;
+            int     count   = 0;
+            for ( double[] row : window )
+            {
+                for ( int i = col, end = col + size; i < end; i++ )
+                {
+                    double value = row[ i ];
+                    if ( value == value )
+                    {
+                        sum += value;
+                        count ++ ;
+                    }
+                }
+            }
+            if ( count == 0 )
+            {
+                return
+                        Double.NaN;
+            }
+            return
+                    this.mean ? sum / count : sum;
+        }
+    }
+
+    /**
+     * smallest or largest of available cells;
+     */
+    private static class Extreme extends FocalKernel
+    {
+        private final boolean   max;
+
+        private Extreme( int size, boolean max )
+        {
+            super( size );
+            this.max = max;
+        }
+
+        @Override
+        public double apply( double[][] window, int col )
+        {
+            int     size    = this.getSize();
+            double  result  = Double.NaN;
+            for ( double[] row : window )
+            {
+                for ( int i = col, end = col + size; i < end; i++ )
+                {
+                    double value = row[ i ];
+                    if ( ( result != result ) || ( this.max ? value > result : value < result ) )
+                    {
+                        result = value;
+                    }
+                }
+            }
+            return
+                    result;
+        }
+    }
+
+    /**
+     * weighted sum of cells;
+     */
+    private static class Weights extends FocalKernel
+    {
+        private final double[]  weights;
+        /**
+         * sum of all weights; zero if missing cells cannot be skipped;
+         */
+        private final double    total;
+
+        private Weights( int size, double[] weights )
+        {
+            super( size );
+            double total = 0;
+            double scale = 0;
+            for ( double weight : weights )
+            {
+                total += weight;
+                scale += Math.abs( weight );
+            }
+            this.weights    = weights;
+            this.total      = ( Math.abs( total ) > scale * 1e-12 ) ? total : 0;
+        }
+
+        @Override
+        public double apply( double[][] window, int col )
+        {
+            int         size    = this.getSize();
+            double[]    weights = this.weights;
+            double      sum     = 0;
+            double      used    = 0;
+            int         k       = 0;
+            for ( double[] row : window )
+            {
+                for ( int i = col, end = col + size; i < end; i++, k++ )
+                {
+                    double weight = weights[ k ];
+                    if ( weight == 0 )
+                    {
+                        continue;
+                    }
+                    double value = row[ i ];
+                    if ( value == value )
+                    {
+                        sum     += weight * value;
+                        used    += weight;
+                    }
+                    else if ( this.total == 0 )
+                    {
+                        return
+                                Double.NaN;
+                    }
+                }
+            }
+            if ( this.total == 0 )
+            {
+                return
+                        sum;
+            }
+            if ( used == 0 )
+            {
+                return
+                        Double.NaN;
+            }
+            return
+                    ( used == this.total ) ? sum : sum * this.total / used;
+        }
+    }
+
+}
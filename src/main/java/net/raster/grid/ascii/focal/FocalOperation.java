@@ -0,0 +1,177 @@
+package net.raster.grid.ascii.focal;
+
+
+import net.raster.grid.ascii.RasterGridAscii;
+import net.raster.grid.ascii.header.RasterHeader;
+import net.raster.grid.ascii.header.value.RasterTokenValue;
+import net.raster.grid.ascii.reader.GridBodyReader;
+import net.raster.grid.ascii.writer.GridDerivedWriter;
+import net.raster.grid.ascii.writer.GridRowBuffer;
+import net.raster.grid.ascii.writer.GridSink;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+
+/**
+ * Applies a neighbourhood kernel to each cell of a grid, writing the result grid;
+ * the grid body is read once, keeping in memory only a rolling window
+ * of as many rows as the kernel size, so memory does not depend on
+ * the number of grid rows;
+ * cells outside the grid are seen by the kernel as NODATA;
+ * the output header is a copy of the source grid header;
+ */
+public class FocalOperation extends GridDerivedWriter< FocalKernel >
+{
+    /* --- properties --- */
+    /**
+     * the parsed source grid; its body is read once;
+     */
+    private final RasterGridAscii   grid;
+    /**
+     * true, if NODATA cells are written as NODATA whatever their neighbourhood;
+     */
+    private boolean                 keepNoData  = true;
+
+    /* --- constructor --- */
+    /**
+     * creates new operation on a parsed grid;
+     *
+     * @param grid    the source grid;
+     * @throws IllegalArgumentException if the grid is not defined;
+     */
+    public FocalOperation( RasterGridAscii grid )
+            throws
+                IllegalArgumentException
+    {
+        super( FocalOperation.outputHeader( grid ) );
+        this.grid = grid;
+    }
+
+    /* --- setters and getters --- */
+    /**
+     * defines whether NODATA cells stay NODATA; by default they do;
+     * otherwise they are computed from their neighbourhood, filling
+     * small gaps in the grid;
+     *
+     * @param keep    true, to write NODATA cells as NODATA;
+     */
+    public void setKeepNoData( boolean keep )
+    {
+        this.keepNoData = keep;
+    }
+
+    /* --- writers --- */
+    /**
+     * writes the result grid, header included, to a grid sink;
+     * the sink is flushed at the end;
+     *
+     * @param sink      grid destination;
+     * @param kernel    the kernel computing each cell;
+     * @throws IOException if the grid cannot be read or written, or it is not valid;
+     * @throws IllegalArgumentException if the kernel is not defined;
+     */
+    @Override
+    public void write( GridSink sink, FocalKernel kernel )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        if ( kernel == null )
+        {
+            throw
+                    new IllegalArgumentException( "Focal kernel not defined." );
+        }
+        GridRowBuffer       buffer      = this.writeHeader( sink );
+
+        /* --- source NODATA --- */
+        GridBodyReader      body        = this.grid.getBodyReader();
+        RasterTokenValue    source      = this.grid.getNoDataValue();
+        double              empty       = ( source != null ) ? source.getValueAsNumber().doubleValue() : Double.NaN;
+
+        /* --- rolling window: row 'radius' is the current row, rows are padded by 'radius' cells --- */
+        int                 rows        = body.getRows();
+        int                 cols        = body.getCols();
+        int                 size        = kernel.getSize();
+        int                 radius      = kernel.getRadius();
+        double[][]          window      = new double[ size ][ cols + ( radius << 1 ) ];
+        for ( double[] line : window )
+        {
+            Arrays.fill( line, Double.NaN );
+        }
+        for ( int i = radius; i < size; i++ )
+        {
+            FocalOperation.read( body, window[ i ], radius, empty );
+        }
+
+        for ( int row = 0; row < rows; row++ )
+        {
+            double[] centre = window[ radius ];
+            buffer.reset();
+            for ( int col = 0; col < cols; col++ )
+            {
+                if ( col > 0 )
+                {
+                    buffer.append( (byte) ' ' );
+                }
+                buffer.appendCell
+                        (
+                                ( this.keepNoData && Double.isNaN( centre[ col + radius ] ) )
+                                ? Double.NaN
+                                : kernel.apply( window, col )
+                        );
+            }
+            buffer.append( (byte) '\n' );
+            buffer.writeTo( sink );
+
+            /* --- slide the window by one row, reusing the oldest one --- */
+            double[] oldest = window[ 0 ];
+            System.arraycopy( window, 1, window, 0, size - 1 );
+            window[ size - 1 ] = oldest;
+            FocalOperation.read( body, oldest, radius, empty );
+        }
+
+        sink.flush();
+    }
+
+    /* --- internal methods --- */
+    /**
+     * checks the source grid, and computes the output header, a copy of the source one;
+     */
+    private static RasterHeader outputHeader( RasterGridAscii grid )
+            throws
+                IllegalArgumentException
+    {
+        if ( grid == null )
+        {
+            throw
+                    new IllegalArgumentException( "Source grid not defined." );
+        }
+        return
+                grid.getHeader().copy();
+    }
+    /**
+     * reads next grid row into a window row;
+     * NODATA cells, and the whole row after the last grid row, are set to NaN;
+     */
+    private static void read( GridBodyReader body, double[] line, int radius, double empty )
+            throws
+                IOException
+    {
+        int cols = body.getCols();
+        if ( ! body.next() )
+        {
+            Arrays.fill( line, radius, radius + cols, Double.NaN );
+            return;
+        }
+        body.parse( line, radius );
+        for ( int col = radius, end = radius + cols; col < end; col++ )
+        {
+            if ( line[ col ] == empty )
+            {
+                line[ col ] = Double.NaN;
+            }
+        }
+    }
+
+}
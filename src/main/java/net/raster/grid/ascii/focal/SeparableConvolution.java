@@ -0,0 +1,363 @@
+package net.raster.grid.ascii.focal;
+
+
+import net.raster.grid.ascii.memory.FloatGrid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+
+/**
+ * Convolves a grid held in memory with a kernel that is the product of
+ * the same weights along rows and along columns, like the Gaussian one;
+ * each cell costs two passes of 2r+1 weights instead of (2r+1)^2;
+ * the grid is split in tiles, each one read with a halo of r cells
+ * and convolved by a thread pool into its own buffers, so tiles are
+ * independent and stay in cache;
+ * NODATA cells and cells outside the grid are skipped, and each result
+ * is divided by the weights of the cells actually used;
+ */
+public class SeparableConvolution
+{
+    /* --- static properties --- */
+    /**
+     * default number of rows and columns in each tile;
+     */
+    public static final int     DEFAULT_TILE    = 512;
+
+    /* --- properties --- */
+    /**
+     * the weights along a row or a column, centre cell in the middle;
+     */
+    private final float[]       weights;
+    /**
+     * number of rows and columns in each tile;
+     */
+    private int                 tile            = DEFAULT_TILE;
+    /**
+     * number of threads;
+     */
+    private int                 parallelism     = 1;
+    /**
+     * true, if NODATA cells are written as NODATA whatever their neighbourhood;
+     */
+    private boolean             keepNoData      = true;
+
+    /* --- constructors --- */
+    /**
+     * creates new convolution;
+     *
+     * @param weights    the weights along a row or a column, an odd number, centre cell in the middle;
+     * @throws IllegalArgumentException if weights are not an odd number or they do not add up to a positive number;
+     */
+    public SeparableConvolution( double... weights )
+            throws
+                IllegalArgumentException
+    {
+        if ( ( weights == null ) || ( ( weights.length & 1 ) == 0 ) )
+        {
+            throw
+                    new IllegalArgumentException( "Convolution weights must be an odd number." );
+        }
+        double total = 0;
+        for ( double weight : weights )
+        {
+            total += weight;
+        }
+        if ( ! ( total > 0 ) )
+        {
+            throw
+                    new IllegalArgumentException( "Convolution weights must add up to a positive number." );
+        }
+        this.weights = new float[ weights.length ];
+        for ( int i = 0; i < weights.length; i++ )
+        {
+            this.weights[ i ] = (float) ( weights[ i ] / total );
+        }
+    }
+    /**
+     * creates a Gaussian blur, with weights up to three standard deviations from the centre;
+     *
+     * @param sigma    the standard deviation, in cells;
+     * @return the convolution;
+     * @throws IllegalArgumentException if sigma is not positive;
+     */
+    public static SeparableConvolution gaussian( double sigma )
+            throws
+                IllegalArgumentException
+    {
+        if ( ! ( sigma > 0 ) )
+        {
+            throw
+                    new IllegalArgumentException( "The standard deviation must be positive." );
+        }
+        int         radius  = (int) Math.ceil( 3 * sigma );
+        double[]    weights = new double[ ( radius << 1 ) + 1 ];
+        for ( int i = -radius; i <= radius; i++ )
+        {
+            weights[ i + radius ] = Math.exp( - ( i * i ) / ( 2 * sigma * sigma ) );
+        }
+        return
+                new SeparableConvolution( weights );
+    }
+    /**
+     * creates a moving average on a square of cells;
+     *
+     * @param size    number of cells on each side; it must be odd;
+     * @return the convolution;
+     * @throws IllegalArgumentException if size is not a positive odd number;
+     */
+    public static SeparableConvolution box( int size )
+            throws
+                IllegalArgumentException
+    {
+        double[] weights = new double[ Math.max( size, 0 ) ];
+        Arrays.fill( weights, 1 );
+        return
+                new SeparableConvolution( weights );
+    }
+
+    /* --- setters and getters --- */
+    /**
+     * gets the number of cells on each side of the centre cell;
+     *
+     * @return the kernel radius;
+     */
+    public int getRadius()
+    {
+        return
+                this.weights.length >> 1;
+    }
+    /**
+     * sets the number of rows and columns in each tile;
+     *
+     * @param size    the tile size;
+     * @throws IllegalArgumentException if the size is not positive;
+     */
+    public void setTileSize( int size ) throws IllegalArgumentException
+    {
+        if ( size < 1 )
+        {
+            throw
+                    new IllegalArgumentException( "The tile size must be positive." );
+        }
+        this.tile = size;
+    }
+    /**
+     * sets the number of threads convolving tiles;
+     *
+     * @param threads    number of threads; 1 to convolve sequentially;
+     * @throws IllegalArgumentException if the number of threads is not positive;
+     */
+    public void setParallelism( int threads ) throws IllegalArgumentException
+    {
+        if ( threads < 1 )
+        {
+            throw
+                    new IllegalArgumentException( "The number of threads must be positive." );
+        }
+        this.parallelism = threads;
+    }
+    /**
+     * defines whether NODATA cells stay NODATA; by default they do;
+     * otherwise they are computed from their neighbourhood, filling
+     * gaps in the grid;
+     *
+     * @param keep    true, to write NODATA cells as NODATA;
+     */
+    public void setKeepNoData( boolean keep )
+    {
+        this.keepNoData = keep;
+    }
+
+    /* --- convolution --- */
+    /**
+     * convolves a grid; the source grid is not changed;
+     * cells without any neighbour are set to NODATA, or NaN if NODATA is not defined;
+     *
+     * @param source    the source grid;
+     * @return new grid, with a copy of the source header;
+     * @throws IllegalArgumentException if the source grid is not defined;
+     */
+    public FloatGrid apply( FloatGrid source )
+            throws
+                IllegalArgumentException
+    {
+        if ( source == null )
+        {
+            throw
+                    new IllegalArgumentException( "Source grid not defined." );
+        }
+        FloatGrid       target  = new FloatGrid( source.getHeader().copy() );
+        int             rows    = source.getRows();
+        int             cols    = source.getCols();
+        List<Tile>      tiles   = new ArrayList<>();
+        for ( int row = 0; row < rows; row += this.tile )
+        {
+            for ( int col = 0; col < cols; col += this.tile )
+            {
+                tiles.add( new Tile( source, target, row, Math.min( rows, row + this.tile ), col, Math.min( cols, col + this.tile ) ) );
+            }
+        }
+
+        if ( this.parallelism == 1 )
+        {
+            for ( Tile tile : tiles )
+            {
+                tile.convolve();
+            }
+            return
+                    target;
+        }
+        ForkJoinPool            pool    = new ForkJoinPool( this.parallelism );
+        List<ForkJoinTask<?>>   pending = new ArrayList<>( tiles.size() );
+        try
+        {
+            for ( Tile tile : tiles )
+            {
+                pending.add( pool.submit( ForkJoinTask.adapt( tile ) ) );
+            }
+            for ( ForkJoinTask<?> task : pending )
+            {
+                task.join();
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+        return
+                target;
+    }
+
+
+    /* --- internal classes --- */
+    /**
+     * a rectangle of cells convolved by a single thread;
+     */
+    private class Tile implements Runnable
+    {
+        /* --- properties --- */
+        private final FloatGrid source;
+        private final FloatGrid target;
+        private final int       rowFrom;
+        private final int       rowTo;
+        private final int       colFrom;
+        private final int       colTo;
+
+        /* --- constructor --- */
+        private Tile( FloatGrid source, FloatGrid target, int rowFrom, int rowTo, int colFrom, int colTo )
+        {
+            this.source     = source;
+            this.target     = target;
+            this.rowFrom    = rowFrom;
+            this.rowTo      = rowTo;
+            this.colFrom    = colFrom;
+            this.colTo      = colTo;
+        }
+
+        /* --- implemented methods --- */
+        @Override
+        public void run()
+        {
+            this.convolve();
+        }
+
+        /* --- convolution --- */
+        private void convolve()
+        {
+            float[]     weights = SeparableConvolution.this.weights;
+            int         radius  = weights.length >> 1;
+            int         size    = weights.length;
+            int         cols    = this.source.getCols();
+            float[]     data    = this.source.getData();
+            float[]     out     = this.target.getData();
+            boolean     defined = this.source.hasNoData();
+            float       nodata  = (float) this.source.getNoData();
+            float       empty   = defined ? nodata : Float.NaN;
+            boolean     keep    = SeparableConvolution.this.keepNoData;
+
+            /* --- tile with its halo: rows are clipped to the grid, columns are padded with missing cells --- */
+            int         haloFrom    = Math.max( 0, this.rowFrom - radius );
+            int         haloTo      = Math.min( this.source.getRows(), this.rowTo + radius );
+            int         width       = this.colTo - this.colFrom;
+            int         padded      = width + ( radius << 1 );
+            float[]     values      = new float[ padded ];
+            float[]     present     = new float[ padded ];
+            float[]     sums        = new float[ ( haloTo - haloFrom ) * width ];
+            float[]     masses      = new float[ ( haloTo - haloFrom ) * width ];
+
+            /* --- row pass: sums of weighted values and of weights of the available cells --- */
+            for ( int row = haloFrom; row < haloTo; row++ )
+            {
+                Arrays.fill( values, 0 );
+                Arrays.fill( present, 0 );
+                int from = Math.max( 0, this.colFrom - radius );
+                int to   = Math.min( cols, this.colTo + radius );
+                int base = row * cols;
+                for ( int col = from; col < to; col++ )
+                {
+                    float value = data[ base + col ];
+                    if ( ( value == value ) && ! ( defined && ( value == nodata ) ) )
+                    {
+                        int p = col - this.colFrom + radius;
+                        values[ p ]     = value;
+                        present[ p ]    = 1;
+                    }
+                }
+                int offset = ( row - haloFrom ) * width;
+                for ( int col = 0; col < width; col++ )
+                {
+                    float sum   = 0;
+                    float mass  = 0;
+                    for ( int k = 0; k < size; k++ )
+                    {
+                        float weight = weights[ k ];
+                        sum     += weight * values[ col + k ];
+                        mass    += weight * present[ col + k ];
+                    }
+                    sums[ offset + col ]    = sum;
+                    masses[ offset + col ]  = mass;
+                }
+            }
+
+            /* --- column pass, row by row so that the halo rows are read sequentially --- */
+            float[] sum     = new float[ width ];
+            float[] mass    = new float[ width ];
+            for ( int row = this.rowFrom; row < this.rowTo; row++ )
+            {
+                Arrays.fill( sum, 0 );
+                Arrays.fill( mass, 0 );
+                int from = Math.max( haloFrom, row - radius );
+                int to   = Math.min( haloTo, row + radius + 1 );
+                for ( int k = from; k < to; k++ )
+                {
+                    float   weight  = weights[ k - row + radius ];
+                    int     offset  = ( k - haloFrom ) * width;
+                    for ( int col = 0; col < width; col++ )
+                    {
+                        sum[ col ]  += weight * sums[ offset + col ];
+                        mass[ col ] += weight * masses[ offset + col ];
+                    }
+                }
+                int base = row * cols + this.colFrom;
+                for ( int col = 0; col < width; col++ )
+                {
+                    float centre = data[ base + col ];
+                    if ( keep && ( ( centre != centre ) || ( defined && ( centre == nodata ) ) ) )
+                    {
+                        out[ base + col ] = empty;
+                    }
+                    else
+                    {
+                        out[ base + col ] = ( mass[ col ] > 0 ) ? sum[ col ] / mass[ col ] : empty;
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -2,9 +2,11 @@ package net.raster.grid.ascii.header;
 
 
 import net.raster.grid.ascii.header.value.RasterTokenValue;
+import net.raster.grid.ascii.number.DoubleFormatter;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
 
 /**
@@ -16,16 +18,16 @@ import java.io.Writer;
 public class RasterHeader
 {
     /* --- properties --- */
-    private RasterHeaderToken   ncols;
-    private RasterHeaderToken   nrows;
-    private RasterHeaderToken   xllcorner;
-    private RasterHeaderToken   yllcorner;
-    private RasterHeaderToken   xllcenter;
-    private RasterHeaderToken   yllcenter;
-    private RasterHeaderToken   cellsize;
-    private RasterHeaderToken   dx;
-    private RasterHeaderToken   dy;
-    private RasterHeaderToken   nodata;
+    private RasterHeaderItem    ncols;
+    private RasterHeaderItem    nrows;
+    private RasterHeaderItem    xllcorner;
+    private RasterHeaderItem    yllcorner;
+    private RasterHeaderItem    xllcenter;
+    private RasterHeaderItem    yllcenter;
+    private RasterHeaderItem    cellsize;
+    private RasterHeaderItem    dx;
+    private RasterHeaderItem    dy;
+    private RasterHeaderItem    nodata;
 
     /* --- properties for data handling --- */
     /**
@@ -63,7 +65,7 @@ public class RasterHeader
                 switch ( token )
                 {
                     case N_COLLS:
-                        this.ncols      = token;
+                        this.ncols      = RasterHeaderItem.of( token );
                         this.parseState = 1;
                         break;
 
@@ -77,7 +79,7 @@ public class RasterHeader
                 switch ( token )
                 {
                     case N_ROWNS:
-                        this.nrows      = token;
+                        this.nrows      = RasterHeaderItem.of( token );
                         this.parseState = 2;
                         break;
 
@@ -91,12 +93,12 @@ public class RasterHeader
                 switch ( token )
                 {
                     case X_LL_CORNER:
-                        this.xllcorner  = token;
+                        this.xllcorner  = RasterHeaderItem.of( token );
                         this.parseState = 3;
                         break;
 
                     case X_LL_CENTER:
-                        this.xllcenter  = token;
+                        this.xllcenter  = RasterHeaderItem.of( token );
                         this.parseState = 4;
                         break;
 
@@ -110,7 +112,7 @@ public class RasterHeader
                 switch ( token )
                 {
                     case Y_LL_CORNER:
-                        this.yllcorner  = token;
+                        this.yllcorner  = RasterHeaderItem.of( token );
                         this.parseState = 5;
                         break;
 
@@ -124,7 +126,7 @@ public class RasterHeader
                 switch ( token )
                 {
                     case Y_LL_CENTER:
-                        this.yllcenter  = token;
+                        this.yllcenter  = RasterHeaderItem.of( token );
                         this.parseState = 5;
                         break;
 
@@ -138,12 +140,12 @@ public class RasterHeader
                 switch ( token )
                 {
                     case CELL_SIZE:
-                        this.cellsize   = token;
+                        this.cellsize   = RasterHeaderItem.of( token );
                         this.parseState = 7;
                         break;
 
                     case DX:
-                        this.dx         = token;
+                        this.dx         = RasterHeaderItem.of( token );
                         this.parseState = 6;
                         break;
 
@@ -157,7 +159,7 @@ public class RasterHeader
                 switch ( token )
                 {
                     case DY:
-                        this.dy         = token;
+                        this.dy         = RasterHeaderItem.of( token );
                         this.parseState = 7;
                         break;
 
@@ -171,7 +173,7 @@ public class RasterHeader
                 switch ( token )
                 {
                     case NODATA:
-                        this.nodata     = token;
+                        this.nodata     = RasterHeaderItem.of( token );
                         this.parseState = 8;
                         break;
 
@@ -280,6 +282,85 @@ public class RasterHeader
                 ( ( this.dx != null ) && ( this.dy != null ) );
     }
 
+    /* --- grid geometry --- */
+    /**
+     * gets the cell width, either from square or rectangular cell size;
+     *
+     * @return the cell width;
+     */
+    public double getCellWidth()
+    {
+        return
+                ( this.cellsize != null )
+                ? this.cellsize.getValue().getValueAsNumber().doubleValue()
+                : this.dx.getValue().getValueAsNumber().doubleValue()
+                ;
+    }
+    /**
+     * gets the cell height, either from square or rectangular cell size;
+     *
+     * @return the cell height;
+     */
+    public double getCellHeight()
+    {
+        return
+                ( this.cellsize != null )
+                ? this.cellsize.getValue().getValueAsNumber().doubleValue()
+                : this.dy.getValue().getValueAsNumber().doubleValue()
+                ;
+    }
+    /**
+     * gets the x coordinate of the grid western edge, either from corner or center position;
+     *
+     * @return the x coordinate of the lower left corner;
+     */
+    public double getWest()
+    {
+        return
+                this.isCorner()
+                ? this.xllcorner.getValue().getValueAsNumber().doubleValue()
+                : this.xllcenter.getValue().getValueAsNumber().doubleValue() - this.getCellWidth() / 2D
+                ;
+    }
+    /**
+     * gets the y coordinate of the grid southern edge, either from corner or center position;
+     *
+     * @return the y coordinate of the lower left corner;
+     */
+    public double getSouth()
+    {
+        return
+                this.isCorner()
+                ? this.yllcorner.getValue().getValueAsNumber().doubleValue()
+                : this.yllcenter.getValue().getValueAsNumber().doubleValue() - this.getCellHeight() / 2D
+                ;
+    }
+
+    /**
+     * creates an independent copy of this header;
+     * the copy does not replace any NODATA value, since it does not
+     * know the NODATA value replaced by this header, if any;
+     *
+     * @return the header copy;
+     */
+    public RasterHeader copy()
+    {
+        RasterHeader copy = new RasterHeader();
+        copy.ncols      = this.ncols;
+        copy.nrows      = this.nrows;
+        copy.xllcorner  = this.xllcorner;
+        copy.yllcorner  = this.yllcorner;
+        copy.xllcenter  = this.xllcenter;
+        copy.yllcenter  = this.yllcenter;
+        copy.cellsize   = this.cellsize;
+        copy.dx         = this.dx;
+        copy.dy         = this.dy;
+        copy.nodata     = this.nodata;
+        copy.parseState = this.parseState;
+        return
+                copy;
+    }
+
     /* --- header handling --- */
     /**
      * forces the use of square cell size instead of rectangular cell size;
@@ -309,12 +390,12 @@ public class RasterHeader
                         )
                         ;
 
-                this.yllcorner = RasterHeaderToken.parse
+                this.yllcorner = RasterHeaderItem.parse
                         (
                                 RasterHeaderToken.Y_LL_CORNER.getName(),
-                                String.valueOf( corner )
+                                DoubleFormatter.toPlainString( corner )
                         );
-                this.cellsize = RasterHeaderToken.parse
+                this.cellsize = RasterHeaderItem.parse
                         (
                                 RasterHeaderToken.CELL_SIZE.getName(),
                                 this.dx.getValue().getValueAsText()
@@ -332,12 +413,12 @@ public class RasterHeader
                         )
                         ;
 
-                this.xllcorner = RasterHeaderToken.parse
+                this.xllcorner = RasterHeaderItem.parse
                         (
                                 RasterHeaderToken.X_LL_CORNER.getName(),
-                                String.valueOf( corner )
+                                DoubleFormatter.toPlainString( corner )
                         );
-                this.cellsize = RasterHeaderToken.parse
+                this.cellsize = RasterHeaderItem.parse
                         (
                                 RasterHeaderToken.CELL_SIZE.getName(),
                                 this.dy.getValue().getValueAsText()
@@ -347,7 +428,7 @@ public class RasterHeader
             }
             else
             {
-                this.cellsize = RasterHeaderToken.parse
+                this.cellsize = RasterHeaderItem.parse
                         (
                                 RasterHeaderToken.CELL_SIZE.getName(),
                                 this.dx.getValue().getValueAsText()
@@ -379,6 +460,23 @@ public class RasterHeader
         return
                 this.ncols.getValue();
     }
+    /**
+     * sets the grid size;
+     *
+     * @param cols    the number of columns;
+     * @param rows    the number of rows;
+     * @throws IllegalArgumentException if a number is not positive;
+     */
+    public void setSize( int cols, int rows ) throws IllegalArgumentException
+    {
+        if ( ( cols <= 0 ) || ( rows <= 0 ) )
+        {
+            throw
+                    new IllegalArgumentException( "Grid size " + cols + " x " + rows + " is not valid." );
+        }
+        this.ncols = RasterHeaderItem.parse( RasterHeaderToken.N_COLLS.getName(), Integer.toString( cols ) );
+        this.nrows = RasterHeaderItem.parse( RasterHeaderToken.N_ROWNS.getName(), Integer.toString( rows ) );
+    }
 
     /**
      * gets the lower left corner position;
@@ -410,20 +508,20 @@ public class RasterHeader
      */
     public void setCorner( String x, String y ) throws IllegalArgumentException
     {
-        RasterHeaderToken   backUpXllCorner = this.xllcorner;
-        RasterHeaderToken   backUpYllCorner = this.yllcorner;
-        RasterHeaderToken   backUpXllCenter = this.xllcenter;
-        RasterHeaderToken   backUpYllCenter = this.yllcenter;
+        RasterHeaderItem    backUpXllCorner = this.xllcorner;
+        RasterHeaderItem    backUpYllCorner = this.yllcorner;
+        RasterHeaderItem    backUpXllCenter = this.xllcenter;
+        RasterHeaderItem    backUpYllCenter = this.yllcenter;
         try
         {
             this.xllcorner =
-                    RasterHeaderToken.parse
+                    RasterHeaderItem.parse
                             (
                                     RasterHeaderToken.X_LL_CORNER.getName(),
                                     x
                             );
             this.yllcorner =
-                    RasterHeaderToken.parse
+                    RasterHeaderItem.parse
                             (
                                     RasterHeaderToken.Y_LL_CORNER.getName(),
                                     y
@@ -473,20 +571,20 @@ public class RasterHeader
      */
     public void setCenter( String x, String y ) throws IllegalArgumentException
     {
-        RasterHeaderToken   backUpXllCorner = this.xllcorner;
-        RasterHeaderToken   backUpYllCorner = this.yllcorner;
-        RasterHeaderToken   backUpXllCenter = this.xllcenter;
-        RasterHeaderToken   backUpYllCenter = this.yllcenter;
+        RasterHeaderItem    backUpXllCorner = this.xllcorner;
+        RasterHeaderItem    backUpYllCorner = this.yllcorner;
+        RasterHeaderItem    backUpXllCenter = this.xllcenter;
+        RasterHeaderItem    backUpYllCenter = this.yllcenter;
         try
         {
             this.xllcenter =
-                    RasterHeaderToken.parse
+                    RasterHeaderItem.parse
                             (
                                     RasterHeaderToken.X_LL_CENTER.getName(),
                                     x
                             );
             this.yllcenter =
-                    RasterHeaderToken.parse
+                    RasterHeaderItem.parse
                             (
                                     RasterHeaderToken.Y_LL_CENTER.getName(),
                                     y
@@ -525,13 +623,13 @@ public class RasterHeader
      */
     public void setCellSize( String size ) throws IllegalArgumentException
     {
-        RasterHeaderToken backUpDx         = this.dx;
-        RasterHeaderToken backUpDy         = this.dy;
-        RasterHeaderToken backUpCellSize   = this.cellsize;
+        RasterHeaderItem  backUpDx         = this.dx;
+        RasterHeaderItem  backUpDy         = this.dy;
+        RasterHeaderItem  backUpCellSize   = this.cellsize;
         try
         {
             this.cellsize =
-                    RasterHeaderToken.parse
+                    RasterHeaderItem.parse
                             (
                                     RasterHeaderToken.CELL_SIZE.getName(),
                                     size
@@ -580,19 +678,19 @@ public class RasterHeader
      */
     public void setCellSize( String dx, String dy ) throws IllegalArgumentException
     {
-        RasterHeaderToken backUpDx         = this.dx;
-        RasterHeaderToken backUpDy         = this.dy;
-        RasterHeaderToken backUpCellSize   = this.cellsize;
+        RasterHeaderItem  backUpDx         = this.dx;
+        RasterHeaderItem  backUpDy         = this.dy;
+        RasterHeaderItem  backUpCellSize   = this.cellsize;
         try
         {
             this.dx         =
-                    RasterHeaderToken.parse
+                    RasterHeaderItem.parse
                             (
                                     RasterHeaderToken.DX.getName(),
                                     dx
                             );
             this.dy         =
-                    RasterHeaderToken.parse
+                    RasterHeaderItem.parse
                             (
                                     RasterHeaderToken.DY.getName(),
                                     dy
@@ -638,7 +736,7 @@ public class RasterHeader
             {
                 this.nodataOriginal = this.nodata.getValue().getValueAsText();
             }
-            this.nodata = RasterHeaderToken.parse
+            this.nodata = RasterHeaderItem.parse
                     (
                             RasterHeaderToken.NODATA.getName(),
                             value
@@ -763,7 +861,7 @@ public class RasterHeader
                 ;
     }
 
-    private static RasterTokenValue getValue( RasterHeaderToken token )
+    private static RasterTokenValue getValue( RasterHeaderItem token )
     {
         return
                 ( token != null ) ? token.getValue() : null
@@ -774,7 +872,30 @@ public class RasterHeader
     /* --- internal classes --- */
     public interface NoDataReplace
     {
+        /**
+         * replaces a cell, given as text;
+         *
+         * @param data    the cell text;
+         * @return the replacing value; or the cell text itself if the cell has to be kept, never {@code null};
+         */
         String replace( String data );
+
+        /**
+         * checks whether a cell, given as ASCII bytes, has to be replaced;
+         * by default the cell is converted to text and passed to {@link #replace(String)};
+         *
+         * @param data     the line holding the cell;
+         * @param start    position of the cell first byte;
+         * @param end      position following the cell last byte;
+         * @return the replacing value; or {@code null} if the cell has to be kept;
+         */
+        default String replace( byte[] data, int start, int end )
+        {
+            String cell     = new String( data, start, end - start, StandardCharsets.US_ASCII );
+            String replace  = this.replace( cell );
+            return
+                    cell.equals( replace ) ? null : replace;
+        }
     }
     public static class NothingToReplace implements NoDataReplace
     {
@@ -784,18 +905,27 @@ public class RasterHeader
             return
                     data;
         }
+
+        @Override
+        public String replace( byte[] data, int start, int end )
+        {
+            return
+                    null;
+        }
     }
     public static class ReplaceValues implements NoDataReplace
     {
         /* --- properties --- */
         private String old;
         private String replace;
+        private byte[] oldBytes;
 
         /* --- constructor --- */
         public ReplaceValues( String old, String replace )
         {
             this.old        = old;
             this.replace    = replace;
+            this.oldBytes   = old.getBytes( StandardCharsets.US_ASCII );
         }
 
         /* --- replacing method --- */
@@ -808,6 +938,27 @@ public class RasterHeader
                     : data
                     ;
         }
+
+        @Override
+        public String replace( byte[] data, int start, int end )
+        {
+            byte[] match = this.oldBytes;
+            if ( ( end - start ) != match.length )
+            {
+                return
+                        null;
+            }
+            for ( int i = 0; i < match.length; i++ )
+            {
+                if ( data[ start + i ] != match[ i ] )
+                {
+                    return
+                            null;
+                }
+            }
+            return
+                    this.replace;
+        }
     }
 
 }
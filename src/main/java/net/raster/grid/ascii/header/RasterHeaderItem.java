@@ -0,0 +1,71 @@
+package net.raster.grid.ascii.header;
+
+
+import net.raster.grid.ascii.header.value.RasterTokenValue;
+import net.raster.grid.ascii.header.value.TokenValue;
+
+
+/**
+ * A header token together with its own value.
+ * Header tokens are shared constants, so the value of each
+ * header field is copied when stored; this way several headers
+ * can live together without interfering with each other;
+ */
+final class RasterHeaderItem
+{
+    /* --- properties --- */
+    private final RasterHeaderToken token;
+    private final RasterTokenValue  value;
+
+    /* --- constructors --- */
+    /**
+     * copies the current value of a token;
+     *
+     * @param token    the parsed token;
+     * @return the header item, or {@code null} if the token was undefined;
+     */
+    static RasterHeaderItem of( RasterHeaderToken token )
+    {
+        return
+                ( token != null ) ? new RasterHeaderItem( token ) : null
+                ;
+    }
+    /**
+     * parses a pair name-value to get the header item;
+     *
+     * @param name     the token name;
+     * @param value    the token value;
+     * @return the header item, or {@code null} if the token was unknown;
+     * @throws IllegalArgumentException if the value is not valid;
+     */
+    static RasterHeaderItem parse( String name, String value ) throws IllegalArgumentException
+    {
+        return
+                RasterHeaderItem.of( RasterHeaderToken.parse( name, value ) );
+    }
+    private RasterHeaderItem( RasterHeaderToken token )
+    {
+        this.token  = token;
+        this.value  = token.getValue();
+    }
+
+    /* --- getters --- */
+    RasterHeaderToken getToken()
+    {
+        return
+                this.token;
+    }
+    RasterTokenValue getValue()
+    {
+        return
+                new TokenValue( this.value );
+    }
+
+    /* --- writers --- */
+    String write()
+    {
+        return
+                this.token.write( this.value );
+    }
+
+}
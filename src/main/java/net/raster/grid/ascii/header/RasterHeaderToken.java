@@ -122,6 +122,10 @@ public enum RasterHeaderToken
      * used to check input numbers;
      */
     private static String       IS_NUMBER  = "^[+-]?\\d+(\\.\\d*)?$";
+    /**
+     * width of the token name column when written;
+     */
+    private static final int    NAME_WIDTH = 13;
 
     /* --- constructors --- */
     RasterHeaderToken( String key )
@@ -226,8 +230,25 @@ public enum RasterHeaderToken
     public String write()
     {
         return
-                String.format( "%-13s %s", this.name, this.value.getValueAsText() )
-                ;
+                this.write( this.value );
+    }
+    /**
+     * writes the token and a given value in formatted forma;
+     *
+     * @param value    the value to write;
+     * @return the token name and the value;
+     */
+    String write( RasterTokenValue value )
+    {
+        String          text    = value.getValueAsText();
+        StringBuilder   line    = new StringBuilder( NAME_WIDTH + 1 + text.length() );
+        line.append( this.name );
+        while ( line.length() < NAME_WIDTH )
+        {
+            line.append( ' ' );
+        }
+        return
+                line.append( ' ' ).append( text ).toString();
     }
 
     /* --- internal methods --- */
@@ -1,6 +1,8 @@
 package net.raster.grid.ascii.header.value;
 
 
+import net.raster.grid.ascii.number.DoubleParser;
+
 
 public class TokenValue implements RasterTokenValue
 {
@@ -43,7 +45,7 @@ public class TokenValue implements RasterTokenValue
                 new TokenValue
                         (
                                 value,
-                                Double.parseDouble( value )
+                                DoubleParser.parse( value )
                         )
                 ;
     }
@@ -0,0 +1,119 @@
+package net.raster.grid.ascii.memory;
+
+
+import net.raster.grid.ascii.RasterGridAscii;
+import net.raster.grid.ascii.header.RasterHeader;
+import net.raster.grid.ascii.reader.GridBodyReader;
+import net.raster.grid.ascii.writer.GridRowBuffer;
+
+import java.io.IOException;
+
+
+/**
+ * A raster grid held in memory as a single row-major array of doubles;
+ */
+public class DoubleGrid extends GridModel
+{
+    /* --- properties --- */
+    /**
+     * the cells, row by row;
+     */
+    private final double[]    data;
+
+    /* --- constructors --- */
+    /**
+     * loads the whole body of a parsed grid;
+     * header changes done on the source grid, like the NODATA value, are applied;
+     *
+     * @param raster    the parsed grid; its body is read by this method;
+     * @return the grid in memory;
+     * @throws IOException if the grid cannot be read or it is not valid;
+     * @throws IllegalArgumentException if the grid is too big;
+     */
+    public static DoubleGrid load( RasterGridAscii raster )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        if ( raster == null )
+        {
+            throw new IllegalArgumentException( "Source grid not defined." );
+        }
+        DoubleGrid      grid    = new DoubleGrid( raster.getHeader() );
+        GridBodyReader  body    = raster.getBodyReader();
+        int             cols    = grid.getCols();
+        while ( body.next() )
+        {
+            body.parse( grid.data, body.getRow() * cols );
+        }
+        return
+                grid;
+    }
+    /**
+     * creates new grid with all cells set to zero;
+     *
+     * @param header    the grid header, it must be well formed;
+     * @throws IllegalArgumentException if the grid is too big;
+     */
+    public DoubleGrid( RasterHeader header ) throws IllegalArgumentException
+    {
+        super( header );
+        this.data = new double[ this.size() ];
+    }
+
+    /* --- getters'n'setters --- */
+    /**
+     * gets a cell value;
+     *
+     * @param row    the cell row;
+     * @param col    the cell column;
+     * @return the cell value;
+     */
+    public double get( int row, int col )
+    {
+        return
+                this.data[ (int) this.index( row, col ) ];
+    }
+    /**
+     * sets a cell value;
+     *
+     * @param row      the cell row;
+     * @param col      the cell column;
+     * @param value    the cell value;
+     */
+    public void set( int row, int col, double value )
+    {
+        this.data[ (int) this.index( row, col ) ] = value;
+    }
+    /**
+     * gets the array holding the cells, row by row;
+     * the cell (row, col) is at position: row * getCols() + col;
+     *
+     * @return the cells array;
+     */
+    public double[] getData()
+    {
+        return
+                this.data;
+    }
+
+    @Override
+    public double getAsDouble( int row, int col )
+    {
+        return
+                this.get( row, col );
+    }
+    @Override
+    public void setAsDouble( int row, int col, double value )
+    {
+        this.set( row, col, value );
+    }
+
+    /* --- writers --- */
+    @Override
+    protected void append( int row, int col, GridRowBuffer out )
+    {
+        out.append( this.data[ row * this.getCols() + col ] );
+    }
+
+}
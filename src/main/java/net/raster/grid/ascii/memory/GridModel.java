@@ -0,0 +1,312 @@
+package net.raster.grid.ascii.memory;
+
+
+import net.raster.grid.ascii.GridReducer;
+import net.raster.grid.ascii.header.RasterHeader;
+import net.raster.grid.ascii.header.value.RasterTokenValue;
+import net.raster.grid.ascii.writer.GridRowBuffer;
+import net.raster.grid.ascii.writer.GridSink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+
+
+/**
+ * A raster grid whose cells are held in memory as primitive numbers,
+ * so they can be read and changed many times without parsing the text again;
+ * cells are stored row by row, the first row is the northern one;
+ * cells holding the NODATA value are written back with the header NODATA text;
+ */
+public abstract class GridModel
+{
+    /* --- properties --- */
+    /**
+     * the grid header;
+     */
+    private final RasterHeader  header;
+    /**
+     * total rows in grid;
+     */
+    private final int           rows;
+    /**
+     * total columns in each grid row;
+     */
+    private final int           cols;
+    /**
+     * true, if the NODATA value is defined;
+     */
+    private final boolean       nodataDefined;
+    /**
+     * the NODATA value;
+     */
+    private final double        nodata;
+    /**
+     * the NODATA value as written in header;
+     */
+    private final String        nodataText;
+    /**
+     * number of decimals written for each cell; negative for the shortest digits;
+     */
+    private int                 decimals    = -1;
+
+    /* --- constructor --- */
+    /**
+     * creates new grid model;
+     *
+     * @param header    the grid header, it must be well formed;
+     */
+    protected GridModel( RasterHeader header )
+    {
+        if ( header == null )
+        {
+            throw new IllegalArgumentException( "Grid header not defined." );
+        }
+        this.header = header;
+        this.rows   = (Integer) ( header.getNRows().getValueAsNumber() );
+        this.cols   = (Integer) ( header.getNCols().getValueAsNumber() );
+
+        RasterTokenValue nodata = header.getNoDataValue();
+        this.nodataDefined  = ( nodata != null );
+        this.nodata         = ( nodata != null ) ? nodata.getValueAsNumber().doubleValue() : Double.NaN;
+        this.nodataText     = ( nodata != null ) ? nodata.getValueAsText() : null;
+    }
+
+    /* --- getters --- */
+    /**
+     * gets the grid header;
+     *
+     * @return the header;
+     */
+    public RasterHeader getHeader()
+    {
+        return
+                this.header;
+    }
+    /**
+     * gets the total rows in grid;
+     *
+     * @return number of rows;
+     */
+    public int getRows()
+    {
+        return
+                this.rows;
+    }
+    /**
+     * gets the total columns in each grid row;
+     *
+     * @return number of columns;
+     */
+    public int getCols()
+    {
+        return
+                this.cols;
+    }
+    /**
+     * checks whether the NODATA value is defined;
+     *
+     * @return true, if NODATA is defined; false, otherwise;
+     */
+    public boolean hasNoData()
+    {
+        return
+                this.nodataDefined;
+    }
+    /**
+     * gets the NODATA value;
+     *
+     * @return the NODATA value; or {@code NaN} if not defined;
+     */
+    public double getNoData()
+    {
+        return
+                this.nodata;
+    }
+    /**
+     * checks whether a cell holds the NODATA value;
+     *
+     * @param row    the cell row;
+     * @param col    the cell column;
+     * @return true, if the cell holds NODATA; false, otherwise;
+     */
+    public boolean isNoData( int row, int col )
+    {
+        return
+                this.nodataDefined && ( this.getAsDouble( row, col ) == this.nodata );
+    }
+
+    /**
+     * gets a cell value;
+     *
+     * @param row    the cell row;
+     * @param col    the cell column;
+     * @return the cell value;
+     */
+    public abstract double getAsDouble( int row, int col );
+    /**
+     * sets a cell value;
+     *
+     * @param row      the cell row;
+     * @param col      the cell column;
+     * @param value    the cell value;
+     */
+    public abstract void setAsDouble( int row, int col, double value );
+
+    /**
+     * defines how many decimals are written for each cell;
+     * by default each cell is written with the shortest digits
+     * that convert back to the same value;
+     *
+     * @param decimals    number of decimals; negative to write the shortest digits;
+     */
+    public void setDecimals( int decimals )
+    {
+        this.decimals = decimals;
+    }
+
+    /* --- reduction --- */
+    /**
+     * computes a reduction of all grid cells, row by row;
+     *
+     * @param reducer    the reduction to compute;
+     * @param <A>        the accumulator type;
+     * @return the accumulator of the whole grid;
+     */
+    public < A > A reduce( GridReducer<A> reducer )
+    {
+        A accumulator = reducer.create();
+        for ( int row = 0; row < this.rows; row++ )
+        {
+            for ( int col = 0; col < this.cols; col++ )
+            {
+                if ( this.isNoData( row, col ) )
+                {
+                    reducer.accumulateNoData( accumulator );
+                }
+                else
+                {
+                    reducer.accumulate( accumulator, this.getAsDouble( row, col ) );
+                }
+            }
+        }
+        return
+                accumulator;
+    }
+
+    /* --- writers --- */
+    /**
+     * writes the whole grid, header included;
+     *
+     * @param writer    grid destination;
+     * @throws IOException if the grid cannot be written;
+     */
+    public void write( Writer writer )
+            throws
+                IOException
+    {
+        this.write( GridSink.of( writer ) );
+    }
+    /**
+     * writes the whole grid, header included, as ASCII bytes
+     * without any charset encoding;
+     * the stream is flushed but not closed;
+     *
+     * @param stream    grid destination;
+     * @throws IOException if the grid cannot be written;
+     */
+    public void write( OutputStream stream )
+            throws
+                IOException
+    {
+        this.write( GridSink.of( stream ) );
+    }
+    /**
+     * writes the whole grid, header included, to a grid sink;
+     * the sink is flushed at the end;
+     *
+     * @param sink    grid destination;
+     * @throws IOException if the grid cannot be written;
+     */
+    public void write( GridSink sink )
+            throws
+                IOException
+    {
+        StringWriter header = new StringWriter();
+        this.header.write( header );
+        sink.write( header.toString() );
+
+        GridRowBuffer buffer = new GridRowBuffer();
+        buffer.setDecimals( this.decimals );
+        for ( int row = 0; row < this.rows; row++ )
+        {
+            buffer.reset();
+            for ( int col = 0; col < this.cols; col++ )
+            {
+                if ( col > 0 )
+                {
+                    buffer.append( (byte) ' ' );
+                }
+                if ( this.isNoData( row, col ) )
+                {
+                    buffer.append( this.nodataText );
+                }
+                else
+                {
+                    this.append( row, col, buffer );
+                }
+            }
+            buffer.append( (byte) '\n' );
+            buffer.writeTo( sink );
+        }
+
+        sink.flush();
+    }
+    /**
+     * appends a cell value to the output row;
+     *
+     * @param row    the cell row;
+     * @param col    the cell column;
+     * @param out    the output row;
+     */
+    protected abstract void append( int row, int col, GridRowBuffer out );
+
+    /* --- internal methods --- */
+    /**
+     * gets the position of a cell in a row-major array;
+     *
+     * @param row    the cell row;
+     * @param col    the cell column;
+     * @return the cell position;
+     * @throws IndexOutOfBoundsException if the cell is out of grid;
+     */
+    protected long index( int row, int col )
+    {
+        if ( ( row < 0 ) || ( row >= this.rows ) || ( col < 0 ) || ( col >= this.cols ) )
+        {
+            throw
+                    new IndexOutOfBoundsException( "Cell (" + row + ", " + col + ") out of grid " + this.rows + " x " + this.cols + "." );
+        }
+        return
+                (long) row * this.cols + col;
+    }
+    /**
+     * gets the total number of cells, checking they fit in a single array;
+     *
+     * @return the number of cells;
+     * @throws IllegalArgumentException if the grid is too big;
+     */
+    protected int size()
+    {
+        long size = (long) this.rows * this.cols;
+        if ( size > Integer.MAX_VALUE - 8 )
+        {
+            throw
+                    new IllegalArgumentException( "The grid " + this.rows + " x " + this.cols + " is too big to be held in a single array." );
+        }
+        return
+                (int) size;
+    }
+
+}
@@ -0,0 +1,259 @@
+package net.raster.grid.ascii.memory;
+
+
+import net.raster.grid.ascii.RasterGridAscii;
+import net.raster.grid.ascii.header.RasterHeader;
+import net.raster.grid.ascii.reader.GridBodyReader;
+import net.raster.grid.ascii.writer.GridRowBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * A raster grid held outside the Java heap;
+ * cells are stored row by row either in direct byte buffers or in
+ * a memory mapped scratch file, split in segments of 1 GB, so grids
+ * can exceed both the heap size and 2^31 cells without affecting
+ * garbage collection; a scratch file is emptied when the grid is created,
+ * but it is not deleted by this class;
+ */
+public class OffHeapGrid extends GridModel
+{
+    /* --- properties --- */
+    /**
+     * how cells are stored;
+     */
+    private final Cell          cell;
+    /**
+     * the storage segments;
+     */
+    private final ByteBuffer[]  segments;
+    /**
+     * bits of number of cells in each segment;
+     */
+    private final int           segmentBits;
+    /**
+     * mask to get a cell position inside a segment;
+     */
+    private final long          segmentMask;
+
+    /* --- static properties --- */
+    /**
+     * bits of each segment size in bytes;
+     */
+    private static final int    SEGMENT_BITS    = 30;
+
+    /* --- constructors --- */
+    /**
+     * loads the whole body of a parsed grid in direct buffers, as doubles;
+     *
+     * @param raster    the parsed grid; its body is read by this method;
+     * @return the grid in memory;
+     * @throws IOException if the grid cannot be read or it is not valid;
+     */
+    public static OffHeapGrid load( RasterGridAscii raster )
+            throws
+                IOException
+    {
+        return
+                OffHeapGrid.load( raster, Cell.DOUBLE, null );
+    }
+    /**
+     * loads the whole body of a parsed grid;
+     * header changes done on the source grid, like the NODATA value, are applied;
+     *
+     * @param raster     the parsed grid; its body is read by this method;
+     * @param cell       how cells are stored;
+     * @param scratch    the file where cells are stored; {@code null} to store them in direct buffers;
+     * @return the grid in memory;
+     * @throws IOException if the grid cannot be read or it is not valid, or the scratch file cannot be mapped;
+     */
+    public static OffHeapGrid load( RasterGridAscii raster, Cell cell, Path scratch )
+            throws
+                IOException
+    {
+        if ( raster == null )
+        {
+            throw new IllegalArgumentException( "Source grid not defined." );
+        }
+        OffHeapGrid     grid    = new OffHeapGrid( raster.getHeader(), cell, scratch );
+        GridBodyReader  body    = raster.getBodyReader();
+        int             cols    = grid.getCols();
+        double[]        values  = new double[ cols ];
+        while ( body.next() )
+        {
+            int row = body.getRow();
+            body.parse( values, 0 );
+            for ( int col = 0; col < cols; col++ )
+            {
+                grid.put( (long) row * cols + col, values[ col ] );
+            }
+        }
+        return
+                grid;
+    }
+    /**
+     * creates new grid with all cells set to zero;
+     * an existing scratch file is truncated, so none of its bytes are kept;
+     * direct buffers count against the limit set by '-XX:MaxDirectMemorySize',
+     * and they are released only when the grid is garbage collected;
+     *
+     * @param header     the grid header, it must be well formed;
+     * @param cell       how cells are stored;
+     * @param scratch    the file where cells are stored; {@code null} to store them in direct buffers;
+     * @throws IOException if the scratch file cannot be mapped;
+     */
+    public OffHeapGrid( RasterHeader header, Cell cell, Path scratch )
+            throws
+                IOException
+    {
+        super( header );
+        if ( cell == null )
+        {
+            throw new IllegalArgumentException( "Cell storage not defined." );
+        }
+        this.cell           = cell;
+        this.segmentBits    = SEGMENT_BITS - cell.shift;
+        this.segmentMask    = ( 1L << this.segmentBits ) - 1;
+
+        long    cells   = (long) this.getRows() * this.getCols();
+        long    bytes   = cells << cell.shift;
+        int     count   = (int) ( ( cells + this.segmentMask ) >>> this.segmentBits );
+        this.segments   = new ByteBuffer[ count ];
+        if ( scratch == null )
+        {
+            for ( int i = 0; i < count; i++ )
+            {
+                long offset = (long) i << SEGMENT_BITS;
+                this.segments[ i ] = ByteBuffer
+                        .allocateDirect( (int) Math.min( 1L << SEGMENT_BITS, bytes - offset ) )
+                        .order( ByteOrder.nativeOrder() );
+            }
+        }
+        else
+        {
+            try ( FileChannel channel = FileChannel.open( scratch, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE ) )
+            {
+                for ( int i = 0; i < count; i++ )
+                {
+                    long offset = (long) i << SEGMENT_BITS;
+                    this.segments[ i ] = channel
+                            .map( FileChannel.MapMode.READ_WRITE, offset, Math.min( 1L << SEGMENT_BITS, bytes - offset ) )
+                            .order( ByteOrder.nativeOrder() );
+                }
+            }
+        }
+    }
+
+    /* --- getters'n'setters --- */
+    /**
+     * gets how cells are stored;
+     *
+     * @return the cell storage;
+     */
+    public Cell getCell()
+    {
+        return
+                this.cell;
+    }
+
+    @Override
+    public boolean isNoData( int row, int col )
+    {
+        return
+                this.hasNoData()
+                &&
+                (
+                        ( this.cell == Cell.FLOAT )
+                        ? ( (float) this.getAsDouble( row, col ) == (float) this.getNoData() )
+                        : ( this.getAsDouble( row, col ) == this.getNoData() )
+                );
+    }
+    @Override
+    public double getAsDouble( int row, int col )
+    {
+        return
+                this.get( this.index( row, col ) );
+    }
+    @Override
+    public void setAsDouble( int row, int col, double value )
+    {
+        this.put( this.index( row, col ), value );
+    }
+
+    /* --- writers --- */
+    @Override
+    protected void append( int row, int col, GridRowBuffer out )
+    {
+        double value = this.get( (long) row * this.getCols() + col );
+        if ( this.cell == Cell.FLOAT )
+        {
+            out.append( (float) value );
+        }
+        else
+        {
+            out.append( value );
+        }
+    }
+
+    /* --- internal methods --- */
+    private double get( long index )
+    {
+        ByteBuffer  segment     = this.segments[ (int) ( index >>> this.segmentBits ) ];
+        int         position    = (int) ( index & this.segmentMask ) << this.cell.shift;
+        return
+                ( this.cell == Cell.FLOAT )
+                ? segment.getFloat( position )
+                : segment.getDouble( position )
+                ;
+    }
+    private void put( long index, double value )
+    {
+        ByteBuffer  segment     = this.segments[ (int) ( index >>> this.segmentBits ) ];
+        int         position    = (int) ( index & this.segmentMask ) << this.cell.shift;
+        if ( this.cell == Cell.FLOAT )
+        {
+            segment.putFloat( position, (float) value );
+        }
+        else
+        {
+            segment.putDouble( position, value );
+        }
+    }
+
+
+    /* --- internal classes --- */
+    /**
+     * how cells are stored;
+     */
+    public enum Cell
+    {
+        /**
+         * 4 bytes single precision cells;
+         */
+        FLOAT( 2 ),
+        /**
+         * 8 bytes double precision cells;
+         */
+        DOUBLE( 3 ),
+        ;
+
+        /* --- properties --- */
+        /**
+         * bits of each cell size in bytes;
+         */
+        private final int shift;
+
+        /* --- constructor --- */
+        Cell( int shift )
+        {
+            this.shift = shift;
+        }
+    }
+
+}
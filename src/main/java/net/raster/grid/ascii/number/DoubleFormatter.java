@@ -0,0 +1,662 @@
+package net.raster.grid.ascii.number;
+
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Converts doubles and floats to decimal text, as ASCII bytes,
+ * without allocating any object;
+ * by default the shortest digits that convert back to the same
+ * number are written, via the Ryu algorithm;
+ * numbers from 1e-6 up to 1e21 are written in plain notation, integral
+ * numbers without decimals; the other ones in scientific notation, like '1.5E-8';
+ * otherwise, the number can be written with fixed decimals, rounding half up
+ * the shortest digits; header values, which must be plain decimals, are
+ * converted by 'toPlainString';
+ */
+public final class DoubleFormatter
+{
+    /* --- static properties --- */
+    /**
+     * bytes needed at most to write a number with the shortest digits;
+     */
+    public static final int     MAX_LENGTH          = 32;
+
+    /**
+     * bits used in tables of powers of five and their inverses;
+     */
+    private static final int    POW5_BITCOUNT       = 125;
+    private static final int    POW5_INV_BITCOUNT   = 125;
+    /**
+     * high and low 64 bits of 5^i, normalized to 'POW5_BITCOUNT' bits;
+     */
+    private static final long[] POW5_HIGH           = new long[ 326 ];
+    private static final long[] POW5_LOW            = new long[ 326 ];
+    /**
+     * high and low 64 bits of 2^k / 5^i, rounded up, normalized to 'POW5_INV_BITCOUNT' bits;
+     */
+    private static final long[] POW5_INV_HIGH       = new long[ 342 ];
+    private static final long[] POW5_INV_LOW        = new long[ 342 ];
+    /**
+     * powers of ten up to 10^18;
+     */
+    private static final long[] POW10               = new long[ 19 ];
+
+    /**
+     * the digits of numbers from 00 to 99;
+     */
+    private static final byte[] DIGIT_PAIRS         = new byte[ 200 ];
+
+    private static final byte[] NAN                 = "NaN".getBytes( StandardCharsets.US_ASCII );
+    private static final byte[] INFINITY            = "Infinity".getBytes( StandardCharsets.US_ASCII );
+
+    static
+    {
+        BigInteger mask = BigInteger.ONE.shiftLeft( 64 ).subtract( BigInteger.ONE );
+        for ( int i = 0; i < POW5_INV_HIGH.length; i++ )
+        {
+            BigInteger  pow     = BigInteger.valueOf( 5 ).pow( i );
+            int         bits    = pow.bitLength();
+            if ( i < POW5_HIGH.length )
+            {
+                BigInteger value = ( bits <= POW5_BITCOUNT ) ? pow.shiftLeft( POW5_BITCOUNT - bits ) : pow.shiftRight( bits - POW5_BITCOUNT );
+                POW5_HIGH[ i ]  = value.shiftRight( 64 ).longValue();
+                POW5_LOW[ i ]   = value.and( mask ).longValue();
+            }
+            BigInteger inverse = BigInteger.ONE.shiftLeft( bits - 1 + POW5_INV_BITCOUNT ).divide( pow ).add( BigInteger.ONE );
+            POW5_INV_HIGH[ i ]  = inverse.shiftRight( 64 ).longValue();
+            POW5_INV_LOW[ i ]   = inverse.and( mask ).longValue();
+        }
+        for ( int i = 0; i < 100; i++ )
+        {
+            DIGIT_PAIRS[ i << 1 ]         = (byte) ( '0' + i / 10 );
+            DIGIT_PAIRS[ ( i << 1 ) + 1 ] = (byte) ( '0' + i % 10 );
+        }
+        POW10[ 0 ] = 1;
+        for ( int i = 1; i < POW10.length; i++ )
+        {
+            POW10[ i ] = POW10[ i - 1 ] * 10;
+        }
+    }
+
+    /* --- constructors --- */
+    private DoubleFormatter()
+    {
+        /* none */
+    }
+
+    /* --- formatters --- */
+    /**
+     * writes a number with the shortest digits;
+     *
+     * @param value     the number to write;
+     * @param target    where the number is written, at least 'MAX_LENGTH' bytes must be available;
+     * @param offset    position of the first byte to write;
+     * @return the position following the last byte written;
+     */
+    public static int format( double value, byte[] target, int offset )
+    {
+        return
+                DoubleFormatter.format( value, -1, target, offset );
+    }
+    /**
+     * writes a number with fixed decimals;
+     * when 'decimals' is negative the shortest digits are written;
+     *
+     * @param value       the number to write;
+     * @param decimals    number of decimals to write;
+     * @param target      where the number is written, at least 'length( value, decimals )' bytes must be available;
+     * @param offset      position of the first byte to write;
+     * @return the position following the last byte written;
+     */
+    public static int format( double value, int decimals, byte[] target, int offset )
+    {
+        long bits = Double.doubleToRawLongBits( value );
+        return
+                DoubleFormatter.format
+                        (
+                                bits & 0xFFFFFFFFFFFFFL, (int) ( ( bits >>> 52 ) & 0x7FF ), bits < 0,
+                                52, 1023, decimals, target, offset
+                        );
+    }
+    /**
+     * writes a float with the shortest digits;
+     *
+     * @param value     the number to write;
+     * @param target    where the number is written, at least 'MAX_LENGTH' bytes must be available;
+     * @param offset    position of the first byte to write;
+     * @return the position following the last byte written;
+     */
+    public static int format( float value, byte[] target, int offset )
+    {
+        return
+                DoubleFormatter.format( value, -1, target, offset );
+    }
+    /**
+     * writes a float with fixed decimals;
+     * when 'decimals' is negative the shortest digits are written;
+     *
+     * @param value       the number to write;
+     * @param decimals    number of decimals to write;
+     * @param target      where the number is written, at least 'length( value, decimals )' bytes must be available;
+     * @param offset      position of the first byte to write;
+     * @return the position following the last byte written;
+     */
+    public static int format( float value, int decimals, byte[] target, int offset )
+    {
+        int bits = Float.floatToRawIntBits( value );
+        return
+                DoubleFormatter.format
+                        (
+                                bits & 0x7FFFFF, ( bits >>> 23 ) & 0xFF, bits < 0,
+                                23, 127, decimals, target, offset
+                        );
+    }
+    /**
+     * gets how many bytes might be needed to write a number;
+     *
+     * @param value       the number to write;
+     * @param decimals    number of decimals to write, negative for the shortest digits;
+     * @return the maximum number of bytes;
+     */
+    public static int length( double value, int decimals )
+    {
+        if ( decimals < 0 )
+        {
+            return
+                    MAX_LENGTH;
+        }
+        int digits = ( Math.abs( value ) < 1e21 ) ? 22 : 1 + (int) Math.log10( Math.abs( value ) );
+        return
+                Math.max( 2 + digits + decimals, MAX_LENGTH );
+    }
+
+    /**
+     * converts a number to text string with the shortest digits;
+     *
+     * @param value    the number to convert;
+     * @return the number as text string;
+     */
+    public static String toString( double value )
+    {
+        return
+                DoubleFormatter.toString( value, -1 );
+    }
+    /**
+     * converts a number to text string with fixed decimals;
+     *
+     * @param value       the number to convert;
+     * @param decimals    number of decimals to write, negative for the shortest digits;
+     * @return the number as text string;
+     */
+    public static String toString( double value, int decimals )
+    {
+        byte[]  text    = new byte[ DoubleFormatter.length( value, decimals ) ];
+        int     length  = DoubleFormatter.format( value, decimals, text, 0 );
+        return
+                new String( text, 0, length, StandardCharsets.US_ASCII );
+    }
+    /**
+     * converts a number to text string with the shortest digits,
+     * always in plain notation, as needed by header values;
+     * NaN and infinite numbers are converted as by 'toString';
+     *
+     * @param value    the number to convert;
+     * @return the number as text string, without exponent;
+     */
+    public static String toPlainString( double value )
+    {
+        String text = DoubleFormatter.toString( value );
+        if ( Double.isNaN( value ) || Double.isInfinite( value ) || ( text.indexOf( 'E' ) < 0 ) )
+        {
+            return
+                    text;
+        }
+        return
+                new BigDecimal( text ).toPlainString();
+    }
+    /**
+     * converts a float to text string with the shortest digits;
+     *
+     * @param value    the number to convert;
+     * @return the number as text string;
+     */
+    public static String toString( float value )
+    {
+        byte[]  text    = new byte[ MAX_LENGTH ];
+        int     length  = DoubleFormatter.format( value, text, 0 );
+        return
+                new String( text, 0, length, StandardCharsets.US_ASCII );
+    }
+
+    /* --- internal methods --- */
+    /**
+     * writes a binary floating point number, given by its IEEE fields;
+     */
+    private static int format
+            (
+                    long ieeeMantissa, int ieeeExponent, boolean negative,
+                    int mantissaBits, int bias, int decimals, byte[] target, int offset
+            )
+    {
+        int maxExponent = ( bias << 1 ) + 1;
+        if ( ieeeExponent == maxExponent )
+        {
+            if ( ieeeMantissa != 0 )
+            {
+                System.arraycopy( NAN, 0, target, offset, NAN.length );
+                return
+                        offset + NAN.length;
+            }
+            if ( negative )
+            {
+                target[ offset++ ] = '-';
+            }
+            System.arraycopy( INFINITY, 0, target, offset, INFINITY.length );
+            return
+                    offset + INFINITY.length;
+        }
+        if ( ( ieeeExponent == 0 ) && ( ieeeMantissa == 0 ) )
+        {
+            return
+                    DoubleFormatter.write( 0, 0, negative, decimals, target, offset );
+        }
+
+        /* --- integers up to 2^mantissaBits are written as they are --- */
+        if ( ieeeExponent != 0 )
+        {
+            int shift = bias + mantissaBits - ieeeExponent;
+            if ( ( shift >= 0 ) && ( shift <= mantissaBits ) )
+            {
+                long integer = ( 1L << mantissaBits ) | ieeeMantissa;
+                if ( ( integer & ( ( 1L << shift ) - 1 ) ) == 0 )
+                {
+                    return
+                            DoubleFormatter.write( integer >>> shift, 0, negative, decimals, target, offset );
+                }
+            }
+        }
+
+        /* --- step 1: the number as m2 * 2^e2, with two additional bits for the bounds --- */
+        int     e2;
+        long    m2;
+        if ( ieeeExponent == 0 )
+        {
+            e2 = 1 - bias - mantissaBits - 2;
+            m2 = ieeeMantissa;
+        }
+        else
+        {
+            e2 = ieeeExponent - bias - mantissaBits - 2;
+            m2 = ( 1L << mantissaBits ) | ieeeMantissa;
+        }
+        boolean acceptBounds    = ( m2 & 1 ) == 0;
+
+        /* --- step 2: the interval of valid decimal representations --- */
+        long    mv              = 4 * m2;
+        int     mmShift         = ( ( ieeeMantissa != 0 ) || ( ieeeExponent <= 1 ) ) ? 1 : 0;
+
+        /* --- step 3: the interval in a decimal power base --- */
+        long    vr;
+        long    vp;
+        long    vm;
+        int     e10;
+        boolean vmIsTrailingZeros = false;
+        boolean vrIsTrailingZeros = false;
+        if ( e2 >= 0 )
+        {
+            int q   = DoubleFormatter.log10Pow2( e2 ) - ( ( e2 > 3 ) ? 1 : 0 );
+            int k   = POW5_INV_BITCOUNT + DoubleFormatter.pow5bits( q ) - 1;
+            int i   = -e2 + q + k;
+            e10     = q;
+            vr      = DoubleFormatter.mulShift( 4 * m2,               POW5_INV_HIGH[ q ], POW5_INV_LOW[ q ], i );
+            vp      = DoubleFormatter.mulShift( 4 * m2 + 2,           POW5_INV_HIGH[ q ], POW5_INV_LOW[ q ], i );
+            vm      = DoubleFormatter.mulShift( 4 * m2 - 1 - mmShift, POW5_INV_HIGH[ q ], POW5_INV_LOW[ q ], i );
+            if ( q <= 21 )
+            {
+                if ( mv % 5 == 0 )
+                {
+                    vrIsTrailingZeros = DoubleFormatter.multipleOfPowerOf5( mv, q );
+                }
+                else if ( acceptBounds )
+                {
+                    vmIsTrailingZeros = DoubleFormatter.multipleOfPowerOf5( mv - 1 - mmShift, q );
+                }
+                else if ( DoubleFormatter.multipleOfPowerOf5( mv + 2, q ) )
+                {
+                    vp -- ;
+                }
+            }
+        }
+        else
+        {
+            int q   = DoubleFormatter.log10Pow5( -e2 ) - ( ( -e2 > 1 ) ? 1 : 0 );
+            int i   = -e2 - q;
+            int k   = DoubleFormatter.pow5bits( i ) - POW5_BITCOUNT;
+            int j   = q - k;
+            e10     = q + e2;
+            vr      = DoubleFormatter.mulShift( 4 * m2,               POW5_HIGH[ i ], POW5_LOW[ i ], j );
+            vp      = DoubleFormatter.mulShift( 4 * m2 + 2,           POW5_HIGH[ i ], POW5_LOW[ i ], j );
+            vm      = DoubleFormatter.mulShift( 4 * m2 - 1 - mmShift, POW5_HIGH[ i ], POW5_LOW[ i ], j );
+            if ( q <= 1 )
+            {
+                vrIsTrailingZeros = true;
+                if ( acceptBounds )
+                {
+                    vmIsTrailingZeros = ( mmShift == 1 );
+                }
+                else
+                {
+                    vp -- ;
+                }
+            }
+            else if ( q < 63 )
+            {
+                vrIsTrailingZeros = ( mv & ( ( 1L << q ) - 1 ) ) == 0;
+            }
+        }
+
+        /* --- step 4: the shortest decimal representation in the interval --- */
+        int     removed = 0;
+        long    output;
+        if ( vmIsTrailingZeros || vrIsTrailingZeros )
+        {
+            int lastRemovedDigit = 0;
+            for ( ; ; )
+            {
+                long vpDiv10 = vp / 10;
+                long vmDiv10 = vm / 10;
+                if ( vpDiv10 <= vmDiv10 )
+                {
+                    break;
+                }
+                long vrDiv10 = vr / 10;
+                vmIsTrailingZeros &= ( vm - 10 * vmDiv10 == 0 );
+                vrIsTrailingZeros &= ( lastRemovedDigit == 0 );
+                lastRemovedDigit = (int) ( vr - 10 * vrDiv10 );
+                vr = vrDiv10;
+                vp = vpDiv10;
+                vm = vmDiv10;
+                removed ++ ;
+            }
+            if ( vmIsTrailingZeros )
+            {
+                for ( ; ; )
+                {
+                    long vmDiv10 = vm / 10;
+                    if ( vm - 10 * vmDiv10 != 0 )
+                    {
+                        break;
+                    }
+                    long vrDiv10 = vr / 10;
+                    vrIsTrailingZeros &= ( lastRemovedDigit == 0 );
+                    lastRemovedDigit = (int) ( vr - 10 * vrDiv10 );
+                    vr = vrDiv10;
+                    vp /= 10;
+                    vm = vmDiv10;
+                    removed ++ ;
+                }
+            }
+            if ( vrIsTrailingZeros && ( lastRemovedDigit == 5 ) && ( vr % 2 == 0 ) )
+            {
+                lastRemovedDigit = 4;
+            }
+            output = vr + ( ( ( ( vr == vm ) && ( ! acceptBounds || ! vmIsTrailingZeros ) ) || ( lastRemovedDigit >= 5 ) ) ? 1 : 0 );
+        }
+        else
+        {
+            boolean roundUp = false;
+            if ( vp / 100 > vm / 100 )
+            {
+                roundUp = ( vr % 100 >= 50 );
+                vr /= 100;
+                vp /= 100;
+                vm /= 100;
+                removed += 2;
+            }
+            while ( vp / 10 > vm / 10 )
+            {
+                roundUp = ( vr % 10 >= 5 );
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                removed ++ ;
+            }
+            output = vr + ( ( ( vr == vm ) || roundUp ) ? 1 : 0 );
+        }
+        return
+                DoubleFormatter.write( output, e10 + removed, negative, decimals, target, offset );
+    }
+
+    /**
+     * writes the decimal number 'output * 10^exponent';
+     */
+    private static int write( long output, int exponent, boolean negative, int decimals, byte[] target, int offset )
+    {
+        if ( negative )
+        {
+            target[ offset++ ] = '-';
+        }
+        if ( decimals >= 0 )
+        {
+            return
+                    DoubleFormatter.writeFixed( output, exponent, decimals, target, offset );
+        }
+        if ( output == 0 )
+        {
+            target[ offset++ ] = '0';
+            return
+                    offset;
+        }
+
+        int digits  = DoubleFormatter.decimalLength( output );
+        int point   = digits + exponent;
+        if ( ( point > -6 ) && ( point <= 21 ) )
+        {
+            if ( point <= 0 )
+            {
+                /* --- 0.000ddd --- */
+                target[ offset++ ] = '0';
+                target[ offset++ ] = '.';
+                offset = DoubleFormatter.writeZeros( -point, target, offset );
+                return
+                        DoubleFormatter.writeDigits( output, digits, target, offset );
+            }
+            offset = DoubleFormatter.writeDigits( output, digits, target, offset );
+            if ( point >= digits )
+            {
+                /* --- ddd000 --- */
+                return
+                        DoubleFormatter.writeZeros( point - digits, target, offset );
+            }
+            /* --- ddd.ddd --- */
+            return
+                    DoubleFormatter.insertPoint( digits - point, target, offset );
+        }
+
+        /* --- d.dddE-xx --- */
+        int start = offset;
+        offset = DoubleFormatter.writeDigits( output, digits, target, offset + 1 );
+        target[ start ] = target[ start + 1 ];
+        if ( digits > 1 )
+        {
+            target[ start + 1 ] = '.';
+        }
+        else
+        {
+            offset -- ;
+        }
+        target[ offset++ ] = 'E';
+        int scientific = point - 1;
+        if ( scientific < 0 )
+        {
+            target[ offset++ ] = '-';
+            scientific = -scientific;
+        }
+        return
+                DoubleFormatter.writeDigits( scientific, DoubleFormatter.decimalLength( scientific ), target, offset );
+    }
+    /**
+     * writes the decimal number 'output * 10^exponent' with fixed decimals,
+     * rounding half up;
+     */
+    private static int writeFixed( long output, int exponent, int decimals, byte[] target, int offset )
+    {
+        if ( exponent < -decimals )
+        {
+            int removed = -decimals - exponent;
+            if ( removed >= POW10.length )
+            {
+                output = 0;
+            }
+            else
+            {
+                long power      = POW10[ removed ];
+                long remainder  = output % power;
+                output = output / power + ( ( remainder >= ( power >> 1 ) + ( power & 1 ) ) ? 1 : 0 );
+            }
+            exponent = -decimals;
+        }
+        if ( output == 0 )
+        {
+            target[ offset++ ] = '0';
+            if ( decimals > 0 )
+            {
+                target[ offset++ ] = '.';
+                offset = DoubleFormatter.writeZeros( decimals, target, offset );
+            }
+            return
+                    offset;
+        }
+
+        int digits  = DoubleFormatter.decimalLength( output );
+        int point   = digits + exponent;
+        if ( point <= 0 )
+        {
+            target[ offset++ ] = '0';
+            target[ offset++ ] = '.';
+            offset = DoubleFormatter.writeZeros( -point, target, offset );
+            offset = DoubleFormatter.writeDigits( output, digits, target, offset );
+            return
+                    DoubleFormatter.writeZeros( exponent + decimals, target, offset );
+        }
+        offset = DoubleFormatter.writeDigits( output, digits, target, offset );
+        offset = DoubleFormatter.writeZeros( exponent + decimals, target, offset );
+        return
+                ( decimals > 0 ) ? DoubleFormatter.insertPoint( decimals, target, offset ) : offset;
+    }
+
+    private static int writeDigits( long value, int digits, byte[] target, int offset )
+    {
+        int end = offset + digits;
+        int i   = end;
+        while ( value >= 100 )
+        {
+            long div    = value / 100;
+            int  pair   = (int) ( value - 100 * div ) << 1;
+            target[ --i ] = DIGIT_PAIRS[ pair + 1 ];
+            target[ --i ] = DIGIT_PAIRS[ pair ];
+            value = div;
+        }
+        if ( value >= 10 )
+        {
+            int pair = (int) value << 1;
+            target[ --i ] = DIGIT_PAIRS[ pair + 1 ];
+            target[ --i ] = DIGIT_PAIRS[ pair ];
+        }
+        else
+        {
+            target[ --i ] = (byte) ( '0' + value );
+        }
+        return
+                end;
+    }
+    private static int writeZeros( int count, byte[] target, int offset )
+    {
+        for ( int i = 0; i < count; i++ )
+        {
+            target[ offset++ ] = '0';
+        }
+        return
+                offset;
+    }
+    /**
+     * inserts the decimal point before the last 'decimals' bytes;
+     */
+    private static int insertPoint( int decimals, byte[] target, int end )
+    {
+        System.arraycopy( target, end - decimals, target, end - decimals + 1, decimals );
+        target[ end - decimals ] = '.';
+        return
+                end + 1;
+    }
+
+    private static int decimalLength( long value )
+    {
+        int digits = 1;
+        while ( ( digits < POW10.length ) && ( value >= POW10[ digits ] ) )
+        {
+            digits ++ ;
+        }
+        return
+                digits;
+    }
+
+    /**
+     * gets '( m * mul ) >> j', where mul is a 128 bits number and 64 < j < 128;
+     */
+    private static long mulShift( long m, long mulHigh, long mulLow, int j )
+    {
+        long    high0   = DoubleParser.multiplyHigh( m, mulLow );
+        long    low1    = m * mulHigh;
+        long    high1   = DoubleParser.multiplyHigh( m, mulHigh );
+        long    sum     = low1 + high0;
+        if ( Long.compareUnsigned( sum, low1 ) < 0 )
+        {
+            high1 ++ ;
+        }
+        int     shift   = j - 64;
+        return
+                ( high1 << ( 64 - shift ) ) | ( sum >>> shift );
+    }
+
+    private static boolean multipleOfPowerOf5( long value, int p )
+    {
+        int count = 0;
+        while ( ( value > 0 ) && ( value % 5 == 0 ) )
+        {
+            value /= 5;
+            count ++ ;
+        }
+        return
+                count >= p;
+    }
+    /**
+     * gets ceil( log2( 5^e ) ), or 1 when e is zero;
+     */
+    private static int pow5bits( int e )
+    {
+        return
+                ( ( e * 1217359 ) >>> 19 ) + 1;
+    }
+    /**
+     * gets floor( log10( 2^e ) );
+     */
+    private static int log10Pow2( int e )
+    {
+        return
+                ( e * 78913 ) >>> 18;
+    }
+    /**
+     * gets floor( log10( 5^e ) );
+     */
+    private static int log10Pow5( int e )
+    {
+        return
+                ( e * 732923 ) >>> 20;
+    }
+
+}
@@ -0,0 +1,368 @@
+package net.raster.grid.ascii.number;
+
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Converts decimal numbers, given as ASCII bytes, to doubles
+ * without allocating any object;
+ * the result is always the same as 'Double.parseDouble(...)':
+ * common decimal numbers, with at most 19 significant digits, are
+ * converted via the Clinger fast path or the Eisel-Lemire algorithm;
+ * numbers with more digits are converted if both the truncated
+ * value and its successor lead to the same double;
+ * everything else, like rare halfway cases, sub-normal numbers, hexadecimal
+ * numbers or 'NaN', falls back to 'Double.parseDouble(...)';
+ */
+public final class DoubleParser
+{
+    /* --- static properties --- */
+    /**
+     * smallest power of ten handled via the Eisel-Lemire algorithm;
+     * any number with at most 19 digits below it is zero;
+     */
+    private static final int        MIN_POWER       = -342;
+    /**
+     * greatest power of ten handled via the Eisel-Lemire algorithm;
+     * any number with at least one digit beyond it is infinite;
+     */
+    private static final int        MAX_POWER       = 308;
+    /**
+     * high and low 64 bits of the 128 bits approximation of 5^q,
+     * normalized so that the highest bit is set;
+     */
+    private static final long[]     POWER5_HIGH     = new long[ MAX_POWER - MIN_POWER + 1 ];
+    private static final long[]     POWER5_LOW      = new long[ MAX_POWER - MIN_POWER + 1 ];
+    /**
+     * powers of ten represented exactly as doubles;
+     */
+    private static final double[]   POWER10         =
+            {
+                    1e0,  1e1,  1e2,  1e3,  1e4,  1e5,  1e6,  1e7,  1e8,  1e9,  1e10, 1e11,
+                    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+            };
+
+    static
+    {
+        BigInteger  five    = BigInteger.valueOf( 5 );
+        BigInteger  limit   = BigInteger.ONE.shiftLeft( 128 );
+        BigInteger  mask    = BigInteger.ONE.shiftLeft( 64 ).subtract( BigInteger.ONE );
+        for ( int q = MIN_POWER; q <= MAX_POWER; q++ )
+        {
+            BigInteger value;
+            if ( q >= 0 )
+            {
+                /* --- truncated 5^q --- */
+                value = five.pow( q );
+                int bits = value.bitLength();
+                value = ( bits <= 128 ) ? value.shiftLeft( 128 - bits ) : value.shiftRight( bits - 128 );
+            }
+            else
+            {
+                /* --- 2^b / 5^-q, rounded up, then truncated --- */
+                BigInteger  power   = five.pow( -q );
+                int         z       = power.bitLength();
+                int         b       = ( q >= -27 ) ? z + 127 : 2 * z + 128;
+                value = BigInteger.ONE.shiftLeft( b ).divide( power ).add( BigInteger.ONE );
+                while ( value.compareTo( limit ) >= 0 )
+                {
+                    value = value.shiftRight( 1 );
+                }
+            }
+            POWER5_HIGH[ q - MIN_POWER ] = value.shiftRight( 64 ).longValue();
+            POWER5_LOW[ q - MIN_POWER ]  = value.and( mask ).longValue();
+        }
+    }
+
+    /* --- constructors --- */
+    private DoubleParser()
+    {
+        /* none */
+    }
+
+    /* --- parsers --- */
+    /**
+     * converts a decimal number to double;
+     *
+     * @param text    the number as text string;
+     * @return the double value;
+     * @throws NumberFormatException if the text is not a number;
+     */
+    public static double parse( String text )
+            throws
+                NumberFormatException
+    {
+        byte[] bytes = text.getBytes( StandardCharsets.ISO_8859_1 );
+        return
+                DoubleParser.parse( bytes, 0, bytes.length, text );
+    }
+    /**
+     * converts a decimal number, given as ASCII bytes, to double;
+     *
+     * @param data     the bytes holding the number;
+     * @param start    position of the number first byte;
+     * @param end      position following the number last byte;
+     * @return the double value;
+     * @throws NumberFormatException if the bytes are not a number;
+     */
+    public static double parse( byte[] data, int start, int end )
+            throws
+                NumberFormatException
+    {
+        return
+                DoubleParser.parse( data, start, end, null );
+    }
+
+    /* --- internal methods --- */
+    private static double parse( byte[] data, int start, int end, String text )
+    {
+        int     i           = start;
+        boolean negative    = false;
+        if ( i < end )
+        {
+            if ( data[ i ] == '-' )
+            {
+                negative = true;
+                i ++ ;
+            }
+            else if ( data[ i ] == '+' )
+            {
+                i ++ ;
+            }
+        }
+
+        /* --- significant digits, at most 19 of them fit in 64 bits --- */
+        long    significand = 0;
+        int     digits      = 0;
+        int     power       = 0;
+        boolean found       = false;
+        boolean truncated   = false;
+        int     d;
+        while ( ( i < end ) && ( ( d = data[ i ] - '0' ) >= 0 ) && ( d <= 9 ) )
+        {
+            found = true;
+            if ( digits < 19 )
+            {
+                if ( ( significand != 0 ) || ( d != 0 ) )
+                {
+                    significand = significand * 10 + d;
+                    digits ++ ;
+                }
+            }
+            else
+            {
+                power ++ ;
+                truncated |= ( d != 0 );
+            }
+            i ++ ;
+        }
+        if ( ( i < end ) && ( data[ i ] == '.' ) )
+        {
+            i ++ ;
+            while ( ( i < end ) && ( ( d = data[ i ] - '0' ) >= 0 ) && ( d <= 9 ) )
+            {
+                found = true;
+                if ( digits < 19 )
+                {
+                    if ( ( significand != 0 ) || ( d != 0 ) )
+                    {
+                        significand = significand * 10 + d;
+                        digits ++ ;
+                    }
+                    power -- ;
+                }
+                else
+                {
+                    truncated |= ( d != 0 );
+                }
+                i ++ ;
+            }
+        }
+        if ( ! found )
+        {
+            return
+                    DoubleParser.fallback( data, start, end, text );
+        }
+
+        /* --- exponent --- */
+        if ( ( i < end ) && ( ( data[ i ] == 'e' ) || ( data[ i ] == 'E' ) ) )
+        {
+            i ++ ;
+            boolean negativeExponent = false;
+            if ( i < end )
+            {
+                if ( data[ i ] == '-' )
+                {
+                    negativeExponent = true;
+                    i ++ ;
+                }
+                else if ( data[ i ] == '+' )
+                {
+                    i ++ ;
+                }
+            }
+            if ( ( i >= end ) || ( data[ i ] < '0' ) || ( data[ i ] > '9' ) )
+            {
+                return
+                        DoubleParser.fallback( data, start, end, text );
+            }
+            int exponent = 0;
+            while ( ( i < end ) && ( ( d = data[ i ] - '0' ) >= 0 ) && ( d <= 9 ) )
+            {
+                if ( exponent < 100000 )
+                {
+                    exponent = exponent * 10 + d;
+                }
+                i ++ ;
+            }
+            power += negativeExponent ? -exponent : exponent;
+        }
+        if ( i != end )
+        {
+            return
+                    DoubleParser.fallback( data, start, end, text );
+        }
+
+        /* --- conversion --- */
+        if ( significand == 0 )
+        {
+            return
+                    negative ? -0D : 0D;
+        }
+        if ( ! truncated )
+        {
+            if ( ( significand <= ( 1L << 53 ) ) && ( significand > 0 ) && ( power >= -22 ) && ( power <= 22 ) )
+            {
+                double value = (double) significand;
+                value = ( power < 0 ) ? value / POWER10[ -power ] : value * POWER10[ power ];
+                return
+                        negative ? -value : value;
+            }
+            double value = DoubleParser.eiselLemire( significand, power, negative );
+            if ( ! Double.isNaN( value ) )
+            {
+                return
+                        value;
+            }
+        }
+        else
+        {
+            double lower = DoubleParser.eiselLemire( significand,     power, negative );
+            double upper = DoubleParser.eiselLemire( significand + 1, power, negative );
+            if ( ! Double.isNaN( lower ) && ( lower == upper ) )
+            {
+                return
+                        lower;
+            }
+        }
+        return
+                DoubleParser.fallback( data, start, end, text );
+    }
+
+    /**
+     * converts significand * 10^power to double via the Eisel-Lemire algorithm;
+     *
+     * @param significand    the decimal significand, as unsigned 64 bits integer, not zero;
+     * @param power          the decimal exponent;
+     * @param negative       true, if the number is negative;
+     * @return the double value; or NaN if the algorithm cannot decide the rounding;
+     */
+    private static double eiselLemire( long significand, int power, boolean negative )
+    {
+        if ( power < MIN_POWER )
+        {
+            return
+                    negative ? -0D : 0D;
+        }
+        if ( power > MAX_POWER )
+        {
+            return
+                    negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+
+        long    factor      = POWER5_HIGH[ power - MIN_POWER ];
+        long    exponent    = ( ( 217706L * power ) >> 16 ) + 1087;
+        int     zeros       = Long.numberOfLeadingZeros( significand );
+        long    shifted     = significand << zeros;
+
+        /* --- 64 x 64 bits product, with a 192 bits refinement when needed --- */
+        long    lower       = shifted * factor;
+        long    upper       = DoubleParser.multiplyHigh( shifted, factor );
+        if ( ( ( upper & 0x1FF ) == 0x1FF ) && ( Long.compareUnsigned( lower + shifted, lower ) < 0 ) )
+        {
+            long factorLow  = POWER5_LOW[ power - MIN_POWER ];
+            long productLow = shifted * factorLow;
+            long middle2    = DoubleParser.multiplyHigh( shifted, factorLow );
+            long middle     = lower + middle2;
+            if ( Long.compareUnsigned( middle, lower ) < 0 )
+            {
+                upper ++ ;
+            }
+            if ( ( middle + 1 == 0 ) && ( ( upper & 0x1FF ) == 0x1FF ) && ( Long.compareUnsigned( productLow + shifted, productLow ) < 0 ) )
+            {
+                return
+                        Double.NaN;
+            }
+            lower = middle;
+        }
+
+        /* --- 54 bits mantissa with the leading one --- */
+        long    upperBit    = upper >>> 63;
+        long    mantissa    = upper >>> ( upperBit + 9 );
+        zeros += (int) ( 1 ^ upperBit );
+        if ( ( ( ( upper & 0x1FF ) == 0x1FF ) ) || ( ( ( upper & 0x1FF ) == 0 ) && ( ( mantissa & 3 ) == 1 ) ) )
+        {
+            return
+                    Double.NaN;
+        }
+
+        /* --- round to nearest --- */
+        mantissa += 1;
+        mantissa >>>= 1;
+        if ( mantissa >= ( 1L << 53 ) )
+        {
+            mantissa = 1L << 52;
+            zeros -- ;
+        }
+        mantissa &= ~( 1L << 52 );
+        long realExponent = exponent - zeros;
+        if ( ( realExponent < 1 ) || ( realExponent > 2046 ) )
+        {
+            return
+                    Double.NaN;
+        }
+        return
+                Double.longBitsToDouble
+                        (
+                                mantissa | ( realExponent << 52 ) | ( negative ? 1L << 63 : 0L )
+                        );
+    }
+
+    /**
+     * gets the highest 64 bits of the unsigned 128 bits product;
+     */
+    static long multiplyHigh( long x, long y )
+    {
+        long x0 = x & 0xFFFFFFFFL;
+        long x1 = x >>> 32;
+        long y0 = y & 0xFFFFFFFFL;
+        long y1 = y >>> 32;
+        long w0 = x0 * y0;
+        long t  = x1 * y0 + ( w0 >>> 32 );
+        long w1 = ( t & 0xFFFFFFFFL ) + x0 * y1;
+        return
+                x1 * y1 + ( t >>> 32 ) + ( w1 >>> 32 );
+    }
+
+    private static double fallback( byte[] data, int start, int end, String text )
+    {
+        return
+                Double.parseDouble
+                        (
+                                ( text != null ) ? text : new String( data, start, end - start, StandardCharsets.ISO_8859_1 )
+                        );
+    }
+
+}
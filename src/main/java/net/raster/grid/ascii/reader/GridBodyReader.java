@@ -0,0 +1,322 @@
+package net.raster.grid.ascii.reader;
+
+
+import net.raster.grid.ascii.GridInvalidException;
+import net.raster.grid.ascii.header.RasterHeader;
+import net.raster.grid.ascii.number.DoubleParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Reads the grid body row by row;
+ * each row is checked against the grid size and its cells can be
+ * parsed straight into primitive arrays;
+ * if the 'NODATA_value' has been changed, each cell with old value
+ * is replaced with the new one before being parsed;
+ */
+public class GridBodyReader
+{
+    /* --- properties --- */
+    /**
+     * total rows in grid;
+     */
+    private final int                           rows;
+    /**
+     * total columns in each grid row;
+     */
+    private final int                           cols;
+    /**
+     * grid reader, positioned on the first grid line;
+     */
+    private final GridLineReader                lines;
+    /**
+     * used to replace old NODATA value with new one;
+     */
+    private final RasterHeader.NoDataReplace    replacer;
+    /**
+     * splits each grid line in cells;
+     */
+    private final GridRowTokenizer              tokenizer   = new GridRowTokenizer();
+    /**
+     * index of current row; the first row index minus one, before the first row;
+     */
+    private int                                 row         = -1;
+    /**
+     * true, until the first row is read; it is already in the line reader;
+     */
+    private boolean                             first       = true;
+    /**
+     * the last replacing value and its number;
+     */
+    private String                              replaced;
+    private double                              replacedValue;
+
+    /* --- constructor --- */
+    /**
+     * creates new body reader;
+     *
+     * @param nRow      total rows in grid;
+     * @param nCol      total columns in each row;
+     * @param lines     the source raster lines, positioned on the first grid line;
+     * @param nodata    replacer for NODATA values;
+     */
+    public GridBodyReader
+        (
+                int                         nRow,
+                int                         nCol,
+                GridLineReader              lines,
+                RasterHeader.NoDataReplace  nodata
+        )
+    {
+        if ( lines == null )
+        {
+            throw new IllegalArgumentException( "Grid lines not defined." );
+        }
+        this.rows       = nRow;
+        this.cols       = nCol;
+        this.lines      = lines;
+        this.replacer   = ( nodata != null ) ? nodata : new RasterHeader.NothingToReplace();
+    }
+    /**
+     * creates new body reader starting from a given row;
+     *
+     * @param nRow      total rows in grid;
+     * @param nCol      total columns in each row;
+     * @param lines     the source raster lines, positioned on the first row to read;
+     * @param nodata    replacer for NODATA values;
+     * @param row       index of the first row to read;
+     */
+    public GridBodyReader
+        (
+                int                         nRow,
+                int                         nCol,
+                GridLineReader              lines,
+                RasterHeader.NoDataReplace  nodata,
+                int                         row
+        )
+    {
+        this( nRow, nCol, lines, nodata );
+        this.row = row - 1;
+    }
+
+    /* --- reading --- */
+    /**
+     * moves to the next row and checks its number of columns;
+     *
+     * @return true, if a row is available; false, if all rows have been read;
+     * @throws IOException if source failed to be read or the grid is not valid;
+     */
+    public boolean next()
+            throws
+                IOException
+    {
+        if ( ! this.advance( this.first ? this.lines.isAvailable() : this.lines.next() ) )
+        {
+            return
+                    false;
+        }
+        int found = this.tokenizer.tokenize( this.lines.getLine(), this.lines.getLength() );
+        if ( found != this.cols )
+        {
+            throw
+                    new GridInvalidException
+                            (
+                                    String.format( "Invalid grid. At line %d found %d columns instead %d.", this.row + 1, found, this.cols )
+                            );
+        }
+        return
+                true;
+    }
+
+    /**
+     * moves past the next row without tokenizing it, nor checking its cells;
+     * the skipped row cannot be parsed;
+     *
+     * @return true, if a row has been skipped; false, if all rows have been read;
+     * @throws IOException if source failed to be read or the grid has too many rows;
+     */
+    public boolean skip()
+            throws
+                IOException
+    {
+        return
+                this.advance( this.first ? this.lines.isAvailable() : this.lines.skip() );
+    }
+
+    /**
+     * parses the current row into an array;
+     *
+     * @param target    the destination array;
+     * @param offset    position in array of the first row cell;
+     * @throws GridInvalidException if a cell is not a number;
+     */
+    public void parse( double[] target, int offset )
+            throws
+                GridInvalidException
+    {
+        for ( int col = 0; col < this.cols; col++ )
+        {
+            target[ offset + col ] = this.parse( col );
+        }
+    }
+    /**
+     * parses the current row into an array;
+     *
+     * @param target    the destination array;
+     * @param offset    position in array of the first row cell;
+     * @throws GridInvalidException if a cell is not a number;
+     */
+    public void parse( float[] target, int offset )
+            throws
+                GridInvalidException
+    {
+        for ( int col = 0; col < this.cols; col++ )
+        {
+            target[ offset + col ] = (float) this.parse( col );
+        }
+    }
+    /**
+     * parses a single cell of the current row;
+     *
+     * @param col    the cell column;
+     * @return the cell value;
+     * @throws GridInvalidException if the cell is not a number;
+     */
+    public double parse( int col )
+            throws
+                GridInvalidException
+    {
+        byte[]  line    = this.lines.getLine();
+        int     start   = this.tokenizer.getStart( col );
+        int     end     = this.tokenizer.getEnd( col );
+        String  replace = this.replacer.replace( line, start, end );
+        try
+        {
+            if ( replace != null )
+            {
+                if ( replace != this.replaced )
+                {
+                    this.replacedValue  = DoubleParser.parse( replace );
+                    this.replaced       = replace;
+                }
+                return
+                        this.replacedValue;
+            }
+            return
+                    DoubleParser.parse( line, start, end );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw
+                    new GridInvalidException
+                            (
+                                    String.format
+                                            (
+                                                    "Invalid grid. At line %d, column %d, the value '%s' is not a number.",
+                                                    this.row + 1, col + 1, new String( line, start, end - start, StandardCharsets.US_ASCII )
+                                            )
+                            );
+        }
+    }
+
+    /* --- internal methods --- */
+    /**
+     * moves the row index after a line has been read, checking the number of rows;
+     */
+    private boolean advance( boolean ready )
+            throws
+                GridInvalidException
+    {
+        this.first = false;
+        if ( ! ready )
+        {
+            if ( this.row + 1 != this.rows )
+            {
+                throw
+                        new GridInvalidException
+                                (
+                                        String.format( "Invalid grid. Expected %d rows, but found %d rows.", this.rows, this.row + 1 )
+                                );
+            }
+            return
+                    false;
+        }
+        this.row ++ ;
+        if ( this.row >= this.rows )
+        {
+            throw
+                    new GridInvalidException
+                            (
+                                    String.format( "Invalid grid. Expected %d rows, but found %d rows.", this.rows, this.row + 1 )
+                            );
+        }
+        return
+                true;
+    }
+
+    /* --- getters --- */
+    /**
+     * gets the index of the current row;
+     *
+     * @return the row index, starting from zero;
+     */
+    public int getRow()
+    {
+        return
+                this.row;
+    }
+    /**
+     * gets the total rows in grid;
+     *
+     * @return number of rows;
+     */
+    public int getRows()
+    {
+        return
+                this.rows;
+    }
+    /**
+     * gets the total columns in each grid row;
+     *
+     * @return number of columns;
+     */
+    public int getCols()
+    {
+        return
+                this.cols;
+    }
+    /**
+     * gets the current line; only the first bytes are meaningful,
+     * cells position are given by the tokenizer;
+     *
+     * @return the current line bytes;
+     */
+    public byte[] getLine()
+    {
+        return
+                this.lines.getLine();
+    }
+    /**
+     * gets the cells found in current line;
+     *
+     * @return the tokenizer holding the cells position;
+     */
+    public GridRowTokenizer getTokenizer()
+    {
+        return
+                this.tokenizer;
+    }
+    /**
+     * gets the class replacing the old NODATA value with the new one;
+     *
+     * @return the NODATA replacer;
+     */
+    public RasterHeader.NoDataReplace getReplacer()
+    {
+        return
+                this.replacer;
+    }
+
+}
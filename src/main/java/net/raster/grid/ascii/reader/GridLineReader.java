@@ -0,0 +1,220 @@
+package net.raster.grid.ascii.reader;
+
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Reads the source grid one line at a time into a reusable byte buffer.
+ * ASCII Grid files are plain ASCII text, so each character is stored
+ * as a single byte and no text string is allocated while reading;
+ * line terminators are not stored in the buffer;
+ */
+public abstract class GridLineReader
+{
+    /* --- properties --- */
+    /**
+     * the current line; only the first 'length' bytes are meaningful;
+     */
+    private byte[]          line        = new byte[ 4096 ];
+    /**
+     * number of bytes in current line;
+     */
+    private int             length;
+    /**
+     * true, if the current line has been read and it is available;
+     */
+    private boolean         available;
+    /**
+     * number of lines read so far;
+     */
+    private long            count;
+
+    /* --- reading --- */
+    /**
+     * reads the next line, it replaces the current one;
+     *
+     * @return true, if a line has been read; false, if the end of source has been reached;
+     * @throws IOException if the source cannot be read;
+     */
+    public boolean next()
+            throws
+                IOException
+    {
+        this.length     = 0;
+        this.available  = this.readLine();
+        if ( this.available )
+        {
+            this.count ++ ;
+        }
+        return
+                this.available;
+    }
+
+    /**
+     * moves past the next line without storing it, so its bytes are not copied;
+     * the current line is no longer available;
+     *
+     * @return true, if a line has been skipped; false, if the end of source has been reached;
+     * @throws IOException if the source cannot be read;
+     */
+    public boolean skip()
+            throws
+                IOException
+    {
+        this.length     = 0;
+        boolean skipped = this.skipLine();
+        this.length     = 0;
+        this.available  = false;
+        if ( skipped )
+        {
+            this.count ++ ;
+        }
+        return
+                skipped;
+    }
+
+    /**
+     * reads the next line from the source and stores it via 'append(...)' methods;
+     *
+     * @return true, if a line has been read; false, if the end of source has been reached;
+     * @throws IOException if the source cannot be read;
+     */
+    protected abstract boolean readLine()
+            throws
+                IOException;
+    /**
+     * moves past the next line of the source; by default the line is read and dropped,
+     * readers able to find the line end without copying the line should override it;
+     *
+     * @return true, if a line has been skipped; false, if the end of source has been reached;
+     * @throws IOException if the source cannot be read;
+     */
+    protected boolean skipLine()
+            throws
+                IOException
+    {
+        return
+                this.readLine();
+    }
+
+    /**
+     * appends a single byte to the current line;
+     *
+     * @param value    the byte to append;
+     */
+    protected void append( byte value )
+    {
+        if ( this.length == this.line.length )
+        {
+            this.grow( this.length + 1 );
+        }
+        this.line[ this.length++ ] = value;
+    }
+    /**
+     * appends a range of bytes to the current line;
+     *
+     * @param source    the bytes to append;
+     * @param from      first byte to append;
+     * @param to        byte following the last one to append;
+     */
+    protected void append( byte[] source, int from, int to )
+    {
+        int size = to - from;
+        if ( this.length + size > this.line.length )
+        {
+            this.grow( this.length + size );
+        }
+        System.arraycopy( source, from, this.line, this.length, size );
+        this.length += size;
+    }
+    /**
+     * gets the buffer to fill directly with 'size' bytes;
+     * the caller must commit the written bytes via 'commit(...)';
+     *
+     * @param size    the number of bytes the caller is going to write;
+     * @return the line buffer, the caller writes from position 'getLength()';
+     */
+    protected byte[] reserve( int size )
+    {
+        if ( this.length + size > this.line.length )
+        {
+            this.grow( this.length + size );
+        }
+        return
+                this.line;
+    }
+    /**
+     * commits bytes directly written into the buffer returned by 'reserve(...)';
+     *
+     * @param size    the number of written bytes;
+     */
+    protected void commit( int size )
+    {
+        this.length += size;
+    }
+
+    /* --- getters --- */
+    /**
+     * checks if the current line is available;
+     *
+     * @return true, if the last reading returned a line; false, otherwise;
+     */
+    public boolean isAvailable()
+    {
+        return
+                this.available;
+    }
+    /**
+     * gets the current line buffer;
+     * only the first 'getLength()' bytes are meaningful and
+     * the buffer is reused by the next reading;
+     *
+     * @return the line bytes;
+     */
+    public byte[] getLine()
+    {
+        return
+                this.line;
+    }
+    /**
+     * gets the current line length;
+     *
+     * @return number of bytes in current line;
+     */
+    public int getLength()
+    {
+        return
+                this.length;
+    }
+    /**
+     * gets the number of lines read so far;
+     *
+     * @return number of read lines;
+     */
+    public long getCount()
+    {
+        return
+                this.count;
+    }
+    /**
+     * gets the current line as text string;
+     *
+     * @return the current line;
+     */
+    public String getLineAsText()
+    {
+        return
+                new String( this.line, 0, this.length, StandardCharsets.US_ASCII );
+    }
+
+    /* --- internal methods --- */
+    private void grow( int minimum )
+    {
+        byte[] bigger = new byte[ Math.max( minimum, this.line.length << 1 ) ];
+        System.arraycopy( this.line, 0, bigger, 0, this.length );
+        this.line = bigger;
+    }
+
+}
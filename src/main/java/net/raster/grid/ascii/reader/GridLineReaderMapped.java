@@ -0,0 +1,177 @@
+package net.raster.grid.ascii.reader;
+
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Reads grid lines from a memory mapped file;
+ * bytes are copied straight from the mapping into the line buffer,
+ * without any charset decoding; lines can be terminated by '\n', '\r' or "\r\n"
+ * and they can span over two mapping segments;
+ */
+public class GridLineReaderMapped extends GridLineReader
+{
+    /* --- properties --- */
+    /**
+     * the mapped file;
+     */
+    private final GridMapping   mapping;
+    /**
+     * absolute position following the last byte to read;
+     */
+    private final long          end;
+    /**
+     * absolute position of next byte to read;
+     */
+    private long                position;
+    /**
+     * absolute position of the current line first byte;
+     */
+    private long                lineStart;
+    /**
+     * the segment holding the next byte to read;
+     */
+    private ByteBuffer          segment;
+    /**
+     * absolute position of current segment first byte;
+     */
+    private long                segmentStart;
+
+    /* --- constructors --- */
+    /**
+     * creates new line reader over the whole mapping;
+     *
+     * @param mapping    the mapped file;
+     */
+    public GridLineReaderMapped( GridMapping mapping )
+    {
+        this( mapping, 0, ( mapping != null ) ? mapping.getSize() : 0 );
+    }
+    /**
+     * creates new line reader over a region of the mapping;
+     *
+     * @param mapping    the mapped file;
+     * @param from       absolute position of the first byte to read;
+     * @param to         absolute position following the last byte to read;
+     */
+    public GridLineReaderMapped( GridMapping mapping, long from, long to )
+    {
+        if ( mapping == null )
+        {
+            throw new IllegalArgumentException( "Input mapping is null." );
+        }
+        if ( ( from < 0 ) || ( from > to ) || ( to > mapping.getSize() ) )
+        {
+            throw new IllegalArgumentException( "Invalid mapping region [" + from + ", " + to + ")." );
+        }
+        this.mapping        = mapping;
+        this.position       = from;
+        this.lineStart      = from;
+        this.end            = to;
+        this.segmentStart   = -1;
+    }
+
+    /* --- getters --- */
+    /**
+     * gets the absolute position of the current line first byte;
+     *
+     * @return the line position in the mapping;
+     */
+    public long getLineStart()
+    {
+        return
+                this.lineStart;
+    }
+    /**
+     * gets the absolute position of the next byte to read;
+     *
+     * @return the reading position in the mapping;
+     */
+    public long getPosition()
+    {
+        return
+                this.position;
+    }
+    /**
+     * gets the mapped file;
+     *
+     * @return the mapping;
+     */
+    public GridMapping getMapping()
+    {
+        return
+                this.mapping;
+    }
+
+    /* --- implemented methods --- */
+    @Override
+    protected boolean readLine()
+    {
+        return
+                this.readLine( true );
+    }
+    @Override
+    protected boolean skipLine()
+    {
+        return
+                this.readLine( false );
+    }
+
+    /* --- internal methods --- */
+    /**
+     * moves to the next line, copying it into the line buffer if required;
+     */
+    private boolean readLine( boolean store )
+    {
+        if ( this.position >= this.end )
+        {
+            return
+                    false;
+        }
+        this.lineStart = this.position;
+        while ( this.position < this.end )
+        {
+            /* --- move to the segment holding the position --- */
+            if ( ( this.segmentStart < 0 ) || ( ( this.position - this.segmentStart ) >= this.segment.limit() ) )
+            {
+                this.segment        = this.mapping.getSegment( this.position );
+                this.segmentStart   = this.position & ~GridMapping.SEGMENT_MASK;
+            }
+
+            /* --- look for the line end within the segment --- */
+            ByteBuffer  buffer  = this.segment;
+            int         from    = (int) ( this.position - this.segmentStart );
+            int         limit   = (int) Math.min( buffer.limit(), this.end - this.segmentStart );
+            int         to      = from;
+            byte        c       = 0;
+            while ( ( to < limit ) && ( ( c = buffer.get( to ) ) != '\n' ) && ( c != '\r' ) )
+            {
+                to ++ ;
+            }
+            if ( store && ( to > from ) )
+            {
+                byte[] line = this.reserve( to - from );
+                buffer.position( from );
+                buffer.get( line, this.getLength(), to - from );
+                this.commit( to - from );
+            }
+            this.position = this.segmentStart + to;
+
+            /* --- line end found --- */
+            if ( to < limit )
+            {
+                this.position ++ ;
+                if ( ( c == '\r' ) && ( this.position < this.end ) && ( this.mapping.get( this.position ) == '\n' ) )
+                {
+                    this.position ++ ;
+                }
+                return
+                        true;
+            }
+        }
+        return
+                true;
+    }
+
+}
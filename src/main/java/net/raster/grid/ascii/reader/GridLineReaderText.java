@@ -0,0 +1,149 @@
+package net.raster.grid.ascii.reader;
+
+
+import net.raster.grid.ascii.GridInvalidException;
+
+import java.io.IOException;
+import java.io.Reader;
+
+
+/**
+ * Reads grid lines from a character stream;
+ * characters are read in chunks, without any intermediate
+ * buffered reader, and narrowed to ASCII bytes;
+ * lines can be terminated by '\n', '\r' or "\r\n";
+ */
+public class GridLineReaderText extends GridLineReader
+{
+    /* --- properties --- */
+    /**
+     * the source grid reader;
+     */
+    private final Reader    reader;
+    /**
+     * chunk of characters read from source;
+     */
+    private final char[]    chunk       = new char[ 1 << 16 ];
+    /**
+     * next character to handle in chunk;
+     */
+    private int             position;
+    /**
+     * number of valid characters in chunk;
+     */
+    private int             limit;
+    /**
+     * true, if the previous line ended with '\r' so a following '\n' has to be skipped;
+     */
+    private boolean         skipLF;
+
+    /* --- constructor --- */
+    /**
+     * creates new line reader;
+     *
+     * @param reader    the source grid reader;
+     */
+    public GridLineReaderText( Reader reader )
+    {
+        if ( reader == null )
+        {
+            throw new IllegalArgumentException( "Input reader is null." );
+        }
+        this.reader = reader;
+    }
+
+    /* --- implemented methods --- */
+    @Override
+    protected boolean readLine()
+            throws
+                IOException
+    {
+        return
+                this.readLine( true );
+    }
+    @Override
+    protected boolean skipLine()
+            throws
+                IOException
+    {
+        return
+                this.readLine( false );
+    }
+
+    /* --- internal methods --- */
+    /**
+     * moves to the next line, copying it into the line buffer if required;
+     * skipped lines are not checked for non ASCII characters;
+     */
+    private boolean readLine( boolean store )
+            throws
+                IOException
+    {
+        boolean found = false;
+        for ( ; ; )
+        {
+            if ( this.position >= this.limit )
+            {
+                this.position   = 0;
+                this.limit      = this.reader.read( this.chunk, 0, this.chunk.length );
+                if ( this.limit <= 0 )
+                {
+                    this.limit  = 0;
+                    return
+                            found;
+                }
+            }
+            if ( this.skipLF )
+            {
+                this.skipLF = false;
+                if ( this.chunk[ this.position ] == '\n' )
+                {
+                    this.position ++ ;
+                    continue;
+                }
+            }
+
+            /* --- copy characters up to the line end --- */
+            int     from    = this.position;
+            int     to      = this.position;
+            char[]  source  = this.chunk;
+            int     limit   = this.limit;
+            char    c       = 0;
+            while ( ( to < limit ) && ( ( c = source[ to ] ) != '\n' ) && ( c != '\r' ) )
+            {
+                to ++ ;
+            }
+            if ( store && ( to > from ) )
+            {
+                byte[]  line    = this.reserve( to - from );
+                int     offset  = this.getLength();
+                for ( int i = from; i < to; i++ )
+                {
+                    char value = source[ i ];
+                    if ( value > 0x7F )
+                    {
+                        throw
+                                new GridInvalidException
+                                        (
+                                                String.format( "Invalid grid. At line %d found the non ASCII character '%c'.", this.getCount() + 1, value )
+                                        );
+                    }
+                    line[ offset++ ] = (byte) value;
+                }
+                this.commit( to - from );
+            }
+            found = true;
+
+            /* --- line end found --- */
+            if ( to < limit )
+            {
+                this.position   = to + 1;
+                this.skipLF     = ( c == '\r' );
+                return
+                        true;
+            }
+            this.position = to;
+        }
+    }
+
+}
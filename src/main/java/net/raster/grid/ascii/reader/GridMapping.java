@@ -0,0 +1,140 @@
+package net.raster.grid.ascii.reader;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * A grid file mapped in memory;
+ * since a single mapping cannot exceed 2 GB, the file is mapped
+ * in segments of fixed size; positions are absolute offsets from
+ * the beginning of the mapped region;
+ */
+public class GridMapping
+{
+    /* --- properties --- */
+    /**
+     * the mapped segments;
+     */
+    private final MappedByteBuffer[]    segments;
+    /**
+     * total mapped bytes;
+     */
+    private final long                  size;
+
+    /* --- static properties --- */
+    /**
+     * bits of segment size;
+     */
+    static final int                    SEGMENT_BITS    = 30;
+    /**
+     * size of each segment, but the last one;
+     */
+    static final long                   SEGMENT_SIZE    = 1L << SEGMENT_BITS;
+    /**
+     * mask to get the position inside a segment;
+     */
+    static final long                   SEGMENT_MASK    = SEGMENT_SIZE - 1;
+
+    /* --- constructors --- */
+    /**
+     * maps a file in read only mode, from the current channel position to its end;
+     * the mapping stays valid even after the channel has been closed;
+     *
+     * @param channel    the file to map;
+     * @return the file mapping;
+     * @throws IOException if the file cannot be mapped;
+     */
+    public static GridMapping map( FileChannel channel )
+            throws
+                IOException
+    {
+        if ( channel == null )
+        {
+            throw new IllegalArgumentException( "Input channel is null." );
+        }
+        long                start       = channel.position();
+        long                size        = Math.max( 0, channel.size() - start );
+        int                 count       = (int) ( ( size + SEGMENT_MASK ) >>> SEGMENT_BITS );
+        MappedByteBuffer[]  segments    = new MappedByteBuffer[ count ];
+        for ( int i = 0; i < count; i++ )
+        {
+            long offset = (long) i << SEGMENT_BITS;
+            segments[ i ] = channel.map
+                    (
+                            FileChannel.MapMode.READ_ONLY,
+                            start + offset,
+                            Math.min( SEGMENT_SIZE, size - offset )
+                    );
+        }
+        return
+                new GridMapping( segments, size );
+    }
+    private GridMapping( MappedByteBuffer[] segments, long size )
+    {
+        this.segments   = segments;
+        this.size       = size;
+    }
+
+    /* --- getters --- */
+    /**
+     * gets the number of mapped bytes;
+     *
+     * @return the mapping size;
+     */
+    public long getSize()
+    {
+        return
+                this.size;
+    }
+    /**
+     * gets a single byte;
+     *
+     * @param position    absolute byte position;
+     * @return the byte value;
+     */
+    public byte get( long position )
+    {
+        return
+                this.segments[ (int) ( position >>> SEGMENT_BITS ) ].get( (int) ( position & SEGMENT_MASK ) );
+    }
+    /**
+     * gets an independent view of the mapped bytes in a region;
+     * the view ends at 'to' or at the end of the segment holding 'from',
+     * whichever comes first;
+     *
+     * @param from    absolute position of the first byte;
+     * @param to      absolute position following the last byte;
+     * @return the view, positioned on 'from';
+     */
+    public ByteBuffer view( long from, long to )
+    {
+        if ( ( from < 0 ) || ( from >= to ) || ( to > this.size ) )
+        {
+            throw new IllegalArgumentException( "Invalid mapping region [" + from + ", " + to + ")." );
+        }
+        ByteBuffer  view    = this.getSegment( from );
+        int         start   = (int) ( from & SEGMENT_MASK );
+        view.limit( (int) Math.min( view.limit(), start + ( to - from ) ) );
+        view.position( start );
+        return
+                view;
+    }
+    /**
+     * gets the segment holding a given position;
+     * the returned buffer is independent, so it can be used by a single thread
+     * without interfering with others;
+     *
+     * @param position    absolute byte position;
+     * @return the segment view;
+     */
+    ByteBuffer getSegment( long position )
+    {
+        return
+                this.segments[ (int) ( position >>> SEGMENT_BITS ) ].duplicate();
+    }
+
+}
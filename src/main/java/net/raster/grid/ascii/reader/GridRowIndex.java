@@ -0,0 +1,297 @@
+package net.raster.grid.ascii.reader;
+
+
+import net.raster.grid.ascii.GridInvalidException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+
+/**
+ * The position of each grid row in a grid file, to read any row
+ * without reading the rows above it;
+ * the index is built by a single scan looking for line ends, and it can
+ * be saved to a small file, where positions are stored as differences
+ * between consecutive rows; the index keeps the size and the modification
+ * time of the grid file it was built for, to detect a changed grid;
+ */
+public class GridRowIndex
+{
+    /* --- static properties --- */
+    /**
+     * the first bytes of an index file, "GRIX", and its format version;
+     */
+    private static final int    MAGIC       = 0x47524958;
+    private static final int    VERSION     = 1;
+    /**
+     * each byte of a word set to the line end characters, and the masks to find a zero byte;
+     */
+    private static final long   LF          = 0x0A0A0A0A0A0A0A0AL;
+    private static final long   CR          = 0x0D0D0D0D0D0D0D0DL;
+    private static final long   LOW_BITS    = 0x0101010101010101L;
+    private static final long   HIGH_BITS   = 0x8080808080808080L;
+
+    /* --- properties --- */
+    /**
+     * size of the grid file;
+     */
+    private final long      size;
+    /**
+     * modification time of the grid file, in milliseconds;
+     */
+    private final long      modified;
+    /**
+     * position of the first byte of each row;
+     */
+    private final long[]    offsets;
+
+    /* --- constructors --- */
+    private GridRowIndex( long size, long modified, long[] offsets )
+    {
+        this.size       = size;
+        this.modified   = modified;
+        this.offsets    = offsets;
+    }
+
+    /**
+     * builds the index of a mapped grid file;
+     * lines following the last grid row are not checked;
+     *
+     * @param mapping     the mapped grid file;
+     * @param start       position of the first grid row;
+     * @param rows        total rows in grid;
+     * @param modified    modification time of the grid file, in milliseconds;
+     * @return the index;
+     * @throws GridInvalidException if the grid has less rows than expected;
+     */
+    public static GridRowIndex scan( GridMapping mapping, long start, int rows, long modified )
+            throws
+                GridInvalidException
+    {
+        long[]  offsets = new long[ rows ];
+        long    end     = mapping.getSize();
+        long    p       = start;
+        int     found   = 0;
+        while ( ( found < rows ) && ( p < end ) )
+        {
+            offsets[ found++ ] = p;
+            p = GridRowIndex.lineEnd( mapping, p, end );
+        }
+        if ( found < rows )
+        {
+            throw
+                    new GridInvalidException
+                            (
+                                    String.format( "Invalid grid. Expected %d rows, but found %d rows.", rows, found )
+                            );
+        }
+        return
+                new GridRowIndex( mapping.getSize(), modified, offsets );
+    }
+
+    /**
+     * reads the index file of a grid file;
+     * the file is checked against the grid before any row position is
+     * read, and each row position must follow the previous one within
+     * the grid file, so a file built for another grid is rejected;
+     *
+     * @param file        the index file;
+     * @param size        the size of the grid file;
+     * @param modified    the modification time of the grid file, in milliseconds;
+     * @param rows        total rows in grid;
+     * @return the index;
+     * @throws IOException if the file cannot be read, it is not an index file, or it was not built for the grid file;
+     */
+    public static GridRowIndex read( Path file, long size, long modified, int rows )
+            throws
+                IOException
+    {
+        try ( DataInputStream in = new DataInputStream( new BufferedInputStream( Files.newInputStream( file ) ) ) )
+        {
+            if ( ( in.readInt() != MAGIC ) || ( in.readInt() != VERSION ) )
+            {
+                throw
+                        new IOException( "The file '" + file + "' is not a grid row index." );
+            }
+            if ( ( in.readLong() != size ) || ( in.readLong() != modified ) || ( in.readInt() != rows ) )
+            {
+                throw
+                        new IOException( "The file '" + file + "' is not the row index of the grid." );
+            }
+            long[]  offsets     = new long[ rows ];
+            long    offset      = 0;
+            for ( int row = 0; row < rows; row++ )
+            {
+                /* --- unsigned variable length number: 7 bits per byte, high bit set if more bytes follow --- */
+                long    delta   = 0;
+                int     shift   = 0;
+                int     b;
+                do
+                {
+                    if ( shift > 56 )
+                    {
+                        throw
+                                new IOException( "The file '" + file + "' is not a grid row index." );
+                    }
+                    b       = in.readUnsignedByte();
+                    delta   |= (long) ( b & 0x7F ) << shift;
+                    shift   += 7;
+                }
+                while ( ( b & 0x80 ) != 0 );
+
+                /* --- rows follow each other within the grid file --- */
+                if ( ( ( delta == 0 ) && ( row > 0 ) ) || ( delta >= size - offset ) )
+                {
+                    throw
+                            new IOException( "The file '" + file + "' is not the row index of the grid: row " + row + " is out of place." );
+                }
+                offset          += delta;
+                offsets[ row ]  = offset;
+            }
+            return
+                    new GridRowIndex( size, modified, offsets );
+        }
+    }
+
+    /* --- writers --- */
+    /**
+     * writes the index to a file; the file is replaced only once it has been fully written;
+     *
+     * @param file    the index file;
+     * @throws IOException if the file cannot be written;
+     */
+    public void write( Path file )
+            throws
+                IOException
+    {
+        Path temp = file.resolveSibling( file.getFileName() + ".tmp" );
+        try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( temp ) ) ) )
+        {
+            out.writeInt( MAGIC );
+            out.writeInt( VERSION );
+            out.writeLong( this.size );
+            out.writeLong( this.modified );
+            out.writeInt( this.offsets.length );
+            long previous = 0;
+            for ( long offset : this.offsets )
+            {
+                long delta = offset - previous;
+                while ( ( delta & ~0x7FL ) != 0 )
+                {
+                    out.writeByte( (int) ( delta & 0x7F ) | 0x80 );
+                    delta >>>= 7;
+                }
+                out.writeByte( (int) delta );
+                previous = offset;
+            }
+        }
+        Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING );
+    }
+
+    /* --- getters --- */
+    /**
+     * gets the position of a row in the grid file;
+     *
+     * @param row    the row, starting from zero at north;
+     * @return the position of the row first byte;
+     * @throws IndexOutOfBoundsException if the row is not in grid;
+     */
+    public long getOffset( int row )
+            throws
+                IndexOutOfBoundsException
+    {
+        if ( ( row < 0 ) || ( row >= this.offsets.length ) )
+        {
+            throw
+                    new IndexOutOfBoundsException( "Row " + row + " out of grid of " + this.offsets.length + " rows." );
+        }
+        return
+                this.offsets[ row ];
+    }
+    /**
+     * gets the number of indexed rows;
+     *
+     * @return number of rows;
+     */
+    public int getRows()
+    {
+        return
+                this.offsets.length;
+    }
+    /**
+     * checks whether the index was built for a grid file;
+     *
+     * @param size        the size of the grid file;
+     * @param modified    the modification time of the grid file, in milliseconds;
+     * @return true, if the index is valid for the grid file;
+     */
+    public boolean matches( long size, long modified )
+    {
+        return
+                ( this.size == size ) && ( this.modified == modified );
+    }
+
+    /* --- internal methods --- */
+    /**
+     * finds the beginning of the line following a position;
+     * eight bytes at a time are checked for line end characters;
+     *
+     * @return the position following the line end, or the end of mapping;
+     */
+    private static long lineEnd( GridMapping mapping, long position, long end )
+    {
+        long p = position;
+        while ( p < end )
+        {
+            ByteBuffer  segment = mapping.getSegment( p );
+            long        base    = p & ~GridMapping.SEGMENT_MASK;
+            int         i       = (int) ( p - base );
+            int         limit   = (int) Math.min( segment.limit(), end - base );
+
+            while ( i < limit )
+            {
+                /* --- skip a word without line ends --- */
+                if ( i + 8 <= limit )
+                {
+                    long word   = segment.getLong( i );
+                    long lf     = word ^ LF;
+                    long cr     = word ^ CR;
+                    long zero   = ( ( lf - LOW_BITS ) & ~lf ) | ( ( cr - LOW_BITS ) & ~cr );
+                    if ( ( zero & HIGH_BITS ) == 0 )
+                    {
+                        i += 8;
+                        continue;
+                    }
+                }
+
+                /* --- look for the line end byte by byte --- */
+                for ( int stop = Math.min( limit, i + 8 ); i < stop; )
+                {
+                    byte c = segment.get( i++ );
+                    if ( c == '\n' )
+                    {
+                        return
+                                base + i;
+                    }
+                    if ( c == '\r' )
+                    {
+                        long next = base + i;
+                        return
+                                ( ( next < end ) && ( mapping.get( next ) == '\n' ) ) ? next + 1 : next;
+                    }
+                }
+            }
+            p = base + i;
+        }
+        return
+                end;
+    }
+
+}
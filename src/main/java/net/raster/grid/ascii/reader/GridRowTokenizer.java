@@ -0,0 +1,130 @@
+package net.raster.grid.ascii.reader;
+
+
+
+/**
+ * Splits a grid line into its cells;
+ * any ASCII control character or space is a separator, leading and
+ * trailing separators are ignored; the tokenizer only stores the
+ * position of each cell within the line, so neither text strings
+ * nor regular expressions are involved; arrays are reused row after row;
+ */
+public class GridRowTokenizer
+{
+    /* --- properties --- */
+    /**
+     * position of first byte of each cell;
+     */
+    private int[]   starts  = new int[ 256 ];
+    /**
+     * position following the last byte of each cell;
+     */
+    private int[]   ends    = new int[ 256 ];
+    /**
+     * number of cells found in last tokenized line;
+     */
+    private int     count;
+
+    /* --- tokenizer --- */
+    /**
+     * finds the cells in a grid line;
+     *
+     * @param line      the line bytes;
+     * @param length    number of meaningful bytes in line;
+     * @return the number of found cells;
+     */
+    public int tokenize( byte[] line, int length )
+    {
+        int[]   begin   = this.starts;
+        int[]   end     = this.ends;
+        int     found   = 0;
+        int     i       = 0;
+        for ( ; ; )
+        {
+            while ( ( i < length ) && isSeparator( line[ i ] ) )
+            {
+                i ++ ;
+            }
+            if ( i >= length )
+            {
+                break;
+            }
+            if ( found == begin.length )
+            {
+                begin   = this.grow();
+                end     = this.ends;
+            }
+            begin[ found ] = i;
+            while ( ( i < length ) && ! isSeparator( line[ i ] ) )
+            {
+                i ++ ;
+            }
+            end[ found++ ] = i;
+        }
+        this.count = found;
+        return
+                found;
+    }
+
+    /* --- getters --- */
+    /**
+     * gets the number of cells found in last tokenized line;
+     *
+     * @return the number of cells;
+     */
+    public int getCount()
+    {
+        return
+                this.count;
+    }
+    /**
+     * gets the position of the first byte of a cell;
+     *
+     * @param index    the cell index, starting from zero;
+     * @return the cell start position;
+     */
+    public int getStart( int index )
+    {
+        return
+                this.starts[ index ];
+    }
+    /**
+     * gets the position following the last byte of a cell;
+     *
+     * @param index    the cell index, starting from zero;
+     * @return the cell end position;
+     */
+    public int getEnd( int index )
+    {
+        return
+                this.ends[ index ];
+    }
+
+    /* --- static methods --- */
+    /**
+     * checks if a byte separates cells;
+     *
+     * @param value    the byte to check;
+     * @return true, if the byte is a white space or a control character; false, otherwise;
+     */
+    public static boolean isSeparator( byte value )
+    {
+        return
+                ( value >= 0 ) && ( value <= ' ' );
+    }
+
+    /* --- internal methods --- */
+    private int[] grow()
+    {
+        int     size    = this.starts.length << 1;
+        int[]   starts  = new int[ size ];
+        int[]   ends    = new int[ size ];
+        System.arraycopy( this.starts, 0, starts, 0, this.starts.length );
+        System.arraycopy( this.ends,   0, ends,   0, this.ends.length );
+        this.starts = starts;
+        this.ends   = ends;
+        return
+                starts;
+    }
+
+}
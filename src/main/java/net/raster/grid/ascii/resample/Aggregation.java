@@ -0,0 +1,102 @@
+package net.raster.grid.ascii.resample;
+
+
+import java.util.Arrays;
+
+
+/**
+ * Rules combining the cells of a block into a single coarser cell;
+ * NODATA cells are never given to the rule;
+ */
+public enum Aggregation
+{
+    MEAN
+            {
+                @Override
+                double reduce( double[] cells, int count )
+                {
+                    return
+                            SUM.reduce( cells, count ) / count;
+                }
+            },
+    SUM
+            {
+                @Override
+                double reduce( double[] cells, int count )
+                {
+                    double sum = 0;
+                    for ( int i = 0; i < count; i++ )
+                    {
+                        sum += cells[ i ];
+                    }
+                    return
+                            sum;
+                }
+            },
+    MIN
+            {
+                @Override
+                double reduce( double[] cells, int count )
+                {
+                    double min = cells[ 0 ];
+                    for ( int i = 1; i < count; i++ )
+                    {
+                        min = Math.min( min, cells[ i ] );
+                    }
+                    return
+                            min;
+                }
+            },
+    MAX
+            {
+                @Override
+                double reduce( double[] cells, int count )
+                {
+                    double max = cells[ 0 ];
+                    for ( int i = 1; i < count; i++ )
+                    {
+                        max = Math.max( max, cells[ i ] );
+                    }
+                    return
+                            max;
+                }
+            },
+    /**
+     * the most frequent value; the smallest one among equally frequent values;
+     */
+    MODE
+            {
+                @Override
+                double reduce( double[] cells, int count )
+                {
+                    Arrays.sort( cells, 0, count );
+                    double  mode    = cells[ 0 ];
+                    int     best    = 0;
+                    for ( int i = 0, j; i < count; i = j )
+                    {
+                        for ( j = i + 1; ( j < count ) && ( cells[ j ] == cells[ i ] ); j++ )
+                        {
+                            /* skip equal values */
+                        }
+                        if ( j - i > best )
+                        {
+                            best    = j - i;
+                            mode    = cells[ i ];
+                        }
+                    }
+                    return
+                            mode;
+                }
+            };
+
+    /* --- reduction --- */
+    /**
+     * combines the available cells of a block;
+     *
+     * @param cells    the cells, not NODATA; the array can be changed;
+     * @param count    number of cells, at least one;
+     * @return the block value;
+     */
+    abstract double reduce( double[] cells, int count );
+
+}
@@ -0,0 +1,265 @@
+package net.raster.grid.ascii.resample;
+
+
+import net.raster.grid.ascii.RasterGridAscii;
+import net.raster.grid.ascii.header.RasterHeader;
+import net.raster.grid.ascii.header.value.RasterTokenValue;
+import net.raster.grid.ascii.reader.GridBodyReader;
+import net.raster.grid.ascii.writer.GridDerivedWriter;
+import net.raster.grid.ascii.writer.GridRowBuffer;
+import net.raster.grid.ascii.writer.GridSink;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+
+/**
+ * Writes a coarser grid, each cell combining a square block of source cells;
+ * the grid body is read once, keeping in memory only a band of as many
+ * rows as the block size;
+ * the output header keeps the north-west corner of the source grid;
+ * when the grid size is not a multiple of the block size, blocks on the
+ * eastern and southern edges hold fewer cells;
+ */
+public class GridAggregation extends GridDerivedWriter< Aggregation >
+{
+    /* --- properties --- */
+    /**
+     * the parsed source grid; its body is read once;
+     */
+    private final RasterGridAscii   grid;
+    /**
+     * number of source cells on each side of a block;
+     */
+    private final int               factor;
+    /**
+     * largest fraction of NODATA cells in a block still giving a value;
+     */
+    private double                  maxNoData   = 1;
+
+    /* --- constructor --- */
+    /**
+     * creates new aggregation on a parsed grid;
+     *
+     * @param grid      the source grid;
+     * @param factor    number of source cells on each side of a block;
+     * @throws IllegalArgumentException if the grid is not defined or the factor is not positive;
+     */
+    public GridAggregation( RasterGridAscii grid, int factor )
+            throws
+                IllegalArgumentException
+    {
+        super( GridAggregation.outputHeader( grid, factor ) );
+        this.grid   = grid;
+        this.factor = factor;
+    }
+
+    /* --- setters and getters --- */
+    /**
+     * defines when a block is written as NODATA;
+     * by default only blocks made of NODATA cells are;
+     * for a majority rule, use 0.5: blocks with more NODATA cells than
+     * valid cells are written as NODATA;
+     *
+     * @param fraction    largest fraction of NODATA cells in a block still giving a value;
+     * @throws IllegalArgumentException if the fraction is not between zero and one;
+     */
+    public void setMaxNoData( double fraction ) throws IllegalArgumentException
+    {
+        if ( ! ( ( fraction >= 0 ) && ( fraction <= 1 ) ) )
+        {
+            throw
+                    new IllegalArgumentException( "The NODATA fraction must be between 0 and 1." );
+        }
+        this.maxNoData = fraction;
+    }
+
+    /* --- writers --- */
+    /**
+     * writes the coarser grid, header included, to a grid sink;
+     * the sink is flushed at the end;
+     *
+     * @param sink           grid destination;
+     * @param aggregation    the rule combining the cells of each block;
+     * @throws IOException if the grid cannot be read or written, or it is not valid;
+     * @throws IllegalArgumentException if the rule is not defined;
+     */
+    @Override
+    public void write( GridSink sink, Aggregation aggregation )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        if ( aggregation == null )
+        {
+            throw
+                    new IllegalArgumentException( "Aggregation rule not defined." );
+        }
+        GridRowBuffer       buffer      = this.writeHeader( sink );
+
+        /* --- source NODATA --- */
+        GridBodyReader      body        = this.grid.getBodyReader();
+        RasterTokenValue    source      = this.grid.getNoDataValue();
+        boolean             defined     = ( source != null );
+        double              empty       = defined ? source.getValueAsNumber().doubleValue() : Double.NaN;
+
+        /* --- a band of source rows for each output row --- */
+        int                 factor      = this.factor;
+        int                 cols        = body.getCols();
+        int                 outCols     = (Integer) this.getHeader().getNCols().getValueAsNumber();
+        double[][]          band        = new double[ factor ][ cols ];
+        double[]            cells       = new double[ factor * factor ];
+        while ( true )
+        {
+            int height = 0;
+            while ( ( height < factor ) && body.next() )
+            {
+                body.parse( band[ height++ ], 0 );
+            }
+            if ( height == 0 )
+            {
+                break;
+            }
+
+            buffer.reset();
+            for ( int block = 0; block < outCols; block++ )
+            {
+                int from    = block * factor;
+                int to      = Math.min( cols, from + factor );
+                int count   = 0;
+                int missing = 0;
+                for ( int i = 0; i < height; i++ )
+                {
+                    double[] row = band[ i ];
+                    for ( int col = from; col < to; col++ )
+                    {
+                        double value = row[ col ];
+                        if ( ( defined && ( value == empty ) ) || Double.isNaN( value ) )
+                        {
+                            missing ++ ;
+                        }
+                        else
+                        {
+                            cells[ count++ ] = value;
+                        }
+                    }
+                }
+
+                if ( block > 0 )
+                {
+                    buffer.append( (byte) ' ' );
+                }
+                buffer.appendCell
+                        (
+                                ( ( count == 0 ) || ( missing > this.maxNoData * ( count + missing ) ) )
+                                ? Double.NaN
+                                : aggregation.reduce( cells, count )
+                        );
+            }
+            buffer.append( (byte) '\n' );
+            buffer.writeTo( sink );
+        }
+
+        sink.flush();
+    }
+
+    /* --- internal methods --- */
+    /**
+     * checks the source grid and the factor, and computes the output header;
+     */
+    private static RasterHeader outputHeader( RasterGridAscii grid, int factor )
+            throws
+                IllegalArgumentException
+    {
+        if ( grid == null )
+        {
+            throw
+                    new IllegalArgumentException( "Source grid not defined." );
+        }
+        if ( factor < 1 )
+        {
+            throw
+                    new IllegalArgumentException( "The aggregation factor must be positive." );
+        }
+        return
+                GridAggregation.coarse( grid.getHeader(), factor );
+    }
+
+    /**
+     * computes the header of the coarser grid;
+     * the northern and western edges are kept, so the southern edge
+     * moves when the source rows are not a multiple of the factor;
+     * numbers are computed in decimal from the header text, so the
+     * new values are plain decimals without binary rounding noise;
+     */
+    static RasterHeader coarse( RasterHeader source, int factor )
+    {
+        RasterHeader    header  = source.copy();
+        int             cols    = (Integer) source.getNCols().getValueAsNumber();
+        int             rows    = (Integer) source.getNRows().getValueAsNumber();
+        int             outCols = ( cols + factor - 1 ) / factor;
+        int             outRows = ( rows + factor - 1 ) / factor;
+        header.setSize( outCols, outRows );
+        if ( factor == 1 )
+        {
+            return
+                    header;
+        }
+
+        /* --- cell size --- */
+        boolean         square  = source.isCellSquare();
+        BigDecimal      dx      = new BigDecimal( ( square ? source.getCellSize() : source.getDX() ).getValueAsText() );
+        BigDecimal      dy      = new BigDecimal( ( square ? source.getCellSize() : source.getDY() ).getValueAsText() );
+        BigDecimal      times   = BigDecimal.valueOf( factor );
+        if ( square )
+        {
+            header.setCellSize( GridAggregation.plain( dx.multiply( times ) ) );
+        }
+        else
+        {
+            header.setCellSize( GridAggregation.plain( dx.multiply( times ) ), GridAggregation.plain( dy.multiply( times ) ) );
+        }
+
+        /* --- origin, moved by whole source cells --- */
+        BigDecimal      south   = BigDecimal.valueOf( (long) rows - (long) outRows * factor );
+        if ( source.isCorner() )
+        {
+            if ( outRows * factor != rows )
+            {
+                header.setCorner
+                        (
+                                source.getXllCorner().getValueAsText(),
+                                GridAggregation.move( source.getYllCorner(), south, dy )
+                        );
+            }
+        }
+        else
+        {
+            BigDecimal half = BigDecimal.valueOf( factor - 1 ).divide( BigDecimal.valueOf( 2 ) );
+            header.setCenter
+                    (
+                            GridAggregation.move( source.getXllCenter(), half, dx ),
+                            GridAggregation.move( source.getYllCenter(), south.add( half ), dy )
+                    );
+        }
+        return
+                header;
+    }
+    /**
+     * moves a header coordinate by a number of cells, in decimal;
+     */
+    private static String move( RasterTokenValue value, BigDecimal cells, BigDecimal size )
+    {
+        return
+                GridAggregation.plain( new BigDecimal( value.getValueAsText() ).add( cells.multiply( size ) ) );
+    }
+    /**
+     * writes a decimal number in plain notation, without trailing zeros;
+     */
+    private static String plain( BigDecimal value )
+    {
+        return
+                value.stripTrailingZeros().toPlainString();
+    }
+
+}
@@ -0,0 +1,258 @@
+package net.raster.grid.ascii.resample;
+
+
+import net.raster.grid.ascii.RasterGridAscii;
+import net.raster.grid.ascii.header.RasterHeader;
+import net.raster.grid.ascii.reader.GridBodyReader;
+import net.raster.grid.ascii.reader.GridRowTokenizer;
+import net.raster.grid.ascii.writer.GridRowBuffer;
+import net.raster.grid.ascii.writer.GridSink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+
+
+/**
+ * Writes the cells of a grid covering a bounding box in world coordinates;
+ * cells partially covered by the box are included;
+ * rows above the box are skipped without being split in cells, or they
+ * are not read at all using the grid row index; reading stops at the
+ * last row of the box, so rows below the box are neither read nor checked;
+ * cells are written with their original text, without being parsed;
+ */
+public class GridCrop
+{
+    /* --- static properties --- */
+    /**
+     * tolerance on the box edges, as fraction of the cell size;
+     */
+    private static final double TOLERANCE   = 1e-9;
+
+    /* --- properties --- */
+    /**
+     * the parsed source grid; its body is read once;
+     */
+    private final RasterGridAscii   grid;
+    /**
+     * the output header;
+     */
+    private final RasterHeader      header;
+    /**
+     * the window: first row and column, and the ones following the last row and column;
+     */
+    private final int               rowFrom;
+    private final int               rowTo;
+    private final int               colFrom;
+    private final int               colTo;
+    /**
+     * true, to reach the first window row via the grid row index;
+     */
+    private boolean                 indexed     = false;
+
+    /* --- constructor --- */
+    /**
+     * creates new crop on a parsed grid;
+     *
+     * @param grid     the source grid;
+     * @param west     the smallest x coordinate of the box;
+     * @param south    the smallest y coordinate of the box;
+     * @param east     the largest x coordinate of the box;
+     * @param north    the largest y coordinate of the box;
+     * @throws IllegalArgumentException if the grid is not defined, or the box does not overlap the grid;
+     */
+    public GridCrop( RasterGridAscii grid, double west, double south, double east, double north )
+            throws
+                IllegalArgumentException
+    {
+        if ( grid == null )
+        {
+            throw
+                    new IllegalArgumentException( "Source grid not defined." );
+        }
+        if ( ! ( ( west < east ) && ( south < north ) ) )
+        {
+            throw
+                    new IllegalArgumentException( "The bounding box is empty." );
+        }
+        RasterHeader    source  = grid.getHeader();
+        int             cols    = (Integer) source.getNCols().getValueAsNumber();
+        int             rows    = (Integer) source.getNRows().getValueAsNumber();
+        double          dx      = source.getCellWidth();
+        double          dy      = source.getCellHeight();
+        double          left    = source.getWest();
+        double          top     = source.getSouth() + rows * dy;
+
+        /* --- cells touched by the box, rows from north --- */
+        this.colFrom    = (int) Math.max( 0,    Math.floor( ( west  - left ) / dx + TOLERANCE ) );
+        this.colTo      = (int) Math.min( cols, Math.ceil(  ( east  - left ) / dx - TOLERANCE ) );
+        this.rowFrom    = (int) Math.max( 0,    Math.floor( ( top - north )  / dy + TOLERANCE ) );
+        this.rowTo      = (int) Math.min( rows, Math.ceil(  ( top - south )  / dy - TOLERANCE ) );
+        if ( ( this.colFrom >= this.colTo ) || ( this.rowFrom >= this.rowTo ) )
+        {
+            throw
+                    new IllegalArgumentException( "The bounding box does not overlap the grid." );
+        }
+        this.grid   = grid;
+        this.header = source.copy();
+
+        /* --- window header: size and lower left position, moved in decimal from the header text --- */
+        this.header.setSize( this.colTo - this.colFrom, this.rowTo - this.rowFrom );
+        boolean         square  = source.isCellSquare();
+        boolean         corner  = source.isCorner();
+        String          x       = ( corner ? source.getXllCorner() : source.getXllCenter() ).getValueAsText();
+        String          y       = ( corner ? source.getYllCorner() : source.getYllCenter() ).getValueAsText();
+        if ( this.colFrom > 0 )
+        {
+            x = GridCrop.move( x, this.colFrom, ( square ? source.getCellSize() : source.getDX() ).getValueAsText() );
+        }
+        if ( this.rowTo < rows )
+        {
+            y = GridCrop.move( y, rows - this.rowTo, ( square ? source.getCellSize() : source.getDY() ).getValueAsText() );
+        }
+        if ( corner )
+        {
+            this.header.setCorner( x, y );
+        }
+        else
+        {
+            this.header.setCenter( x, y );
+        }
+    }
+
+    /* --- setters and getters --- */
+    /**
+     * defines whether the first window row is reached via the grid row index,
+     * so rows above the window are not read at all;
+     * the index is built by a first scan of the grid, and it is kept in
+     * a file next to the grid for the following crops;
+     * the grid must have been parsed from a file;
+     *
+     * @param indexed    true, to use the row index;
+     * @see RasterGridAscii#getRowIndex()
+     */
+    public void setIndexed( boolean indexed )
+    {
+        this.indexed = indexed;
+    }
+    /**
+     * gets the output header;
+     *
+     * @return the output header;
+     */
+    public RasterHeader getHeader()
+    {
+        return
+                this.header;
+    }
+    /**
+     * gets the first source row in window;
+     *
+     * @return the row index, from zero at north;
+     */
+    public int getRowFrom()
+    {
+        return
+                this.rowFrom;
+    }
+    /**
+     * gets the first source column in window;
+     *
+     * @return the column index, from zero at west;
+     */
+    public int getColFrom()
+    {
+        return
+                this.colFrom;
+    }
+
+    /* --- writers --- */
+    /**
+     * writes the window, header included;
+     *
+     * @param writer    grid destination;
+     * @throws IOException if the grid cannot be read or written, or it is not valid;
+     */
+    public void write( Writer writer )
+            throws
+                IOException
+    {
+        this.write( GridSink.of( writer ) );
+    }
+    /**
+     * writes the window, header included, as ASCII bytes;
+     * the stream is flushed but not closed;
+     *
+     * @param stream    grid destination;
+     * @throws IOException if the grid cannot be read or written, or it is not valid;
+     */
+    public void write( OutputStream stream )
+            throws
+                IOException
+    {
+        this.write( GridSink.of( stream ) );
+    }
+    /**
+     * writes the window, header included, to a grid sink;
+     * the sink is flushed at the end;
+     *
+     * @param sink    grid destination;
+     * @throws IOException if the grid cannot be read or written, or it is not valid;
+     */
+    public void write( GridSink sink )
+            throws
+                IOException
+    {
+        sink.write( this.header );
+
+        GridBodyReader              body        = this.indexed ? this.grid.getBodyReader( this.rowFrom ) : this.grid.getBodyReader();
+        GridRowTokenizer            tokenizer   = body.getTokenizer();
+        RasterHeader.NoDataReplace  replacer    = body.getReplacer();
+        GridRowBuffer               buffer      = new GridRowBuffer();
+        while ( body.getRow() + 1 < this.rowFrom )
+        {
+            body.skip();
+        }
+        for ( int row = this.rowFrom; row < this.rowTo; row++ )
+        {
+            body.next();
+            byte[] line = body.getLine();
+            buffer.reset();
+            for ( int col = this.colFrom; col < this.colTo; col++ )
+            {
+                if ( col > this.colFrom )
+                {
+                    buffer.append( (byte) ' ' );
+                }
+                int     start   = tokenizer.getStart( col );
+                int     end     = tokenizer.getEnd( col );
+                String  replace = replacer.replace( line, start, end );
+                if ( replace != null )
+                {
+                    buffer.append( replace );
+                }
+                else
+                {
+                    buffer.append( line, start, end );
+                }
+            }
+            buffer.append( (byte) '\n' );
+            buffer.writeTo( sink );
+        }
+
+        sink.flush();
+    }
+
+    /* --- internal methods --- */
+    /**
+     * moves a header coordinate by a number of cells, in decimal,
+     * written in plain notation without trailing zeros;
+     */
+    private static String move( String coordinate, int cells, String size )
+    {
+        return
+                new BigDecimal( coordinate ).add( BigDecimal.valueOf( cells ).multiply( new BigDecimal( size ) ) ).stripTrailingZeros().toPlainString();
+    }
+
+}
@@ -0,0 +1,495 @@
+package net.raster.grid.ascii.resample;
+
+
+import net.raster.grid.ascii.RasterGridAscii;
+import net.raster.grid.ascii.header.RasterHeader;
+import net.raster.grid.ascii.header.value.RasterTokenValue;
+import net.raster.grid.ascii.reader.GridBodyReader;
+import net.raster.grid.ascii.writer.GridRowBuffer;
+import net.raster.grid.ascii.writer.GridSink;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+
+/**
+ * Writes the overviews of a grid, each one with cells twice as large
+ * as the previous one, from a single read of the grid body;
+ * each level combines 2 x 2 cells of the previous level, keeping
+ * sums, counts and extremes of its cells, so every level is the same
+ * as the aggregation of the source grid by 2, 4, 8... cells;
+ * only the MODE rule is computed from the modes of the previous level,
+ * so beyond the first level it is an approximation;
+ * memory holds two rows for each level;
+ * headers are computed as for 'GridAggregation';
+ */
+public class GridPyramid
+{
+    /* --- properties --- */
+    /**
+     * the parsed source grid; its body is read once;
+     */
+    private final RasterGridAscii   grid;
+    /**
+     * the header of each level, the first one with cells twice as large as the source;
+     */
+    private final RasterHeader[]    headers;
+    /**
+     * number of decimals written for each cell; negative for the shortest digits;
+     */
+    private int                     decimals    = -1;
+    /**
+     * largest fraction of NODATA cells in a block still giving a value;
+     */
+    private double                  maxNoData   = 1;
+
+    /* --- constructor --- */
+    /**
+     * creates new pyramid on a parsed grid;
+     *
+     * @param grid      the source grid;
+     * @param levels    number of overviews;
+     * @throws IllegalArgumentException if the grid is not defined or the levels are not between 1 and 30;
+     */
+    public GridPyramid( RasterGridAscii grid, int levels )
+            throws
+                IllegalArgumentException
+    {
+        if ( grid == null )
+        {
+            throw
+                    new IllegalArgumentException( "Source grid not defined." );
+        }
+        if ( ( levels < 1 ) || ( levels > 30 ) )
+        {
+            throw
+                    new IllegalArgumentException( "The number of levels must be between 1 and 30." );
+        }
+        this.grid       = grid;
+        this.headers    = new RasterHeader[ levels ];
+        for ( int level = 0; level < levels; level++ )
+        {
+            this.headers[ level ] = GridAggregation.coarse( grid.getHeader(), 2 << level );
+        }
+    }
+
+    /* --- setters and getters --- */
+    /**
+     * gets the number of overviews;
+     *
+     * @return number of levels;
+     */
+    public int getLevels()
+    {
+        return
+                this.headers.length;
+    }
+    /**
+     * gets the header of a level; it can be changed before writing,
+     * but not its size, position and cell size;
+     *
+     * @param level    the level, starting from one for cells twice as large as the source;
+     * @return the level header;
+     * @throws IndexOutOfBoundsException if the level does not exist;
+     */
+    public RasterHeader getHeader( int level )
+            throws
+                IndexOutOfBoundsException
+    {
+        if ( ( level < 1 ) || ( level > this.headers.length ) )
+        {
+            throw
+                    new IndexOutOfBoundsException( "Level " + level + " not in pyramid of " + this.headers.length + " levels." );
+        }
+        return
+                this.headers[ level - 1 ];
+    }
+    /**
+     * sets the NODATA value of all levels;
+     *
+     * @param value    the new NODATA value; null or empty to remove it;
+     */
+    public void setNoDataValue( String value )
+    {
+        for ( RasterHeader header : this.headers )
+        {
+            header.setNoDataValue( value );
+        }
+    }
+    /**
+     * defines how many decimals are written for each cell;
+     * by default each cell is written with the shortest digits
+     * that convert back to the same value;
+     *
+     * @param decimals    number of decimals; negative to write the shortest digits;
+     */
+    public void setDecimals( int decimals )
+    {
+        this.decimals = decimals;
+    }
+    /**
+     * defines when a block is written as NODATA;
+     * the fraction is computed on the source cells of each block;
+     *
+     * @param fraction    largest fraction of NODATA cells in a block still giving a value;
+     * @throws IllegalArgumentException if the fraction is not between zero and one;
+     * @see GridAggregation#setMaxNoData(double)
+     */
+    public void setMaxNoData( double fraction ) throws IllegalArgumentException
+    {
+        if ( ! ( ( fraction >= 0 ) && ( fraction <= 1 ) ) )
+        {
+            throw
+                    new IllegalArgumentException( "The NODATA fraction must be between 0 and 1." );
+        }
+        this.maxNoData = fraction;
+    }
+
+    /* --- writers --- */
+    /**
+     * writes all levels, each one in its own file; files are replaced;
+     *
+     * @param aggregation    the rule combining the cells of each block;
+     * @param files          the file of each level, as many as the levels;
+     * @throws IOException if the grid cannot be read, or a level cannot be written;
+     * @throws IllegalArgumentException if the rule or the files are not defined;
+     */
+    public void write( Aggregation aggregation, Path... files )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        if ( ( files == null ) || ( files.length != this.headers.length ) )
+        {
+            throw
+                    new IllegalArgumentException( "Expected " + this.headers.length + " level files." );
+        }
+        OutputStream[]  streams = new OutputStream[ files.length ];
+        GridSink[]      sinks   = new GridSink[ files.length ];
+        try
+        {
+            for ( int i = 0; i < files.length; i++ )
+            {
+                streams[ i ]    = new FileOutputStream( files[ i ].toFile() );
+                sinks[ i ]      = GridSink.of( streams[ i ] );
+            }
+            this.write( aggregation, sinks );
+        }
+        finally
+        {
+            IOException failure = null;
+            for ( OutputStream stream : streams )
+            {
+                try
+                {
+                    if ( stream != null )
+                    {
+                        stream.close();
+                    }
+                }
+                catch ( IOException e )
+                {
+                    failure = ( failure != null ) ? failure : e;
+                }
+            }
+            if ( failure != null )
+            {
+                throw
+                        failure;
+            }
+        }
+    }
+    /**
+     * writes all levels, headers included, each one to its own grid sink;
+     * the sinks are flushed at the end;
+     *
+     * @param aggregation    the rule combining the cells of each block;
+     * @param sinks          the destination of each level, as many as the levels;
+     * @throws IOException if the grid cannot be read, or a level cannot be written;
+     * @throws IllegalArgumentException if the rule or the sinks are not defined;
+     */
+    public void write( Aggregation aggregation, GridSink... sinks )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        if ( aggregation == null )
+        {
+            throw
+                    new IllegalArgumentException( "Aggregation rule not defined." );
+        }
+        if ( ( sinks == null ) || ( sinks.length != this.headers.length ) )
+        {
+            throw
+                    new IllegalArgumentException( "Expected " + this.headers.length + " level sinks." );
+        }
+
+        /* --- levels, from the finest one --- */
+        GridBodyReader  body    = this.grid.getBodyReader();
+        int             cols    = body.getCols();
+        Level           next    = null;
+        for ( int i = sinks.length - 1; i >= 0; i-- )
+        {
+            sinks[ i ].write( this.headers[ i ] );
+            int width = ( i == 0 ) ? cols : (Integer) this.headers[ i - 1 ].getNCols().getValueAsNumber();
+            next = new Level( this.headers[ i ], width, sinks[ i ], aggregation, next );
+        }
+        Level           first   = next;
+
+        /* --- source NODATA --- */
+        RasterTokenValue    source  = this.grid.getNoDataValue();
+        boolean             defined = ( source != null );
+        double              empty   = defined ? source.getValueAsNumber().doubleValue() : Double.NaN;
+
+        /* --- each source row is a row of single cell blocks --- */
+        Cells           row     = new Cells( cols );
+        double[]        values  = new double[ cols ];
+        while ( body.next() )
+        {
+            body.parse( values, 0 );
+            for ( int col = 0; col < cols; col++ )
+            {
+                double value = values[ col ];
+                if ( ( defined && ( value == empty ) ) || Double.isNaN( value ) )
+                {
+                    row.set( col, Double.NaN, 0, 1 );
+                }
+                else
+                {
+                    row.set( col, value, 1, 0 );
+                }
+            }
+            first.add( row );
+        }
+        first.finish();
+
+        for ( GridSink sink : sinks )
+        {
+            sink.flush();
+        }
+    }
+
+
+    /* --- internal classes --- */
+    /**
+     * a row of blocks, with what is needed to combine them further;
+     */
+    private static class Cells
+    {
+        /* --- properties --- */
+        private final double[]  sum;
+        private final double[]  min;
+        private final double[]  max;
+        /**
+         * the mode of each block, or the cell value for single cells;
+         */
+        private final double[]  mode;
+        /**
+         * number of valid and NODATA source cells of each block;
+         */
+        private final long[]    count;
+        private final long[]    missing;
+
+        /* --- constructor --- */
+        private Cells( int size )
+        {
+            this.sum        = new double[ size ];
+            this.min        = new double[ size ];
+            this.max        = new double[ size ];
+            this.mode       = new double[ size ];
+            this.count      = new long[ size ];
+            this.missing    = new long[ size ];
+            this.clear();
+        }
+
+        /* --- methods --- */
+        private void set( int i, double value, long count, long missing )
+        {
+            this.sum[ i ]       = ( count > 0 ) ? value : 0;
+            this.min[ i ]       = value;
+            this.max[ i ]       = value;
+            this.mode[ i ]      = value;
+            this.count[ i ]     = count;
+            this.missing[ i ]   = missing;
+        }
+
+        private void clear()
+        {
+            Arrays.fill( this.sum,      0 );
+            Arrays.fill( this.min,      Double.NaN );
+            Arrays.fill( this.max,      Double.NaN );
+            Arrays.fill( this.mode,     Double.NaN );
+            Arrays.fill( this.count,    0 );
+            Arrays.fill( this.missing,  0 );
+        }
+    }
+
+    /**
+     * a pyramid level, combining the rows of the previous level two by two;
+     */
+    private class Level
+    {
+        /* --- properties --- */
+        private final int           width;
+        private final GridSink      sink;
+        private final Aggregation   aggregation;
+        private final Level         next;
+        /**
+         * the pending output row;
+         */
+        private final Cells         cells;
+        /**
+         * the modes of the blocks of the previous level, four for each cell;
+         */
+        private final double[]      modes;
+        private final double[]      scratch = new double[ 4 ];
+        private final GridRowBuffer buffer  = new GridRowBuffer();
+        /**
+         * number of rows of the previous level in the pending row;
+         */
+        private int                 height;
+
+        /* --- constructor --- */
+        private Level( RasterHeader header, int width, GridSink sink, Aggregation aggregation, Level next )
+        {
+            int cols = (Integer) header.getNCols().getValueAsNumber();
+            this.width          = width;
+            this.sink           = sink;
+            this.aggregation    = aggregation;
+            this.next           = next;
+            this.cells          = new Cells( cols );
+            this.modes          = ( aggregation == Aggregation.MODE ) ? new double[ cols << 2 ] : null;
+            this.buffer.setDecimals( GridPyramid.this.decimals );
+            this.buffer.setNoData( header.getNoDataValue() );
+            if ( this.modes != null )
+            {
+                Arrays.fill( this.modes, Double.NaN );
+            }
+        }
+
+        /* --- methods --- */
+        /**
+         * adds a row of the previous level;
+         */
+        private void add( Cells row )
+                throws
+                    IOException
+        {
+            Cells cells = this.cells;
+            for ( int col = 0; col < this.width; col++ )
+            {
+                if ( row.count[ col ] + row.missing[ col ] == 0 )
+                {
+                    continue;
+                }
+                int i = col >> 1;
+                cells.missing[ i ] += row.missing[ col ];
+                if ( row.count[ col ] > 0 )
+                {
+                    double min = row.min[ col ];
+                    double max = row.max[ col ];
+                    cells.sum[ i ]      += row.sum[ col ];
+                    cells.count[ i ]    += row.count[ col ];
+                    cells.min[ i ]      = ( ( cells.min[ i ] != cells.min[ i ] ) || ( min < cells.min[ i ] ) ) ? min : cells.min[ i ];
+                    cells.max[ i ]      = ( ( cells.max[ i ] != cells.max[ i ] ) || ( max > cells.max[ i ] ) ) ? max : cells.max[ i ];
+                }
+                if ( this.modes != null )
+                {
+                    this.modes[ ( i << 2 ) + ( this.height << 1 ) + ( col & 1 ) ] = row.mode[ col ];
+                }
+            }
+            if ( ++ this.height == 2 )
+            {
+                this.flush();
+            }
+        }
+
+        /**
+         * writes the pending row, if any, and the pending rows of the next levels;
+         */
+        private void finish()
+                throws
+                    IOException
+        {
+            if ( this.height > 0 )
+            {
+                this.flush();
+            }
+            if ( this.next != null )
+            {
+                this.next.finish();
+            }
+        }
+
+        /**
+         * writes the pending row and passes it to the next level;
+         */
+        private void flush()
+                throws
+                    IOException
+        {
+            Cells       cells   = this.cells;
+            int         cols    = cells.sum.length;
+            double[]    scratch = this.scratch;
+            this.buffer.reset();
+            for ( int i = 0; i < cols; i++ )
+            {
+                long count      = cells.count[ i ];
+                long missing    = cells.missing[ i ];
+                if ( this.modes != null )
+                {
+                    int found = 0;
+                    for ( int k = i << 2, end = k + 4; k < end; k++ )
+                    {
+                        double mode = this.modes[ k ];
+                        if ( mode == mode )
+                        {
+                            scratch[ found++ ] = mode;
+                        }
+                    }
+                    cells.mode[ i ] = ( found > 0 ) ? Aggregation.MODE.reduce( scratch, found ) : Double.NaN;
+                }
+
+                double value;
+                if ( ( count == 0 ) || ( missing > GridPyramid.this.maxNoData * ( count + missing ) ) )
+                {
+                    value = Double.NaN;
+                }
+                else
+                {
+                    switch ( this.aggregation )
+                    {
+                        case MEAN:  value = cells.sum[ i ] / count; break;
+                        case SUM:   value = cells.sum[ i ];         break;
+                        case MIN:   value = cells.min[ i ];         break;
+                        case MAX:   value = cells.max[ i ];         break;
+                        default:    value = cells.mode[ i ];        break;
+                    }
+                }
+
+                if ( i > 0 )
+                {
+                    this.buffer.append( (byte) ' ' );
+                }
+                this.buffer.appendCell( value );
+            }
+            this.buffer.append( (byte) '\n' );
+            this.buffer.writeTo( this.sink );
+
+            if ( this.next != null )
+            {
+                this.next.add( cells );
+            }
+            cells.clear();
+            if ( this.modes != null )
+            {
+                Arrays.fill( this.modes, Double.NaN );
+            }
+            this.height = 0;
+        }
+    }
+
+}
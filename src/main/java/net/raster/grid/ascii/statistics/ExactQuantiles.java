@@ -0,0 +1,401 @@
+package net.raster.grid.ascii.statistics;
+
+
+import net.raster.grid.ascii.GridReducer;
+import net.raster.grid.ascii.RasterGridAscii;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+
+/**
+ * Computes exact quantiles of grid cells in bounded memory, reading
+ * the grid file several times;
+ * cells are mapped to 64 bit keys with the same ordering as their values;
+ * the first pass counts cells, each following pass builds a histogram
+ * of the key range still holding the target rank, so each pass fixes
+ * at least 16 more key bits, until the cells left in range are few enough
+ * to be collected and sorted, or they are all equal; the lowest and highest
+ * key of each bin are kept, so the range of the next pass is as narrow as
+ * possible; at most six passes are needed;
+ * cells holding the header NODATA value, or NaN, are excluded;
+ * the quantile of rank 'f' is the value at position ceil(f * n) among
+ * the 'n' sorted cells, the minimum for zero;
+ */
+public class ExactQuantiles
+{
+    /* --- static properties --- */
+    /**
+     * number of key bits fixed by each histogram pass;
+     */
+    private static final int    BITS            = 16;
+    /**
+     * most cells collected to be sorted;
+     */
+    static final int            COLLECT_LIMIT   = 1 << 16;
+
+    /* --- properties --- */
+    /**
+     * the grid file;
+     */
+    private final Path  grid;
+    /**
+     * number of threads used to read each pass;
+     */
+    private int         parallelism = 1;
+    /**
+     * number of passes of the last computation;
+     */
+    private int         passes;
+
+    /* --- constructor --- */
+    /**
+     * creates new exact quantiles of a grid file;
+     *
+     * @param grid    the grid file;
+     * @throws IllegalArgumentException if the grid is not defined;
+     */
+    public ExactQuantiles( Path grid ) throws IllegalArgumentException
+    {
+        if ( grid == null )
+        {
+            throw
+                    new IllegalArgumentException( "Grid file not defined." );
+        }
+        this.grid = grid;
+    }
+
+    /* --- setters and getters --- */
+    /**
+     * sets the number of threads used to read the grid at each pass;
+     *
+     * @param threads    number of threads; 1 to read sequentially;
+     * @throws IllegalArgumentException if the number of threads is not positive;
+     */
+    public void setParallelism( int threads ) throws IllegalArgumentException
+    {
+        if ( threads < 1 )
+        {
+            throw
+                    new IllegalArgumentException( "The number of threads must be positive." );
+        }
+        this.parallelism = threads;
+    }
+    /**
+     * gets the number of times the grid was read by the last computation;
+     *
+     * @return number of passes;
+     */
+    public int getPasses()
+    {
+        return
+                this.passes;
+    }
+
+    /* --- computation --- */
+    /**
+     * computes exact quantiles;
+     *
+     * @param fractions    the normalized ranks, between 0 and 1;
+     * @return the values having the given ranks; NaN if there is no valid cell;
+     * @throws IOException if the grid cannot be read, or it is not valid;
+     * @throws IllegalArgumentException if a fraction is not between 0 and 1;
+     */
+    public double[] getQuantiles( double... fractions )
+            throws
+                IOException,
+                IllegalArgumentException
+    {
+        for ( double fraction : fractions )
+        {
+            if ( ! ( ( fraction >= 0D ) && ( fraction <= 1D ) ) )
+            {
+                throw
+                        new IllegalArgumentException( "Quantile rank " + fraction + " not between 0 and 1." );
+            }
+        }
+        int         targets     = fractions.length;
+        double[]    quantiles   = new double[ targets ];
+        this.passes = 0;
+
+        /* --- first pass: count cells and key bounds --- */
+        Pass pass = this.read( new Pass( new long[ 0 ], new long[ 0 ], new int[ 0 ], new boolean[ 0 ], new boolean[ 0 ] ) );
+        long n = pass.result.count;
+        if ( n == 0 )
+        {
+            Arrays.fill( quantiles, Double.NaN );
+            return
+                    quantiles;
+        }
+
+        /* --- key range and rank within range of each target --- */
+        long[]      lo      = new long[ targets ];
+        long[]      hi      = new long[ targets ];
+        long[]      rank    = new long[ targets ];
+        long[]      inRange = new long[ targets ];
+        boolean[]   done    = new boolean[ targets ];
+        for ( int t = 0; t < targets; t++ )
+        {
+            lo[ t ]         = pass.result.min;
+            hi[ t ]         = pass.result.max;
+            rank[ t ]       = Math.max( 1L, (long) Math.ceil( fractions[ t ] * n ) );
+            inRange[ t ]    = n;
+        }
+
+        /* --- refine until each target is found --- */
+        while ( true )
+        {
+            int[]       shifts  = new int[ targets ];
+            boolean[]   active  = new boolean[ targets ];
+            boolean[]   collect = new boolean[ targets ];
+            boolean     pending = false;
+            for ( int t = 0; t < targets; t++ )
+            {
+                if ( ! done[ t ] && ( lo[ t ] == hi[ t ] ) )
+                {
+                    quantiles[ t ]  = ExactQuantiles.value( lo[ t ] );
+                    done[ t ]       = true;
+                }
+                if ( ! done[ t ] )
+                {
+                    pending         = true;
+                    active[ t ]     = true;
+                    collect[ t ]    = ( inRange[ t ] <= COLLECT_LIMIT );
+                    shifts[ t ]     = Math.max( 0, 64 - Long.numberOfLeadingZeros( hi[ t ] - lo[ t ] ) - BITS );
+                }
+            }
+            if ( ! pending )
+            {
+                return
+                        quantiles;
+            }
+
+            pass = this.read( new Pass( lo, hi, shifts, active, collect ) );
+            for ( int t = 0; t < targets; t++ )
+            {
+                if ( ! active[ t ] )
+                {
+                    continue;
+                }
+                if ( collect[ t ] )
+                {
+                    double[] values = Arrays.copyOf( pass.result.values[ t ], pass.result.sizes[ t ] );
+                    Arrays.sort( values );
+                    quantiles[ t ]  = values[ (int) rank[ t ] - 1 ];
+                    done[ t ]       = true;
+                }
+                else
+                {
+                    /* --- the bin holding the target rank --- */
+                    long[]  bins    = pass.result.bins[ t ];
+                    int     bin     = 0;
+                    while ( rank[ t ] > bins[ bin ] )
+                    {
+                        rank[ t ] -= bins[ bin++ ];
+                    }
+                    lo[ t ]         = pass.result.lows[ t ][ bin ];
+                    hi[ t ]         = pass.result.highs[ t ][ bin ];
+                    inRange[ t ]    = bins[ bin ];
+                }
+            }
+        }
+    }
+
+    /* --- internal methods --- */
+    private Pass read( Pass pass )
+            throws
+                IOException
+    {
+        RasterGridAscii raster = RasterGridAscii.parse( this.grid );
+        raster.setParallelism( this.parallelism );
+        pass.result = raster.reduce( pass );
+        this.passes ++ ;
+        return
+                pass;
+    }
+
+    /**
+     * maps a value to a key with the same ordering;
+     */
+    static long key( double value )
+    {
+        long bits = Double.doubleToRawLongBits( value );
+        return
+                bits ^ ( ( bits >> 63 ) & Long.MAX_VALUE );
+    }
+    /**
+     * maps a key back to its value;
+     */
+    static double value( long key )
+    {
+        return
+                Double.longBitsToDouble( key ^ ( ( key >> 63 ) & Long.MAX_VALUE ) );
+    }
+
+
+    /* --- internal classes --- */
+    /**
+     * a single pass on the grid, building a histogram, or collecting cells,
+     * in the key range of each target;
+     */
+    private static class Pass implements GridReducer< Counts >
+    {
+        /* --- properties --- */
+        private final long[]    lo;
+        private final long[]    hi;
+        private final int[]     shifts;
+        private final boolean[] active;
+        private final boolean[] collect;
+        private Counts          result;
+
+        /* --- constructor --- */
+        private Pass( long[] lo, long[] hi, int[] shifts, boolean[] active, boolean[] collect )
+        {
+            this.lo         = lo;
+            this.hi         = hi;
+            this.shifts     = shifts;
+            this.active     = active;
+            this.collect    = collect;
+        }
+
+        /* --- implemented methods --- */
+        @Override
+        public Counts create()
+        {
+            return
+                    new Counts( this );
+        }
+
+        @Override
+        public void accumulate( Counts accumulator, double value )
+        {
+            if ( Double.isNaN( value ) )
+            {
+                return;
+            }
+            long key = ExactQuantiles.key( value );
+            accumulator.count ++ ;
+            accumulator.min = Math.min( accumulator.min, key );
+            accumulator.max = Math.max( accumulator.max, key );
+            for ( int t = 0; t < this.lo.length; t++ )
+            {
+                if ( this.active[ t ] && ( key >= this.lo[ t ] ) && ( key <= this.hi[ t ] ) )
+                {
+                    if ( this.collect[ t ] )
+                    {
+                        accumulator.add( t, value );
+                    }
+                    else
+                    {
+                        int bin = (int) ( ( key - this.lo[ t ] ) >>> this.shifts[ t ] );
+                        if ( accumulator.bins[ t ][ bin ] ++ == 0 )
+                        {
+                            accumulator.lows[ t ][ bin ]    = key;
+                            accumulator.highs[ t ][ bin ]   = key;
+                        }
+                        else if ( key < accumulator.lows[ t ][ bin ] )
+                        {
+                            accumulator.lows[ t ][ bin ]    = key;
+                        }
+                        else if ( key > accumulator.highs[ t ][ bin ] )
+                        {
+                            accumulator.highs[ t ][ bin ]   = key;
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Counts merge( Counts first, Counts second )
+        {
+            first.count += second.count;
+            first.min    = Math.min( first.min, second.min );
+            first.max    = Math.max( first.max, second.max );
+            for ( int t = 0; t < this.lo.length; t++ )
+            {
+                if ( first.bins[ t ] != null )
+                {
+                    for ( int b = 0; b < first.bins[ t ].length; b++ )
+                    {
+                        if ( second.bins[ t ][ b ] == 0 )
+                        {
+                            continue;
+                        }
+                        if ( first.bins[ t ][ b ] == 0 )
+                        {
+                            first.lows[ t ][ b ]    = second.lows[ t ][ b ];
+                            first.highs[ t ][ b ]   = second.highs[ t ][ b ];
+                        }
+                        else
+                        {
+                            first.lows[ t ][ b ]    = Math.min( first.lows[ t ][ b ],  second.lows[ t ][ b ] );
+                            first.highs[ t ][ b ]   = Math.max( first.highs[ t ][ b ], second.highs[ t ][ b ] );
+                        }
+                        first.bins[ t ][ b ] += second.bins[ t ][ b ];
+                    }
+                }
+                for ( int i = 0; i < second.sizes[ t ]; i++ )
+                {
+                    first.add( t, second.values[ t ][ i ] );
+                }
+            }
+            return
+                    first;
+        }
+    }
+
+    /**
+     * counts of a pass on some rows;
+     */
+    private static class Counts
+    {
+        /* --- properties --- */
+        private long                count;
+        private long                min     = Long.MAX_VALUE;
+        private long                max     = Long.MIN_VALUE;
+        /**
+         * cells, lowest and highest key in each bin;
+         */
+        private final long[][]      bins;
+        private final long[][]      lows;
+        private final long[][]      highs;
+        private final double[][]    values;
+        private final int[]         sizes;
+
+        /* --- constructor --- */
+        private Counts( Pass pass )
+        {
+            int targets = pass.lo.length;
+            this.bins   = new long[ targets ][];
+            this.lows   = new long[ targets ][];
+            this.highs  = new long[ targets ][];
+            this.values = new double[ targets ][];
+            this.sizes  = new int[ targets ];
+            for ( int t = 0; t < targets; t++ )
+            {
+                this.values[ t ] = new double[ pass.collect[ t ] ? 16 : 0 ];
+                if ( pass.active[ t ] && ! pass.collect[ t ] )
+                {
+                    int size = (int) ( ( pass.hi[ t ] - pass.lo[ t ] ) >>> pass.shifts[ t ] ) + 1;
+                    this.bins[ t ]  = new long[ size ];
+                    this.lows[ t ]  = new long[ size ];
+                    this.highs[ t ] = new long[ size ];
+                }
+            }
+        }
+
+        private void add( int target, double value )
+        {
+            double[] values = this.values[ target ];
+            if ( this.sizes[ target ] == values.length )
+            {
+                values = Arrays.copyOf( values, Math.max( 16, values.length << 1 ) );
+                this.values[ target ] = values;
+            }
+            values[ this.sizes[ target ] ++ ] = value;
+        }
+    }
+
+}
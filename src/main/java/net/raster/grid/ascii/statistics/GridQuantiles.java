@@ -0,0 +1,72 @@
+package net.raster.grid.ascii.statistics;
+
+
+import net.raster.grid.ascii.GridReducer;
+
+
+/**
+ * Computes approximated quantiles of grid cells while the grid is written,
+ * in a single pass and in bounded memory, by a KLL sketch;
+ * cells holding NODATA are excluded;
+ * sketches of different row blocks are merged, so they can be computed
+ * concurrently;
+ */
+public class GridQuantiles implements GridReducer< QuantileSketch >
+{
+    /* --- static properties --- */
+    /**
+     * default accuracy, with rank error about 1.3%;
+     */
+    public static final int DEFAULT_K   = 200;
+
+    /* --- properties --- */
+    private final int       k;
+
+    /* --- constructors --- */
+    /**
+     * creates new quantiles with default accuracy;
+     */
+    public GridQuantiles()
+    {
+        this( DEFAULT_K );
+    }
+    /**
+     * creates new quantiles;
+     * the rank error decreases about as 1/k, while memory grows as k;
+     *
+     * @param k    the accuracy parameter, at least 8;
+     * @throws IllegalArgumentException if the accuracy is too low;
+     */
+    public GridQuantiles( int k ) throws IllegalArgumentException
+    {
+        if ( k < 8 )
+        {
+            throw
+                    new IllegalArgumentException( "Sketch accuracy must be at least 8, instead of " + k + "." );
+        }
+        this.k = k;
+    }
+
+    /* --- implemented methods --- */
+    @Override
+    public QuantileSketch create()
+    {
+        return
+                new QuantileSketch( this.k );
+    }
+
+    @Override
+    public void accumulate( QuantileSketch accumulator, double value )
+    {
+        accumulator.update( value );
+    }
+
+    @Override
+    public QuantileSketch merge( QuantileSketch first, QuantileSketch second )
+    {
+        first.merge( second );
+        return
+                first;
+    }
+
+}
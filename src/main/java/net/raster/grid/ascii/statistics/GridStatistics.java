@@ -0,0 +1,84 @@
+package net.raster.grid.ascii.statistics;
+
+
+import net.raster.grid.ascii.GridReducer;
+
+
+/**
+ * Computes the statistics of grid cells while the grid is written,
+ * in a single pass and without allocating anything per cell;
+ * statistics of different row blocks are merged, so they can be computed
+ * concurrently; an optional histogram of fixed width bins can be collected;
+ */
+public class GridStatistics implements GridReducer< GridSummary >
+{
+    /* --- properties --- */
+    private final double    lower;
+    private final double    upper;
+    private final int       bins;
+
+    /* --- constructors --- */
+    /**
+     * creates new statistics without histogram;
+     */
+    public GridStatistics()
+    {
+        this.lower  = 0D;
+        this.upper  = 0D;
+        this.bins   = 0;
+    }
+    /**
+     * creates new statistics with histogram;
+     * values out of bounds are only counted as below or above the histogram;
+     *
+     * @param lower    lower bound of the histogram;
+     * @param upper    upper bound of the histogram, included in the last bin;
+     * @param bins     number of bins;
+     * @throws IllegalArgumentException if bounds or bins are not valid;
+     */
+    public GridStatistics( double lower, double upper, int bins ) throws IllegalArgumentException
+    {
+        if ( ! ( lower < upper ) || Double.isInfinite( lower ) || Double.isInfinite( upper ) )
+        {
+            throw
+                    new IllegalArgumentException( "Invalid histogram bounds [" + lower + ", " + upper + "]." );
+        }
+        if ( bins <= 0 )
+        {
+            throw
+                    new IllegalArgumentException( "Histogram bins must be positive." );
+        }
+        this.lower  = lower;
+        this.upper  = upper;
+        this.bins   = bins;
+    }
+
+    /* --- implemented methods --- */
+    @Override
+    public GridSummary create()
+    {
+        return
+                new GridSummary( this.lower, this.upper, this.bins );
+    }
+
+    @Override
+    public void accumulate( GridSummary accumulator, double value )
+    {
+        accumulator.add( value );
+    }
+
+    @Override
+    public void accumulateNoData( GridSummary accumulator )
+    {
+        accumulator.addNoData();
+    }
+
+    @Override
+    public GridSummary merge( GridSummary first, GridSummary second )
+    {
+        first.merge( second );
+        return
+                first;
+    }
+
+}
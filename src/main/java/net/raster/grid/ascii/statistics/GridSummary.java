@@ -0,0 +1,293 @@
+package net.raster.grid.ascii.statistics;
+
+
+
+/**
+ * Statistics of grid cells, computed in a single pass:
+ * mean and variance are updated with the Welford method, the sum with
+ * the Kahan compensated summation, so they are stable even for large grids;
+ * summaries of different rows can be merged;
+ * cells holding NODATA, or NaN, are only counted;
+ */
+public final class GridSummary
+{
+    /* --- properties --- */
+    /**
+     * number of valid cells;
+     */
+    private long            count;
+    /**
+     * number of NODATA cells;
+     */
+    private long            nodata;
+    private double          min         = Double.POSITIVE_INFINITY;
+    private double          max         = Double.NEGATIVE_INFINITY;
+    /**
+     * running mean and sum of squared differences from the mean;
+     */
+    private double          mean;
+    private double          m2;
+    /**
+     * compensated sum and its running compensation;
+     */
+    private double          sum;
+    private double          compensation;
+    /**
+     * histogram bounds, bins and counts; null if not required;
+     */
+    private final double    lower;
+    private final double    upper;
+    private final double    scale;
+    private final long[]    bins;
+    private long            below;
+    private long            above;
+
+    /* --- constructor --- */
+    /**
+     * creates new empty summary;
+     *
+     * @param lower    lower bound of the histogram;
+     * @param upper    upper bound of the histogram;
+     * @param bins     number of histogram bins; zero for no histogram;
+     */
+    GridSummary( double lower, double upper, int bins )
+    {
+        this.lower  = lower;
+        this.upper  = upper;
+        this.scale  = ( bins > 0 ) ? bins / ( upper - lower ) : 0D;
+        this.bins   = ( bins > 0 ) ? new long[ bins ] : null;
+    }
+
+    /* --- accumulators --- */
+    /**
+     * adds a valid cell;
+     *
+     * @param value    the cell value;
+     */
+    void add( double value )
+    {
+        if ( Double.isNaN( value ) )
+        {
+            this.nodata ++ ;
+            return;
+        }
+        long count = ++ this.count;
+        if ( value < this.min )
+        {
+            this.min = value;
+        }
+        if ( value > this.max )
+        {
+            this.max = value;
+        }
+
+        /* --- Welford --- */
+        double delta = value - this.mean;
+        this.mean   += delta / count;
+        this.m2     += delta * ( value - this.mean );
+
+        /* --- Kahan --- */
+        this.addToSum( value );
+
+        /* --- histogram --- */
+        if ( this.bins != null )
+        {
+            if ( value < this.lower )
+            {
+                this.below ++ ;
+            }
+            else if ( value > this.upper )
+            {
+                this.above ++ ;
+            }
+            else
+            {
+                int bin = (int) ( ( value - this.lower ) * this.scale );
+                this.bins[ Math.min( bin, this.bins.length - 1 ) ] ++ ;
+            }
+        }
+    }
+    /**
+     * adds a NODATA cell;
+     */
+    void addNoData()
+    {
+        this.nodata ++ ;
+    }
+    /**
+     * merges another summary into this one;
+     * both summaries must share the same histogram;
+     *
+     * @param other    the summary to merge;
+     */
+    void merge( GridSummary other )
+    {
+        this.nodata += other.nodata;
+        if ( other.count == 0 )
+        {
+            return;
+        }
+        if ( this.count == 0 )
+        {
+            this.mean   = other.mean;
+            this.m2     = other.m2;
+        }
+        else
+        {
+            /* --- Chan et al. pairwise update --- */
+            double n        = (double) this.count + other.count;
+            double delta    = other.mean - this.mean;
+            this.mean   += delta * other.count / n;
+            this.m2     += other.m2 + delta * delta * ( (double) this.count * other.count / n );
+        }
+        this.count  += other.count;
+        this.min     = Math.min( this.min, other.min );
+        this.max     = Math.max( this.max, other.max );
+        this.addToSum( other.sum );
+        this.addToSum( - other.compensation );
+
+        if ( this.bins != null )
+        {
+            for ( int i = 0; i < this.bins.length; i++ )
+            {
+                this.bins[ i ] += other.bins[ i ];
+            }
+            this.below += other.below;
+            this.above += other.above;
+        }
+    }
+    private void addToSum( double value )
+    {
+        double y = value - this.compensation;
+        double t = this.sum + y;
+        this.compensation   = ( t - this.sum ) - y;
+        this.sum            = t;
+    }
+
+    /* --- getters --- */
+    /**
+     * gets the number of valid cells;
+     *
+     * @return number of cells not holding NODATA;
+     */
+    public long getCount()
+    {
+        return
+                this.count;
+    }
+    /**
+     * gets the number of NODATA cells;
+     *
+     * @return number of cells holding NODATA, or NaN;
+     */
+    public long getNoDataCount()
+    {
+        return
+                this.nodata;
+    }
+    /**
+     * gets the lowest valid value;
+     *
+     * @return the minimum; or NaN if there is no valid cell;
+     */
+    public double getMin()
+    {
+        return
+                ( this.count > 0 ) ? this.min : Double.NaN;
+    }
+    /**
+     * gets the highest valid value;
+     *
+     * @return the maximum; or NaN if there is no valid cell;
+     */
+    public double getMax()
+    {
+        return
+                ( this.count > 0 ) ? this.max : Double.NaN;
+    }
+    /**
+     * gets the sum of valid values;
+     *
+     * @return the sum;
+     */
+    public double getSum()
+    {
+        return
+                this.sum;
+    }
+    /**
+     * gets the mean of valid values;
+     *
+     * @return the mean; or NaN if there is no valid cell;
+     */
+    public double getMean()
+    {
+        return
+                ( this.count > 0 ) ? this.mean : Double.NaN;
+    }
+    /**
+     * gets the population variance of valid values;
+     *
+     * @return the variance; or NaN if there is no valid cell;
+     */
+    public double getVariance()
+    {
+        return
+                ( this.count > 0 ) ? this.m2 / this.count : Double.NaN;
+    }
+    /**
+     * gets the population standard deviation of valid values;
+     *
+     * @return the standard deviation; or NaN if there is no valid cell;
+     */
+    public double getStandardDeviation()
+    {
+        return
+                Math.sqrt( this.getVariance() );
+    }
+
+    /* --- histogram --- */
+    /**
+     * gets the histogram counts; bins have the same width,
+     * the last one includes the upper bound;
+     *
+     * @return a copy of the histogram counts; or an empty array if no histogram was required;
+     */
+    public long[] getHistogram()
+    {
+        return
+                ( this.bins != null ) ? this.bins.clone() : new long[ 0 ];
+    }
+    /**
+     * gets the lower bound of a histogram bin;
+     *
+     * @param bin    the bin index; the number of bins for the upper bound of the last bin;
+     * @return the bin lower bound;
+     */
+    public double getBinLower( int bin )
+    {
+        return
+                ( ( this.bins == null ) || ( bin >= this.bins.length ) ) ? this.upper : this.lower + bin / this.scale;
+    }
+    /**
+     * gets the number of valid cells below the histogram lower bound;
+     *
+     * @return number of cells;
+     */
+    public long getBelowCount()
+    {
+        return
+                this.below;
+    }
+    /**
+     * gets the number of valid cells above the histogram upper bound;
+     *
+     * @return number of cells;
+     */
+    public long getAboveCount()
+    {
+        return
+                this.above;
+    }
+
+}
@@ -0,0 +1,405 @@
+package net.raster.grid.ascii.statistics;
+
+
+import java.util.Arrays;
+
+
+/**
+ * A KLL streaming quantile sketch (Karnin, Lang, Liberty);
+ * values are kept in a stack of compactors, where each value of level h
+ * stands for 2^h values; when a level is full it is sorted and half of its
+ * values, picked at random among odd or even positions, move to the next level;
+ * lower levels have smaller capacity, so the whole sketch holds about
+ * three times 'k' values, whatever the number of values seen;
+ * sketches of different rows can be merged;
+ * min and max are exact;
+ */
+public final class QuantileSketch
+{
+    /* --- static properties --- */
+    /**
+     * capacity ratio between a level and the next one;
+     */
+    private static final double CAPACITY_RATIO  = 2D / 3D;
+    /**
+     * lowest capacity of any level;
+     */
+    private static final int    MIN_CAPACITY    = 2;
+
+    /* --- properties --- */
+    /**
+     * the accuracy parameter;
+     */
+    private final int       k;
+    /**
+     * values of each level and their number;
+     */
+    private double[][]      levels;
+    private int[]           sizes;
+    /**
+     * capacity of each level, as long as the height does not change;
+     */
+    private int[]           capacities;
+    /**
+     * number of levels in use;
+     */
+    private int             height;
+    /**
+     * values held at all levels, and the capacity of all levels;
+     */
+    private int             size;
+    private int             capacity;
+    /**
+     * number of values seen;
+     */
+    private long            count;
+    private double          min         = Double.NaN;
+    private double          max         = Double.NaN;
+    /**
+     * state of the random bits choosing the values to keep;
+     */
+    private long            random      = 0x9E3779B97F4A7C15L;
+
+    /* --- constructor --- */
+    /**
+     * creates new empty sketch;
+     *
+     * @param k    the accuracy parameter, at least 8;
+     */
+    QuantileSketch( int k )
+    {
+        this.k          = k;
+        this.levels     = new double[ 0 ][];
+        this.sizes      = new int[ 0 ];
+        this.capacities = new int[ 0 ];
+        this.grow();
+    }
+
+    /* --- accumulators --- */
+    /**
+     * adds a value; NaN is ignored;
+     *
+     * @param value    the value;
+     */
+    void update( double value )
+    {
+        if ( Double.isNaN( value ) )
+        {
+            return;
+        }
+        if ( this.count++ == 0 )
+        {
+            this.min = value;
+            this.max = value;
+        }
+        else if ( value < this.min )
+        {
+            this.min = value;
+        }
+        else if ( value > this.max )
+        {
+            this.max = value;
+        }
+        this.push( 0, value );
+        if ( ++ this.size >= this.capacity )
+        {
+            this.compress();
+        }
+    }
+    /**
+     * merges another sketch into this one;
+     *
+     * @param other    the sketch to merge;
+     */
+    void merge( QuantileSketch other )
+    {
+        if ( other.count == 0 )
+        {
+            return;
+        }
+        while ( this.height < other.height )
+        {
+            this.grow();
+        }
+        for ( int h = 0; h < other.height; h++ )
+        {
+            for ( int i = 0; i < other.sizes[ h ]; i++ )
+            {
+                this.push( h, other.levels[ h ][ i ] );
+            }
+        }
+        this.size  += other.size;
+        this.min    = ( this.count == 0 ) ? other.min : Math.min( this.min, other.min );
+        this.max    = ( this.count == 0 ) ? other.max : Math.max( this.max, other.max );
+        this.count += other.count;
+        while ( this.size >= this.capacity )
+        {
+            this.compress();
+        }
+    }
+
+    /* --- getters --- */
+    /**
+     * gets the number of values seen;
+     *
+     * @return the number of values;
+     */
+    public long getCount()
+    {
+        return
+                this.count;
+    }
+    /**
+     * gets the lowest value seen;
+     *
+     * @return the minimum; or NaN if no value was seen;
+     */
+    public double getMin()
+    {
+        return
+                this.min;
+    }
+    /**
+     * gets the highest value seen;
+     *
+     * @return the maximum; or NaN if no value was seen;
+     */
+    public double getMax()
+    {
+        return
+                this.max;
+    }
+    /**
+     * gets the number of values held by the sketch;
+     *
+     * @return the values held;
+     */
+    public int getRetained()
+    {
+        return
+                this.size;
+    }
+    /**
+     * gets the expected error on the rank of a single quantile,
+     * as fraction of the values seen, with 99% confidence;
+     * the error bounds are empirical, as found for KLL sketches;
+     *
+     * @return the normalized rank error;
+     */
+    public double getRankError()
+    {
+        return
+                2.296D / Math.pow( this.k, 0.9723D );
+    }
+
+    /* --- queries --- */
+    /**
+     * gets an approximated quantile;
+     *
+     * @param fraction    the normalized rank, between 0 and 1;
+     * @return the value having the given rank; min and max for 0 and 1; NaN if no value was seen;
+     * @throws IllegalArgumentException if the fraction is not between 0 and 1;
+     */
+    public double getQuantile( double fraction ) throws IllegalArgumentException
+    {
+        return
+                this.getQuantiles( fraction )[ 0 ];
+    }
+    /**
+     * gets several approximated quantiles;
+     *
+     * @param fractions    the normalized ranks, between 0 and 1;
+     * @return the values having the given ranks;
+     * @throws IllegalArgumentException if a fraction is not between 0 and 1;
+     */
+    public double[] getQuantiles( double... fractions ) throws IllegalArgumentException
+    {
+        double[] quantiles = new double[ fractions.length ];
+        for ( double fraction : fractions )
+        {
+            if ( ! ( ( fraction >= 0D ) && ( fraction <= 1D ) ) )
+            {
+                throw
+                        new IllegalArgumentException( "Quantile rank " + fraction + " not between 0 and 1." );
+            }
+        }
+        if ( this.count == 0 )
+        {
+            Arrays.fill( quantiles, Double.NaN );
+            return
+                    quantiles;
+        }
+
+        /* --- sorted values with their cumulative weights --- */
+        double[]    values  = new double[ this.size ];
+        long[]      weights = new long[ this.size ];
+        long        total   = this.sorted( values, weights );
+
+        for ( int q = 0; q < fractions.length; q++ )
+        {
+            double fraction = fractions[ q ];
+            if ( fraction == 0D )
+            {
+                quantiles[ q ] = this.min;
+            }
+            else if ( fraction == 1D )
+            {
+                quantiles[ q ] = this.max;
+            }
+            else
+            {
+                long    rank    = (long) Math.ceil( fraction * total );
+                int     index   = Arrays.binarySearch( weights, rank );
+                quantiles[ q ]  = values[ ( index >= 0 ) ? index : - index - 1 ];
+            }
+        }
+        return
+                quantiles;
+    }
+    /**
+     * gets the approximated normalized rank of a value;
+     *
+     * @param value    the value;
+     * @return the fraction of values lower than or equal to the given one;
+     */
+    public double getRank( double value )
+    {
+        if ( this.count == 0 )
+        {
+            return
+                    Double.NaN;
+        }
+        long below = 0;
+        long total = 0;
+        for ( int h = 0; h < this.height; h++ )
+        {
+            double[]    level   = this.levels[ h ];
+            long        weight  = 1L << h;
+            for ( int i = 0; i < this.sizes[ h ]; i++ )
+            {
+                if ( level[ i ] <= value )
+                {
+                    below += weight;
+                }
+                total += weight;
+            }
+        }
+        return
+                (double) below / total;
+    }
+
+    /* --- internal methods --- */
+    /**
+     * adds a new level on top, so capacities of lower levels shrink;
+     */
+    private void grow()
+    {
+        int height = this.height + 1;
+        this.levels     = Arrays.copyOf( this.levels, height );
+        this.sizes      = Arrays.copyOf( this.sizes,  height );
+        this.capacities = new int[ height ];
+        this.height     = height;
+
+        int capacity = 0;
+        for ( int h = 0; h < height; h++ )
+        {
+            this.capacities[ h ] = Math.max( MIN_CAPACITY, (int) Math.ceil( this.k * Math.pow( CAPACITY_RATIO, height - h - 1 ) ) );
+            capacity += this.capacities[ h ];
+        }
+        this.levels[ height - 1 ] = new double[ this.capacities[ height - 1 ] ];
+        this.capacity = capacity;
+    }
+    private void push( int level, double value )
+    {
+        double[]    values  = this.levels[ level ];
+        int         size    = this.sizes[ level ];
+        if ( size == values.length )
+        {
+            values = Arrays.copyOf( values, Math.max( MIN_CAPACITY, size << 1 ) );
+            this.levels[ level ] = values;
+        }
+        values[ size ] = value;
+        this.sizes[ level ] = size + 1;
+    }
+    /**
+     * compacts the lowest full level into the next one;
+     */
+    private void compress()
+    {
+        for ( int h = 0; h < this.height; h++ )
+        {
+            if ( this.sizes[ h ] >= this.capacities[ h ] )
+            {
+                if ( h + 1 >= this.height )
+                {
+                    this.grow();
+                }
+                this.compact( h );
+                if ( this.size < this.capacity )
+                {
+                    return;
+                }
+            }
+        }
+    }
+    /**
+     * sorts a level and moves half of its values to the next level;
+     * with an odd number of values, the last one is kept;
+     */
+    private void compact( int level )
+    {
+        double[]    values  = this.levels[ level ];
+        int         size    = this.sizes[ level ];
+        int         even    = size & ~1;
+        Arrays.sort( values, 0, even );
+
+        this.random ^= this.random << 13;
+        this.random ^= this.random >>> 7;
+        this.random ^= this.random << 17;
+        for ( int i = (int) ( this.random & 1 ); i < even; i += 2 )
+        {
+            this.push( level + 1, values[ i ] );
+        }
+        if ( even < size )
+        {
+            values[ 0 ] = values[ even ];
+        }
+        this.sizes[ level ] = size - even;
+        this.size          -= even >> 1;
+    }
+    /**
+     * gets all held values sorted, merging the sorted levels;
+     *
+     * @param values     the sorted values;
+     * @param weights    the cumulative weight of each sorted value;
+     * @return the total weight;
+     */
+    private long sorted( double[] values, long[] weights )
+    {
+        double[][]  sorted  = new double[ this.height ][];
+        int[]       heads   = new int[ this.height ];
+        for ( int h = 0; h < this.height; h++ )
+        {
+            sorted[ h ] = Arrays.copyOf( this.levels[ h ], this.sizes[ h ] );
+            Arrays.sort( sorted[ h ] );
+        }
+        long total = 0;
+        for ( int i = 0; i < this.size; i++ )
+        {
+            int lowest = -1;
+            for ( int h = 0; h < this.height; h++ )
+            {
+                if ( ( heads[ h ] < sorted[ h ].length ) && ( ( lowest < 0 ) || ( sorted[ h ][ heads[ h ] ] < sorted[ lowest ][ heads[ lowest ] ] ) ) )
+                {
+                    lowest = h;
+                }
+            }
+            values[ i ]  = sorted[ lowest ][ heads[ lowest ] ++ ];
+            total       += 1L << lowest;
+            weights[ i ] = total;
+        }
+        return
+                total;
+    }
+
+}
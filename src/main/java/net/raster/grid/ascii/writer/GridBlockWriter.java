@@ -0,0 +1,326 @@
+package net.raster.grid.ascii.writer;
+
+
+import net.raster.grid.ascii.GridInvalidException;
+import net.raster.grid.ascii.reader.GridLineReaderMapped;
+import net.raster.grid.ascii.reader.GridMapping;
+import net.raster.grid.ascii.reader.GridRowTokenizer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+
+/**
+ * Writes the grid body of a memory mapped grid using several threads;
+ * the body is split in blocks of bytes aligned to line boundaries,
+ * each block is tokenized, checked and written into its own buffer
+ * by a thread pool, then blocks are sent to the destination in row order;
+ * at most two blocks per thread are kept in memory;
+ */
+public class GridBlockWriter
+{
+    /* --- properties --- */
+    /**
+     * the writer of each single row; its row methods must be thread safe;
+     */
+    private final GridWriter            rowWriter;
+    /**
+     * total rows in grid;
+     */
+    private final int                   rows;
+    /**
+     * total columns in each grid row;
+     */
+    private final int                   cols;
+    /**
+     * the mapped source grid;
+     */
+    private final GridMapping           mapping;
+    /**
+     * absolute position of the first grid line, or the end of mapping if there is no grid line;
+     */
+    private final long                  start;
+    /**
+     * number of threads;
+     */
+    private final int                   parallelism;
+
+    /* --- static properties --- */
+    /**
+     * default size of each block;
+     */
+    static final int                    BLOCK_SIZE  = 4 << 20;
+
+    /* --- constructor --- */
+    /**
+     * creates new parallel writer;
+     *
+     * @param rowWriter      the writer of each row, it must be able to handle rows concurrently;
+     * @param nRow           total rows in grid;
+     * @param nCol           total columns in each row;
+     * @param lines          the source raster lines, positioned on the first grid line;
+     * @param parallelism    number of threads;
+     */
+    GridBlockWriter
+        (
+                GridWriter              rowWriter,
+                int                     nRow,
+                int                     nCol,
+                GridLineReaderMapped    lines,
+                int                     parallelism
+        )
+    {
+        this.rowWriter      = rowWriter;
+        this.rows           = nRow;
+        this.cols           = nCol;
+        this.mapping        = lines.getMapping();
+        this.start          = lines.isAvailable() ? lines.getLineStart() : lines.getPosition();
+        this.parallelism    = parallelism;
+    }
+
+    /* --- writer --- */
+    /**
+     * writes the raster grid body;
+     *
+     * @param sink    the destination;
+     * @throws IOException if write failed or the grid is not valid;
+     */
+    public void write( GridSink sink )
+            throws
+                IOException
+    {
+        ForkJoinPool                pool    = new ForkJoinPool( this.parallelism );
+        ArrayDeque< Future<Block> > pending = new ArrayDeque<>();
+        long                        end     = this.mapping.getSize();
+        long                        from    = this.start;
+        int                         row     = 0;
+        try
+        {
+            while ( ( from < end ) || ! pending.isEmpty() )
+            {
+                /* --- keep the pool busy --- */
+                while ( ( from < end ) && ( pending.size() < ( this.parallelism << 1 ) ) )
+                {
+                    long    to      = this.align( from + BLOCK_SIZE );
+                    Block   block   = new Block( from, to );
+                    pending.add( pool.submit( block ) );
+                    from = to;
+                }
+
+                /* --- write the oldest block --- */
+                Block   block   = pending.remove().get();
+                int     seen    = ( block.error >= 0 ) ? block.error + 1 : block.count;
+                if ( row + seen > this.rows )
+                {
+                    throw
+                            new GridInvalidException
+                                    (
+                                            String.format( "Invalid grid. Expected %d rows, but found %d rows.", this.rows, row + seen )
+                                    );
+                }
+                if ( block.invalid != null )
+                {
+                    throw
+                            block.invalid.atRow( row + block.error );
+                }
+                if ( block.error >= 0 )
+                {
+                    throw
+                            new GridInvalidException
+                                    (
+                                            String.format( "Invalid grid. At line %d found %d columns instead %d.", row + block.error + 1, block.found, this.cols )
+                                    );
+                }
+                block.out.writeTo( sink );
+                this.rowWriter.blockWritten( block.state );
+                row += block.count;
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw
+                    new InterruptedIOException( "Grid writing interrupted." );
+        }
+        catch ( ExecutionException e )
+        {
+            throw
+                    GridBlockWriter.unwrap( e );
+        }
+        finally
+        {
+            for ( Future<Block> future : pending )
+            {
+                future.cancel( true );
+            }
+            pool.shutdownNow();
+        }
+
+        /* --- check all rows have been written --- */
+        if ( row != this.rows )
+        {
+            throw
+                    new GridInvalidException
+                            (
+                                    String.format( "Invalid grid. Expected %d rows, but found %d rows.", this.rows, row )
+                            );
+        }
+    }
+
+    /* --- internal methods --- */
+    /**
+     * moves a position to the beginning of next line;
+     *
+     * @param position    the absolute position;
+     * @return the first position after a line end, or the end of mapping;
+     */
+    private long align( long position )
+    {
+        long end = this.mapping.getSize();
+        if ( position >= end )
+        {
+            return
+                    end;
+        }
+        /* --- step back by one byte, so a block split just after a line end is kept --- */
+        long p = position - 1;
+        while ( p < end )
+        {
+            byte c = this.mapping.get( p++ );
+            if ( c == '\n' )
+            {
+                return
+                        p;
+            }
+            if ( c == '\r' )
+            {
+                return
+                        ( ( p < end ) && ( this.mapping.get( p ) == '\n' ) ) ? p + 1 : p;
+            }
+        }
+        return
+                end;
+    }
+
+    private static IOException unwrap( ExecutionException e )
+    {
+        Throwable cause = e.getCause();
+        if ( cause instanceof IOException )
+        {
+            return
+                    (IOException) cause;
+        }
+        if ( cause instanceof RuntimeException )
+        {
+            throw
+                    (RuntimeException) cause;
+        }
+        if ( cause instanceof Error )
+        {
+            throw
+                    (Error) cause;
+        }
+        return
+                new IOException( cause );
+    }
+
+
+    /* --- internal classes --- */
+    /**
+     * a block of grid lines handled by a single thread;
+     */
+    private class Block implements Callable<Block>
+    {
+        /* --- properties --- */
+        private final long          from;
+        private final long          to;
+        /**
+         * the written rows;
+         */
+        private final GridRowBuffer out     = new GridRowBuffer();
+        /**
+         * number of rows in block;
+         */
+        private int                 count;
+        /**
+         * index in block of the first wrong row, or -1;
+         */
+        private int                 error   = -1;
+        /**
+         * number of columns found in wrong row;
+         */
+        private int                 found;
+        /**
+         * the cell, in the wrong row, that is not a number; or null;
+         */
+        private GridCellException   invalid;
+        /**
+         * the state of the row writer for this block;
+         */
+        private Object              state;
+
+        /* --- constructor --- */
+        private Block( long from, long to )
+        {
+            this.from   = from;
+            this.to     = to;
+        }
+
+        /* --- implemented methods --- */
+        @Override
+        public Block call()
+                throws
+                    IOException
+        {
+            GridLineReaderMapped    lines       = new GridLineReaderMapped( GridBlockWriter.this.mapping, this.from, this.to );
+            GridRowTokenizer        tokenizer   = new GridRowTokenizer();
+            int                     cols        = GridBlockWriter.this.cols;
+            GridWriter              rowWriter   = GridBlockWriter.this.rowWriter;
+            this.state = rowWriter.blockBegin();
+            try
+            {
+                this.writeRows( lines, tokenizer, cols, rowWriter );
+            }
+            finally
+            {
+                rowWriter.blockEnd();
+            }
+            return
+                    this;
+        }
+
+        private void writeRows( GridLineReaderMapped lines, GridRowTokenizer tokenizer, int cols, GridWriter rowWriter )
+                throws
+                    IOException
+        {
+            while ( lines.next() )
+            {
+                byte[]  line    = lines.getLine();
+                int     found   = tokenizer.tokenize( line, lines.getLength() );
+                if ( found != cols )
+                {
+                    this.error = this.count;
+                    this.found = found;
+                    break;
+                }
+                try
+                {
+                    rowWriter.writeRow( line, tokenizer, this.out );
+                }
+                catch ( GridCellException e )
+                {
+                    this.error      = this.count;
+                    this.invalid    = e;
+                    break;
+                }
+                this.count ++ ;
+            }
+        }
+    }
+
+}
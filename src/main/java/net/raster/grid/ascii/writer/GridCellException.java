@@ -0,0 +1,49 @@
+package net.raster.grid.ascii.writer;
+
+
+import net.raster.grid.ascii.GridInvalidException;
+
+
+/**
+ * A grid cell is not a number;
+ * the cell column and text are kept, so the error can be reported again
+ * at the right row when rows are numbered only after they have been written,
+ * as the parallel writer does;
+ */
+class GridCellException extends GridInvalidException
+{
+    /* --- static properties --- */
+    private static final long   serialVersionUID    = 1L;
+
+    /* --- properties --- */
+    private final int       col;
+    private final String    text;
+
+    /* --- constructor --- */
+    GridCellException( int row, int col, String text )
+    {
+        super( GridCellException.message( row, col, text ) );
+        this.col    = col;
+        this.text   = text;
+    }
+
+    /* --- methods --- */
+    /**
+     * reports the same error at a given row;
+     *
+     * @param row    the row index, starting from zero;
+     * @return the new exception;
+     */
+    GridInvalidException atRow( int row )
+    {
+        return
+                new GridInvalidException( GridCellException.message( row, this.col, this.text ) );
+    }
+
+    private static String message( int row, int col, String text )
+    {
+        return
+                String.format( "Invalid grid. At line %d, column %d, the value '%s' is not a number.", row + 1, col + 1, text );
+    }
+
+}
@@ -0,0 +1,137 @@
+package net.raster.grid.ascii.writer;
+
+
+import net.raster.grid.ascii.header.RasterHeader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+
+/**
+ * Base of the writers computing a new grid, with its own header,
+ * from parsed grids;
+ * the output header is written first, then each row is composed in
+ * a buffer where NaN and NODATA values are written with the NODATA
+ * text of the output header;
+ *
+ * @param <O> the operation computing the cells;
+ */
+public abstract class GridDerivedWriter< O >
+{
+    /* --- properties --- */
+    /**
+     * the output header;
+     */
+    private final RasterHeader  header;
+    /**
+     * number of decimals written for each cell; negative for the shortest digits;
+     */
+    private int                 decimals    = -1;
+
+    /* --- constructor --- */
+    /**
+     * creates new writer;
+     *
+     * @param header    the output header;
+     */
+    protected GridDerivedWriter( RasterHeader header )
+    {
+        this.header = header;
+    }
+
+    /* --- setters and getters --- */
+    /**
+     * gets the output header; it can be changed before writing;
+     *
+     * @return the output header;
+     */
+    public RasterHeader getHeader()
+    {
+        return
+                this.header;
+    }
+    /**
+     * sets the output NODATA value;
+     *
+     * @param value    the new NODATA value; null or empty to remove it;
+     */
+    public void setNoDataValue( String value )
+    {
+        this.header.setNoDataValue( value );
+    }
+    /**
+     * defines how many decimals are written for each cell;
+     * by default each cell is written with the shortest digits
+     * that convert back to the same value;
+     *
+     * @param decimals    number of decimals; negative to write the shortest digits;
+     */
+    public void setDecimals( int decimals )
+    {
+        this.decimals = decimals;
+    }
+
+    /* --- writers --- */
+    /**
+     * writes the output grid, header included;
+     *
+     * @param writer       grid destination;
+     * @param operation    the operation computing the cells;
+     * @throws IOException if a grid cannot be read or written, or it is not valid;
+     */
+    public void write( Writer writer, O operation )
+            throws
+                IOException
+    {
+        this.write( GridSink.of( writer ), operation );
+    }
+    /**
+     * writes the output grid, header included, as ASCII bytes;
+     * the stream is flushed but not closed;
+     *
+     * @param stream       grid destination;
+     * @param operation    the operation computing the cells;
+     * @throws IOException if a grid cannot be read or written, or it is not valid;
+     */
+    public void write( OutputStream stream, O operation )
+            throws
+                IOException
+    {
+        this.write( GridSink.of( stream ), operation );
+    }
+    /**
+     * writes the output grid, header included, to a grid sink;
+     * the sink is flushed at the end;
+     *
+     * @param sink         grid destination;
+     * @param operation    the operation computing the cells;
+     * @throws IOException if a grid cannot be read or written, or it is not valid;
+     * @throws IllegalArgumentException if the operation is not defined;
+     */
+    public abstract void write( GridSink sink, O operation )
+            throws
+                IOException,
+                IllegalArgumentException;
+
+    /* --- internal methods --- */
+    /**
+     * writes the output header, and creates the buffer of the output rows;
+     *
+     * @param sink    grid destination;
+     * @return the row buffer, with the output decimals and NODATA value;
+     * @throws IOException if the header cannot be written;
+     */
+    protected GridRowBuffer writeHeader( GridSink sink )
+            throws
+                IOException
+    {
+        sink.write( this.header );
+        GridRowBuffer buffer = new GridRowBuffer();
+        buffer.setDecimals( this.decimals );
+        buffer.setNoData( this.header.getNoDataValue() );
+        return
+                buffer;
+    }
+
+}
@@ -0,0 +1,250 @@
+package net.raster.grid.ascii.writer;
+
+
+import net.raster.grid.ascii.GridInvalidException;
+import net.raster.grid.ascii.header.value.RasterTokenValue;
+import net.raster.grid.ascii.number.DoubleFormatter;
+
+import java.io.IOException;
+
+
+/**
+ * Reusable buffer where a grid row is composed as ASCII bytes
+ * before being written;
+ */
+public class GridRowBuffer
+{
+    /* --- properties --- */
+    /**
+     * the row bytes; only the first 'length' bytes are meaningful;
+     */
+    private byte[]  data    = new byte[ 4096 ];
+    /**
+     * number of bytes in row;
+     */
+    private int     length;
+    /**
+     * number of decimals of appended numbers; negative for the shortest digits;
+     */
+    private int     decimals    = -1;
+    /**
+     * the NODATA value, and its text; the text is null if NODATA is not defined;
+     */
+    private double  nodata      = Double.NaN;
+    private String  nodataText;
+
+    /* --- appenders --- */
+    /**
+     * appends a single byte;
+     *
+     * @param value    the byte to append;
+     */
+    public void append( byte value )
+    {
+        if ( this.length == this.data.length )
+        {
+            this.grow( this.length + 1 );
+        }
+        this.data[ this.length++ ] = value;
+    }
+    /**
+     * appends a range of bytes;
+     *
+     * @param source    the bytes to append;
+     * @param from      first byte to append;
+     * @param to        byte following the last one to append;
+     */
+    public void append( byte[] source, int from, int to )
+    {
+        int size = to - from;
+        if ( this.length + size > this.data.length )
+        {
+            this.grow( this.length + size );
+        }
+        System.arraycopy( source, from, this.data, this.length, size );
+        this.length += size;
+    }
+    /**
+     * appends a text string made of ASCII characters;
+     *
+     * @param value    the text to append;
+     */
+    public void append( String value )
+    {
+        int size = value.length();
+        if ( this.length + size > this.data.length )
+        {
+            this.grow( this.length + size );
+        }
+        for ( int i = 0; i < size; i++ )
+        {
+            this.data[ this.length++ ] = (byte) value.charAt( i );
+        }
+    }
+
+    /**
+     * appends an integer number;
+     *
+     * @param value    the number to append;
+     */
+    public void append( long value )
+    {
+        if ( this.length + 20 > this.data.length )
+        {
+            this.grow( this.length + 20 );
+        }
+        if ( value < 0 )
+        {
+            if ( value == Long.MIN_VALUE )
+            {
+                this.append( Long.toString( value ) );
+                return;
+            }
+            this.data[ this.length++ ] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for ( long v = value; v >= 10; v /= 10 )
+        {
+            digits ++ ;
+        }
+        int position = this.length + digits;
+        do
+        {
+            this.data[ --position ] = (byte) ( '0' + ( value % 10 ) );
+            value /= 10;
+        }
+        while ( value != 0 )
+                ;
+        this.length += digits;
+    }
+    /**
+     * appends a number with the shortest digits that convert back
+     * to the same number, or with the fixed decimals defined;
+     *
+     * @param value    the number to append;
+     */
+    public void append( double value )
+    {
+        int size = DoubleFormatter.length( value, this.decimals );
+        if ( this.length + size > this.data.length )
+        {
+            this.grow( this.length + size );
+        }
+        this.length = DoubleFormatter.format( value, this.decimals, this.data, this.length );
+    }
+    /**
+     * appends a number with the shortest digits that convert back
+     * to the same float, or with the fixed decimals defined;
+     *
+     * @param value    the number to append;
+     */
+    public void append( float value )
+    {
+        int size = DoubleFormatter.length( value, this.decimals );
+        if ( this.length + size > this.data.length )
+        {
+            this.grow( this.length + size );
+        }
+        this.length = DoubleFormatter.format( value, this.decimals, this.data, this.length );
+    }
+
+    /**
+     * appends a cell value; NaN and NODATA values are appended
+     * with the NODATA text, other values as numbers;
+     *
+     * @param value    the cell value;
+     * @throws GridInvalidException if the value is NaN, and NODATA is not defined;
+     * @see #setNoData(RasterTokenValue)
+     */
+    public void appendCell( double value )
+            throws
+                GridInvalidException
+    {
+        if ( ( this.nodataText != null ) && ( Double.isNaN( value ) || ( value == this.nodata ) ) )
+        {
+            this.append( this.nodataText );
+        }
+        else if ( Double.isNaN( value ) )
+        {
+            throw
+                    new GridInvalidException( "Invalid grid. A NaN cell cannot be written, because NODATA is not defined." );
+        }
+        else
+        {
+            this.append( value );
+        }
+    }
+
+    /* --- handling --- */
+    /**
+     * defines how many decimals are written for each appended number;
+     *
+     * @param decimals    number of decimals; negative to write the shortest digits;
+     */
+    public void setDecimals( int decimals )
+    {
+        this.decimals = decimals;
+    }
+    /**
+     * defines the NODATA value of appended cells;
+     *
+     * @param nodata    the NODATA value; null if not defined;
+     */
+    public void setNoData( RasterTokenValue nodata )
+    {
+        this.nodata     = ( nodata != null ) ? nodata.getValueAsNumber().doubleValue() : Double.NaN;
+        this.nodataText = ( nodata != null ) ? nodata.getValueAsText() : null;
+    }
+    /**
+     * empties the buffer;
+     */
+    public void reset()
+    {
+        this.length = 0;
+    }
+    /**
+     * gets the number of bytes in buffer;
+     *
+     * @return the number of bytes;
+     */
+    public int getLength()
+    {
+        return
+                this.length;
+    }
+    /**
+     * gets the buffer content;
+     * only the first 'getLength()' bytes are meaningful;
+     *
+     * @return the buffer bytes;
+     */
+    public byte[] getData()
+    {
+        return
+                this.data;
+    }
+
+    /* --- writers --- */
+    /**
+     * writes the buffer content to a grid sink;
+     *
+     * @param sink    the destination;
+     * @throws IOException if write failed;
+     */
+    public void writeTo( GridSink sink )
+            throws
+                IOException
+    {
+        sink.write( this.data, 0, this.length );
+    }
+
+    /* --- internal methods --- */
+    private void grow( int minimum )
+    {
+        byte[] bigger = new byte[ Math.max( minimum, this.data.length << 1 ) ];
+        System.arraycopy( this.data, 0, bigger, 0, this.length );
+        this.data = bigger;
+    }
+
+}
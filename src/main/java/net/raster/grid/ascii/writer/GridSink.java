@@ -0,0 +1,141 @@
+package net.raster.grid.ascii.writer;
+
+
+import net.raster.grid.ascii.header.RasterHeader;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Destination of the grid text, written as ASCII bytes;
+ * bytes are sent either to a character stream or, without any
+ * charset encoding, to a byte channel;
+ */
+public abstract class GridSink
+{
+    /* --- static constructors --- */
+    /**
+     * creates a sink writing to a character stream;
+     *
+     * @param writer    the destination;
+     * @return the sink;
+     */
+    public static GridSink of( Writer writer )
+    {
+        return
+                new GridSinkWriter( writer );
+    }
+    /**
+     * creates a sink writing to a byte stream;
+     * file streams are written via their channel;
+     *
+     * @param stream    the destination;
+     * @return the sink;
+     */
+    public static GridSink of( OutputStream stream )
+    {
+        return
+                ( stream instanceof FileOutputStream )
+                ? new GridSinkChannel( ( (FileOutputStream) stream ).getChannel(), stream )
+                : new GridSinkChannel( Channels.newChannel( stream ), stream )
+                ;
+    }
+    /**
+     * creates a sink writing to a byte channel;
+     *
+     * @param channel    the destination;
+     * @return the sink;
+     */
+    public static GridSink of( WritableByteChannel channel )
+    {
+        return
+                new GridSinkChannel( channel, null );
+    }
+
+    /**
+     * creates a sink dropping all bytes, to scan a grid without writing it;
+     *
+     * @return the sink;
+     */
+    public static GridSink none()
+    {
+        return
+                new GridSinkNone();
+    }
+
+    /* --- writers --- */
+    /**
+     * writes a range of bytes;
+     *
+     * @param data    the bytes to write;
+     * @param from    first byte to write;
+     * @param to      byte following the last one to write;
+     * @throws IOException if write failed;
+     */
+    public abstract void write( byte[] data, int from, int to )
+            throws
+                IOException;
+    /**
+     * writes the remaining bytes of a buffer;
+     *
+     * @param data    the bytes to write;
+     * @throws IOException if write failed;
+     */
+    public void write( ByteBuffer data )
+            throws
+                IOException
+    {
+        byte[] chunk = new byte[ Math.min( data.remaining(), 1 << 16 ) ];
+        while ( data.hasRemaining() )
+        {
+            int size = Math.min( chunk.length, data.remaining() );
+            data.get( chunk, 0, size );
+            this.write( chunk, 0, size );
+        }
+    }
+    /**
+     * writes a text string made of ASCII characters;
+     *
+     * @param text    the text to write;
+     * @throws IOException if write failed;
+     */
+    public void write( String text )
+            throws
+                IOException
+    {
+        byte[] data = text.getBytes( StandardCharsets.US_ASCII );
+        this.write( data, 0, data.length );
+    }
+    /**
+     * writes a grid header;
+     *
+     * @param header    the header to write;
+     * @throws IOException if write failed, or the header is not correctly defined;
+     */
+    public void write( RasterHeader header )
+            throws
+                IOException
+    {
+        StringWriter text = new StringWriter();
+        header.write( text );
+        this.write( text.toString() );
+    }
+    /**
+     * sends all pending bytes to the destination;
+     * the destination is not closed;
+     *
+     * @throws IOException if write failed;
+     */
+    public abstract void flush()
+            throws
+                IOException;
+
+}
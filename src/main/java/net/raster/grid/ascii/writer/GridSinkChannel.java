@@ -0,0 +1,112 @@
+package net.raster.grid.ascii.writer;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * Grid sink writing to a byte channel;
+ * bytes are collected in a reusable direct buffer, sent to
+ * the channel only when full or flushed;
+ */
+public class GridSinkChannel extends GridSink
+{
+    /* --- static properties --- */
+    /**
+     * size of the direct buffer;
+     */
+    static final int                    BUFFER_SIZE = 1 << 20;
+
+    /* --- properties --- */
+    /**
+     * the destination;
+     */
+    private final WritableByteChannel   channel;
+    /**
+     * the stream behind the channel, flushed with the sink; it might be null;
+     */
+    private final OutputStream          stream;
+    /**
+     * the bytes not yet sent to the channel;
+     */
+    private final ByteBuffer            buffer      = ByteBuffer.allocateDirect( BUFFER_SIZE );
+
+    /* --- constructors --- */
+    /**
+     * creates new sink;
+     *
+     * @param channel    the destination;
+     * @param stream     the stream behind the channel, if any;
+     */
+    GridSinkChannel( WritableByteChannel channel, OutputStream stream )
+    {
+        this.channel    = channel;
+        this.stream     = stream;
+    }
+
+    /* --- writers --- */
+    @Override
+    public void write( byte[] data, int from, int to )
+            throws
+                IOException
+    {
+        ByteBuffer buffer = this.buffer;
+        while ( from < to )
+        {
+            if ( ! buffer.hasRemaining() )
+            {
+                this.drain();
+            }
+            int size = Math.min( to - from, buffer.remaining() );
+            buffer.put( data, from, size );
+            from += size;
+        }
+    }
+    /**
+     * writes the remaining bytes of a buffer straight to the channel,
+     * after the pending ones; mapped buffers reach files without further copies;
+     *
+     * @param data    the bytes to write;
+     * @throws IOException if write failed;
+     */
+    @Override
+    public void write( ByteBuffer data )
+            throws
+                IOException
+    {
+        this.drain();
+        while ( data.hasRemaining() )
+        {
+            this.channel.write( data );
+        }
+    }
+    @Override
+    public void flush()
+            throws
+                IOException
+    {
+        this.drain();
+        if ( this.stream != null )
+        {
+            this.stream.flush();
+        }
+    }
+
+    /* --- internal methods --- */
+    private void drain()
+            throws
+                IOException
+    {
+        ByteBuffer buffer = this.buffer;
+        buffer.flip();
+        while ( buffer.hasRemaining() )
+        {
+            this.channel.write( buffer );
+        }
+        buffer.clear();
+    }
+
+}
@@ -0,0 +1,39 @@
+package net.raster.grid.ascii.writer;
+
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Grid sink dropping all bytes;
+ * it lets the grid be read, checked and handled by listeners
+ * or reducers without writing it anywhere;
+ */
+public class GridSinkNone extends GridSink
+{
+    /* --- writers --- */
+    @Override
+    public void write( byte[] data, int from, int to )
+    {
+        /* do nothing */
+    }
+
+    @Override
+    public void write( ByteBuffer data )
+    {
+        data.position( data.limit() );
+    }
+
+    @Override
+    public void write( String text )
+    {
+        /* do nothing */
+    }
+
+    @Override
+    public void flush()
+    {
+        /* do nothing */
+    }
+
+}
@@ -0,0 +1,68 @@
+package net.raster.grid.ascii.writer;
+
+
+import java.io.IOException;
+import java.io.Writer;
+
+
+/**
+ * Grid sink writing to a character stream;
+ * bytes are widened to characters in a reusable array;
+ */
+public class GridSinkWriter extends GridSink
+{
+    /* --- properties --- */
+    /**
+     * the destination;
+     */
+    private final Writer    writer;
+    /**
+     * characters sent to the destination;
+     */
+    private char[]          chars   = new char[ 4096 ];
+
+    /* --- constructors --- */
+    /**
+     * creates new sink;
+     *
+     * @param writer    the destination;
+     */
+    GridSinkWriter( Writer writer )
+    {
+        this.writer = writer;
+    }
+
+    /* --- writers --- */
+    @Override
+    public void write( byte[] data, int from, int to )
+            throws
+                IOException
+    {
+        int size = to - from;
+        if ( this.chars.length < size )
+        {
+            this.chars = new char[ size ];
+        }
+        char[] target = this.chars;
+        for ( int i = 0; i < size; i++ )
+        {
+            target[ i ] = (char) ( data[ from + i ] & 0xFF );
+        }
+        this.writer.write( target, 0, size );
+    }
+    @Override
+    public void write( String text )
+            throws
+                IOException
+    {
+        this.writer.write( text );
+    }
+    @Override
+    public void flush()
+            throws
+                IOException
+    {
+        this.writer.flush();
+    }
+
+}
@@ -2,13 +2,14 @@ package net.raster.grid.ascii.writer;
 
 import net.raster.grid.ascii.GridInvalidException;
 import net.raster.grid.ascii.GridScanListener;
-import net.raster.grid.ascii.RasterGridAscii;
 import net.raster.grid.ascii.header.RasterHeader;
+import net.raster.grid.ascii.reader.GridLineReader;
+import net.raster.grid.ascii.reader.GridLineReaderMapped;
+import net.raster.grid.ascii.reader.GridRowTokenizer;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Writer;
-import java.util.stream.Collectors;
+import java.nio.charset.StandardCharsets;
 
 
 
@@ -29,29 +30,32 @@ public abstract class GridWriter
      */
     private final Integer                       cols;
     /**
-     * grid reader;
+     * grid reader, positioned on the first grid line;
      */
-    private final BufferedReader                reader;
-    /**
-     * a single line of source grid;
-     */
-    private String                              line;
+    private final GridLineReader                lines;
     /**
      * used to replace old NODATA value with new one;
      */
     private final RasterHeader.NoDataReplace    replacer;
     /**
-     * number of columns in row;
+     * splits each grid line in cells;
+     */
+    private final GridRowTokenizer              tokenizer   = new GridRowTokenizer();
+    /**
+     * the output row;
      */
-    private int                                 col;
+    private final GridRowBuffer                 buffer      = new GridRowBuffer();
+    /**
+     * number of threads used to write the grid;
+     */
+    private int                                 parallelism = 1;
 
     /* --- static constructor --- */
     public static GridWriter build
     (
             Integer                     nRow,
             Integer                     nCol,
-            BufferedReader              br,
-            String                      first,
+            GridLineReader              lines,
             RasterHeader.NoDataReplace  nodata,
             GridScanListener            scanner
     )
@@ -59,9 +63,43 @@ public abstract class GridWriter
                 IllegalArgumentException
     {
         return
-                ( scanner == null )
-                ? new GridWriterSimple( nRow, nCol, br, first, nodata )
-                : new GridWriterListener( nRow, nCol, br, first, nodata, scanner )
+                GridWriter.build( nRow, nCol, lines, nodata, scanner, false );
+    }
+    /**
+     * creates the grid writer;
+     * if required, and neither cells are handled by a listener nor the NODATA value
+     * changes, the grid body is copied verbatim: rows and cells are only counted,
+     * original separators are kept;
+     *
+     * @param nRow        total rows in grid;
+     * @param nCol        total columns in each row;
+     * @param lines       the source raster lines, positioned on the first grid line;
+     * @param nodata      replacer for NODATA values;
+     * @param scanner     call back methods, it might be null;
+     * @param verbatim    true, to copy the grid body verbatim when possible;
+     * @return the grid writer;
+     */
+    public static GridWriter build
+    (
+            Integer                     nRow,
+            Integer                     nCol,
+            GridLineReader              lines,
+            RasterHeader.NoDataReplace  nodata,
+            GridScanListener            scanner,
+            boolean                     verbatim
+    )
+            throws
+                IllegalArgumentException
+    {
+        if ( scanner != null )
+        {
+            return
+                    new GridWriterListener( nRow, nCol, lines, nodata, scanner );
+        }
+        return
+                ( verbatim && ( nodata instanceof RasterHeader.NothingToReplace ) )
+                ? new GridWriterVerbatim( nRow, nCol, lines, nodata )
+                : new GridWriterSimple( nRow, nCol, lines, nodata )
                 ;
     }
     /* --- constructor --- */
@@ -70,26 +108,43 @@ public abstract class GridWriter
      *
      * @param nRow      total rows in grid;
      * @param nCol      total columns in each row;
-     * @param br        the source raster reader;
-     * @param first     the first grid line;
+     * @param lines     the source raster lines, positioned on the first grid line;
      * @param nodata    replacer for NODATA values;
      */
     protected GridWriter
         (
                 Integer                     nRow,
                 Integer                     nCol,
-                BufferedReader              br,
-                String                      first,
+                GridLineReader              lines,
                 RasterHeader.NoDataReplace  nodata
         )
     {
         this.rows       = nRow;
         this.cols       = nCol;
-        this.reader     = br;
-        this.line       = first;
+        this.lines      = lines;
         this.replacer   = nodata;
     }
 
+    /* --- setters --- */
+    /**
+     * sets the number of threads used to write the grid;
+     * rows are handled by several threads only if the source grid
+     * is memory mapped and this writer can handle rows concurrently;
+     * otherwise, the grid is written by the calling thread;
+     *
+     * @param threads    number of threads; 1 to write sequentially;
+     * @throws IllegalArgumentException if the number of threads is not positive;
+     */
+    public void setParallelism( int threads ) throws IllegalArgumentException
+    {
+        if ( threads < 1 )
+        {
+            throw
+                    new IllegalArgumentException( "The number of threads must be positive." );
+        }
+        this.parallelism = threads;
+    }
+
     /* --- writer --- */
     /**
      * writes the raster grid;
@@ -100,49 +155,71 @@ public abstract class GridWriter
     public void write( Writer writer )
             throws
                 IOException
+    {
+        this.write( GridSink.of( writer ) );
+    }
+    /**
+     * writes the raster grid as ASCII bytes;
+     * the sink is not flushed;
+     *
+     * @param sink    the destination;
+     * @throws IOException if write failed;
+     */
+    public void write( GridSink sink )
+            throws
+                IOException
     {
         /* --- begin to write grid --- */
         this.gridBegin();
 
+        if ( ( this.parallelism > 1 ) && this.isConcurrent() && ( this.lines instanceof GridLineReaderMapped ) )
+        {
+            new GridBlockWriter
+                    (
+                            this, this.rows, this.cols, (GridLineReaderMapped) this.lines, this.parallelism
+                    )
+                    .write
+                            (
+                                    sink
+                            );
+        }
+        else
+        {
+            this.writeRows( sink );
+        }
+
+        /* --- whole grid wrote --- */
+        this.gridEnd();
+    }
+    private void writeRows( GridSink sink )
+            throws
+                IOException
+    {
         /* --- loop on grid lines --- */
-        boolean ready;
+        int     rows        = this.rows;
+        int     cols        = this.cols;
+        boolean ready       = this.lines.isAvailable();
         int     row         = 0;
-        do
+        while ( ready )
         {
             this.rowBegin();
 
-            this.col = 0;
-
             if ( row++ < rows )
             {
-                String data =
-                        RasterGridAscii.PATTERN
-                                .splitAsStream( this.line.trim() )
-                                .map
-                                        (
-                                                value ->
-                                                {
-                                                    this.col++;
-                                                    return
-                                                            this.cell
-                                                                    (
-                                                                            replacer.replace( value )
-                                                                    );
-                                                }
-                                        )
-                                .collect( Collectors.joining( " " ) );
-
-                if ( this.col != cols )
+                byte[]  line    = this.lines.getLine();
+                int     found   = this.tokenizer.tokenize( line, this.lines.getLength() );
+                if ( found != cols )
                 {
                     throw
                             new GridInvalidException
                                     (
-                                            String.format( "Invalid grid. At line %d found %d columns instead %d.", row, col, cols )
+                                            String.format( "Invalid grid. At line %d found %d columns instead %d.", row, found, cols )
                                     );
                 }
 
-                writer.write( data );
-                writer.write( '\n' );
+                this.buffer.reset();
+                this.writeRow( line, this.tokenizer, this.buffer );
+                this.buffer.writeTo( sink );
             }
             else
             {
@@ -154,15 +231,8 @@ public abstract class GridWriter
             }
             this.rowEnd();
 
-            ready = this.reader.ready();
-            if ( ready )
-            {
-                this.line = this.reader.readLine();
-            }
-
+            ready = this.lines.next();
         }
-        while ( ready )
-                ;
 
         /* --- check all rows have been written --- */
         if ( row != rows )
@@ -173,9 +243,142 @@ public abstract class GridWriter
                                     String.format( "Invalid grid. Expected %d rows, but found %d rows.", rows, row )
                             );
         }
+    }
 
-        /* --- whole grid wrote --- */
-        this.gridEnd();
+    /**
+     * appends a whole row to the output, line end included;
+     * the number of cells has already been checked;
+     *
+     * @param line         the source line;
+     * @param tokenizer    the cells found in line;
+     * @param out          the output rows;
+     * @throws GridInvalidException if a cell cannot be handled;
+     */
+    protected void writeRow( byte[] line, GridRowTokenizer tokenizer, GridRowBuffer out )
+            throws
+                GridInvalidException
+    {
+        int count = tokenizer.getCount();
+        for ( int col = 0; col < count; col++ )
+        {
+            if ( col > 0 )
+            {
+                out.append( (byte) ' ' );
+            }
+            this.cell
+                    (
+                            line,
+                            tokenizer.getStart( col ),
+                            tokenizer.getEnd( col ),
+                            out
+                    );
+        }
+        out.append( (byte) '\n' );
+    }
+
+    /**
+     * called by the parallel writer, on the worker thread,
+     * before the rows of a block are written;
+     *
+     * @return the state of the block, handed back to 'blockWritten(...)'; or null;
+     */
+    protected Object blockBegin()
+    {
+        return
+                null;
+    }
+    /**
+     * called by the parallel writer, on the worker thread,
+     * after the rows of a block have been written, even if they failed;
+     */
+    protected void blockEnd()
+    {
+        /* do nothing */
+    }
+    /**
+     * called by the parallel writer, on the writing thread and in row order,
+     * after the rows of a block have been sent to the destination;
+     *
+     * @param state    the state returned by 'blockBegin()' for the block;
+     */
+    protected void blockWritten( Object state )
+    {
+        /* do nothing */
+    }
+
+    /**
+     * checks whether rows can be written concurrently by several threads;
+     * it is true only if 'writeRow(...)' does not change the writer state
+     * and rows can be handled in any order;
+     *
+     * @return true, if rows can be written concurrently; false, otherwise;
+     */
+    protected boolean isConcurrent()
+    {
+        return
+                false;
+    }
+
+    /**
+     * appends a single cell to the output row;
+     * the old NODATA value is replaced, then the cell is handled as
+     * text string via the 'cell(String)' method;
+     * sub-classes not changing cells can copy bytes without building text strings;
+     *
+     * @param line     the source line;
+     * @param start    position of the cell first byte;
+     * @param end      position following the cell last byte;
+     * @param out      the output row;
+     */
+    protected void cell( byte[] line, int start, int end, GridRowBuffer out )
+    {
+        String value = this.replacer.replace( line, start, end );
+        if ( value == null )
+        {
+            value = new String( line, start, end - start, StandardCharsets.US_ASCII );
+        }
+        out.append( this.cell( value ) );
+    }
+
+    /**
+     * gets the total rows in grid;
+     *
+     * @return the number of rows;
+     */
+    protected Integer getRows()
+    {
+        return
+                this.rows;
+    }
+    /**
+     * gets the total columns in each grid row;
+     *
+     * @return the number of columns;
+     */
+    protected Integer getCols()
+    {
+        return
+                this.cols;
+    }
+    /**
+     * gets the source grid lines;
+     *
+     * @return the grid lines;
+     */
+    protected GridLineReader getLines()
+    {
+        return
+                this.lines;
+    }
+    /**
+     * gets the class replacing the old NODATA value with the new one;
+     *
+     * @return the NODATA replacer;
+     */
+    protected RasterHeader.NoDataReplace getReplacer()
+    {
+        return
+                this.replacer;
     }
 
     /* --- abstract methods --- */
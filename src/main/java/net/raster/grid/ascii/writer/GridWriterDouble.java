@@ -0,0 +1,112 @@
+package net.raster.grid.ascii.writer;
+
+
+import net.raster.grid.ascii.DoubleCellListener;
+import net.raster.grid.ascii.GridInvalidException;
+import net.raster.grid.ascii.header.RasterHeader;
+import net.raster.grid.ascii.header.value.RasterTokenValue;
+import net.raster.grid.ascii.reader.GridLineReader;
+import net.raster.grid.ascii.reader.GridRowTokenizer;
+
+
+/**
+ * Grid writer with listener according the interface: DoubleCellListener;
+ */
+public class GridWriterDouble extends GridWriterNumber
+{
+    /* --- properties --- */
+    private final DoubleCellListener    listener;
+    /**
+     * index of current row; -1 before the first row;
+     */
+    private int                         row     = -1;
+
+    /* --- constructor --- */
+    /**
+     * creates new grid writer;
+     *
+     * @param nRow         total rows in grid;
+     * @param nCol         total columns in each row;
+     * @param lines        the source raster lines, positioned on the first grid line;
+     * @param nodata       replacer for NODATA values;
+     * @param nodataValue  the NODATA value written in header; it might be null;
+     * @param listener     call back methods;
+     */
+    public GridWriterDouble
+    (
+            Integer                     nRow,
+            Integer                     nCol,
+            GridLineReader              lines,
+            RasterHeader.NoDataReplace  nodata,
+            RasterTokenValue            nodataValue,
+            DoubleCellListener          listener
+    )
+            throws
+                IllegalArgumentException
+    {
+        super( nRow, nCol, lines, nodata, nodataValue );
+        if ( listener == null )
+        {
+            throw
+                    new IllegalArgumentException( "Listener not defined." );
+        }
+        this.listener = listener;
+    }
+
+    /* --- implemented methods --- */
+    @Override
+    protected void gridBegin()
+    {
+        this.listener.gridBegin();
+    }
+
+    @Override
+    protected void gridEnd()
+    {
+        this.listener.gridEnd();
+    }
+
+    @Override
+    protected void rowBegin()
+    {
+        this.row ++ ;
+        this.listener.rowBegin();
+    }
+
+    @Override
+    protected void rowEnd()
+    {
+        this.listener.rowEnd();
+    }
+
+    @Override
+    protected void writeRow( byte[] line, GridRowTokenizer tokenizer, GridRowBuffer out )
+            throws
+                GridInvalidException
+    {
+        int row     = this.row;
+        int count   = tokenizer.getCount();
+        for ( int col = 0; col < count; col++ )
+        {
+            if ( col > 0 )
+            {
+                out.append( (byte) ' ' );
+            }
+            int     start   = tokenizer.getStart( col );
+            int     end     = tokenizer.getEnd( col );
+            double  value   = this.parse( line, start, end, row, col );
+            double  result  = this.listener.cell( row, col, value, this.isNoData( value ) );
+            if ( Double.doubleToRawLongBits( result ) == Double.doubleToRawLongBits( value ) )
+            {
+                /* --- unchanged cells keep their text --- */
+                this.cell( line, start, end, out );
+            }
+            else
+            {
+                this.append( result, out );
+            }
+        }
+        out.append( (byte) '\n' );
+    }
+
+}
@@ -3,8 +3,7 @@ package net.raster.grid.ascii.writer;
 
 import net.raster.grid.ascii.GridScanListener;
 import net.raster.grid.ascii.header.RasterHeader;
-
-import java.io.BufferedReader;
+import net.raster.grid.ascii.reader.GridLineReader;
 
 
 /**
@@ -23,23 +22,21 @@ public class GridWriterListener extends GridWriter
      *
      * @param nRow   total rows in grid;
      * @param nCol   total columns in each row;
-     * @param br     the source raster reader;
-     * @param first  the first grid line;
+     * @param lines  the source raster lines, positioned on the first grid line;
      * @param nodata replacer for NODATA values;
      */
     protected GridWriterListener
     (
             Integer                     nRow,
             Integer                     nCol,
-            BufferedReader              br,
-            String                      first,
+            GridLineReader              lines,
             RasterHeader.NoDataReplace  nodata,
             GridScanListener            scanner
     )
             throws
                 IllegalArgumentException
     {
-        super( nRow, nCol, br, first, nodata );
+        super( nRow, nCol, lines, nodata );
         if ( scanner == null )
         {
             throw
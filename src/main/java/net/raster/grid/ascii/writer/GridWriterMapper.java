@@ -0,0 +1,121 @@
+package net.raster.grid.ascii.writer;
+
+
+import net.raster.grid.ascii.CellMapper;
+import net.raster.grid.ascii.GridInvalidException;
+import net.raster.grid.ascii.header.RasterHeader;
+import net.raster.grid.ascii.header.value.RasterTokenValue;
+import net.raster.grid.ascii.reader.GridLineReader;
+import net.raster.grid.ascii.reader.GridRowTokenizer;
+
+
+/**
+ * Grid writer applying a stateless cell mapper, according the interface: CellMapper;
+ * since rows do not depend on each other, they can be written concurrently
+ * if parallelism is enabled;
+ */
+public class GridWriterMapper extends GridWriterNumber
+{
+    /* --- properties --- */
+    private final CellMapper    mapper;
+    /**
+     * index of current row, used only to report errors when rows are written one by one;
+     */
+    private int                 row     = -1;
+
+    /* --- constructor --- */
+    /**
+     * creates new grid writer;
+     *
+     * @param nRow         total rows in grid;
+     * @param nCol         total columns in each row;
+     * @param lines        the source raster lines, positioned on the first grid line;
+     * @param nodata       replacer for NODATA values;
+     * @param nodataValue  the NODATA value written in header; it might be null;
+     * @param mapper       the stateless cell mapper;
+     */
+    public GridWriterMapper
+    (
+            Integer                     nRow,
+            Integer                     nCol,
+            GridLineReader              lines,
+            RasterHeader.NoDataReplace  nodata,
+            RasterTokenValue            nodataValue,
+            CellMapper                  mapper
+    )
+            throws
+                IllegalArgumentException
+    {
+        super( nRow, nCol, lines, nodata, nodataValue );
+        if ( mapper == null )
+        {
+            throw
+                    new IllegalArgumentException( "Mapper not defined." );
+        }
+        this.mapper = mapper;
+    }
+
+    /* --- implemented methods --- */
+    @Override
+    protected void gridBegin()
+    {
+        /* do nothing */
+    }
+
+    @Override
+    protected void gridEnd()
+    {
+        /* do nothing */
+    }
+
+    @Override
+    protected void rowBegin()
+    {
+        this.row ++ ;
+    }
+
+    @Override
+    protected void rowEnd()
+    {
+        /* do nothing */
+    }
+
+    @Override
+    protected boolean isConcurrent()
+    {
+        return
+                true;
+    }
+
+    @Override
+    protected void writeRow( byte[] line, GridRowTokenizer tokenizer, GridRowBuffer out )
+            throws
+                GridInvalidException
+    {
+        CellMapper  mapper  = this.mapper;
+        int         row     = this.row;
+        int         count   = tokenizer.getCount();
+        for ( int col = 0; col < count; col++ )
+        {
+            if ( col > 0 )
+            {
+                out.append( (byte) ' ' );
+            }
+            int     start   = tokenizer.getStart( col );
+            int     end     = tokenizer.getEnd( col );
+            double  value   = this.parse( line, start, end, row, col );
+            double  result  = this.isNoData( value ) ? value : mapper.map( value );
+            if ( Double.doubleToRawLongBits( result ) == Double.doubleToRawLongBits( value ) )
+            {
+                /* --- unchanged cells keep their text --- */
+                this.cell( line, start, end, out );
+            }
+            else
+            {
+                this.append( result, out );
+            }
+        }
+        out.append( (byte) '\n' );
+    }
+
+}
@@ -0,0 +1,189 @@
+package net.raster.grid.ascii.writer;
+
+
+import net.raster.grid.ascii.GridInvalidException;
+import net.raster.grid.ascii.header.RasterHeader;
+import net.raster.grid.ascii.header.value.RasterTokenValue;
+import net.raster.grid.ascii.number.DoubleParser;
+import net.raster.grid.ascii.reader.GridLineReader;
+
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Grid writer handling cells as numbers instead of text strings;
+ * cells are parsed after the NODATA replacement and written back
+ * with the shortest digits; NaN and NODATA values are written with
+ * the header NODATA text;
+ */
+public abstract class GridWriterNumber extends GridWriter
+{
+    /* --- properties --- */
+    /**
+     * true, if the NODATA value is defined;
+     */
+    private final boolean   nodataDefined;
+    /**
+     * the NODATA value;
+     */
+    private final double    nodata;
+    /**
+     * the NODATA value as written in header;
+     */
+    private final String    nodataText;
+    /**
+     * the last replacing value and its number;
+     * it is held in a single immutable object, so rows can be parsed concurrently;
+     */
+    private volatile Replaced   replaced;
+
+    /* --- constructor --- */
+    /**
+     * creates new grid writer;
+     *
+     * @param nRow         total rows in grid;
+     * @param nCol         total columns in each row;
+     * @param lines        the source raster lines, positioned on the first grid line;
+     * @param nodata       replacer for NODATA values;
+     * @param nodataValue  the NODATA value written in header; it might be null;
+     */
+    protected GridWriterNumber
+        (
+                Integer                     nRow,
+                Integer                     nCol,
+                GridLineReader              lines,
+                RasterHeader.NoDataReplace  nodata,
+                RasterTokenValue            nodataValue
+        )
+    {
+        super( nRow, nCol, lines, nodata );
+        this.nodataDefined  = ( nodataValue != null );
+        this.nodata         = ( nodataValue != null ) ? nodataValue.getValueAsNumber().doubleValue() : Double.NaN;
+        this.nodataText     = ( nodataValue != null ) ? nodataValue.getValueAsText() : null;
+    }
+
+    /* --- cell handling --- */
+    /**
+     * parses a single cell, after the NODATA replacement;
+     *
+     * @param line     the source line;
+     * @param start    position of the cell first byte;
+     * @param end      position following the cell last byte;
+     * @param row      the cell row, used to report errors;
+     * @param col      the cell column, used to report errors;
+     * @return the cell value;
+     * @throws GridInvalidException if the cell is not a number;
+     */
+    protected double parse( byte[] line, int start, int end, int row, int col )
+            throws
+                GridInvalidException
+    {
+        String replace = this.getReplacer().replace( line, start, end );
+        try
+        {
+            if ( replace != null )
+            {
+                Replaced replaced = this.replaced;
+                if ( ( replaced == null ) || ( replace != replaced.text ) )
+                {
+                    replaced        = new Replaced( replace, DoubleParser.parse( replace ) );
+                    this.replaced   = replaced;
+                }
+                return
+                        replaced.value;
+            }
+            return
+                    DoubleParser.parse( line, start, end );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw
+                    new GridCellException( row, col, new String( line, start, end - start, StandardCharsets.US_ASCII ) );
+        }
+    }
+    /**
+     * checks whether a value is the NODATA one;
+     *
+     * @param value    the value to check;
+     * @return true, if NODATA is defined and the value is equal to it; false, otherwise;
+     */
+    protected boolean isNoData( double value )
+    {
+        return
+                this.nodataDefined && ( value == this.nodata );
+    }
+    /**
+     * appends a value to the output row;
+     * NaN and the NODATA value are written with the NODATA text;
+     *
+     * @param value    the value to append;
+     * @param out      the output row;
+     * @throws GridInvalidException if the value is NaN and NODATA is not defined;
+     */
+    protected void append( double value, GridRowBuffer out )
+            throws
+                GridInvalidException
+    {
+        if ( this.nodataDefined && ( Double.isNaN( value ) || ( value == this.nodata ) ) )
+        {
+            out.append( this.nodataText );
+        }
+        else if ( Double.isNaN( value ) )
+        {
+            throw
+                    new GridInvalidException( "Invalid grid. A NaN cell cannot be written, because NODATA is not defined." );
+        }
+        else
+        {
+            out.append( value );
+        }
+    }
+
+    /* --- implemented methods --- */
+    @Override
+    protected String cell( String value )
+    {
+        return
+                value;
+    }
+
+    /**
+     * appends a single cell unchanged, after the NODATA replacement;
+     *
+     * @param line     the source line;
+     * @param start    position of the cell first byte;
+     * @param end      position following the cell last byte;
+     * @param out      the output row;
+     */
+    @Override
+    protected void cell( byte[] line, int start, int end, GridRowBuffer out )
+    {
+        String value = this.getReplacer().replace( line, start, end );
+        if ( value == null )
+        {
+            out.append( line, start, end );
+        }
+        else
+        {
+            out.append( value );
+        }
+    }
+
+
+    /* --- internal classes --- */
+    /**
+     * a replacing value and its number;
+     */
+    private static final class Replaced
+    {
+        private final String    text;
+        private final double    value;
+
+        private Replaced( String text, double value )
+        {
+            this.text   = text;
+            this.value  = value;
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+package net.raster.grid.ascii.writer;
+
+
+import net.raster.grid.ascii.GridInvalidException;
+import net.raster.grid.ascii.GridReducer;
+import net.raster.grid.ascii.header.RasterHeader;
+import net.raster.grid.ascii.header.value.RasterTokenValue;
+import net.raster.grid.ascii.reader.GridLineReader;
+import net.raster.grid.ascii.reader.GridRowTokenizer;
+
+
+/**
+ * Grid writer computing a reduction, according the interface: GridReducer,
+ * while the grid is written unchanged;
+ * rows can be written concurrently: each block of rows gets its own accumulator,
+ * held by the worker thread, then accumulators are merged in row order;
+ *
+ * @param <A> the accumulator type;
+ */
+public class GridWriterReducer< A > extends GridWriterNumber
+{
+    /* --- properties --- */
+    private final GridReducer<A>    reducer;
+    /**
+     * the accumulator of rows being written by current thread;
+     */
+    private final ThreadLocal<A>    current = new ThreadLocal<>();
+    /**
+     * the accumulator of all rows written so far;
+     */
+    private A                       result;
+    /**
+     * index of current row, used only to report errors when rows are written one by one;
+     */
+    private int                     row     = -1;
+    /**
+     * true, if cells are copied to the output;
+     */
+    private boolean                 copy    = true;
+
+    /* --- constructor --- */
+    /**
+     * creates new grid writer;
+     *
+     * @param nRow         total rows in grid;
+     * @param nCol         total columns in each row;
+     * @param lines        the source raster lines, positioned on the first grid line;
+     * @param nodata       replacer for NODATA values;
+     * @param nodataValue  the NODATA value written in header; it might be null;
+     * @param reducer      the reduction to compute;
+     */
+    public GridWriterReducer
+    (
+            Integer                     nRow,
+            Integer                     nCol,
+            GridLineReader              lines,
+            RasterHeader.NoDataReplace  nodata,
+            RasterTokenValue            nodataValue,
+            GridReducer<A>              reducer
+    )
+            throws
+                IllegalArgumentException
+    {
+        super( nRow, nCol, lines, nodata, nodataValue );
+        if ( reducer == null )
+        {
+            throw
+                    new IllegalArgumentException( "Reducer not defined." );
+        }
+        this.reducer = reducer;
+    }
+
+    /* --- setters and getters --- */
+    /**
+     * defines whether cells are copied to the output;
+     * without copy, cells are only parsed and reduced, and nothing is written;
+     *
+     * @param copy    false, to compute the reduction only;
+     */
+    public void setCopy( boolean copy )
+    {
+        this.copy = copy;
+    }
+    /**
+     * gets the reduction of the whole grid;
+     *
+     * @return the merged accumulator; or null if the grid has not been written;
+     */
+    public A getResult()
+    {
+        return
+                this.result;
+    }
+
+    /* --- implemented methods --- */
+    @Override
+    protected void gridBegin()
+    {
+        this.result = this.reducer.create();
+        this.current.set( this.result );
+    }
+
+    @Override
+    protected void gridEnd()
+    {
+        this.current.remove();
+    }
+
+    @Override
+    protected void rowBegin()
+    {
+        this.row ++ ;
+    }
+
+    @Override
+    protected void rowEnd()
+    {
+        /* do nothing */
+    }
+
+    @Override
+    protected boolean isConcurrent()
+    {
+        return
+                true;
+    }
+
+    @Override
+    protected Object blockBegin()
+    {
+        A accumulator = this.reducer.create();
+        this.current.set( accumulator );
+        return
+                accumulator;
+    }
+
+    @Override
+    protected void blockEnd()
+    {
+        this.current.remove();
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    protected void blockWritten( Object state )
+    {
+        this.result = this.reducer.merge( this.result, (A) state );
+    }
+
+    @Override
+    protected void writeRow( byte[] line, GridRowTokenizer tokenizer, GridRowBuffer out )
+            throws
+                GridInvalidException
+    {
+        GridReducer<A>  reducer     = this.reducer;
+        A               accumulator = this.current.get();
+        int             row         = this.row;
+        int             count       = tokenizer.getCount();
+        if ( ! this.copy )
+        {
+            for ( int col = 0; col < count; col++ )
+            {
+                double value = this.parse( line, tokenizer.getStart( col ), tokenizer.getEnd( col ), row, col );
+                if ( this.isNoData( value ) )
+                {
+                    reducer.accumulateNoData( accumulator );
+                }
+                else
+                {
+                    reducer.accumulate( accumulator, value );
+                }
+            }
+            return;
+        }
+        for ( int col = 0; col < count; col++ )
+        {
+            if ( col > 0 )
+            {
+                out.append( (byte) ' ' );
+            }
+            int     start   = tokenizer.getStart( col );
+            int     end     = tokenizer.getEnd( col );
+            double  value   = this.parse( line, start, end, row, col );
+            if ( this.isNoData( value ) )
+            {
+                reducer.accumulateNoData( accumulator );
+            }
+            else
+            {
+                reducer.accumulate( accumulator, value );
+            }
+            this.cell( line, start, end, out );
+        }
+        out.append( (byte) '\n' );
+    }
+
+}
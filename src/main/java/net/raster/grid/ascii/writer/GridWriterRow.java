@@ -0,0 +1,154 @@
+package net.raster.grid.ascii.writer;
+
+
+import net.raster.grid.ascii.DoubleRowListener;
+import net.raster.grid.ascii.GridInvalidException;
+import net.raster.grid.ascii.header.RasterHeader;
+import net.raster.grid.ascii.header.value.RasterTokenValue;
+import net.raster.grid.ascii.reader.GridLineReader;
+import net.raster.grid.ascii.reader.GridRowTokenizer;
+
+import java.util.BitSet;
+
+
+/**
+ * Grid writer with listener according the interface: DoubleRowListener;
+ */
+public class GridWriterRow extends GridWriterNumber
+{
+    /* --- properties --- */
+    private final DoubleRowListener listener;
+    /**
+     * the row cells handed to the listener;
+     */
+    private final double[]          values;
+    /**
+     * the row cells as parsed;
+     */
+    private final double[]          parsed;
+    /**
+     * the cells flagged as NODATA;
+     */
+    private final BitSet            nodata;
+    /**
+     * the cells holding the NODATA value as parsed;
+     */
+    private final BitSet            flagged;
+    /**
+     * index of current row; -1 before the first row;
+     */
+    private int                     row     = -1;
+
+    /* --- constructor --- */
+    /**
+     * creates new grid writer;
+     *
+     * @param nRow         total rows in grid;
+     * @param nCol         total columns in each row;
+     * @param lines        the source raster lines, positioned on the first grid line;
+     * @param nodata       replacer for NODATA values;
+     * @param nodataValue  the NODATA value written in header; it might be null;
+     * @param listener     call back methods;
+     */
+    public GridWriterRow
+    (
+            Integer                     nRow,
+            Integer                     nCol,
+            GridLineReader              lines,
+            RasterHeader.NoDataReplace  nodata,
+            RasterTokenValue            nodataValue,
+            DoubleRowListener           listener
+    )
+            throws
+                IllegalArgumentException
+    {
+        super( nRow, nCol, lines, nodata, nodataValue );
+        if ( listener == null )
+        {
+            throw
+                    new IllegalArgumentException( "Listener not defined." );
+        }
+        this.listener   = listener;
+        this.values     = new double[ nCol ];
+        this.parsed     = new double[ nCol ];
+        this.nodata     = new BitSet( nCol );
+        this.flagged    = new BitSet( nCol );
+    }
+
+    /* --- implemented methods --- */
+    @Override
+    protected void gridBegin()
+    {
+        this.listener.gridBegin();
+    }
+
+    @Override
+    protected void gridEnd()
+    {
+        this.listener.gridEnd();
+    }
+
+    @Override
+    protected void rowBegin()
+    {
+        this.row ++ ;
+    }
+
+    @Override
+    protected void rowEnd()
+    {
+        /* do nothing */
+    }
+
+    @Override
+    protected void writeRow( byte[] line, GridRowTokenizer tokenizer, GridRowBuffer out )
+            throws
+                GridInvalidException
+    {
+        int         row     = this.row;
+        int         count   = tokenizer.getCount();
+        double[]    values  = this.values;
+        double[]    parsed  = this.parsed;
+        BitSet      nodata  = this.nodata;
+        BitSet      flagged = this.flagged;
+
+        /* --- parse the whole row --- */
+        nodata.clear();
+        for ( int col = 0; col < count; col++ )
+        {
+            double value = this.parse( line, tokenizer.getStart( col ), tokenizer.getEnd( col ), row, col );
+            parsed[ col ] = value;
+            if ( this.isNoData( value ) )
+            {
+                nodata.set( col );
+            }
+        }
+        System.arraycopy( parsed, 0, values, 0, count );
+        flagged.clear();
+        flagged.or( nodata );
+
+        this.listener.row( row, values, nodata );
+
+        /* --- write the row --- */
+        for ( int col = 0; col < count; col++ )
+        {
+            if ( col > 0 )
+            {
+                out.append( (byte) ' ' );
+            }
+            boolean empty = nodata.get( col );
+            if ( ( empty == flagged.get( col ) ) && ( Double.doubleToRawLongBits( values[ col ] ) == Double.doubleToRawLongBits( parsed[ col ] ) ) )
+            {
+                /* --- unchanged cells keep their text --- */
+                this.cell( line, tokenizer.getStart( col ), tokenizer.getEnd( col ), out );
+            }
+            else
+            {
+                /* --- a cleared flag leaves the value to decide --- */
+                this.append( empty ? Double.NaN : values[ col ], out );
+            }
+        }
+        out.append( (byte) '\n' );
+    }
+
+}
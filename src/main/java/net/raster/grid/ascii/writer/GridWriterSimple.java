@@ -2,8 +2,7 @@ package net.raster.grid.ascii.writer;
 
 
 import net.raster.grid.ascii.header.RasterHeader;
-
-import java.io.BufferedReader;
+import net.raster.grid.ascii.reader.GridLineReader;
 
 
 /**
@@ -19,20 +18,18 @@ public class GridWriterSimple extends GridWriter
      *
      * @param nRow   total rows in grid;
      * @param nCol   total columns in each row;
-     * @param br     the source raster reader;
-     * @param first  the first grid line;
+     * @param lines  the source raster lines, positioned on the first grid line;
      * @param nodata replacer for NODATA values;
      */
     public GridWriterSimple
         (
                 Integer                     nRow,
                 Integer                     nCol,
-                BufferedReader              br,
-                String                      first,
+                GridLineReader              lines,
                 RasterHeader.NoDataReplace  nodata
         )
     {
-        super( nRow, nCol, br, first, nodata );
+        super( nRow, nCol, lines, nodata );
     }
 
     /* --- implemented methods --- */
@@ -66,4 +63,25 @@ public class GridWriterSimple extends GridWriter
         return value;
     }
 
+    @Override
+    protected boolean isConcurrent()
+    {
+        return
+                true;
+    }
+
+    @Override
+    protected void cell( byte[] line, int start, int end, GridRowBuffer out )
+    {
+        String value = this.getReplacer().replace( line, start, end );
+        if ( value == null )
+        {
+            out.append( line, start, end );
+        }
+        else
+        {
+            out.append( value );
+        }
+    }
+
 }
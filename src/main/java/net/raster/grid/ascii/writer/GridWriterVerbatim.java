@@ -0,0 +1,236 @@
+package net.raster.grid.ascii.writer;
+
+
+import net.raster.grid.ascii.GridInvalidException;
+import net.raster.grid.ascii.header.RasterHeader;
+import net.raster.grid.ascii.reader.GridLineReader;
+import net.raster.grid.ascii.reader.GridLineReaderMapped;
+import net.raster.grid.ascii.reader.GridMapping;
+import net.raster.grid.ascii.reader.GridRowTokenizer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+
+/**
+ * To write grid copying its body verbatim, when cells are left untouched;
+ * rows and cells are only counted to check the grid size;
+ * memory mapped grids are copied chunk by chunk, just after each chunk has
+ * been checked, straight from the mapping to the destination;
+ * otherwise, lines are copied one by one, with a new line character;
+ * unlike other writers, original cell separators are kept;
+ */
+public class GridWriterVerbatim extends GridWriterSimple
+{
+    /* --- static properties --- */
+    /**
+     * bytes checked and copied at once from a mapped grid;
+     */
+    static final int            CHUNK_SIZE  = 1 << 22;
+    /**
+     * the line end written after each line;
+     */
+    private static final byte[] NEW_LINE    = { '\n' };
+
+    /* --- properties --- */
+    /**
+     * number of rows found so far;
+     */
+    private int                 row;
+    /**
+     * number of cells found so far in current line;
+     */
+    private int                 found;
+    /**
+     * true, if the last byte read belongs to a cell;
+     */
+    private boolean             inCell;
+    /**
+     * true, if any byte has been read after the last line end;
+     */
+    private boolean             inLine;
+    /**
+     * true, if the last byte read is a carriage return;
+     */
+    private boolean             afterReturn;
+
+    /* --- constructor --- */
+    /**
+     * creates new grid writer;
+     *
+     * @param nRow   total rows in grid;
+     * @param nCol   total columns in each row;
+     * @param lines  the source raster lines, positioned on the first grid line;
+     * @param nodata replacer for NODATA values;
+     */
+    public GridWriterVerbatim
+        (
+                Integer                     nRow,
+                Integer                     nCol,
+                GridLineReader              lines,
+                RasterHeader.NoDataReplace  nodata
+        )
+    {
+        super( nRow, nCol, lines, nodata );
+    }
+
+    /* --- writer --- */
+    @Override
+    public void write( GridSink sink )
+            throws
+                IOException
+    {
+        /* --- begin to write grid --- */
+        this.gridBegin();
+
+        GridLineReader lines = this.getLines();
+        if ( lines instanceof GridLineReaderMapped )
+        {
+            this.copyMapped( (GridLineReaderMapped) lines, sink );
+        }
+        else
+        {
+            this.copyLines( lines, sink );
+        }
+
+        /* --- check all rows have been written --- */
+        if ( this.row != this.getRows() )
+        {
+            throw
+                    new GridInvalidException
+                            (
+                                    String.format( "Invalid grid. Expected %d rows, but found %d rows.", this.getRows(), this.row )
+                            );
+        }
+
+        /* --- whole grid wrote --- */
+        this.gridEnd();
+    }
+
+    /* --- internal methods --- */
+    private void copyLines( GridLineReader lines, GridSink sink )
+            throws
+                IOException
+    {
+        GridRowTokenizer    tokenizer   = new GridRowTokenizer();
+        boolean             ready       = lines.isAvailable();
+        while ( ready )
+        {
+            byte[]  line    = lines.getLine();
+            int     length  = lines.getLength();
+            this.checkRow( tokenizer.tokenize( line, length ) );
+            sink.write( line, 0, length );
+            sink.write( NEW_LINE, 0, 1 );
+
+            ready = lines.next();
+        }
+    }
+
+    private void copyMapped( GridLineReaderMapped lines, GridSink sink )
+            throws
+                IOException
+    {
+        GridMapping mapping = lines.getMapping();
+        long        from    = lines.isAvailable() ? lines.getLineStart() : lines.getPosition();
+        long        end     = mapping.getSize();
+        byte        last    = '\n';
+        while ( from < end )
+        {
+            ByteBuffer  chunk   = mapping.view( from, Math.min( end, from + CHUNK_SIZE ) );
+            int         size    = chunk.remaining();
+            this.scan( chunk );
+            last = chunk.get( chunk.limit() - 1 );
+            sink.write( chunk );
+            from += size;
+        }
+        if ( this.inLine )
+        {
+            this.checkRow( this.found );
+        }
+        if ( ( last != '\n' ) && ( last != '\r' ) )
+        {
+            sink.write( NEW_LINE, 0, 1 );
+        }
+    }
+
+    /**
+     * counts lines and cells in a chunk, splitting lines as the line readers do;
+     */
+    private void scan( ByteBuffer chunk )
+            throws
+                GridInvalidException
+    {
+        int limit = chunk.limit();
+        for ( int i = chunk.position(); i < limit; i++ )
+        {
+            byte c = chunk.get( i );
+            if ( c == '\n' )
+            {
+                if ( this.afterReturn )
+                {
+                    this.afterReturn = false;
+                }
+                else
+                {
+                    this.endLine();
+                }
+            }
+            else if ( c == '\r' )
+            {
+                this.endLine();
+                this.afterReturn = true;
+            }
+            else
+            {
+                this.afterReturn    = false;
+                this.inLine         = true;
+                if ( GridRowTokenizer.isSeparator( c ) )
+                {
+                    this.inCell = false;
+                }
+                else if ( ! this.inCell )
+                {
+                    this.inCell = true;
+                    this.found ++ ;
+                }
+            }
+        }
+    }
+    private void endLine()
+            throws
+                GridInvalidException
+    {
+        this.checkRow( this.found );
+        this.found  = 0;
+        this.inCell = false;
+        this.inLine = false;
+    }
+
+    /**
+     * checks a new row against the grid size;
+     */
+    private void checkRow( int found )
+            throws
+                GridInvalidException
+    {
+        int rows = this.getRows();
+        int cols = this.getCols();
+        if ( this.row++ >= rows )
+        {
+            throw
+                    new GridInvalidException
+                            (
+                                    String.format( "Invalid grid. Expected %d rows, but found %d rows.", rows, this.row )
+                            );
+        }
+        if ( found != cols )
+        {
+            throw
+                    new GridInvalidException
+                            (
+                                    String.format( "Invalid grid. At line %d found %d columns instead %d.", this.row, found, cols )
+                            );
+        }
+    }
+
+}
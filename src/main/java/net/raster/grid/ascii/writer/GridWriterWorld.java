@@ -0,0 +1,145 @@
+package net.raster.grid.ascii.writer;
+
+
+import net.raster.grid.ascii.GridInvalidException;
+import net.raster.grid.ascii.WorldCellListener;
+import net.raster.grid.ascii.header.RasterHeader;
+import net.raster.grid.ascii.reader.GridLineReader;
+import net.raster.grid.ascii.reader.GridRowTokenizer;
+
+
+/**
+ * Grid writer with listener according the interface: WorldCellListener;
+ * the x coordinates of the columns are computed once for the whole grid,
+ * the y coordinate once per row; each one is computed from the grid origin,
+ * so no rounding error is accumulated across the grid;
+ */
+public class GridWriterWorld extends GridWriterNumber
+{
+    /* --- properties --- */
+    private final WorldCellListener listener;
+    /**
+     * x coordinate of each column cell centers;
+     */
+    private final double[]          xs;
+    /**
+     * y coordinate of the southern row cell centers;
+     */
+    private final double            south;
+    /**
+     * the cell height;
+     */
+    private final double            dy;
+    /**
+     * index of current row; -1 before the first row;
+     */
+    private int                     row     = -1;
+    /**
+     * y coordinate of current row cell centers;
+     */
+    private double                  y;
+
+    /* --- constructor --- */
+    /**
+     * creates new grid writer;
+     *
+     * @param nRow      total rows in grid;
+     * @param nCol      total columns in each row;
+     * @param lines     the source raster lines, positioned on the first grid line;
+     * @param header    the grid header, it must be well formed;
+     * @param listener  call back methods;
+     */
+    public GridWriterWorld
+    (
+            Integer             nRow,
+            Integer             nCol,
+            GridLineReader      lines,
+            RasterHeader        header,
+            WorldCellListener   listener
+    )
+            throws
+                IllegalArgumentException
+    {
+        super( nRow, nCol, lines, header.getNoDataReplacer(), header.getNoDataValue() );
+        if ( listener == null )
+        {
+            throw
+                    new IllegalArgumentException( "Listener not defined." );
+        }
+        this.listener = listener;
+
+        /* --- cell size and center of the south-west cell --- */
+        double dx       = header.getCellWidth();
+        double dy       = header.getCellHeight();
+        double west     = header.isCorner() ? header.getWest()  + dx / 2D : header.getXllCenter().getValueAsNumber().doubleValue();
+        double south    = header.isCorner() ? header.getSouth() + dy / 2D : header.getYllCenter().getValueAsNumber().doubleValue();
+
+        this.xs = new double[ nCol ];
+        for ( int col = 0; col < nCol; col++ )
+        {
+            this.xs[ col ] = west + col * dx;
+        }
+        this.south  = south;
+        this.dy     = dy;
+    }
+
+    /* --- implemented methods --- */
+    @Override
+    protected void gridBegin()
+    {
+        this.listener.gridBegin();
+    }
+
+    @Override
+    protected void gridEnd()
+    {
+        this.listener.gridEnd();
+    }
+
+    @Override
+    protected void rowBegin()
+    {
+        this.row ++ ;
+        this.y = this.south + ( this.getRows() - 1 - this.row ) * this.dy;
+        this.listener.rowBegin( this.row, this.y );
+    }
+
+    @Override
+    protected void rowEnd()
+    {
+        this.listener.rowEnd( this.row );
+    }
+
+    @Override
+    protected void writeRow( byte[] line, GridRowTokenizer tokenizer, GridRowBuffer out )
+            throws
+                GridInvalidException
+    {
+        int         row     = this.row;
+        double      y       = this.y;
+        double[]    xs      = this.xs;
+        int         count   = tokenizer.getCount();
+        for ( int col = 0; col < count; col++ )
+        {
+            if ( col > 0 )
+            {
+                out.append( (byte) ' ' );
+            }
+            int     start   = tokenizer.getStart( col );
+            int     end     = tokenizer.getEnd( col );
+            double  value   = this.parse( line, start, end, row, col );
+            double  result  = this.listener.cell( row, col, xs[ col ], y, value, this.isNoData( value ) );
+            if ( Double.doubleToRawLongBits( result ) == Double.doubleToRawLongBits( value ) )
+            {
+                /* --- unchanged cells keep their text --- */
+                this.cell( line, start, end, out );
+            }
+            else
+            {
+                this.append( result, out );
+            }
+        }
+        out.append( (byte) '\n' );
+    }
+
+}
@@ -6,9 +6,14 @@ import net.raster.grid.ascii.header.value.TokenValue;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.*;
+import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import static org.junit.Assert.*;
 
@@ -22,6 +27,8 @@ public class RasterGridAsciiTest
 {
     @Rule
     public ExpectedException exception = ExpectedException.none();
+    @Rule
+    public TemporaryFolder   folder    = new TemporaryFolder();
 
     @Test
     public void GivenGridWhenParsedThenEqual() throws Exception
@@ -127,6 +134,169 @@ public class RasterGridAsciiTest
         reader.close();
     }
 
+    @Test
+    public void GivenValidGridWhenAddCellsAsNumbersThenValidGrid() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        RasterGridAscii raster  = RasterGridAscii.parse( this.getReader( "/grids/valid/source/spaces-nodata.asc" ) );
+        StringWriter    sw      = new StringWriter();
+        double[]        seen    = new double[ 24 ];
+        raster.setNoDataValue( "0" );
+        raster.writeCells
+                (
+                        sw,
+                        ( row, col, value, nodata ) ->
+                        {
+                            seen[ row * 4 + col ] = value;
+                            return
+                                    nodata ? value : value + 10.5;
+                        }
+                );
+
+        assertTrue
+                (
+                        sw.toString().endsWith
+                                (
+                                        "NODATA_value  0\n"
+                                        + "0 0 15.5 12.5\n"
+                                        + "0 30.5 110.5 46.5\n"
+                                        + "13.5 18.5 45.5 20.5\n"
+                                        + "42.5 52.5 60.5 16.5\n"
+                                        + "98.5 85.5 37.5 19.5\n"
+                                        + "23.5 15.5 11.5 0\n"
+                                )
+                );
+        assertEquals( 100D, seen[ 6 ],  0D );
+        assertEquals( 0D,   seen[ 23 ], 0D );
+    }
+
+    @Test
+    public void GivenWrongCellWhenAddCellsAsNumbersThenException() throws Exception
+    {
+        this.exception.expect( GridInvalidException.class );
+        this.exception.expectMessage( "At line 2, column 3, the value 'x' is not a number." );
+
+        String grid = "ncols 3\nnrows 2\nxllcorner 0\nyllcorner 0\ncellsize 1\n1 2 3\n4 5 x\n";
+        RasterGridAscii.parse( new StringReader( grid ) ).writeCells( new StringWriter(), ( row, col, value, nodata ) -> value );
+    }
+
+    @Test
+    public void GivenNoNoDataWhenCellsReturnNaNThenException() throws Exception
+    {
+        this.exception.expect( GridInvalidException.class );
+        this.exception.expectMessage( "Invalid grid. A NaN cell cannot be written, because NODATA is not defined." );
+
+        String grid = "ncols 3\nnrows 2\nxllcorner 0\nyllcorner 0\ncellsize 1\n1 2 3\n4 5 6\n";
+        RasterGridAscii.parse( new StringReader( grid ) ).writeCells( new StringWriter(), ( row, col, value, nodata ) -> ( value > 4 ) ? Double.NaN : value );
+    }
+
+    @Test
+    public void GivenValidGridWhenAddRowsAsNumbersThenValidGrid() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        RasterGridAscii raster  = RasterGridAscii.parse( this.getReader( "/grids/valid/source/spaces-nodata.asc" ) );
+        StringWriter    sw      = new StringWriter();
+        raster.setNoDataValue( "0" );
+        raster.writeRows
+                (
+                        sw,
+                        ( row, values, nodata ) ->
+                        {
+                            for ( int col = 0; col < values.length; col++ )
+                            {
+                                if ( ! nodata.get( col ) )
+                                {
+                                    values[ col ] += 10.5;
+                                }
+                            }
+                            nodata.clear( 0 );
+                            values[ 0 ] = 1;
+                            nodata.set( values.length - 1 );
+                        }
+                );
+
+        assertTrue
+                (
+                        sw.toString().endsWith
+                                (
+                                        "NODATA_value  0\n"
+                                        + "1 0 15.5 0\n"
+                                        + "1 30.5 110.5 0\n"
+                                        + "1 18.5 45.5 0\n"
+                                        + "1 52.5 60.5 0\n"
+                                        + "1 85.5 37.5 0\n"
+                                        + "1 15.5 11.5 0\n"
+                                )
+                );
+    }
+
+    @Test
+    public void GivenClearedFlagOnNoDataValueWhenAddRowsAsNumbersThenNoData() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        String          grid    = "ncols 3\nnrows 1\nxllcorner 0\nyllcorner 0\ncellsize 1\nNODATA_value -9999.0\n-9999 -9999 3\n";
+        StringWriter    sw      = new StringWriter();
+        RasterGridAscii.parse( new StringReader( grid ) ).writeRows
+                (
+                        sw,
+                        ( row, values, nodata ) ->
+                        {
+                            nodata.clear( 0 );
+                            nodata.clear( 1 );
+                            values[ 1 ] = 1;
+                        }
+                );
+
+        assertTrue( sw.toString(), sw.toString().endsWith( "\n-9999.0 1 3\n" ) );
+    }
+
+    @Test
+    public void GivenValidGridWhenCellsInWorldThenCoordinates() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        RasterGridAscii raster  = RasterGridAscii.parse( this.getReader( "/grids/valid/source/spaces-nodata.asc" ) );
+        double[]        xs      = new double[ 24 ];
+        double[]        ys      = new double[ 24 ];
+        raster.writeWorld
+                (
+                        new StringWriter(),
+                        ( row, col, x, y, value, nodata ) ->
+                        {
+                            xs[ row * 4 + col ] = x;
+                            ys[ row * 4 + col ] = y;
+                            return
+                                    value;
+                        }
+                );
+        assertEquals( 25D,  xs[ 0 ],  0D );
+        assertEquals( 275D, ys[ 0 ],  0D );
+        assertEquals( 175D, xs[ 23 ], 0D );
+        assertEquals( 25D,  ys[ 23 ], 0D );
+
+        raster = RasterGridAscii.parse( this.getReader( "/grids/valid/source/spaces-nodata.asc" ) );
+        raster.setCenter( "20.0", "10.0" );
+        raster.setCellSize( "50.0", "40.0" );
+        raster.writeWorld
+                (
+                        new StringWriter(),
+                        ( row, col, x, y, value, nodata ) ->
+                        {
+                            xs[ row * 4 + col ] = x;
+                            ys[ row * 4 + col ] = y;
+                            return
+                                    value;
+                        }
+                );
+        assertEquals( 20D,  xs[ 0 ],  0D );
+        assertEquals( 210D, ys[ 0 ],  0D );
+        assertEquals( 170D, xs[ 23 ], 0D );
+        assertEquals( 10D,  ys[ 23 ], 0D );
+    }
+
     @Test
     public void GivenValidGridWhenChangeHeaderThenValidGrid() throws Exception
     {
@@ -210,6 +380,243 @@ public class RasterGridAsciiTest
     }
 
 
+    @Test
+    public void GivenGridWithMixedSeparatorsWhenParsedThenNormalized() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        String source   = "ncols 3\r\nnrows 2\r\nxllcorner 0.0\r\nyllcorner 0.0\r\ncellsize 50.0\r\n"
+                        + "\t1  2\t\t3 \r\n"
+                        + "  4 5 6";
+        String expected = "ncols         3\nnrows         2\nxllcorner     0.0\nyllcorner     0.0\ncellsize      50.0\n"
+                        + "1 2 3\n"
+                        + "4 5 6\n";
+
+        RasterGridAscii raster  = RasterGridAscii.parse( new StringReader( source ) );
+        StringWriter    sw      = new StringWriter();
+        raster.write( sw );
+
+        assertEquals( expected, sw.toString() );
+    }
+
+    @Test
+    public void GivenGridFileWhenMappedThenEqual() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        this.compareMappedGridExpectedGrid( "/grids/idem/basic-nodata.asc",         "/grids/idem/basic-nodata.asc" );
+        this.compareMappedGridExpectedGrid( "/grids/valid/source/spaces.asc",       "/grids/valid/expected/spaces.asc" );
+        this.compareMappedGridExpectedGrid( "/grids/valid/source/dxdy.asc",         "/grids/valid/expected/dxdy.asc" );
+        this.compareMappedGridExpectedGrid( "/grids/valid/source/conc.asc",         "/grids/valid/expected/conc.asc" );
+    }
+    private void compareMappedGridExpectedGrid( String source, String expected ) throws Exception
+    {
+        this.compareMappedGridExpectedGrid( source, 1, expected );
+    }
+    @Test
+    public void GivenGridFileWhenWrittenInParallelThenEqual() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        this.compareMappedGridExpectedGrid( "/grids/idem/basic-nodata.asc",         4, "/grids/idem/basic-nodata.asc" );
+        this.compareMappedGridExpectedGrid( "/grids/valid/source/spaces.asc",       4, "/grids/valid/expected/spaces.asc" );
+        this.compareMappedGridExpectedGrid( "/grids/valid/source/cellsize.asc",     4, "/grids/valid/expected/cellsize.asc" );
+        this.compareMappedGridExpectedGrid( "/grids/valid/source/kernel.asc",       4, "/grids/valid/expected/kernel.asc" );
+    }
+    @Test
+    public void GivenWrongGridFileWhenWrittenInParallelThenException() throws Exception
+    {
+        this.exception.expect( GridInvalidException.class );
+
+        this.compareMappedGridExpectedGrid( "/grids/wrong/size-too-row.asc",        4, "/grids/wrong/size-too-row.asc" );
+    }
+    private void compareMappedGridExpectedGrid( String source, int threads, String expected ) throws Exception
+    {
+        RasterGridAscii raster  = RasterGridAscii.parse( Paths.get( this.getClass().getResource( source ).toURI() ) );
+        StringWriter    sw      = new StringWriter();
+
+        raster.setParallelism( threads );
+        raster.write( sw );
+
+        assertGrid( expected, sw.toString() );
+    }
+
+    @Test
+    public void GivenGridFileWhenMappedInParallelThenSameAsSequential() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        Path            source      = Paths.get( this.getClass().getResource( "/grids/valid/source/cellsize.asc" ).toURI() );
+        StringWriter    expected    = new StringWriter();
+        RasterGridAscii.parse( source ).writeCells( expected, ( row, col, value, nodata ) -> nodata ? value : Math.min( value * 2.5, 1000 ) );
+
+        RasterGridAscii raster      = RasterGridAscii.parse( source );
+        StringWriter    sw          = new StringWriter();
+        raster.setParallelism( 4 );
+        raster.map( sw, value -> Math.min( value * 2.5, 1000 ) );
+        assertEquals( expected.toString(), sw.toString() );
+    }
+    @Test
+    public void GivenWrongCellWhenMappedInParallelThenExceptionAtRow() throws Exception
+    {
+        this.exception.expect( GridInvalidException.class );
+        this.exception.expectMessage( "At line 1050, column 7, the value 'x' is not a number." );
+
+        /* --- a grid bigger than a single block --- */
+        StringBuilder grid = new StringBuilder( "ncols 1000\nnrows 1100\nxllcorner 0\nyllcorner 0\ncellsize 1\n" );
+        for ( int row = 1; row <= 1100; row++ )
+        {
+            for ( int col = 1; col <= 1000; col++ )
+            {
+                grid.append( ( ( row == 1050 ) && ( col == 7 ) ) ? "x" : "1.5" ).append( ( col < 1000 ) ? ' ' : '\n' );
+            }
+        }
+        Path file = this.folder.newFile( "wrong.asc" ).toPath();
+        Files.write( file, grid.toString().getBytes( StandardCharsets.US_ASCII ) );
+
+        RasterGridAscii raster = RasterGridAscii.parse( file );
+        raster.setParallelism( 4 );
+        raster.map( new StringWriter(), value -> value + 1 );
+    }
+
+    @Test
+    public void GivenGridFileWhenReducedInParallelThenSameAsSequential() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        GridReducer<double[]> reducer = new GridReducer<double[]>()
+        {
+            @Override
+            public double[] create()
+            {
+                return
+                        new double[ 3 ];
+            }
+            @Override
+            public void accumulate( double[] accumulator, double value )
+            {
+                accumulator[ 0 ] += value;
+                accumulator[ 1 ] ++ ;
+            }
+            @Override
+            public void accumulateNoData( double[] accumulator )
+            {
+                accumulator[ 2 ] ++ ;
+            }
+            @Override
+            public double[] merge( double[] first, double[] second )
+            {
+                for ( int i = 0; i < first.length; i++ )
+                {
+                    first[ i ] += second[ i ];
+                }
+                return
+                        first;
+            }
+        };
+
+        Path            source      = Paths.get( this.getClass().getResource( "/grids/valid/source/cellsize.asc" ).toURI() );
+        StringWriter    sw          = new StringWriter();
+        double[]        expected    = RasterGridAscii.parse( source ).reduce( sw, reducer );
+        assertGrid( "/grids/valid/expected/cellsize.asc", sw.toString() );
+        assertEquals( 385 * 438, expected[ 1 ] + expected[ 2 ], 0D );
+
+        RasterGridAscii raster      = RasterGridAscii.parse( source );
+        raster.setParallelism( 4 );
+        sw = new StringWriter();
+        assertArrayEquals( expected, raster.reduce( sw, reducer ), 0D );
+        assertGrid( "/grids/valid/expected/cellsize.asc", sw.toString() );
+    }
+
+    @Test
+    public void GivenGridWhenWrittenAsBytesThenEqual() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        this.compareBytesGridExpectedGrid( "/grids/idem/basic-nodata.asc",         "/grids/idem/basic-nodata.asc" );
+        this.compareBytesGridExpectedGrid( "/grids/valid/source/spaces.asc",       "/grids/valid/expected/spaces.asc" );
+        this.compareBytesGridExpectedGrid( "/grids/valid/source/cellsize.asc",     "/grids/valid/expected/cellsize.asc" );
+    }
+    private void compareBytesGridExpectedGrid( String source, String expected ) throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RasterGridAscii.parse( this.getReader( source ) ).write( bytes );
+        assertGrid( expected, new String( bytes.toByteArray(), StandardCharsets.US_ASCII ) );
+
+        bytes = new ByteArrayOutputStream();
+        RasterGridAscii.parse( Paths.get( this.getClass().getResource( source ).toURI() ) ).write( Channels.newChannel( bytes ) );
+        assertGrid( expected, new String( bytes.toByteArray(), StandardCharsets.US_ASCII ) );
+    }
+
+    @Test
+    public void GivenGridWhenWrittenVerbatimThenEqual() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        this.compareVerbatimGridExpectedGrid( "/grids/idem/basic-nodata.asc",       "/grids/idem/basic-nodata.asc" );
+        this.compareVerbatimGridExpectedGrid( "/grids/idem/basic.asc",              "/grids/idem/basic.asc" );
+        this.compareVerbatimGridExpectedGrid( "/grids/valid/source/spaces.asc",     "/grids/valid/expected/spaces.asc" );
+        this.compareVerbatimGridExpectedGrid( "/grids/valid/source/kernel.asc",     "/grids/valid/expected/kernel.asc" );
+    }
+    private void compareVerbatimGridExpectedGrid( String source, String expected ) throws Exception
+    {
+        RasterGridAscii raster  = RasterGridAscii.parse( this.getReader( source ) );
+        StringWriter    sw      = new StringWriter();
+        raster.setVerbatim( true );
+        raster.write( sw );
+        StringWriter    text    = new StringWriter();
+        RasterGridAscii.parse( new StringReader( sw.toString() ) ).write( text );
+        assertGrid( expected, text.toString() );
+
+        raster  = RasterGridAscii.parse( Paths.get( this.getClass().getResource( source ).toURI() ) );
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        raster.setVerbatim( true );
+        raster.write( bytes );
+        assertEquals( sw.toString(), new String( bytes.toByteArray(), StandardCharsets.US_ASCII ) );
+    }
+
+    @Test
+    public void GivenWrongGridWhenWrittenVerbatimThenSameException() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        String[] sources =
+                {
+                        "/grids/wrong/empty-line.asc",
+                        "/grids/wrong/size-wrong-col.asc",
+                        "/grids/wrong/size-wrong-row.asc",
+                        "/grids/wrong/size-too-col.asc",
+                        "/grids/wrong/size-too-row.asc"
+                };
+        for ( String source : sources )
+        {
+            String expected = this.getWriteError( RasterGridAscii.parse( this.getReader( source ) ) );
+            assertNotNull( source, expected );
+
+            RasterGridAscii raster = RasterGridAscii.parse( this.getReader( source ) );
+            raster.setVerbatim( true );
+            assertEquals( source, expected, this.getWriteError( raster ) );
+
+            raster = RasterGridAscii.parse( Paths.get( this.getClass().getResource( source ).toURI() ) );
+            raster.setVerbatim( true );
+            assertEquals( source, expected, this.getWriteError( raster ) );
+        }
+    }
+    private String getWriteError( RasterGridAscii raster ) throws IOException
+    {
+        try
+        {
+            raster.write( new ByteArrayOutputStream() );
+            return
+                    null;
+        }
+        catch ( GridInvalidException e )
+        {
+            return
+                    e.getMessage();
+        }
+    }
+
     @Test
     public void GivenWrongGridWhenParsingAndWritingThenException() throws Exception
     {
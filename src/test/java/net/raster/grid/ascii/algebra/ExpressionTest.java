@@ -0,0 +1,138 @@
+package net.raster.grid.ascii.algebra;
+
+import net.raster.grid.ascii.RasterGridAscii;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Test of compiled formulas;
+ */
+public class ExpressionTest
+{
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void GivenFormulaWhenEvaluatedThenResult() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        assertEquals( 0.5D,     this.evaluate( "(a - b) / (a + b)", 3, 1 ),         0D );
+        assertEquals( -4D,      this.evaluate( "-2^2", 0, 0 ),                      0D );
+        assertEquals( 512D,     this.evaluate( "2^3^2", 0, 0 ),                     0D );
+        assertEquals( 0.5D,     this.evaluate( "2^-1", 0, 0 ),                      0D );
+        assertEquals( 7D,       this.evaluate( "1 + 2 * 3", 0, 0 ),                 0D );
+        assertEquals( 1D,       this.evaluate( "a > b && !(a == 0) || b", 3, 1 ),   0D );
+        assertEquals( 3D,       this.evaluate( "a >= b ? max(a, b) : min(a, b)", 3, 1 ), 0D );
+        assertEquals( 0D,       this.evaluate( "a % 2 + round(b / 3) + abs(-b) - sqrt(4) + log10(100) - 2", 3, 1 ), 0D );
+        assertEquals( 1D,       this.evaluate( "pow(b, 2) + cos(0) * floor(0.5) + isnodata(1)", 3, 1 ), 0D );
+
+        /* --- NODATA propagation --- */
+        assertTrue( Double.isNaN( this.evaluate( "a + 1", Double.NaN, 1 ) ) );
+        assertTrue( Double.isNaN( this.evaluate( "a > 0 ? 1 : 2", Double.NaN, 1 ) ) );
+        assertTrue( Double.isNaN( this.evaluate( "b > 0 ? nodata : a", 3, 1 ) ) );
+        assertEquals( 1D,       this.evaluate( "isnodata(a) ? b : a", Double.NaN, 1 ), 0D );
+        assertTrue( Double.isNaN( this.evaluate( "a ^ 0", Double.NaN, 1 ) ) );
+        assertTrue( Double.isNaN( this.evaluate( "pow(a, 0)", Double.NaN, 1 ) ) );
+        assertTrue( Double.isNaN( this.evaluate( "nodata ^ 0", 3, 1 ) ) );
+        assertEquals( 1D,       this.evaluate( "a ^ 0", 3, 1 ),                     0D );
+
+        /* --- constants are folded --- */
+        assertEquals( 1,        Expression.compile( "1 + 2 * 3 - pi" ).getSize() );
+        assertEquals( 3,        Expression.compile( "a * (2 + 3)", "a" ).getSize() );
+    }
+
+    @Test
+    public void GivenRowsWhenEvaluatedThenSameAsCells() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        Expression  expression  = Expression.compile( "a < 0 ? nodata : (a - b) / (a + b) * 2 - sqrt(abs(b)) + (a > b)", "a", "b" );
+        Random      random      = new Random( 5 );
+        double[][]  rows        = new double[ 2 ][ 1000 ];
+        double[]    out         = new double[ 1000 ];
+        for ( int i = 0; i < 1000; i++ )
+        {
+            rows[ 0 ][ i ] = ( i % 17 == 0 ) ? Double.NaN : random.nextGaussian();
+            rows[ 1 ][ i ] = random.nextGaussian();
+        }
+        expression.apply( rows, out, 1000 );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            assertEquals( expression.apply( new double[] { rows[ 0 ][ i ], rows[ 1 ][ i ] } ), out[ i ], 0D );
+        }
+        assertEquals( 6D, Expression.compile( "x * 2", "x" ).asMapper().map( 3D ), 0D );
+    }
+
+    @Test
+    public void GivenFormulaWhenGridWrittenThenSameAsListener() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        StringWriter expected = new StringWriter();
+        RasterGridAscii.parse( this.getReader( "/grids/valid/source/spaces-nodata.asc" ) ).writeCells
+                (
+                        expected, ( row, col, value, nodata ) -> ( nodata || ( value > 50 ) ) ? Double.NaN : value * 2 + 0.5
+                );
+
+        StringWriter written = new StringWriter();
+        RasterGridAscii.parse( this.getReader( "/grids/valid/source/spaces-nodata.asc" ) ).writeRows
+                (
+                        written, Expression.compile( "x > 50 ? nodata : x * 2 + 0.5", "x" ).asRowListener()
+                );
+        assertEquals( expected.toString(), written.toString() );
+
+        StringWriter combined = new StringWriter();
+        new GridAlgebra
+                (
+                        RasterGridAscii.parse( this.getReader( "/grids/valid/source/spaces-nodata.asc" ) ),
+                        RasterGridAscii.parse( this.getReader( "/grids/idem/basic.asc" ) )
+                )
+                .write( combined, Expression.compile( "a > 50 ? nodata : b * 2 + 0.5", "a", "b" ) );
+        assertEquals( expected.toString(), combined.toString() );
+    }
+
+    @Test
+    public void GivenUnknownVariableWhenCompiledThenException() throws Exception
+    {
+        this.exception.expect( IllegalArgumentException.class );
+        this.exception.expectMessage( "Invalid formula 'a + c' at position 5: unknown variable 'c'." );
+
+        Expression.compile( "a + c", "a", "b" );
+    }
+
+    @Test
+    public void GivenWrongSyntaxWhenCompiledThenException() throws Exception
+    {
+        this.exception.expect( IllegalArgumentException.class );
+        this.exception.expectMessage( "expected ')'" );
+
+        Expression.compile( "(a + 1", "a" );
+    }
+
+    /* --- internal methods --- */
+    private double evaluate( String formula, double a, double b )
+    {
+        return
+                Expression.compile( formula, "a", "b" ).apply( new double[] { a, b } );
+    }
+    private Reader  getReader( String resource )
+    {
+        return
+                new InputStreamReader
+                        (
+                                this.getClass().getResourceAsStream( resource ),
+                                StandardCharsets.UTF_8
+                        )
+                ;
+    }
+
+}
@@ -0,0 +1,138 @@
+package net.raster.grid.ascii.algebra;
+
+import net.raster.grid.ascii.GridInvalidException;
+import net.raster.grid.ascii.RasterGridAscii;
+import net.raster.grid.ascii.header.GridHeaderInvalidException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Test of raster algebra on several grids;
+ */
+public class GridAlgebraTest
+{
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void GivenAlignedGridsWhenCombinedThenCellByCell() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        RasterGridAscii nodata  = RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) );
+        RasterGridAscii plain   = RasterGridAscii.parse( this.getReader( "/grids/idem/basic.asc" ) );
+        plain.setCenter( "25.0", "25.0" );
+        GridAlgebra     algebra = new GridAlgebra( nodata, plain );
+        StringWriter    sw      = new StringWriter();
+        algebra.write( sw, cells -> cells[ 1 ] - 2 * cells[ 0 ] );
+
+        assertEquals
+                (
+                        "ncols         4\n"
+                        + "nrows         6\n"
+                        + "xllcorner     0.0\n"
+                        + "yllcorner     0.0\n"
+                        + "cellsize      50.0\n"
+                        + "NODATA_value  -9999\n"
+                        + "-9999 -9999 -5 -2\n"
+                        + "-9999 -20 -100 -36\n"
+                        + "-3 -8 -35 -10\n"
+                        + "-32 -42 -50 -6\n"
+                        + "-88 -75 -27 -9\n"
+                        + "-13 -5 -1 -9999\n",
+                        sw.toString()
+                );
+
+        /* --- output NODATA --- */
+        algebra = new GridAlgebra( RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) ) );
+        algebra.setNoDataValue( "0" );
+        algebra.setDecimals( 1 );
+        sw = new StringWriter();
+        algebra.write( sw, cells -> ( cells[ 0 ] > 30 ) ? Double.NaN : cells[ 0 ] );
+        assertTrue( sw.toString().endsWith( "NODATA_value  0\n0 0 5.0 2.0\n0 20.0 0 0\n" + "3.0 8.0 0 10.0\n0 0 0 6.0\n0 0 27.0 9.0\n13.0 5.0 1.0 0\n" ) );
+    }
+
+    @Test
+    public void GivenNoDataInSecondGridWhenCombinedThenNoDataWritten() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        RasterGridAscii plain   = RasterGridAscii.parse( this.getReader( "/grids/idem/basic.asc" ) );
+        RasterGridAscii nodata  = RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) );
+        nodata.setNoDataValue( "-1" );
+        GridAlgebra     algebra = new GridAlgebra( plain, nodata );
+        StringWriter    sw      = new StringWriter();
+        algebra.write( sw, cells -> cells[ 0 ] + cells[ 1 ] );
+
+        assertEquals( "-1", algebra.getHeader().getNoDataValue().getValueAsText() );
+        assertEquals
+                (
+                        "ncols         4\n"
+                        + "nrows         6\n"
+                        + "xllcorner     0.0\n"
+                        + "yllcorner     0.0\n"
+                        + "cellsize      50.0\n"
+                        + "NODATA_value  -1\n"
+                        + "-1 -1 10 4\n"
+                        + "-1 40 200 72\n"
+                        + "6 16 70 20\n"
+                        + "64 84 100 12\n"
+                        + "176 150 54 18\n"
+                        + "26 10 2 -1\n",
+                        sw.toString()
+                );
+    }
+
+    @Test
+    public void GivenNaNResultWithoutNoDataWhenCombinedThenException() throws Exception
+    {
+        this.exception.expect( GridInvalidException.class );
+        this.exception.expectMessage( "A NaN cell cannot be written, because NODATA is not defined." );
+
+        new GridAlgebra( RasterGridAscii.parse( this.getReader( "/grids/idem/basic.asc" ) ) ).write( new StringWriter(), cells -> Double.NaN );
+    }
+
+    @Test
+    public void GivenShiftedGridsWhenCombinedThenException() throws Exception
+    {
+        this.exception.expect( GridHeaderInvalidException.class );
+        this.exception.expectMessage( "Grid 2 has an origin different from the first grid." );
+
+        RasterGridAscii other = RasterGridAscii.parse( this.getReader( "/grids/idem/basic.asc" ) );
+        other.setCenter( "20.0", "25.0" );
+        new GridAlgebra( RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) ), other );
+    }
+
+    @Test
+    public void GivenGridsOfDifferentSizeWhenCombinedThenException() throws Exception
+    {
+        this.exception.expect( GridHeaderInvalidException.class );
+        this.exception.expectMessage( "Grid 2 has 438 x 385 cells instead of 4 x 6." );
+
+        new GridAlgebra
+                (
+                        RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) ),
+                        RasterGridAscii.parse( this.getReader( "/grids/valid/source/cellsize.asc" ) )
+                );
+    }
+
+    /* --- internal methods --- */
+    private Reader  getReader( String resource )
+    {
+        return
+                new InputStreamReader
+                        (
+                                this.getClass().getResourceAsStream( resource ),
+                                StandardCharsets.UTF_8
+                        )
+                ;
+    }
+
+}
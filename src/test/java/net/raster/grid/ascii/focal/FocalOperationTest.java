@@ -0,0 +1,97 @@
+package net.raster.grid.ascii.focal;
+
+import net.raster.grid.ascii.RasterGridAscii;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Test of neighbourhood operations on a grid;
+ */
+public class FocalOperationTest
+{
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void GivenGridWithNoDataWhenMeanOfNeighboursThenNoDataSkipped() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        FocalOperation  focal   = new FocalOperation( RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) ) );
+        StringWriter    sw      = new StringWriter();
+        focal.setDecimals( 1 );
+        focal.write( sw, FocalKernel.mean( 3 ) );
+        assertTrue
+                (
+                        sw.toString().endsWith
+                                (
+                                        "NODATA_value  -9999\n"
+                                        + "-9999 -9999 32.6 35.8\n"
+                                        + "-9999 28.5 27.0 31.3\n"
+                                        + "21.0 36.3 34.1 39.5\n"
+                                        + "41.3 40.0 29.1 22.8\n"
+                                        + "42.5 37.0 26.9 18.6\n"
+                                        + "45.3 34.8 23.4 -9999\n"
+                                )
+                );
+
+        /* --- NODATA cells filled from their neighbours --- */
+        focal   = new FocalOperation( RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) ) );
+        sw      = new StringWriter();
+        focal.setKeepNoData( false );
+        focal.write( sw, FocalKernel.max( 3 ) );
+        assertTrue( sw.toString().endsWith( "NODATA_value  -9999\n20 100 100 100\n20 100 100 100\n42 100 100 100\n88 88 75 50\n88 88 75 50\n88 88 75 27\n" ) );
+    }
+
+    @Test
+    public void GivenZeroSumWeightsWhenNeighbourMissingThenNoData() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        FocalOperation  focal   = new FocalOperation( RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) ) );
+        StringWriter    sw      = new StringWriter();
+        focal.write( sw, FocalKernel.weights( -1, 0, 1, -2, 0, 2, -1, 0, 1 ) );
+        assertTrue
+                (
+                        sw.toString().endsWith
+                                (
+                                        "NODATA_value  -9999\n"
+                                        + "-9999 -9999 -9999 -9999\n"
+                                        + "-9999 -9999 -9999 -9999\n"
+                                        + "-9999 -9999 -16 -9999\n"
+                                        + "-9999 7 -136 -9999\n"
+                                        + "-9999 -116 -9999 -9999\n"
+                                        + "-9999 -9999 -9999 -9999\n"
+                                )
+                );
+    }
+
+    @Test
+    public void GivenEvenSizeWhenKernelCreatedThenException()
+    {
+        this.exception.expect( IllegalArgumentException.class );
+        this.exception.expectMessage( "Invalid kernel size 4. It must be a positive odd number." );
+
+        FocalKernel.mean( 4 );
+    }
+
+    /* --- internal methods --- */
+    private Reader  getReader( String resource )
+    {
+        return
+                new InputStreamReader
+                        (
+                                this.getClass().getResourceAsStream( resource ),
+                                StandardCharsets.UTF_8
+                        )
+                ;
+    }
+
+}
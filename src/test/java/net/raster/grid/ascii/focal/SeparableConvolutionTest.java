@@ -0,0 +1,102 @@
+package net.raster.grid.ascii.focal;
+
+import net.raster.grid.ascii.RasterGridAscii;
+import net.raster.grid.ascii.memory.FloatGrid;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.*;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Test of separable convolution on grids held in memory;
+ */
+public class SeparableConvolutionTest
+{
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void GivenGridWithNoDataWhenConvolvedInTilesThenSameAsDirectKernel() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        /* --- a grid with some NODATA cells, not a multiple of the tile size --- */
+        Random          random  = new Random( 21 );
+        StringBuilder   text    = new StringBuilder( "ncols 53\nnrows 37\nxllcorner 0\nyllcorner 0\ncellsize 1\nNODATA_value -9999\n" );
+        for ( int row = 0; row < 37; row++ )
+        {
+            for ( int col = 0; col < 53; col++ )
+            {
+                text.append( ( random.nextInt( 10 ) == 0 ) ? "-9999" : Integer.toString( random.nextInt( 1000 ) ) ).append( ' ' );
+            }
+            text.append( '\n' );
+        }
+        FloatGrid               source      = FloatGrid.load( RasterGridAscii.parse( new StringReader( text.toString() ) ) );
+        double[]                weights     = { 1, 4, 6, 4, 1 };
+        SeparableConvolution    convolution = new SeparableConvolution( weights );
+        convolution.setTileSize( 8 );
+        convolution.setParallelism( 3 );
+        FloatGrid               target      = convolution.apply( source );
+
+        for ( int row = 0; row < 37; row++ )
+        {
+            for ( int col = 0; col < 53; col++ )
+            {
+                if ( source.isNoData( row, col ) )
+                {
+                    assertTrue( target.isNoData( row, col ) );
+                    continue;
+                }
+                double sum  = 0;
+                double mass = 0;
+                for ( int i = -2; i <= 2; i++ )
+                {
+                    for ( int j = -2; j <= 2; j++ )
+                    {
+                        int r = row + i;
+                        int c = col + j;
+                        if ( ( r >= 0 ) && ( r < 37 ) && ( c >= 0 ) && ( c < 53 ) && ! source.isNoData( r, c ) )
+                        {
+                            sum  += weights[ i + 2 ] * weights[ j + 2 ] * source.get( r, c );
+                            mass += weights[ i + 2 ] * weights[ j + 2 ];
+                        }
+                    }
+                }
+                assertEquals( sum / mass, target.get( row, col ), 1e-3 );
+            }
+        }
+
+        /* --- NODATA cells filled from their neighbours --- */
+        convolution.setKeepNoData( false );
+        target = convolution.apply( source );
+        for ( int row = 0; row < 37; row++ )
+        {
+            for ( int col = 0; col < 53; col++ )
+            {
+                assertFalse( target.isNoData( row, col ) );
+            }
+        }
+    }
+
+    @Test
+    public void GivenUniformGridWhenGaussianBlurThenUnchanged() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        FloatGrid source = FloatGrid.load( RasterGridAscii.parse( new StringReader( "ncols 3\nnrows 2\nxllcorner 0\nyllcorner 0\ncellsize 1\n7 7 7\n7 7 7\n" ) ) );
+        FloatGrid target = SeparableConvolution.gaussian( 20 ).apply( source );
+        assertEquals( 60, SeparableConvolution.gaussian( 20 ).getRadius() );
+        for ( float value : target.getData() )
+        {
+            assertEquals( 7F, value, 1e-4F );
+        }
+        assertEquals( 3, target.getCols() );
+        assertNotSame( source.getHeader(), target.getHeader() );
+    }
+
+}
@@ -494,4 +494,26 @@ public class RasterHeaderTest
         header.setCellSize( null,       DY );
     }
 
+    @Test
+    public void testNoDataReplaceBytes() throws Exception
+    {
+        byte[]                      line    = ( "1 " + NODATA + " 3" ).getBytes( "US-ASCII" );
+        int                         start   = 2;
+        int                         end     = start + NODATA.length();
+        RasterHeader.NoDataReplace  replacer;
+
+        /* --- fast byte compare --- */
+        replacer = new RasterHeader.ReplaceValues( NODATA, "0" );
+        assertEquals( "0",      replacer.replace( line, start, end ) );
+        assertNull( replacer.replace( line, 0, 1 ) );
+
+        replacer = new RasterHeader.NothingToReplace();
+        assertNull( replacer.replace( line, start, end ) );
+
+        /* --- default method, through the text replace --- */
+        replacer = data -> NODATA.equals( data ) ? "0" : data;
+        assertEquals( "0",      replacer.replace( line, start, end ) );
+        assertNull( replacer.replace( line, 0, 1 ) );
+    }
+
 }
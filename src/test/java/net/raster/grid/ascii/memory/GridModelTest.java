@@ -0,0 +1,160 @@
+package net.raster.grid.ascii.memory;
+
+import net.raster.grid.ascii.GridInvalidException;
+import net.raster.grid.ascii.RasterGridAscii;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Test of grids held in memory;
+ */
+public class GridModelTest
+{
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+    @Rule
+    public TemporaryFolder   folder    = new TemporaryFolder();
+
+    @Test
+    public void GivenGridWhenLoadedThenCellsAvailable() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        DoubleGrid  grid    = DoubleGrid.load( RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) ) );
+        FloatGrid   other   = FloatGrid.load( RasterGridAscii.parse( Paths.get( this.getClass().getResource( "/grids/valid/source/cellsize.asc" ).toURI() ) ) );
+
+        assertEquals( 6,        grid.getRows() );
+        assertEquals( 4,        grid.getCols() );
+        assertEquals( -9999D,   grid.getNoData(), 0D );
+        assertTrue( grid.isNoData( 0, 0 ) );
+        assertFalse( grid.isNoData( 0, 2 ) );
+        assertEquals( 5D,       grid.get( 0, 2 ),   0D );
+        assertEquals( 100D,     grid.get( 1, 2 ),   0D );
+        assertEquals( 1D,       grid.get( 5, 2 ),   0D );
+        assertEquals( 36D,      grid.getData()[ 7 ], 0D );
+
+        // --- the second grid must not change the first grid header
+        assertEquals( "50.0",   grid.getHeader().getCellSize().getValueAsText() );
+        assertEquals( 438,      other.getCols() );
+        assertEquals( 385,      other.getRows() );
+
+        grid.set( 0, 2, 7.5D );
+        assertEquals( 7.5D,     grid.getAsDouble( 0, 2 ), 0D );
+    }
+
+    @Test
+    public void GivenLoadedGridWhenWrittenThenEqual() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        StringWriter    sw      = new StringWriter();
+        DoubleGrid      grid    = DoubleGrid.load( RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) ) );
+        grid.write( sw );
+        assertEquals( this.getText( "/grids/idem/basic-nodata.asc" ), sw.toString() );
+
+        sw = new StringWriter();
+        RasterGridAscii raster = RasterGridAscii.parse( this.getReader( "/grids/valid/source/spaces-nodata.asc" ) );
+        raster.setNoDataValue( "0" );
+        FloatGrid.load( raster ).write( sw );
+        assertEquals( this.getText( "/grids/valid/expected/spaces-nodata-0.asc" ), sw.toString() );
+    }
+
+    @Test
+    public void GivenDecimalsWhenWrittenThenCellsFixed() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        StringWriter    sw      = new StringWriter();
+        DoubleGrid      grid    = DoubleGrid.load( RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) ) );
+        grid.set( 0, 2, 0.125 );
+        grid.set( 0, 3, 1e-8 );
+        grid.write( sw );
+        assertTrue( sw.toString().contains( "-9999 -9999 0.125 1E-8\n" ) );
+
+        sw = new StringWriter();
+        grid.setDecimals( 2 );
+        grid.write( sw );
+        assertTrue( sw.toString().contains( "-9999 -9999 0.13 0.00\n-9999 20.00 100.00 36.00\n" ) );
+    }
+
+    @Test
+    public void GivenGridWhenLoadedOffHeapThenEqual() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        StringWriter    sw      = new StringWriter();
+        OffHeapGrid     grid    = OffHeapGrid.load( RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) ) );
+        assertEquals( 100D, grid.getAsDouble( 1, 2 ), 0D );
+        assertTrue( grid.isNoData( 5, 3 ) );
+        grid.write( sw );
+        assertEquals( this.getText( "/grids/idem/basic-nodata.asc" ), sw.toString() );
+
+        File scratch = this.folder.newFile( "scratch.bin" );
+        sw   = new StringWriter();
+        grid = OffHeapGrid.load( RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) ), OffHeapGrid.Cell.FLOAT, scratch.toPath() );
+        grid.setAsDouble( 0, 2, 7.5D );
+        assertEquals( 7.5D, grid.getAsDouble( 0, 2 ), 0D );
+        grid.setAsDouble( 0, 2, 5D );
+        grid.write( sw );
+        assertEquals( this.getText( "/grids/idem/basic-nodata.asc" ), sw.toString() );
+        assertEquals( 6 * 4 * 4, scratch.length() );
+
+        /* --- a used scratch file is emptied --- */
+        grid = new OffHeapGrid( RasterGridAscii.parse( this.getReader( "/grids/idem/basic.asc" ) ).getHeader(), OffHeapGrid.Cell.FLOAT, scratch.toPath() );
+        assertEquals( 0D,   grid.getAsDouble( 0, 2 ), 0D );
+        assertEquals( 6 * 4 * 4, scratch.length() );
+    }
+
+    @Test
+    public void GivenWrongGridWhenLoadedThenException() throws Exception
+    {
+        this.exception.expect( GridInvalidException.class );
+
+        DoubleGrid.load( RasterGridAscii.parse( this.getReader( "/grids/wrong/size-wrong-col.asc" ) ) );
+    }
+
+    @Test
+    public void GivenGridWhenCellOutOfGridThenException() throws Exception
+    {
+        this.exception.expect( IndexOutOfBoundsException.class );
+
+        DoubleGrid.load( RasterGridAscii.parse( this.getReader( "/grids/idem/basic.asc" ) ) ).get( 0, 4 );
+    }
+
+    /* --- internal methods --- */
+    private Reader  getReader( String resource )
+    {
+        return
+                new InputStreamReader
+                        (
+                                this.getClass().getResourceAsStream( resource ),
+                                StandardCharsets.UTF_8
+                        )
+                ;
+    }
+
+    private String  getText( String resource ) throws IOException
+    {
+        StringWriter    sw      = new StringWriter();
+        Reader          reader  = this.getReader( resource );
+        char[]          chunk   = new char[ 4096 ];
+        int             read;
+        while ( ( read = reader.read( chunk ) ) > 0 )
+        {
+            sw.write( chunk, 0, read );
+        }
+        reader.close();
+        return
+                sw.toString();
+    }
+
+}
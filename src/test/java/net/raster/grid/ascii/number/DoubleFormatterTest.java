@@ -0,0 +1,127 @@
+package net.raster.grid.ascii.number;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Test of the double to decimal text conversion;
+ */
+public class DoubleFormatterTest
+{
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void GivenNumbersWhenFormattedThenShortest()
+    {
+        this.exception = ExpectedException.none();
+
+        assertEquals( "0",                      DoubleFormatter.toString( 0D ) );
+        assertEquals( "-0",                     DoubleFormatter.toString( -0D ) );
+        assertEquals( "-9999",                  DoubleFormatter.toString( -9999D ) );
+        assertEquals( "51.74624899708",         DoubleFormatter.toString( 51.74624899708 ) );
+        assertEquals( "0.3",                    DoubleFormatter.toString( 0.3 ) );
+        assertEquals( "0.000001",               DoubleFormatter.toString( 1e-6 ) );
+        assertEquals( "1E-7",                   DoubleFormatter.toString( 1e-7 ) );
+        assertEquals( "1E23",                   DoubleFormatter.toString( 1e23 ) );
+        assertEquals( "100000000000000000000",  DoubleFormatter.toString( 1e20 ) );
+        assertEquals( "1.7976931348623157E308", DoubleFormatter.toString( Double.MAX_VALUE ) );
+        assertEquals( "5E-324",                 DoubleFormatter.toString( Double.MIN_VALUE ) );
+        assertEquals( "NaN",                    DoubleFormatter.toString( Double.NaN ) );
+        assertEquals( "-Infinity",              DoubleFormatter.toString( Double.NEGATIVE_INFINITY ) );
+        assertEquals( "0.1",                    DoubleFormatter.toString( 0.1f ) );
+        assertEquals( "3.4028235E38",           DoubleFormatter.toString( Float.MAX_VALUE ) );
+    }
+
+    @Test
+    public void GivenRandomNumbersWhenFormattedThenRoundTrip()
+    {
+        this.exception = ExpectedException.none();
+
+        Random random = new Random( 18102026L );
+        for ( int i = 0; i < 100000; i++ )
+        {
+            double value = Double.longBitsToDouble( random.nextLong() );
+            if ( ! Double.isNaN( value ) && ! Double.isInfinite( value ) )
+            {
+                String text = DoubleFormatter.toString( value );
+                assertEquals( text, value, Double.parseDouble( text ), 0D );
+                assertTrue( text, this.digits( text ) <= this.digits( Double.toString( value ) ) );
+            }
+
+            float other = Float.intBitsToFloat( random.nextInt() );
+            if ( ! Float.isNaN( other ) && ! Float.isInfinite( other ) )
+            {
+                String text = DoubleFormatter.toString( other );
+                assertEquals( text, other, Float.parseFloat( text ), 0F );
+                assertTrue( text, this.digits( text ) <= this.digits( Float.toString( other ) ) );
+            }
+        }
+    }
+
+    @Test
+    public void GivenDecimalsWhenFormattedThenSameAsFormat()
+    {
+        this.exception = ExpectedException.none();
+
+        Random random = new Random( 18102026L );
+        for ( int i = 0; i < 100000; i++ )
+        {
+            double  value       = ( random.nextInt( 2000000 ) - 1000000 ) / 1000D;
+            int     decimals    = random.nextInt( 5 );
+            assertEquals
+                    (
+                            String.format( Locale.ROOT, "%." + decimals + "f", value ),
+                            DoubleFormatter.toString( value, decimals )
+                    );
+        }
+        assertEquals( "1.00",   DoubleFormatter.toString( 0.995, 2 ) );
+        assertEquals( "-0.00",  DoubleFormatter.toString( -0.001, 2 ) );
+        assertEquals( "12",     DoubleFormatter.toString( 12.4, 0 ) );
+    }
+
+    @Test
+    public void GivenNumbersWhenFormattedPlainThenNoExponent()
+    {
+        this.exception = ExpectedException.none();
+
+        assertEquals( "0.3",                        DoubleFormatter.toPlainString( 0.3 ) );
+        assertEquals( "-0",                         DoubleFormatter.toPlainString( -0D ) );
+        assertEquals( "-9999",                      DoubleFormatter.toPlainString( -9999D ) );
+        assertEquals( "0.0000001",                  DoubleFormatter.toPlainString( 1e-7 ) );
+        assertEquals( "-0.000000015",               DoubleFormatter.toPlainString( -1.5e-8 ) );
+        assertEquals( "100000000000000000000000",   DoubleFormatter.toPlainString( 1e23 ) );
+        assertEquals( "NaN",                        DoubleFormatter.toPlainString( Double.NaN ) );
+    }
+
+    @Test
+    public void GivenOffsetWhenFormattedThenOnlyRangeWritten()
+    {
+        this.exception = ExpectedException.none();
+
+        byte[]  target  = new byte[ 2 + DoubleFormatter.MAX_LENGTH ];
+        int     end     = DoubleFormatter.format( -2.5, target, 2 );
+
+        assertEquals( 6,        end );
+        assertEquals( 0,        target[ 1 ] );
+        assertEquals( "-2.5",   new String( target, 2, end - 2, StandardCharsets.US_ASCII ) );
+    }
+
+    /* --- internal methods --- */
+    private int digits( String text )
+    {
+        String mantissa = text.replace( "-", "" ).split( "E" )[ 0 ].replace( ".", "" );
+        mantissa = mantissa.replaceFirst( "^0+", "" ).replaceFirst( "0+$", "" );
+        return
+                Math.max( 1, mantissa.length() );
+    }
+
+}
@@ -0,0 +1,114 @@
+package net.raster.grid.ascii.number;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Test of the decimal to double conversion against 'Double.parseDouble(...)';
+ */
+public class DoubleParserTest
+{
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void GivenEdgeNumbersWhenParsedThenSameAsJdk()
+    {
+        this.exception = ExpectedException.none();
+
+        String[] numbers =
+                {
+                        "0", "-0", "+0", "0.0", "-0.000", "00012", "1", "-1", "1.", ".5", "-.5",
+                        "-9999", "0.0059138725704170709216", "51.74624899708", "1234567.89",
+                        "9007199254740992", "9007199254740993", "9007199254740995", "1e23", "8.41e21",
+                        "7.3177701707893310e+15", "7.2057594037927933e+16", "2.2250738585072011e-308",
+                        "2.2250738585072014E-308", "4.9e-324", "2.4703282292062327e-324", "1e-400",
+                        "1.7976931348623157e308", "1.7976931348623159e308", "1e400", "123456789012345678901234567890",
+                        "0.1", "0.2", "0.3", "3.141592653589793238462643383279", "1E+2", "1e-2", "1e0",
+                        "NaN", "-Infinity", "0x1p3", "1.5d", "2f", " 7 "
+                };
+        for ( String number : numbers )
+        {
+            this.assertSame( number );
+        }
+    }
+
+    @Test
+    public void GivenRandomNumbersWhenParsedThenSameAsJdk()
+    {
+        this.exception = ExpectedException.none();
+
+        Random random = new Random( 18102026L );
+        for ( int i = 0; i < 100000; i++ )
+        {
+            /* --- round-trip text strings --- */
+            this.assertSame( Double.toString( Double.longBitsToDouble( random.nextLong() ) ) );
+            this.assertSame( Double.toString( random.nextDouble() * 1000D ) );
+            this.assertSame( Float.toString( random.nextFloat() ) );
+
+            /* --- random digits with random decimal point and exponent --- */
+            StringBuilder   text    = new StringBuilder();
+            int             digits  = 1 + random.nextInt( 25 );
+            int             point   = random.nextInt( digits + 1 );
+            for ( int d = 0; d < digits; d++ )
+            {
+                if ( d == point )
+                {
+                    text.append( '.' );
+                }
+                text.append( (char) ( '0' + random.nextInt( 10 ) ) );
+            }
+            if ( random.nextBoolean() )
+            {
+                text.append( 'e' ).append( random.nextInt( 660 ) - 330 );
+            }
+            this.assertSame( text.toString() );
+        }
+    }
+
+    @Test
+    public void GivenBytesWhenParsedThenOnlyRangeUsed()
+    {
+        this.exception = ExpectedException.none();
+
+        byte[] line = "12 -3.25 7e2".getBytes( StandardCharsets.US_ASCII );
+
+        assertEquals( 12D,      DoubleParser.parse( line, 0, 2 ),   0D );
+        assertEquals( -3.25D,   DoubleParser.parse( line, 3, 8 ),   0D );
+        assertEquals( 700D,     DoubleParser.parse( line, 9, 12 ),  0D );
+    }
+
+    @Test
+    public void GivenWrongNumberWhenParsedThenException()
+    {
+        this.exception.expect( NumberFormatException.class );
+
+        DoubleParser.parse( "12a" );
+    }
+
+    /* --- internal methods --- */
+    private void assertSame( String number )
+    {
+        assertEquals
+                (
+                        number,
+                        Double.doubleToRawLongBits( Double.parseDouble( number ) ),
+                        Double.doubleToRawLongBits( DoubleParser.parse( number ) )
+                );
+        byte[] bytes = ( "#" + number + "#" ).getBytes( StandardCharsets.US_ASCII );
+        assertEquals
+                (
+                        number,
+                        Double.doubleToRawLongBits( Double.parseDouble( number ) ),
+                        Double.doubleToRawLongBits( DoubleParser.parse( bytes, 1, bytes.length - 1 ) )
+                );
+    }
+
+}
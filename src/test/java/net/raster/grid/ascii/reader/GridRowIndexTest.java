@@ -0,0 +1,153 @@
+package net.raster.grid.ascii.reader;
+
+import net.raster.grid.ascii.RasterGridAscii;
+import net.raster.grid.ascii.resample.GridCrop;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Test of random row access via the row index;
+ */
+public class GridRowIndexTest
+{
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+    @Rule
+    public TemporaryFolder   folder    = new TemporaryFolder();
+
+    @Test
+    public void GivenGridFileWhenRowIndexedThenRowsReadDirectly() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        /* --- rows longer than a word, with every kind of line end --- */
+        Path    file    = this.folder.newFile( "grid.asc" ).toPath();
+        String  header  = "ncols 3\r\nnrows 5\r\nxllcorner 0\r\nyllcorner 0\r\ncellsize 1\r\nNODATA_value -9999\r\n";
+        Files.write( file, ( header + "1.25 2.5 3.75\r\n4 5 6\n-9999 8 9\r10.125 11.25 12.5\r\n13 14 15" ).getBytes( StandardCharsets.US_ASCII ) );
+
+        RasterGridAscii grid    = RasterGridAscii.parse( file );
+        GridRowIndex    index   = grid.getRowIndex();
+        assertEquals( 5,                                index.getRows() );
+        assertEquals( header.length(),                  index.getOffset( 0 ) );
+        assertEquals( header.length() + 31,             index.getOffset( 3 ) );
+        assertTrue( Files.isRegularFile( file.resolveSibling( "grid.asc.idx" ) ) );
+
+        GridBodyReader  body    = grid.getBodyReader( 3 );
+        assertTrue( body.next() );
+        assertEquals( 3,        body.getRow() );
+        assertEquals( 11.25D,   body.parse( 1 ), 0D );
+        assertTrue( body.next() );
+        assertEquals( 15D,      body.parse( 2 ), 0D );
+        assertFalse( body.next() );
+
+        /* --- index read from its file, then built again once the grid changed --- */
+        grid = RasterGridAscii.parse( file );
+        assertEquals( header.length() + 31, grid.getRowIndex().getOffset( 3 ) );
+        body = grid.getBodyReader( 2 );
+        assertTrue( body.next() );
+        assertEquals( 9D, body.parse( 2 ), 0D );
+
+        Files.write( file, ( header + "1 2 3\n4 5 6\n7 8 9\n10 11 12\n13 14 15\n" ).getBytes( StandardCharsets.US_ASCII ) );
+        Files.setLastModifiedTime( file, FileTime.fromMillis( Files.getLastModifiedTime( file ).toMillis() + 2000 ) );
+        body = RasterGridAscii.parse( file ).getBodyReader( 3 );
+        assertTrue( body.next() );
+        assertEquals( 11D, body.parse( 1 ), 0D );
+    }
+
+    @Test
+    public void GivenWrongIndexFileWhenRowIndexedThenBuiltAgain() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        Path    file    = this.folder.newFile( "grid.asc" ).toPath();
+        Path    sidecar = file.resolveSibling( "grid.asc.idx" );
+        String  header  = "ncols 3\nnrows 3\nxllcorner 0\nyllcorner 0\ncellsize 1\n";
+        Files.write( file, ( header + "1 2 3\n4 5 6\n7 8 9\n" ).getBytes( StandardCharsets.US_ASCII ) );
+        long    size        = Files.size( file );
+        long    modified    = Files.getLastModifiedTime( file ).toMillis();
+
+        /* --- a huge row count is rejected before reading any row position --- */
+        this.writeIndex( sidecar, size, modified, Integer.MAX_VALUE, 1, 1, 1 );
+        assertEquals( header.length() + 6, RasterGridAscii.parse( file ).getRowIndex().getOffset( 1 ) );
+
+        /* --- row positions beyond the grid file, or not increasing --- */
+        this.writeIndex( sidecar, size, modified, 3, header.length(), 6, size );
+        assertEquals( header.length() + 12, RasterGridAscii.parse( file ).getRowIndex().getOffset( 2 ) );
+        this.writeIndex( sidecar, size, modified, 3, header.length(), 0, 6 );
+        assertEquals( header.length() + 6, RasterGridAscii.parse( file ).getRowIndex().getOffset( 1 ) );
+
+        /* --- the index file built again is read back --- */
+        GridRowIndex index = GridRowIndex.read( sidecar, size, modified, 3 );
+        assertEquals( header.length() + 12, index.getOffset( 2 ) );
+    }
+
+    @Test
+    public void GivenGridFileWhenCroppedWithIndexThenSameWindow() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        Path            file    = this.folder.newFile( "large.asc" ).toPath();
+        StringBuilder   text    = new StringBuilder( "ncols 40\nnrows 300\nxllcorner 0\nyllcorner 0\ncellsize 1\n" );
+        for ( int row = 0; row < 300; row++ )
+        {
+            for ( int col = 0; col < 40; col++ )
+            {
+                text.append( row * 40 + col ).append( ' ' );
+            }
+            text.append( '\n' );
+        }
+        Files.write( file, text.toString().getBytes( StandardCharsets.US_ASCII ) );
+
+        StringWriter    plain   = new StringWriter();
+        new GridCrop( RasterGridAscii.parse( file ), 5, 20, 9, 22 ).write( plain );
+        StringWriter    indexed = new StringWriter();
+        GridCrop        crop    = new GridCrop( RasterGridAscii.parse( file ), 5, 20, 9, 22 );
+        crop.setIndexed( true );
+        crop.write( indexed );
+
+        assertEquals( plain.toString(), indexed.toString() );
+        assertTrue( indexed.toString().endsWith( "11125 11126 11127 11128\n11165 11166 11167 11168\n" ) );
+    }
+
+    @Test
+    public void GivenGridFromReaderWhenRowIndexThenException() throws Exception
+    {
+        this.exception.expect( IllegalStateException.class );
+        this.exception.expectMessage( "Row index is available only for grids parsed from a file." );
+
+        RasterGridAscii.parse( new StringReader( "ncols 1\nnrows 1\nxllcorner 0\nyllcorner 0\ncellsize 1\n1\n" ) ).getBodyReader( 0 );
+    }
+
+    private void writeIndex( Path file, long size, long modified, int rows, long... deltas ) throws IOException
+    {
+        try ( DataOutputStream out = new DataOutputStream( Files.newOutputStream( file ) ) )
+        {
+            out.writeInt( 0x47524958 );
+            out.writeInt( 1 );
+            out.writeLong( size );
+            out.writeLong( modified );
+            out.writeInt( rows );
+            for ( long delta : deltas )
+            {
+                while ( ( delta & ~0x7FL ) != 0 )
+                {
+                    out.writeByte( (int) ( delta & 0x7F ) | 0x80 );
+                    delta >>>= 7;
+                }
+                out.writeByte( (int) delta );
+            }
+        }
+    }
+
+}
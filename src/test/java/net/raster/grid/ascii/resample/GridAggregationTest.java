@@ -0,0 +1,130 @@
+package net.raster.grid.ascii.resample;
+
+import net.raster.grid.ascii.RasterGridAscii;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Test of grid aggregation into coarser grids;
+ */
+public class GridAggregationTest
+{
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void GivenGridWhenAggregatedThenCoarserGrid() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        GridAggregation aggregation = new GridAggregation( RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) ), 2 );
+        StringWriter    sw          = new StringWriter();
+        aggregation.write( sw, Aggregation.MEAN );
+        assertEquals
+                (
+                        "ncols         2\n"
+                        + "nrows         3\n"
+                        + "xllcorner     0.0\n"
+                        + "yllcorner     0.0\n"
+                        + "cellsize      100\n"
+                        + "NODATA_value  -9999\n"
+                        + "20 35.75\n"
+                        + "21.25 25.25\n"
+                        + "45.25 12.333333333333334\n",
+                        sw.toString()
+                );
+
+        /* --- majority of NODATA cells --- */
+        aggregation = new GridAggregation( RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) ), 2 );
+        aggregation.setMaxNoData( 0.5 );
+        sw = new StringWriter();
+        aggregation.write( sw, Aggregation.MAX );
+        assertTrue( sw.toString().endsWith( "NODATA_value  -9999\n-9999 100\n42 50\n88 27\n" ) );
+    }
+
+    @Test
+    public void GivenSizeNotMultipleOfFactorWhenAggregatedThenNorthWestCornerKept() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        RasterGridAscii grid = RasterGridAscii.parse
+                (
+                        new StringReader
+                                (
+                                        "ncols 3\nnrows 3\nxllcenter 10\nyllcenter 20\ndx 2\ndy 4\n"
+                                        + "1 1 2\n"
+                                        + "3 1 2\n"
+                                        + "5 5 5\n"
+                                )
+                );
+        GridAggregation aggregation = new GridAggregation( grid, 2 );
+        StringWriter    sw          = new StringWriter();
+        aggregation.write( sw, Aggregation.MODE );
+        assertEquals
+                (
+                        "ncols         2\n"
+                        + "nrows         2\n"
+                        + "xllcenter     11\n"
+                        + "yllcenter     18\n"
+                        + "dx            4\n"
+                        + "dy            8\n"
+                        + "1 2\n"
+                        + "5 5\n",
+                        sw.toString()
+                );
+    }
+
+    @Test
+    public void GivenFractionalCellSizeWhenAggregatedThenPlainDecimalHeader() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        RasterGridAscii grid        = RasterGridAscii.parse( new StringReader( "ncols 4\nnrows 1\nxllcorner 0.1\nyllcorner 0.3\ncellsize 0.1\n1 2 3 4\n" ) );
+        StringWriter    sw          = new StringWriter();
+        new GridAggregation( grid, 4 ).write( sw, Aggregation.MEAN );
+        assertEquals
+                (
+                        "ncols         1\n"
+                        + "nrows         1\n"
+                        + "xllcorner     0.1\n"
+                        + "yllcorner     0\n"
+                        + "cellsize      0.4\n"
+                        + "2.5\n",
+                        sw.toString()
+                );
+
+        grid    = RasterGridAscii.parse( new StringReader( "ncols 3\nnrows 3\nxllcenter 0.05\nyllcenter 0.05\ncellsize 0.1\n1 1 1\n1 1 1\n1 1 1\n" ) );
+        sw      = new StringWriter();
+        new GridAggregation( grid, 2 ).write( sw, Aggregation.MEAN );
+        assertTrue( sw.toString(), sw.toString().startsWith( "ncols         2\nnrows         2\nxllcenter     0.1\nyllcenter     0\ncellsize      0.2\n" ) );
+    }
+
+    @Test
+    public void GivenWrongFactorWhenAggregatedThenException() throws Exception
+    {
+        this.exception.expect( IllegalArgumentException.class );
+        this.exception.expectMessage( "The aggregation factor must be positive." );
+
+        new GridAggregation( RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) ), 0 );
+    }
+
+    /* --- internal methods --- */
+    private Reader  getReader( String resource )
+    {
+        return
+                new InputStreamReader
+                        (
+                                this.getClass().getResourceAsStream( resource ),
+                                StandardCharsets.UTF_8
+                        )
+                ;
+    }
+
+}
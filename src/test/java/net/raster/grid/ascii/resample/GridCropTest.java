@@ -0,0 +1,118 @@
+package net.raster.grid.ascii.resample;
+
+import net.raster.grid.ascii.RasterGridAscii;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Test of grid windows by world coordinates;
+ */
+public class GridCropTest
+{
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void GivenBoundingBoxWhenCroppedThenCoveredCells() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        RasterGridAscii grid    = RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) );
+        grid.setNoDataValue( "-1" );
+        GridCrop        crop    = new GridCrop( grid, 10, 110, 140, 190 );
+        StringWriter    sw      = new StringWriter();
+        crop.write( sw );
+        assertEquals( 2, crop.getRowFrom() );
+        assertEquals( 0, crop.getColFrom() );
+        assertEquals
+                (
+                        "ncols         3\n"
+                        + "nrows         2\n"
+                        + "xllcorner     0.0\n"
+                        + "yllcorner     100\n"
+                        + "cellsize      50.0\n"
+                        + "NODATA_value  -1\n"
+                        + "3 8 35\n"
+                        + "32 42 50\n",
+                        sw.toString()
+                );
+
+        /* --- box larger than the grid --- */
+        grid    = RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) );
+        grid.setCenter( "25.0", "25.0" );
+        crop    = new GridCrop( grid, 60, -500, 1000, 100 );
+        sw      = new StringWriter();
+        crop.write( sw );
+        assertTrue( sw.toString().startsWith( "ncols         3\nnrows         2\nxllcenter     75\nyllcenter     25.0\n" ) );
+        assertTrue( sw.toString().endsWith( "NODATA_value  -9999\n75 27 9\n5 1 -9999\n" ) );
+    }
+
+    @Test
+    public void GivenWrongRowsOutsideWindowWhenCroppedThenNotRead() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        RasterGridAscii grid = RasterGridAscii.parse
+                (
+                        new StringReader
+                                (
+                                        "ncols 3\nnrows 5\nxllcorner 0\nyllcorner 0\ncellsize 1\n"
+                                        + "x y\n"
+                                        + "1 2 3\n"
+                                        + "4 5 6\n"
+                                        + "broken row\n"
+                                )
+                );
+        StringWriter sw = new StringWriter();
+        new GridCrop( grid, 1, 2.5, 3, 3.5 ).write( sw );
+        assertTrue( sw.toString().endsWith( "2 3\n5 6\n" ) );
+    }
+
+    @Test
+    public void GivenFractionalCellSizeWhenCroppedThenPlainDecimalHeader() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        StringBuilder source = new StringBuilder( "ncols 10\nnrows 10\nxllcorner -0.3\nyllcorner -0.3\ncellsize 0.1\n" );
+        for ( int row = 0; row < 10; row++ )
+        {
+            source.append( "1 2 3 4 5 6 7 8 9 10\n" );
+        }
+        StringWriter sw = new StringWriter();
+        new GridCrop( RasterGridAscii.parse( new StringReader( source.toString() ) ), -0.3, 0.0, 0.1, 0.7 ).write( sw );
+        assertTrue( sw.toString(), sw.toString().startsWith( "ncols         4\nnrows         7\nxllcorner     -0.3\nyllcorner     0\n" ) );
+
+        sw = new StringWriter();
+        new GridCrop( RasterGridAscii.parse( new StringReader( source.toString() ) ), 0.05, 0.25, 0.6, 0.7 ).write( sw );
+        assertTrue( sw.toString(), sw.toString().startsWith( "ncols         6\nnrows         5\nxllcorner     0\nyllcorner     0.2\n" ) );
+    }
+
+    @Test
+    public void GivenBoxOutsideGridWhenCroppedThenException() throws Exception
+    {
+        this.exception.expect( IllegalArgumentException.class );
+        this.exception.expectMessage( "The bounding box does not overlap the grid." );
+
+        new GridCrop( RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) ), 200, 0, 300, 100 );
+    }
+
+    /* --- internal methods --- */
+    private Reader  getReader( String resource )
+    {
+        return
+                new InputStreamReader
+                        (
+                                this.getClass().getResourceAsStream( resource ),
+                                StandardCharsets.UTF_8
+                        )
+                ;
+    }
+
+}
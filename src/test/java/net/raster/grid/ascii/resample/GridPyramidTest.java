@@ -0,0 +1,119 @@
+package net.raster.grid.ascii.resample;
+
+import net.raster.grid.ascii.RasterGridAscii;
+import net.raster.grid.ascii.writer.GridSink;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Test of overviews written from a single read of the grid;
+ */
+public class GridPyramidTest
+{
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+    @Rule
+    public TemporaryFolder   folder    = new TemporaryFolder();
+
+    @Test
+    public void GivenGridWhenPyramidWrittenThenSameAsEachAggregation() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        /* --- a grid with some NODATA cells, not a multiple of the block sizes --- */
+        Random          random  = new Random( 23 );
+        StringBuilder   text    = new StringBuilder( "ncols 53\nnrows 37\nxllcorner 0\nyllcorner 0\ncellsize 10\nNODATA_value -9999\n" );
+        for ( int row = 0; row < 37; row++ )
+        {
+            for ( int col = 0; col < 53; col++ )
+            {
+                text.append( ( random.nextInt( 3 ) == 0 ) ? "-9999" : Integer.toString( random.nextInt( 1000 ) ) ).append( ' ' );
+            }
+            text.append( '\n' );
+        }
+
+        for ( Aggregation aggregation : new Aggregation[] { Aggregation.MEAN, Aggregation.SUM, Aggregation.MIN, Aggregation.MAX } )
+        {
+            GridPyramid             pyramid = new GridPyramid( RasterGridAscii.parse( new StringReader( text.toString() ) ), 3 );
+            ByteArrayOutputStream[] levels  = new ByteArrayOutputStream[ 3 ];
+            GridSink[]              sinks   = new GridSink[ 3 ];
+            for ( int i = 0; i < 3; i++ )
+            {
+                levels[ i ] = new ByteArrayOutputStream();
+                sinks[ i ]  = GridSink.of( levels[ i ] );
+            }
+            pyramid.setMaxNoData( 0.5 );
+            pyramid.write( aggregation, sinks );
+
+            for ( int i = 0; i < 3; i++ )
+            {
+                GridAggregation         direct  = new GridAggregation( RasterGridAscii.parse( new StringReader( text.toString() ) ), 2 << i );
+                ByteArrayOutputStream   out     = new ByteArrayOutputStream();
+                direct.setMaxNoData( 0.5 );
+                direct.write( out, aggregation );
+                assertEquals( aggregation + " level " + ( i + 1 ), out.toString( "US-ASCII" ), levels[ i ].toString( "US-ASCII" ) );
+            }
+        }
+    }
+
+    @Test
+    public void GivenGridWhenPyramidWrittenToFilesThenLevelFiles() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        GridPyramid pyramid = new GridPyramid( RasterGridAscii.parse( this.getReader( "/grids/idem/basic-nodata.asc" ) ), 2 );
+        Path        half    = this.folder.newFile( "half.asc" ).toPath();
+        Path        quarter = this.folder.newFile( "quarter.asc" ).toPath();
+        pyramid.write( Aggregation.MODE, half, quarter );
+
+        assertEquals
+                (
+                        "ncols         2\n"
+                        + "nrows         3\n"
+                        + "xllcorner     0.0\n"
+                        + "yllcorner     0.0\n"
+                        + "cellsize      100\n"
+                        + "NODATA_value  -9999\n"
+                        + "20 2\n"
+                        + "3 6\n"
+                        + "5 1\n",
+                        new String( Files.readAllBytes( half ), StandardCharsets.US_ASCII )
+                );
+        assertEquals
+                (
+                        "ncols         1\n"
+                        + "nrows         2\n"
+                        + "xllcorner     0.0\n"
+                        + "yllcorner     -100\n"
+                        + "cellsize      200\n"
+                        + "NODATA_value  -9999\n"
+                        + "2\n"
+                        + "1\n",
+                        new String( Files.readAllBytes( quarter ), StandardCharsets.US_ASCII )
+                );
+    }
+
+    /* --- internal methods --- */
+    private Reader  getReader( String resource )
+    {
+        return
+                new InputStreamReader
+                        (
+                                this.getClass().getResourceAsStream( resource ),
+                                StandardCharsets.UTF_8
+                        )
+                ;
+    }
+
+}
@@ -0,0 +1,112 @@
+package net.raster.grid.ascii.statistics;
+
+import net.raster.grid.ascii.RasterGridAscii;
+import net.raster.grid.ascii.memory.DoubleGrid;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Test of exact grid quantiles;
+ */
+public class ExactQuantilesTest
+{
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+    @Rule
+    public TemporaryFolder   folder    = new TemporaryFolder();
+
+    @Test
+    public void GivenGridWhenExactQuantilesThenSameAsSorted() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        Path        source  = Paths.get( this.getClass().getResource( "/grids/valid/source/cellsize.asc" ).toURI() );
+        double[]    sorted  = this.getSortedCells( source );
+        double[]    ranks   = { 0D, 0.01, 0.25, 0.5, 0.99, 1D };
+
+        ExactQuantiles quantiles = new ExactQuantiles( source );
+        quantiles.setParallelism( 2 );
+        assertArrayEquals( this.getExpected( sorted, ranks ), quantiles.getQuantiles( ranks ), 0D );
+        assertTrue( quantiles.getPasses() <= 3 );
+    }
+
+    @Test
+    public void GivenLargeGridWhenExactQuantilesThenSameAsSorted() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        /* --- more cells than collected at once, with many duplicates and negative values --- */
+        Random          random  = new Random( 3 );
+        StringBuilder   grid    = new StringBuilder( "ncols 500\nnrows 400\nxllcorner 0\nyllcorner 0\ncellsize 1\nNODATA_value -9999\n" );
+        for ( int row = 0; row < 400; row++ )
+        {
+            for ( int col = 0; col < 500; col++ )
+            {
+                int kind = random.nextInt( 10 );
+                grid.append( ( kind == 0 ) ? "-9999" : ( kind < 4 ) ? "7.25" : Double.toString( random.nextGaussian() * 1e3 ) );
+                grid.append( ( col < 499 ) ? ' ' : '\n' );
+            }
+        }
+        Path source = this.folder.newFile( "large.asc" ).toPath();
+        Files.write( source, grid.toString().getBytes( StandardCharsets.US_ASCII ) );
+
+        double[]    sorted  = this.getSortedCells( source );
+        double[]    ranks   = { 0.001, 0.3, 0.5, 0.7, 0.999 };
+        ExactQuantiles quantiles = new ExactQuantiles( source );
+        assertArrayEquals( this.getExpected( sorted, ranks ), quantiles.getQuantiles( ranks ), 0D );
+        assertTrue( quantiles.getPasses() <= 6 );
+    }
+
+    @Test
+    public void GivenWrongRankWhenExactQuantilesThenException() throws Exception
+    {
+        this.exception.expect( IllegalArgumentException.class );
+
+        new ExactQuantiles( Paths.get( "none.asc" ) ).getQuantiles( -0.5D );
+    }
+
+    /* --- internal methods --- */
+    private double[] getSortedCells( Path source ) throws Exception
+    {
+        DoubleGrid  grid    = DoubleGrid.load( RasterGridAscii.parse( source ) );
+        double[]    cells   = new double[ grid.getRows() * grid.getCols() ];
+        int         n       = 0;
+        for ( int row = 0; row < grid.getRows(); row++ )
+        {
+            for ( int col = 0; col < grid.getCols(); col++ )
+            {
+                if ( ! grid.isNoData( row, col ) )
+                {
+                    cells[ n++ ] = grid.get( row, col );
+                }
+            }
+        }
+        cells = Arrays.copyOf( cells, n );
+        Arrays.sort( cells );
+        return
+                cells;
+    }
+    private double[] getExpected( double[] sorted, double[] ranks )
+    {
+        double[] expected = new double[ ranks.length ];
+        for ( int i = 0; i < ranks.length; i++ )
+        {
+            expected[ i ] = sorted[ (int) Math.max( 1L, (long) Math.ceil( ranks[ i ] * sorted.length ) ) - 1 ];
+        }
+        return
+                expected;
+    }
+
+}
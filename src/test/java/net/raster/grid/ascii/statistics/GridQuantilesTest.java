@@ -0,0 +1,101 @@
+package net.raster.grid.ascii.statistics;
+
+import net.raster.grid.ascii.RasterGridAscii;
+import net.raster.grid.ascii.memory.DoubleGrid;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Test of approximated grid quantiles;
+ */
+public class GridQuantilesTest
+{
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void GivenManyValuesWhenSketchedThenRankWithinError() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        GridQuantiles   quantiles   = new GridQuantiles();
+        QuantileSketch  single      = quantiles.create();
+        QuantileSketch  merged      = quantiles.create();
+        QuantileSketch  part        = null;
+        Random          random      = new Random( 42 );
+        int             n           = 1000000;
+        double[]        values      = new double[ n ];
+        for ( int i = 0; i < n; i++ )
+        {
+            values[ i ] = random.nextGaussian() * 100D + ( ( i & 1023 ) == 0 ? 1e6 : 0D );
+            single.update( values[ i ] );
+            if ( ( i % 100000 ) == 0 )
+            {
+                if ( part != null )
+                {
+                    merged = quantiles.merge( merged, part );
+                }
+                part = quantiles.create();
+            }
+            part.update( values[ i ] );
+        }
+        merged = quantiles.merge( merged, part );
+        Arrays.sort( values );
+
+        for ( QuantileSketch sketch : new QuantileSketch[] { single, merged } )
+        {
+            assertEquals( n,                sketch.getCount() );
+            assertEquals( values[ 0 ],      sketch.getMin(),            0D );
+            assertEquals( values[ n - 1 ],  sketch.getMax(),            0D );
+            assertEquals( values[ 0 ],      sketch.getQuantile( 0D ),   0D );
+            assertTrue( sketch.getRetained() < 4 * GridQuantiles.DEFAULT_K );
+
+            double[] fractions = { 0.01, 0.1, 0.5, 0.9, 0.99 };
+            double[] found     = sketch.getQuantiles( fractions );
+            for ( int q = 0; q < fractions.length; q++ )
+            {
+                /* --- actual rank of the found quantile --- */
+                int rank = Arrays.binarySearch( values, found[ q ] );
+                assertTrue( rank >= 0 );
+                assertEquals( fractions[ q ], (double) rank / n, sketch.getRankError() );
+                assertEquals( fractions[ q ], sketch.getRank( found[ q ] ), sketch.getRankError() );
+            }
+        }
+    }
+
+    @Test
+    public void GivenGridWhenSketchedThenNoDataExcluded() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        Path            source  = Paths.get( this.getClass().getResource( "/grids/valid/source/cellsize.asc" ).toURI() );
+        RasterGridAscii raster  = RasterGridAscii.parse( source );
+        raster.setParallelism( 4 );
+        QuantileSketch  sketch  = raster.reduce( new StringWriter(), new GridQuantiles() );
+        GridSummary     summary = DoubleGrid.load( RasterGridAscii.parse( source ) ).reduce( new GridStatistics() );
+
+        assertEquals( summary.getCount(),   sketch.getCount() );
+        assertEquals( summary.getMin(),     sketch.getMin(),            0D );
+        assertEquals( summary.getMax(),     sketch.getMax(),            0D );
+        assertEquals( summary.getMax(),     sketch.getQuantile( 1D ),   0D );
+    }
+
+    @Test
+    public void GivenWrongRankWhenQuantileThenException() throws Exception
+    {
+        this.exception.expect( IllegalArgumentException.class );
+
+        new GridQuantiles().create().getQuantile( 1.5D );
+    }
+
+}
@@ -0,0 +1,135 @@
+package net.raster.grid.ascii.statistics;
+
+import net.raster.grid.ascii.RasterGridAscii;
+import net.raster.grid.ascii.memory.DoubleGrid;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Test of grid statistics;
+ */
+public class GridStatisticsTest
+{
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void GivenGridWhenStatisticsThenSameAsTwoPasses() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        Path        source  = Paths.get( this.getClass().getResource( "/grids/valid/source/cellsize.asc" ).toURI() );
+        DoubleGrid  grid    = DoubleGrid.load( RasterGridAscii.parse( source ) );
+
+        /* --- two passes on the grid in memory --- */
+        long    count   = 0;
+        long    nodata  = 0;
+        double  sum     = 0D;
+        double  min     = Double.POSITIVE_INFINITY;
+        double  max     = Double.NEGATIVE_INFINITY;
+        for ( int row = 0; row < grid.getRows(); row++ )
+        {
+            for ( int col = 0; col < grid.getCols(); col++ )
+            {
+                if ( grid.isNoData( row, col ) )
+                {
+                    nodata ++ ;
+                }
+                else
+                {
+                    double value = grid.get( row, col );
+                    count ++ ;
+                    sum += value;
+                    min  = Math.min( min, value );
+                    max  = Math.max( max, value );
+                }
+            }
+        }
+        double mean     = sum / count;
+        double squares  = 0D;
+        for ( int row = 0; row < grid.getRows(); row++ )
+        {
+            for ( int col = 0; col < grid.getCols(); col++ )
+            {
+                if ( ! grid.isNoData( row, col ) )
+                {
+                    squares += ( grid.get( row, col ) - mean ) * ( grid.get( row, col ) - mean );
+                }
+            }
+        }
+
+        GridStatistics  statistics  = new GridStatistics( min, max, 10 );
+        GridSummary     written     = RasterGridAscii.parse( source ).reduce( new StringWriter(), statistics );
+        GridSummary     reduced     = RasterGridAscii.parse( source ).reduce( statistics );
+        RasterGridAscii raster      = RasterGridAscii.parse( source );
+        RasterGridAscii parallel    = RasterGridAscii.parse( source );
+        raster.setParallelism( 4 );
+        parallel.setParallelism( 4 );
+        for ( GridSummary summary : new GridSummary[] { written, reduced, grid.reduce( statistics ), raster.reduce( new StringWriter(), statistics ), parallel.reduce( statistics ) } )
+        {
+            assertEquals( count,                            summary.getCount() );
+            assertEquals( nodata,                           summary.getNoDataCount() );
+            assertEquals( min,                              summary.getMin(),   0D );
+            assertEquals( max,                              summary.getMax(),   0D );
+            assertEquals( sum,                              summary.getSum(),   Math.abs( sum ) * 1e-12 );
+            assertEquals( mean,                             summary.getMean(),  Math.abs( mean ) * 1e-12 );
+            assertEquals( Math.sqrt( squares / count ),     summary.getStandardDeviation(), Math.sqrt( squares / count ) * 1e-9 );
+
+            long total = 0;
+            for ( long bin : summary.getHistogram() )
+            {
+                total += bin;
+            }
+            assertEquals( count, total );
+            assertEquals( 0,     summary.getBelowCount() + summary.getAboveCount() );
+            assertEquals( max,   summary.getBinLower( 10 ), 0D );
+        }
+    }
+
+    @Test
+    public void GivenSummariesWhenMergedThenSameAsSingle() throws Exception
+    {
+        this.exception = ExpectedException.none();
+
+        GridStatistics  statistics  = new GridStatistics( 0D, 100D, 4 );
+        GridSummary     single      = statistics.create();
+        GridSummary     first       = statistics.create();
+        GridSummary     second      = statistics.create();
+        for ( int i = 0; i < 1000; i++ )
+        {
+            double value = 1e9 + ( i % 7 ) * 0.1 + i;
+            single.add( value );
+            ( ( i < 300 ) ? first : second ).add( value );
+        }
+        statistics.accumulate( single, 50D );
+        statistics.accumulate( second, 50D );
+        statistics.accumulateNoData( single );
+        statistics.accumulateNoData( first );
+
+        GridSummary merged = statistics.merge( first, second );
+        assertEquals( single.getCount(),        merged.getCount() );
+        assertEquals( single.getNoDataCount(),  merged.getNoDataCount() );
+        assertEquals( single.getMean(),         merged.getMean(),       1e-6 );
+        assertEquals( single.getVariance(),     merged.getVariance(),   single.getVariance() * 1e-9 );
+        assertEquals( single.getSum(),          merged.getSum(),        0D );
+        assertArrayEquals( new long[] { 0, 0, 1, 0 }, merged.getHistogram() );
+        assertEquals( 1000,                     merged.getAboveCount() );
+    }
+
+    @Test
+    public void GivenWrongBoundsWhenStatisticsThenException() throws Exception
+    {
+        this.exception.expect( IllegalArgumentException.class );
+
+        new GridStatistics( 10D, 10D, 4 );
+    }
+
+}